@@ -0,0 +1,69 @@
+package wm.assignment.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import wm.assignment.venue.SeatHold;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hold + reserve through a ShardedTicketService for a 60,000 seat stadium as it is split into more sections. Each
+ * client thread books under its own email, so the router spreads the threads over the sections.
+ *
+ * Seats are consumed by every operation, so each iteration starts from a fresh service and runs a fixed batch of
+ * operations per thread. The score is the time one thread needs for its batch: if sharding pays off, the score drops
+ * as sections are added.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10, batchSize = ShardedTicketServiceBenchmark.BATCH_SIZE)
+@Measurement(iterations = 10, batchSize = ShardedTicketServiceBenchmark.BATCH_SIZE)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@Threads(ShardedTicketServiceBenchmark.THREADS)
+public class ShardedTicketServiceBenchmark {
+    static final int BATCH_SIZE = 2000;
+    static final int THREADS = 8;
+
+    private static final int NUM_ROWS = 600;
+    private static final int NUM_COLUMNS = 100;
+    private static final int SEATS_PER_HOLD = 2;
+
+    @Param({"1", "2", "4", "8"})
+    private int shardCount;
+
+    private ShardedTicketService service;
+
+    @State(Scope.Thread)
+    public static class Client {
+        private static final AtomicInteger clients = new AtomicInteger();
+
+        final String email = "client" + clients.getAndIncrement() + "@a.com";
+    }
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        // THREADS * BATCH_SIZE * SEATS_PER_HOLD seats are sold per iteration, a little over half the stadium
+        service = new ShardedTicketService(shardCount, NUM_ROWS / shardCount, NUM_COLUMNS,
+            TimeUnit.MINUTES.toMillis(10));
+    }
+
+    @Benchmark
+    public String holdAndReserve(Client client) {
+        SeatHold hold = service.findAndHoldSeats(SEATS_PER_HOLD, client.email);
+        return service.reserveSeats(hold.getId(), client.email);
+    }
+
+}
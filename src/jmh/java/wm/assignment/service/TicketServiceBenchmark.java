@@ -0,0 +1,76 @@
+package wm.assignment.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import wm.assignment.venue.SeatHold;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the latency distribution (including p99) of a hold followed by a reservation through the blocking
+ * SimpleTicketService and through the AsyncTicketService event loop, with several client threads. The async client
+ * waits for each future, so the score is the end to end latency a caller sees.
+ *
+ * Iterations are kept short so that the venue, recreated for each one, never sells out.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.SampleTime, Mode.Throughput})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 10, time = 200, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 10, time = 200, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@Threads(4)
+public class TicketServiceBenchmark {
+    private static final int NUM_ROWS = 20000;
+    private static final int NUM_COLUMNS = 50;
+    private static final int HOLD_SIZE = 3;
+    private static final String EMAIL = "a@a.com";
+
+    @Param({"SYNC", "ASYNC"})
+    private String service;
+
+    private SimpleTicketService simpleTicketService;
+    private AsyncTicketService asyncTicketService;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        if (service.equals("SYNC")) {
+            simpleTicketService = new SimpleTicketService(NUM_ROWS, NUM_COLUMNS, TimeUnit.HOURS.toMillis(1));
+        }
+        else {
+            asyncTicketService = new AsyncTicketService(NUM_ROWS, NUM_COLUMNS, TimeUnit.HOURS.toMillis(1));
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        if (asyncTicketService != null) {
+            asyncTicketService.shutdown();
+            asyncTicketService = null;
+        }
+    }
+
+    @Benchmark
+    public String holdAndReserve() {
+        if (asyncTicketService == null) {
+            SeatHold hold = simpleTicketService.findAndHoldSeats(HOLD_SIZE, EMAIL);
+            return simpleTicketService.reserveSeats(hold.getId(), EMAIL);
+        }
+
+        SeatHold hold = asyncTicketService.findAndHoldSeats(HOLD_SIZE, EMAIL).join();
+        return asyncTicketService.reserveSeats(hold.getId(), EMAIL).join();
+    }
+
+}
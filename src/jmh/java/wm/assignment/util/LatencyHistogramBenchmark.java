@@ -0,0 +1,42 @@
+package wm.assignment.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost the Venue pays to time a request: reading the clock and recording the elapsed time in a shared
+ * LatencyHistogram, from one thread and from four threads recording into the same histogram.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class LatencyHistogramBenchmark {
+
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    @Benchmark
+    @Threads(1)
+    public void recordSince() {
+        histogram.recordSince(System.nanoTime());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void recordSinceContended() {
+        histogram.recordSince(System.nanoTime());
+    }
+
+}
@@ -0,0 +1,79 @@
+package wm.assignment.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the TTLMap with 10k, 100k and 1M live entries (one per seat hold):
+ *
+ * putAndRemove - the cost of inserting an entry and cancelling it again, which should not depend on the number of
+ * live entries.
+ * expireAll - the time to insert that many entries with a 1 ms TTL and receive every expiration notification.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class TTLMapBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    private int liveEntries;
+
+    private TTLMap<Integer, Integer> liveMap;
+    private int nextKey;
+
+    private TTLMap<Integer, Integer> expiringMap;
+    private CountDownLatch expirations;
+
+    @Setup(Level.Trial)
+    public void setUpLiveMap() {
+        // a TTL long enough that nothing expires during the trial
+        liveMap = new TTLMap<>(TimeUnit.HOURS.toMillis(1));
+
+        for (int i = 0; i < liveEntries; i++) {
+            liveMap.put(i, i, v -> { });
+        }
+        nextKey = liveEntries;
+    }
+
+    @Setup(Level.Iteration)
+    public void setUpExpiringMap() {
+        expiringMap = new TTLMap<>(1);
+        expirations = new CountDownLatch(liveEntries);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public Integer putAndRemove() {
+        int key = nextKey++;
+        liveMap.put(key, key, v -> { });
+        return liveMap.remove(key);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public long expireAll() throws InterruptedException {
+        for (int i = 0; i < liveEntries; i++) {
+            expiringMap.put(i, i, v -> expirations.countDown());
+        }
+
+        expirations.await();
+        return expirations.getCount();
+    }
+
+}
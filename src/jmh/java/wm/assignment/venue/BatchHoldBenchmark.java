@@ -0,0 +1,76 @@
+package wm.assignment.venue;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a burst of holds sent to Venue.findAndHoldSeatsBatch in batches of holdsPerBatch. A batch size of 1 is
+ * the equivalent of calling findAndHoldSeats for every request.
+ *
+ * Every invocation holds the same number of seats (BURST_SIZE requests) on a venue that is half sold down, so the
+ * scores for different batch sizes compare directly. Thread counts are set with -t (or -PjmhThreads with gradle jmh).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 20)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class BatchHoldBenchmark {
+    private static final int BURST_SIZE = 5000;
+    private static final int NUM_ROWS = 200;
+
+    @Param({"1", "10", "100", "1000"})
+    private int holdsPerBatch;
+
+    @Param({"VENUE", "ROW", "OPTIMISTIC"})
+    private LockMode lockMode;
+
+    private Venue venue;
+    private List<List<HoldRequest>> batches;
+
+    @Setup(Level.Iteration)
+    public void setUp(BenchmarkParams params) {
+        int holdsPerRow = VenueBenchmark.NUM_COLUMNS / VenueBenchmark.HOLD_SIZE;
+        int spareRows = params.getThreads() * BURST_SIZE / holdsPerRow + 1;
+        venue = new Venue(NUM_ROWS + spareRows, VenueBenchmark.NUM_COLUMNS, TimeUnit.HOURS.toMillis(1), lockMode);
+
+        // sell down the first half of the venue, leaving a gap that a three seat request can't use in every row
+        for (int i = 0; i < NUM_ROWS / 2 * holdsPerRow; i++) {
+            venue.findAndHoldSeats(VenueBenchmark.HOLD_SIZE, VenueBenchmark.EMAIL);
+        }
+
+        batches = new ArrayList<>();
+        for (int i = 0; i < BURST_SIZE; i += holdsPerBatch) {
+            List<HoldRequest> batch = new ArrayList<>(holdsPerBatch);
+            for (int j = i; j < Math.min(i + holdsPerBatch, BURST_SIZE); j++) {
+                batch.add(new HoldRequest(VenueBenchmark.HOLD_SIZE, VenueBenchmark.EMAIL));
+            }
+            batches.add(batch);
+        }
+    }
+
+    @Benchmark
+    public void burst(Blackhole blackhole) {
+        for (List<HoldRequest> batch : batches) {
+            blackhole.consume(venue.findAndHoldSeatsBatch(batch));
+        }
+    }
+
+}
@@ -0,0 +1,86 @@
+package wm.assignment.venue;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares Venue.findAndHoldSeats with best-available seating (SeatScorer + SeatPriorityIndex) against first-fit.
+ *
+ * soldPercent of the venue is sold ahead of each iteration with three seat holds (half of them reserved), using the
+ * same seating as the measured holds. Best-available seating fills the venue from its best seats outwards, so the
+ * rows with the best remaining seats are full of two seat gaps that the search has to look past.
+ *
+ * Seats are consumed by every operation, so each iteration starts from a freshly sold venue and runs a fixed batch of
+ * holds. The score is the time for the batch.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 10, batchSize = BestAvailableBenchmark.BATCH_SIZE)
+@Measurement(iterations = 20, batchSize = BestAvailableBenchmark.BATCH_SIZE)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class BestAvailableBenchmark {
+    static final int BATCH_SIZE = 500;
+
+    private static final int NUM_COLUMNS = 50;
+    private static final int HOLD_SIZE = 3;
+    private static final String EMAIL = "a@a.com";
+
+    @Param({"FIRST_FIT", "CENTER_WEIGHTED", "DISTANCE_TO_STAGE"})
+    private String seating;
+
+    @Param({"500", "5000"})
+    private int numRows;
+
+    @Param({"0", "50", "90"})
+    private int soldPercent;
+
+    @Param({"BLOCK_LIST"})
+    private RowModel rowModel;
+
+    private Venue venue;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        venue = new Venue(numRows, NUM_COLUMNS, TimeUnit.HOURS.toMillis(1), LockMode.VENUE, rowModel, seatScorer());
+
+        int soldHolds = numRows * NUM_COLUMNS * soldPercent / 100 / HOLD_SIZE;
+
+        for (int i = 0; i < soldHolds; i++) {
+            SeatHold hold = venue.findAndHoldSeats(HOLD_SIZE, EMAIL);
+
+            if (i % 2 == 0) {
+                venue.reserveSeats(hold.getId(), EMAIL);
+            }
+        }
+    }
+
+    private SeatScorer seatScorer() {
+        switch (seating) {
+            case "CENTER_WEIGHTED":
+                return SeatScorer.centerWeighted();
+            case "DISTANCE_TO_STAGE":
+                return SeatScorer.distanceToStage();
+            default:
+                return null;
+        }
+    }
+
+    @Benchmark
+    public SeatHold findAndHoldSeats() {
+        return venue.findAndHoldSeats(HOLD_SIZE, EMAIL);
+    }
+
+}
@@ -0,0 +1,67 @@
+package wm.assignment.venue;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The two copy-on-write paths of BlockListRow, measured separately on the fragmented rows of RowModelBenchmark:
+ *
+ * holdSeats - splits the first block that fits and copies the block list into a new row.
+ * withBlocksMerged - releases a hold in the middle of the row (through withBlockUnreserved), which rebuilds the
+ * list and merges the freed seats with their neighbours.
+ *
+ * A BlockListRow is never modified, so both operations can be repeated against the same row.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BlockListRowBenchmark {
+    private static final int REQUEST_SIZE = 3;
+
+    @Param({"50", "500", "5000"})
+    private int numSeats;
+
+    @Param({"0", "50", "90"})
+    private int fragmentation;
+
+    private Row row;
+
+    private Row heldRow;
+    private SeatBlock heldBlock;
+
+    @Setup
+    public void setUp() {
+        row = RowModelBenchmark.fragmentedRow(RowModel.BLOCK_LIST, numSeats, fragmentation);
+
+        // a hold taken at the front of the free tail of the row, so releasing it merges it back into the tail
+        Row.HoldUpdate update = row.holdSeats(row.firstAvailableBlock(REQUEST_SIZE).findFirst().get(),
+            REQUEST_SIZE, "a@a.com");
+        heldRow = update.row;
+        heldBlock = update.hold.getBlock();
+    }
+
+    @Benchmark
+    public Row holdSeats() {
+        return row.holdSeats(row.firstAvailableBlock(REQUEST_SIZE).findFirst().get(), REQUEST_SIZE, "a@a.com").row;
+    }
+
+    @Benchmark
+    public Row withBlocksMerged() {
+        return heldRow.withBlockUnreserved(heldBlock);
+    }
+
+}
@@ -0,0 +1,119 @@
+package wm.assignment.venue;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import wm.assignment.util.TTLMap;
+
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the HoldSlab the venue keeps its holds in with the TTLMap keyed by random int ids it replaced, with 10k and
+ * 1M live holds:
+ *
+ * lookup - resolving the id of a live hold, as reserveSeats does. Ids are looked up in random order, so at 1M holds
+ * most lookups miss the cache.
+ * addAndRemove - tracking a new hold (with its expiry) and removing it again, as a hold followed by a reservation does.
+ * extend - resolving a live hold and giving it another millisecond, as extendHold does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class HoldLookupBenchmark {
+    private static final long TTL_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private static final String EMAIL = "a@a.com";
+
+    public enum Store {
+        HOLD_SLAB,
+        TTL_MAP
+    }
+
+    @Param({"HOLD_SLAB", "TTL_MAP"})
+    private Store store;
+
+    @Param({"10000", "1000000"})
+    private int liveHolds;
+
+    private HoldSlab slab;
+    private TTLMap<Integer, SeatHold> map;
+
+    // the ids of the live holds, in random order
+    private int[] ids;
+    private int next;
+
+    private SeatBlock block;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        block = new SeatBlock(SeatBlockType.HOLD, 0, 0, 1);
+        ids = new int[liveHolds];
+
+        // room for the live holds and the one added by addAndRemove
+        slab = new HoldSlab(liveHolds + 1, 0, 1);
+        map = new TTLMap<>(TTL_MILLIS);
+
+        for (int i = 0; i < liveHolds; i++) {
+            ids[i] = add().getId();
+        }
+
+        Random random = new Random(42);
+        for (int i = ids.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int id = ids[i];
+            ids[i] = ids[j];
+            ids[j] = id;
+        }
+    }
+
+    @Benchmark
+    public SeatHold lookup() {
+        int id = ids[next];
+        next = next + 1 == ids.length ? 0 : next + 1;
+
+        return store == Store.HOLD_SLAB ? slab.get(id) : map.get(id);
+    }
+
+    @Benchmark
+    public long extend() {
+        int id = ids[next];
+        next = next + 1 == ids.length ? 0 : next + 1;
+
+        return store == Store.HOLD_SLAB ? slab.extend(slab.get(id), 1) : map.extend(id, 1) ? 1 : -1;
+    }
+
+    @Benchmark
+    public boolean addAndRemove() {
+        SeatHold hold = add();
+
+        return store == Store.HOLD_SLAB ? slab.remove(hold) : map.remove(hold.getId(), hold);
+    }
+
+    private SeatHold add() {
+        if (store == Store.HOLD_SLAB) {
+            SeatHold hold = new SeatHold(block, EMAIL);
+            slab.assignId(hold);
+            slab.put(hold, TTL_MILLIS, h -> { });
+            return hold;
+        }
+
+        // how SeatHold picked its ids before the slab
+        SeatHold hold = new SeatHold(ThreadLocalRandom.current().nextInt(), block, EMAIL);
+        map.put(hold.getId(), hold, h -> { });
+        return hold;
+    }
+
+}
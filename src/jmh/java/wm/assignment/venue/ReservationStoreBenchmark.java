@@ -0,0 +1,106 @@
+package wm.assignment.venue;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the ReservationStore with base32 confirmation codes against the ConcurrentHashMap of UUID strings it
+ * replaced, with 10k and 1M reservations:
+ *
+ * reserve - issuing a confirmation code and storing the reservation under it, as reserveSeats does.
+ * lookup - findReservation for the code of an existing reservation, in random order. The code arrives as a new String,
+ * as it would in a request, so the map has to hash it and compare it with the key it finds.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class ReservationStoreBenchmark {
+    private static final String CUSTOMER = "a@a.com";
+
+    public enum Store {
+        RESERVATION_STORE,
+        UUID_MAP
+    }
+
+    @Param({"RESERVATION_STORE", "UUID_MAP"})
+    private Store store;
+
+    @Param({"10000", "1000000"})
+    private int reservations;
+
+    private ReservationStore reservationStore;
+    private Map<String, SeatBlock> uuidMap;
+
+    // the confirmation codes of the stored reservations, in random order
+    private char[][] confirmIds;
+    private int next;
+
+    private SeatBlock block;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        block = new SeatBlock(SeatBlockType.RESERVED, 10, 20, 4);
+        reservationStore = new ReservationStore();
+        uuidMap = new ConcurrentHashMap<>();
+        confirmIds = new char[reservations][];
+
+        for (int i = 0; i < reservations; i++) {
+            confirmIds[i] = reserve().toCharArray();
+        }
+
+        Random random = new Random(42);
+        for (int i = confirmIds.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            char[] confirmId = confirmIds[i];
+            confirmIds[i] = confirmIds[j];
+            confirmIds[j] = confirmId;
+        }
+    }
+
+    @Benchmark
+    public String reserve() {
+        if (store == Store.RESERVATION_STORE) {
+            long code;
+
+            do {
+                code = ConfirmationCode.next();
+            } while (!reservationStore.put(code, block, CUSTOMER));
+
+            return ConfirmationCode.format(code);
+        }
+
+        String confirmId = UUID.randomUUID().toString();
+        uuidMap.put(confirmId, block);
+        return confirmId;
+    }
+
+    @Benchmark
+    public SeatBlock lookup() {
+        String confirmId = new String(confirmIds[next]);
+        next = next + 1 == confirmIds.length ? 0 : next + 1;
+
+        return store == Store.RESERVATION_STORE
+            ? reservationStore.get(ConfirmationCode.parse(confirmId))
+            : uuidMap.get(confirmId);
+    }
+
+}
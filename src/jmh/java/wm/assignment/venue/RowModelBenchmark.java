@@ -0,0 +1,79 @@
+package wm.assignment.venue;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Head to head comparison of the BLOCK_LIST, PACKED and OFF_HEAP row models on a fragmented row. fragmentation is the
+ * percentage of the row that alternates between two held and two free seats, so a three seat request has to skip
+ * every gap before it fits. Each operation holds three seats and releases them again, which leaves the row as it was.
+ *
+ * Run with -prof gc to compare the allocation rate of the models.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RowModelBenchmark {
+    private static final int REQUEST_SIZE = 3;
+
+    @Param({"BLOCK_LIST", "PACKED", "OFF_HEAP"})
+    private RowModel rowModel;
+
+    @Param({"50", "500", "5000"})
+    private int numSeats;
+
+    @Param({"0", "50", "90"})
+    private int fragmentation;
+
+    private Row row;
+
+    @Setup
+    public void setUp() {
+        row = fragmentedRow(rowModel, numSeats, fragmentation);
+    }
+
+    /**
+     * Builds a row whose first fragmentation percent alternates between two held and two free seats
+     */
+    static Row fragmentedRow(RowModel rowModel, int numSeats, int fragmentation) {
+        Row row = Row.create(rowModel, 0, numSeats);
+
+        // hold the fragmented part of the row two seats at a time, then release every other hold
+        List<SeatHold> holds = new ArrayList<>();
+        for (int held = 0; held + 2 <= numSeats * fragmentation / 100; held += 2) {
+            Row.HoldUpdate update = row.holdSeats(row.firstAvailableBlock(2).findFirst().get(), 2, "a@a.com");
+            row = update.row;
+            holds.add(update.hold);
+        }
+
+        for (int i = 1; i < holds.size(); i += 2) {
+            row = row.withBlockUnreserved(holds.get(i).getBlock());
+        }
+
+        return row;
+    }
+
+    @Benchmark
+    public Row holdAndRelease() {
+        Row.HoldUpdate update = row.holdSeats(row.firstAvailableBlock(REQUEST_SIZE).findFirst().get(),
+            REQUEST_SIZE, "a@a.com");
+        return update.row.withBlockUnreserved(update.hold.getBlock());
+    }
+
+}
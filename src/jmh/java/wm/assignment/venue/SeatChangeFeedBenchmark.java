@@ -0,0 +1,93 @@
+package wm.assignment.venue;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures what a SeatChangeFeed adds to hold + reserve, with no feed, a feed nobody reads and a feed followed by
+ * subscriber threads polling as fast as they can. Writers never wait for subscribers, so the score should not depend
+ * on how many there are.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, batchSize = SeatChangeFeedBenchmark.BATCH_SIZE)
+@Measurement(iterations = 10, batchSize = SeatChangeFeedBenchmark.BATCH_SIZE)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@Threads(4)
+public class SeatChangeFeedBenchmark {
+    static final int BATCH_SIZE = 2000;
+
+    private static final int NUM_ROWS = 4 * BATCH_SIZE * 2 / 100 + 1;
+
+    // -1 for no feed at all
+    @Param({"-1", "0", "4"})
+    private int subscribers;
+
+    @Param({"ROW"})
+    private LockMode lockMode;
+
+    private Venue venue;
+    private List<Thread> subscriberThreads;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        venue = new Venue(NUM_ROWS, 100, TimeUnit.MINUTES.toMillis(10), lockMode);
+        subscriberThreads = new ArrayList<>();
+
+        if (subscribers < 0) {
+            return;
+        }
+
+        SeatChangeFeed feed = venue.openChangeFeed(1 << 16);
+
+        for (int i = 0; i < subscribers; i++) {
+            SeatChangeFeed.Subscription subscription = feed.subscribe();
+            Thread thread = new Thread(() -> {
+                try {
+                    while (!Thread.currentThread().isInterrupted()) {
+                        subscription.poll(256, 10, TimeUnit.MILLISECONDS);
+                    }
+                }
+                catch (InterruptedException e) {
+                    // done
+                }
+            });
+
+            thread.setDaemon(true);
+            thread.start();
+            subscriberThreads.add(thread);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws InterruptedException {
+        for (Thread thread : subscriberThreads) {
+            thread.interrupt();
+            thread.join();
+        }
+    }
+
+    @Benchmark
+    public String holdAndReserve() {
+        SeatHold hold = venue.findAndHoldSeats(2, "a@a.com");
+        return venue.reserveSeats(hold.getId(), "a@a.com");
+    }
+
+}
@@ -0,0 +1,99 @@
+package wm.assignment.venue;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Export times of the seat map of a 100k seat venue (1000 rows of 100 seats), with 8000 holds of 1 to 8 seats, half
+ * of them reserved: the whole map, and a diff after 10 more holds. The output goes to a channel that counts and drops
+ * the bytes, so only the encoding is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class SeatMapExportBenchmark {
+
+    @Param({"BINARY", "TEXT"})
+    private SeatMapExport.Format format;
+
+    @Param({"PACKED"})
+    private RowModel rowModel;
+
+    private SeatMapExport export;
+    private VenueSnapshot base;
+    private VenueSnapshot snapshot;
+    private final CountingChannel out = new CountingChannel();
+
+    @Setup
+    public void setUp() {
+        Venue venue = new Venue(1000, 100, TimeUnit.HOURS.toMillis(1), LockMode.VENUE, rowModel);
+
+        for (int i = 0; i < 8000; i++) {
+            SeatHold hold = venue.findAndHoldSeats(1 + i % 8, "a@a.com");
+
+            if (i % 2 == 0) {
+                venue.reserveSeats(hold.getId(), "a@a.com");
+            }
+        }
+
+        base = venue.snapshot();
+
+        for (int i = 0; i < 10; i++) {
+            venue.findAndHoldSeats(4, "b@b.com");
+        }
+
+        snapshot = venue.snapshot();
+        export = new SeatMapExport(format);
+    }
+
+    @Benchmark
+    public long full() throws IOException {
+        export.write(snapshot, out);
+        return out.count;
+    }
+
+    @Benchmark
+    public long diff() throws IOException {
+        export.writeDiff(base, snapshot, out);
+        return out.count;
+    }
+
+    private static class CountingChannel implements WritableByteChannel {
+        long count;
+
+        @Override
+        public int write(ByteBuffer src) {
+            int n = src.remaining();
+            src.position(src.limit());
+            count += n;
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+}
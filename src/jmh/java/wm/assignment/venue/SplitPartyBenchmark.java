@@ -0,0 +1,78 @@
+package wm.assignment.venue;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures Venue.findAndHoldSeats for a party that no single row can seat.
+ *
+ * Every row is sold down to its last FREE_SEATS seats ahead of each iteration, so a PARTY_SIZE party only fits when
+ * it is split over two rows. With splitPartyRows = 1 every hold fails, which is the cost of the contiguous search on
+ * its own. TOO_LARGE parties need more rows than splitPartyRows allows, so they show the cost of a failed split search.
+ *
+ * Seats are consumed by every successful hold, so each iteration starts from a freshly sold venue and runs a fixed
+ * batch of holds. The score is the time for the batch.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 10, batchSize = SplitPartyBenchmark.BATCH_SIZE)
+@Measurement(iterations = 20, batchSize = SplitPartyBenchmark.BATCH_SIZE)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class SplitPartyBenchmark {
+    static final int BATCH_SIZE = 200;
+
+    private static final int NUM_COLUMNS = 50;
+    private static final int FREE_SEATS = 6;
+    private static final int PARTY_SIZE = 10;
+    private static final int TOO_LARGE = 40;
+    private static final String EMAIL = "a@a.com";
+
+    @Param({"500", "5000"})
+    private int numRows;
+
+    @Param({"1", "2", "4"})
+    private int splitPartyRows;
+
+    @Param({"ROW"})
+    private LockMode lockMode;
+
+    @Param({"BLOCK_LIST", "PACKED"})
+    private RowModel rowModel;
+
+    private Venue venue;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        venue = new Venue(numRows, NUM_COLUMNS, TimeUnit.HOURS.toMillis(1), lockMode, rowModel);
+
+        for (int i = 0; i < numRows; i++) {
+            venue.findAndHoldSeats(NUM_COLUMNS - FREE_SEATS, EMAIL);
+        }
+
+        venue.setSplitPartyRows(splitPartyRows);
+    }
+
+    @Benchmark
+    public SeatHold splitParty() {
+        return venue.findAndHoldSeats(PARTY_SIZE, EMAIL);
+    }
+
+    @Benchmark
+    public SeatHold tooLarge() {
+        return venue.findAndHoldSeats(TOO_LARGE, EMAIL);
+    }
+
+}
@@ -0,0 +1,132 @@
+package wm.assignment.venue;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures Venue.findAndHoldSeats, Venue.reserveSeats and Venue.cancelReservation across venue sizes and
+ * fragmentation levels.
+ *
+ * fragmentation is the percentage of rows, from the front of the venue, that have been sold down with three seat
+ * holds (half of them reserved). Fifty seat rows take sixteen of those, so every sold down row is left with a two seat
+ * gap that a three seat request has to skip - the state first-fit leaves a venue in during an on-sale.
+ *
+ * Seats are consumed by every operation, so each iteration starts from a freshly sold down venue and runs a fixed
+ * batch of operations per thread. Spare rows are added behind the measured rows so that the batch always fits. The
+ * score is the time one thread needs for its batch. Thread counts are set with -t (or -PjmhThreads with gradle jmh).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 10, batchSize = VenueBenchmark.BATCH_SIZE)
+@Measurement(iterations = 20, batchSize = VenueBenchmark.BATCH_SIZE)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class VenueBenchmark {
+    static final int BATCH_SIZE = 5000;
+
+    static final int NUM_COLUMNS = 50;
+    static final int HOLD_SIZE = 3;
+    static final String EMAIL = "a@a.com";
+
+    @Param({"20", "200", "2000"})
+    private int numRows;
+
+    @Param({"0", "50", "90"})
+    private int fragmentation;
+
+    @Param({"VENUE"})
+    private LockMode lockMode;
+
+    @Param({"BLOCK_LIST"})
+    private RowModel rowModel;
+
+    Venue venue;
+
+    @Setup(Level.Iteration)
+    public void setUp(BenchmarkParams params) {
+        // each thread holds BATCH_SIZE blocks, either in the benchmark itself or in ThreadHolds
+        int spareRows = params.getThreads() * BATCH_SIZE / (NUM_COLUMNS / HOLD_SIZE) + 1;
+        venue = new Venue(numRows + spareRows, NUM_COLUMNS, TimeUnit.HOURS.toMillis(1), lockMode, rowModel);
+
+        int soldDownRows = numRows * fragmentation / 100;
+        int holdsPerRow = NUM_COLUMNS / HOLD_SIZE;
+
+        for (int i = 0; i < soldDownRows * holdsPerRow; i++) {
+            SeatHold hold = venue.findAndHoldSeats(HOLD_SIZE, EMAIL);
+
+            if (i % 2 == 0) {
+                venue.reserveSeats(hold.getId(), EMAIL);
+            }
+        }
+    }
+
+    /**
+     * Holds taken ahead of each iteration, for the reserveSeats benchmark to confirm
+     */
+    @State(Scope.Thread)
+    public static class ThreadHolds {
+        List<SeatHold> holds;
+        int next;
+
+        @Setup(Level.Iteration)
+        public void setUp(VenueBenchmark benchmark) {
+            holds = new ArrayList<>(BATCH_SIZE);
+            next = 0;
+
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                holds.add(benchmark.venue.findAndHoldSeats(HOLD_SIZE, EMAIL));
+            }
+        }
+    }
+
+    /**
+     * Reservations made ahead of each iteration, for the cancelReservation benchmark to cancel
+     */
+    @State(Scope.Thread)
+    public static class ThreadReservations {
+        List<String> confirmIds;
+        int next;
+
+        @Setup(Level.Iteration)
+        public void setUp(VenueBenchmark benchmark) {
+            confirmIds = new ArrayList<>(BATCH_SIZE);
+            next = 0;
+
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                SeatHold hold = benchmark.venue.findAndHoldSeats(HOLD_SIZE, EMAIL);
+                confirmIds.add(benchmark.venue.reserveSeats(hold.getId(), EMAIL));
+            }
+        }
+    }
+
+    @Benchmark
+    public SeatHold findAndHoldSeats() {
+        return venue.findAndHoldSeats(HOLD_SIZE, EMAIL);
+    }
+
+    @Benchmark
+    public String reserveSeats(ThreadHolds threadHolds) {
+        return venue.reserveSeats(threadHolds.holds.get(threadHolds.next++).getId(), EMAIL);
+    }
+
+    @Benchmark
+    public boolean cancelReservation(ThreadReservations threadReservations) {
+        return venue.cancelReservation(threadReservations.confirmIds.get(threadReservations.next++), EMAIL);
+    }
+
+}
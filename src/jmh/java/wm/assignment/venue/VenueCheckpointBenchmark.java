@@ -0,0 +1,97 @@
+package wm.assignment.venue;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write and load times of a checkpoint of a 1M seat venue (1000 rows of 1000 seats). soldPercent of the seats are
+ * taken by three seat blocks: one in ten of those is a hold, the rest are reservations. At 90% that is 270k
+ * reservations and 30k holds.
+ *
+ * load is what a restart costs before the journal tail is replayed: mapping and parsing the checkpoint, then
+ * rebuilding the rows of the venue.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class VenueCheckpointBenchmark {
+    private static final int NUM_ROWS = 1000;
+    private static final int NUM_COLUMNS = 1000;
+    private static final int BLOCK_SIZE = 3;
+
+    @Param({"10", "50", "90"})
+    private int soldPercent;
+
+    @Param({"BLOCK_LIST"})
+    private RowModel rowModel;
+
+    private VenueCheckpoint checkpoint;
+    private Path path;
+    private Venue venue;
+
+    @Setup
+    public void setUp() throws IOException {
+        JournalState state = new JournalState();
+        long expiresAtMillis = System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1);
+        int blocksPerRow = NUM_COLUMNS * soldPercent / 100 / BLOCK_SIZE;
+        int id = 0;
+
+        for (int rowNum = 0; rowNum < NUM_ROWS; rowNum++) {
+            for (int i = 0; i < blocksPerRow; i++) {
+                SeatBlock block = new SeatBlock(SeatBlockType.HOLD, rowNum, i * BLOCK_SIZE, BLOCK_SIZE);
+                state.hold(id, Collections.singletonList(block), "customer" + id + "@example.com", expiresAtMillis);
+
+                if (id % 10 != 0) {
+                    state.reserve(id, ConfirmationCode.next());
+                }
+                id++;
+            }
+        }
+
+        checkpoint = new VenueCheckpoint(NUM_ROWS, NUM_COLUMNS, 0, state);
+        path = Files.createTempFile("venue", ".checkpoint");
+        checkpoint.write(path);
+    }
+
+    @Setup(Level.Invocation)
+    public void newVenue() {
+        venue = new Venue(NUM_ROWS, NUM_COLUMNS, TimeUnit.HOURS.toMillis(1), LockMode.VENUE, rowModel);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(path);
+    }
+
+    @Benchmark
+    public void write() {
+        checkpoint.write(path);
+    }
+
+    @Benchmark
+    public Venue load() {
+        VenueCheckpoint.read(path).getState().restore(venue);
+        return venue;
+    }
+
+}
@@ -0,0 +1,75 @@
+package wm.assignment.venue;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures what the journal adds to hold + reserve. Every reservation waits for an fsync, so with several client
+ * threads the score shows how well reservations share them (group commit).
+ *
+ * Point java.io.tmpdir at the disk the journal would live on in production - on tmpfs the fsync is free.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, batchSize = VenueJournalBenchmark.BATCH_SIZE)
+@Measurement(iterations = 10, batchSize = VenueJournalBenchmark.BATCH_SIZE)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@Threads(4)
+public class VenueJournalBenchmark {
+    static final int BATCH_SIZE = 2000;
+
+    private static final int NUM_ROWS = 4 * BATCH_SIZE * 2 / 100 + 1;
+
+    @Param({"false", "true"})
+    private boolean journaled;
+
+    private Venue venue;
+    private VenueJournal journal;
+    private Path path;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException {
+        venue = new Venue(NUM_ROWS, 100, TimeUnit.MINUTES.toMillis(10));
+
+        if (journaled) {
+            path = Files.createTempFile("venue", ".journal");
+            Files.delete(path);
+            journal = new VenueJournal(path);
+            journal.replay(venue);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException {
+        if (journal != null) {
+            journal.close();
+            Files.delete(path);
+            journal = null;
+        }
+    }
+
+    @Benchmark
+    public String holdAndReserve() {
+        SeatHold hold = venue.findAndHoldSeats(2, "a@a.com");
+        return venue.reserveSeats(hold.getId(), "a@a.com");
+    }
+
+}
@@ -0,0 +1,82 @@
+package wm.assignment.venue;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares hold + reserve throughput of the venue-wide monitor (LockMode.VENUE), per-row locking (LockMode.ROW) and
+ * lock-free compare-and-set commits (LockMode.OPTIMISTIC) as the number of client threads grows. First fit holds all
+ * go to the first row with room, so the threads contend for the same row most of the time.
+ *
+ * Seats are consumed by every operation, so each iteration starts from a fresh venue and runs a fixed batch of
+ * operations per thread. The score is the time one thread needs for its batch: if a lock mode scales, the score
+ * stays flat as threads are added.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10, batchSize = VenueLockingBenchmark.BATCH_SIZE)
+@Measurement(iterations = 10, batchSize = VenueLockingBenchmark.BATCH_SIZE)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class VenueLockingBenchmark {
+    static final int BATCH_SIZE = 2000;
+
+    private static final int MAX_THREADS = 8;
+    private static final int SEATS_PER_HOLD = 2;
+    private static final int NUM_COLUMNS = 100;
+
+    @Param({"VENUE", "ROW", "OPTIMISTIC"})
+    private LockMode lockMode;
+
+    private Venue venue;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        // enough rows that the venue never sells out within an iteration, even with MAX_THREADS clients
+        int numRows = MAX_THREADS * BATCH_SIZE * SEATS_PER_HOLD / NUM_COLUMNS + 1;
+        venue = new Venue(numRows, NUM_COLUMNS, TimeUnit.MINUTES.toMillis(10), lockMode);
+    }
+
+    private String holdAndReserve() {
+        SeatHold hold = venue.findAndHoldSeats(SEATS_PER_HOLD, "a@a.com");
+        return venue.reserveSeats(hold.getId(), "a@a.com");
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String threads1() {
+        return holdAndReserve();
+    }
+
+    @Benchmark
+    @Threads(2)
+    public String threads2() {
+        return holdAndReserve();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String threads4() {
+        return holdAndReserve();
+    }
+
+    @Benchmark
+    @Threads(MAX_THREADS)
+    public String threads8() {
+        return holdAndReserve();
+    }
+
+}
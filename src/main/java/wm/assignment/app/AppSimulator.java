@@ -5,15 +5,27 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import wm.assignment.service.SimpleTicketService;
 import wm.assignment.util.ExecutorRegistry;
-import wm.assignment.venue.SeatBlockType;
+import wm.assignment.venue.LockMode;
+import wm.assignment.venue.RowModel;
 import wm.assignment.venue.SeatHold;
+import wm.assignment.venue.SeatMapExport;
+import wm.assignment.venue.SeatScorer;
 import wm.assignment.venue.Venue;
-
+import wm.assignment.venue.VenueJournal;
+import wm.assignment.venue.VenueSnapshot;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Random;
 import java.util.UUID;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Supplier;
 
 /**
@@ -23,6 +35,8 @@ import java.util.function.Supplier;
 public class AppSimulator {
     private final static Log log = LogFactory.getLog(AppSimulator.class);
 
+    private static final long CHECKPOINT_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
     private SimpleTicketService ticketService;
     private int numWorkers;
 
@@ -34,25 +48,79 @@ public class AppSimulator {
         int numRows = Integer.parseInt(cl.getOptionValue("rows"));
         int numColumns = Integer.parseInt(cl.getOptionValue("columns"));
         long ttlInMillis = Long.parseLong(cl.getOptionValue("ttlInMillis"));
+        LockMode lockMode = LockMode.valueOf(cl.getOptionValue("lockMode", LockMode.VENUE.name()));
+        RowModel rowModel = RowModel.valueOf(cl.getOptionValue("rowModel", RowModel.BLOCK_LIST.name()));
+        SeatScorer seatScorer = getSeatScorer(cl.getOptionValue("seating", "FIRST_FIT"));
 
         this.numWorkers = Integer.parseInt(cl.getOptionValue("numWorkers"));
 
-        ticketService = new SimpleTicketService(numRows, numColumns, ttlInMillis);
+        Venue venue = new Venue(numRows, numColumns, ttlInMillis, lockMode, rowModel, seatScorer);
+        venue.setSplitPartyRows(Integer.parseInt(cl.getOptionValue("splitPartyRows", "1")));
+
+        if (cl.hasOption("journal")) {
+            Path checkpointPath = cl.hasOption("checkpoint") ? Paths.get(cl.getOptionValue("checkpoint")) : null;
+
+            // recover whatever a previous run left in the journal, and journal this run
+            new VenueJournal(Paths.get(cl.getOptionValue("journal")), checkpointPath, CHECKPOINT_INTERVAL_MILLIS)
+                .replay(venue);
+        }
+
+        ticketService = new SimpleTicketService(venue);
+    }
+
+    /**
+     * Maps the --seating option to a SeatScorer - FIRST_FIT has none
+     */
+    private static SeatScorer getSeatScorer(String seating) {
+        switch (seating) {
+            case "FIRST_FIT":
+                return null;
+            case "CENTER_WEIGHTED":
+                return SeatScorer.centerWeighted();
+            case "DISTANCE_TO_STAGE":
+                return SeatScorer.distanceToStage();
+            default:
+                throw new IllegalArgumentException("Unknown seating: " + seating);
+        }
     }
 
     /**
      * Creates a task to print out statistics about the venue on a periodic basis
      */
     private void initMonitor() {
+        Venue venue = ticketService.getVenue();
+
+        // also readable over JMX, e.g. with jconsole
+        venue.getMetrics().register("AppSimulator");
+
+        SeatMapExport export = new SeatMapExport(SeatMapExport.Format.TEXT);
+        AtomicReference<VenueSnapshot> lastLogged = new AtomicReference<>();
+
         Runnable monitor = () -> {
-            Venue venue = ticketService.getVenue();
-            log.info("Monitor: Current Venue Map");
-            log.info(venue);
-
-            log.info("Monitor: Number of open seats: " + ticketService.numSeatsAvailable());
-            log.info("Monitor: Number of unreserved blocks: " + venue.findBlocks(SeatBlockType.UNRESERVED).size());
-            log.info("Monitor: Number of hold blocks: " + venue.findBlocks(SeatBlockType.HOLD).size());
-            log.info("Monitor: Number of reserved blocks: " + venue.findBlocks(SeatBlockType.RESERVED).size());
+            // read from a single snapshot, so that the counts add up even while workers are updating the venue
+            VenueSnapshot snapshot = venue.snapshot();
+            VenueSnapshot previous = lastLogged.getAndSet(snapshot);
+
+            // the whole map the first time, then only the rows that changed since
+            ByteArrayOutputStream seatMap = new ByteArrayOutputStream();
+            try {
+                if (previous == null) {
+                    export.write(snapshot, seatMap);
+                }
+                else {
+                    export.writeDiff(previous, snapshot, seatMap);
+                }
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            log.info("Monitor: Current Venue Map\n" + new String(seatMap.toByteArray(), StandardCharsets.US_ASCII));
+            log.info("Monitor: Venue version: " + snapshot.getVersion());
+            log.info("Monitor: Number of open seats: " + snapshot.numSeatsAvailable());
+            log.info("Monitor: Number of held seats: " + snapshot.numSeatsHeld());
+            log.info("Monitor: Number of reserved seats: " + snapshot.numSeatsReserved());
+            log.info("Monitor: Metrics: " + venue.getMetrics());
         };
 
         ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
@@ -129,6 +197,12 @@ public class AppSimulator {
         ExecutorRegistry.runInRegistryContext(() -> {
             AppSimulator simulator = new AppSimulator(cl);
             simulator.initMonitor();
+
+            if (cl.hasOption("loadProfile")) {
+                simulator.runLoadGenerator(cl);
+                return;
+            }
+
             simulator.initWorkers();
 
             int openSeats;
@@ -148,6 +222,29 @@ public class AppSimulator {
         });
     }
 
+    /**
+     * Load generator mode: offers the load in --loadProfile instead of running the simulated workers, and optionally
+     * writes the results to --loadCsv (summary) and a matching -intervals.csv file (per second)
+     */
+    private void runLoadGenerator(CommandLine cl) {
+        LoadProfile profile = new LoadProfile(
+            Long.parseLong(cl.getOptionValue("warmUp", "10")),
+            LoadProfile.parsePhases(cl.getOptionValue("loadProfile")),
+            Integer.parseInt(cl.getOptionValue("reservePercent", "70")),
+            Integer.parseInt(cl.getOptionValue("maxSeatsPerHold", "4")));
+
+        LoadGenerator generator = new LoadGenerator(ticketService, profile, numWorkers);
+        generator.run();
+
+        if (cl.hasOption("loadCsv")) {
+            Path summaryPath = Paths.get(cl.getOptionValue("loadCsv"));
+            String intervalsFile = summaryPath.getFileName().toString().replaceFirst("(\\.csv)?$", "-intervals.csv");
+
+            generator.writeSummaryCsv(summaryPath);
+            generator.writeIntervalsCsv(summaryPath.resolveSibling(intervalsFile));
+        }
+    }
+
     private static CommandLine parseArgs(String... args) {
         Options options = getOptions();
         CommandLineParser parser = new DefaultParser();
@@ -169,6 +266,17 @@ public class AppSimulator {
         options.addOption(Option.builder().longOpt("columns").hasArg().type(Integer.class).build());
         options.addOption(Option.builder().longOpt("ttlInMillis").hasArg().type(Long.class).build());
         options.addOption(Option.builder().longOpt("numWorkers").hasArg().type(Integer.class).build());
+        options.addOption(Option.builder().longOpt("lockMode").hasArg().build());
+        options.addOption(Option.builder().longOpt("rowModel").hasArg().build());
+        options.addOption(Option.builder().longOpt("seating").hasArg().build());
+        options.addOption(Option.builder().longOpt("splitPartyRows").hasArg().type(Integer.class).build());
+        options.addOption(Option.builder().longOpt("loadProfile").hasArg().build());
+        options.addOption(Option.builder().longOpt("warmUp").hasArg().type(Long.class).build());
+        options.addOption(Option.builder().longOpt("reservePercent").hasArg().type(Integer.class).build());
+        options.addOption(Option.builder().longOpt("maxSeatsPerHold").hasArg().type(Integer.class).build());
+        options.addOption(Option.builder().longOpt("loadCsv").hasArg().build());
+        options.addOption(Option.builder().longOpt("journal").hasArg().build());
+        options.addOption(Option.builder().longOpt("checkpoint").hasArg().build());
 
         return options;
     }
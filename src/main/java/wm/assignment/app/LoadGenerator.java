@@ -0,0 +1,359 @@
+package wm.assignment.app;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import wm.assignment.service.TicketService;
+import wm.assignment.util.ExecutorRegistry;
+import wm.assignment.util.LatencyHistogram;
+import wm.assignment.venue.SeatHold;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * Open-loop load generator for a TicketService. Holds are started on a fixed schedule derived from the LoadProfile's
+ * target rate, whether or not earlier requests have completed, the way customers arrive during an on-sale. Each
+ * customer then reserves or abandons their hold according to the profile's mix.
+ *
+ * Latency is measured from the time a request was scheduled to start, not from the time a worker got round to it. A
+ * service that falls behind therefore shows up as the queueing delay its customers would see, instead of quietly
+ * lowering the offered load (coordinated omission). The uncorrected service time is recorded alongside for
+ * comparison. A reservation is scheduled as soon as its hold completes.
+ *
+ * Results are kept per second of the run and in total (excluding the warm-up), and can be exported as CSV.
+ */
+public class LoadGenerator {
+    private final static Log log = LogFactory.getLog(LoadGenerator.class);
+
+    private static final long INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long DRAIN_TIMEOUT_SECONDS = 60;
+    private static final long SPIN_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    public enum Operation {
+        HOLD,
+        RESERVE
+    }
+
+    /**
+     * Latencies and outcomes for one stretch of the run
+     */
+    public static class Stats {
+        private final LatencyHistogram[] responseTime = new LatencyHistogram[Operation.values().length];
+        private final LatencyHistogram[] serviceTime = new LatencyHistogram[Operation.values().length];
+
+        private final LongAdder failedHolds = new LongAdder();
+        private final LongAdder abandonedHolds = new LongAdder();
+        private final LongAdder failedReservations = new LongAdder();
+
+        Stats() {
+            for (Operation operation : Operation.values()) {
+                responseTime[operation.ordinal()] = new LatencyHistogram();
+                serviceTime[operation.ordinal()] = new LatencyHistogram();
+            }
+        }
+
+        void record(Operation operation, long intendedStartNanos, long startNanos, long endNanos) {
+            responseTime[operation.ordinal()].record(endNanos - intendedStartNanos);
+            serviceTime[operation.ordinal()].record(endNanos - startNanos);
+        }
+
+        /**
+         * Latency from the scheduled start of each request, corrected for coordinated omission
+         */
+        public LatencyHistogram getResponseTime(Operation operation) {
+            return responseTime[operation.ordinal()];
+        }
+
+        /**
+         * Latency from the time a worker actually started each request
+         */
+        public LatencyHistogram getServiceTime(Operation operation) {
+            return serviceTime[operation.ordinal()];
+        }
+
+        public long getFailedHolds() {
+            return failedHolds.sum();
+        }
+
+        public long getAbandonedHolds() {
+            return abandonedHolds.sum();
+        }
+
+        public long getFailedReservations() {
+            return failedReservations.sum();
+        }
+    }
+
+    /**
+     * The results for one second of the run
+     */
+    public static class Interval {
+        private final long startNanos;
+        private final int phase;
+        private final double targetRate;
+        private final Stats stats = new Stats();
+
+        Interval(long startNanos, int phase, double targetRate) {
+            this.startNanos = startNanos;
+            this.phase = phase;
+            this.targetRate = targetRate;
+        }
+
+        /**
+         * @return the start of the interval, relative to the start of the run
+         */
+        public long getStartNanos() {
+            return startNanos;
+        }
+
+        /**
+         * @return the index of the profile phase the interval started in, or -1 for the warm-up
+         */
+        public int getPhase() {
+            return phase;
+        }
+
+        public double getTargetRate() {
+            return targetRate;
+        }
+
+        public Stats getStats() {
+            return stats;
+        }
+    }
+
+    private final TicketService ticketService;
+    private final LoadProfile profile;
+    private final int numWorkers;
+
+    private final AtomicLong customerCounter = new AtomicLong();
+
+    private final Stats total = new Stats();
+    private final List<Interval> intervals = new ArrayList<>();
+    private volatile Interval currentInterval;
+
+    /**
+     * @param numWorkers the number of threads making requests. Requests that are due while every worker is busy wait
+     *                   in a queue, and that wait counts towards their latency
+     */
+    public LoadGenerator(TicketService ticketService, LoadProfile profile, int numWorkers) {
+        this.ticketService = ticketService;
+        this.profile = profile;
+        this.numWorkers = numWorkers;
+    }
+
+    /**
+     * Offers the load described by the profile, then waits for the outstanding requests to complete. Blocks for the
+     * length of the profile
+     */
+    public void run() {
+        ExecutorService workers = Executors.newFixedThreadPool(numWorkers);
+        ExecutorRegistry.register(workers);
+
+        long origin = System.nanoTime();
+        long nextRequest = origin;
+        long nextInterval = origin;
+        long dispatched = 0;
+
+        while (true) {
+            long elapsed = nextRequest - origin;
+            double rate = profile.rateAt(elapsed);
+
+            if (rate <= 0) {
+                break;
+            }
+
+            // start a new interval on the way to the next request, if one is due
+            while (nextInterval <= nextRequest) {
+                parkUntil(nextInterval);
+                startInterval(nextInterval - origin);
+                nextInterval += INTERVAL_NANOS;
+            }
+
+            parkUntil(nextRequest);
+
+            long intendedStart = nextRequest;
+            boolean measured = elapsed >= profile.getWarmUpNanos();
+            workers.execute(() -> runCustomer(intendedStart, measured));
+            dispatched++;
+
+            nextRequest += (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+        }
+
+        workers.shutdown();
+
+        try {
+            if (!workers.awaitTermination(DRAIN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                log.warn("Load generator workers did not finish within " + DRAIN_TIMEOUT_SECONDS + " s");
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        log.info("Load generator dispatched " + dispatched + " holds in "
+            + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - origin) + " ms");
+        log.info("Hold response time (ns): " + total.getResponseTime(Operation.HOLD).snapshot());
+        log.info("Reserve response time (ns): " + total.getResponseTime(Operation.RESERVE).snapshot());
+        log.info("Failed holds: " + total.getFailedHolds() + ", abandoned holds: " + total.getAbandonedHolds()
+            + ", failed reservations: " + total.getFailedReservations());
+    }
+
+    /**
+     * @return the results of the whole run, excluding the warm-up
+     */
+    public Stats getTotal() {
+        return total;
+    }
+
+    public List<Interval> getIntervals() {
+        synchronized (intervals) {
+            return new ArrayList<>(intervals);
+        }
+    }
+
+    /**
+     * Writes one line per operation and latency measure for the whole run, excluding the warm-up. Times are in
+     * microseconds
+     */
+    public void writeSummaryCsv(Path path) {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(path))) {
+            out.println("operation,latency,count,mean_us,p50_us,p90_us,p99_us,p999_us,max_us");
+
+            for (Operation operation : Operation.values()) {
+                writeSummaryLine(out, operation, "response_time", total.getResponseTime(operation).snapshot());
+                writeSummaryLine(out, operation, "service_time", total.getServiceTime(operation).snapshot());
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Cannot write " + path, e);
+        }
+    }
+
+    /**
+     * Writes one line per second of the run, warm-up included, with the response times completed in that second.
+     * Times are in microseconds
+     */
+    public void writeIntervalsCsv(Path path) {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(path))) {
+            out.println("elapsed_s,phase,target_rate,holds,failed_holds,reservations,abandoned_holds,"
+                + "hold_p50_us,hold_p99_us,hold_max_us,reserve_p50_us,reserve_p99_us,reserve_max_us");
+
+            for (Interval interval : getIntervals()) {
+                Stats stats = interval.getStats();
+                LatencyHistogram.Snapshot hold = stats.getResponseTime(Operation.HOLD).snapshot();
+                LatencyHistogram.Snapshot reserve = stats.getResponseTime(Operation.RESERVE).snapshot();
+
+                out.println(String.format(Locale.ROOT, "%d,%d,%.1f,%d,%d,%d,%d,%s,%s,%s,%s,%s,%s",
+                    TimeUnit.NANOSECONDS.toSeconds(interval.getStartNanos()), interval.getPhase(),
+                    interval.getTargetRate(), hold.getCount(), stats.getFailedHolds(), reserve.getCount(),
+                    stats.getAbandonedHolds(),
+                    micros(hold.getP50()), micros(hold.getP99()), micros(hold.getMax()),
+                    micros(reserve.getP50()), micros(reserve.getP99()), micros(reserve.getMax())));
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Cannot write " + path, e);
+        }
+    }
+
+    /**
+     * One customer: hold some seats, then reserve them or walk away
+     */
+    private void runCustomer(long intendedStart, boolean measured) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String email = "load" + customerCounter.incrementAndGet() + "@wl.com";
+        int numSeats = 1 + random.nextInt(profile.getMaxSeatsPerHold());
+
+        long holdStart = System.nanoTime();
+        SeatHold hold = ticketService.findAndHoldSeats(numSeats, email);
+        long holdEnd = System.nanoTime();
+        record(Operation.HOLD, intendedStart, holdStart, holdEnd, measured);
+
+        if (hold == null) {
+            count(stats -> stats.failedHolds, measured);
+            return;
+        }
+
+        if (random.nextInt(100) >= profile.getReservePercent()) {
+            count(stats -> stats.abandonedHolds, measured);
+            return;
+        }
+
+        String confirmId = ticketService.reserveSeats(hold.getId(), email);
+        record(Operation.RESERVE, holdEnd, holdEnd, System.nanoTime(), measured);
+
+        if (confirmId == null) {
+            count(stats -> stats.failedReservations, measured);
+        }
+    }
+
+    private void record(Operation operation, long intendedStart, long start, long end, boolean measured) {
+        currentInterval.getStats().record(operation, intendedStart, start, end);
+
+        if (measured) {
+            total.record(operation, intendedStart, start, end);
+        }
+    }
+
+    private void count(Function<Stats, LongAdder> counter, boolean measured) {
+        counter.apply(currentInterval.getStats()).increment();
+
+        if (measured) {
+            counter.apply(total).increment();
+        }
+    }
+
+    private void startInterval(long elapsedNanos) {
+        Interval interval = new Interval(elapsedNanos, profile.phaseAt(elapsedNanos), profile.rateAt(elapsedNanos));
+
+        synchronized (intervals) {
+            intervals.add(interval);
+        }
+
+        currentInterval = interval;
+    }
+
+    /**
+     * Parking tends to oversleep by tens of microseconds, which would be charged to the service as latency. Park until
+     * shortly before the deadline and yield for the rest
+     */
+    private static void parkUntil(long deadlineNanos) {
+        long remaining;
+
+        while ((remaining = deadlineNanos - System.nanoTime()) > 0) {
+            if (remaining > SPIN_NANOS) {
+                LockSupport.parkNanos(remaining - SPIN_NANOS);
+            }
+            else {
+                Thread.yield();
+            }
+        }
+    }
+
+    private static void writeSummaryLine(PrintWriter out, Operation operation, String latency,
+                                         LatencyHistogram.Snapshot snapshot) {
+        out.println(String.format(Locale.ROOT, "%s,%s,%d,%s,%s,%s,%s,%s,%s", operation, latency, snapshot.getCount(),
+            micros((long) snapshot.getMean()), micros(snapshot.getP50()), micros(snapshot.getP90()),
+            micros(snapshot.getP99()), micros(snapshot.getP999()), micros(snapshot.getMax())));
+    }
+
+    private static String micros(long nanos) {
+        return String.format(Locale.ROOT, "%.1f", nanos / 1000.0);
+    }
+
+}
@@ -0,0 +1,179 @@
+package wm.assignment.app;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What the LoadGenerator should offer: a warm-up, then a sequence of phases with a target request rate that is either
+ * constant or ramps linearly, and the mix of what customers do after a hold.
+ *
+ * Phases are written as a comma separated list of duration:rate or duration:fromRate-toRate, with durations in
+ * seconds and rates in holds per second. For example "10:100,30:100-2000,60:2000" holds at 100/s for 10 s, ramps up to
+ * 2000/s over 30 s and stays there for a minute. The warm-up runs at the rate the first phase starts with.
+ */
+public class LoadProfile {
+
+    /**
+     * A stretch of the run with a target rate that changes linearly from startRate to endRate
+     */
+    public static class Phase {
+        private final long durationNanos;
+        private final double startRate;
+        private final double endRate;
+
+        public Phase(long durationSeconds, double startRate, double endRate) {
+            if (durationSeconds <= 0 || startRate <= 0 || endRate <= 0) {
+                throw new IllegalArgumentException("Phases need a positive duration and positive rates");
+            }
+
+            this.durationNanos = TimeUnit.SECONDS.toNanos(durationSeconds);
+            this.startRate = startRate;
+            this.endRate = endRate;
+        }
+
+        public long getDurationNanos() {
+            return durationNanos;
+        }
+
+        public double getStartRate() {
+            return startRate;
+        }
+
+        public double getEndRate() {
+            return endRate;
+        }
+
+        /**
+         * @param elapsedNanos time since the start of the phase
+         * @return the target rate in requests per second at that point
+         */
+        double rateAt(long elapsedNanos) {
+            return startRate + (endRate - startRate) * elapsedNanos / durationNanos;
+        }
+
+        @Override
+        public String toString() {
+            long seconds = TimeUnit.NANOSECONDS.toSeconds(durationNanos);
+            return startRate == endRate ? seconds + ":" + startRate : seconds + ":" + startRate + "-" + endRate;
+        }
+    }
+
+    private final long warmUpNanos;
+    private final List<Phase> phases;
+    private final int reservePercent;
+    private final int maxSeatsPerHold;
+
+    /**
+     * @param warmUpSeconds   load offered before measuring starts
+     * @param phases          the measured part of the run
+     * @param reservePercent  the share of successful holds that are reserved - the rest are abandoned and left to expire
+     * @param maxSeatsPerHold each hold is for 1 to maxSeatsPerHold seats
+     */
+    public LoadProfile(long warmUpSeconds, List<Phase> phases, int reservePercent, int maxSeatsPerHold) {
+        if (phases.isEmpty()) {
+            throw new IllegalArgumentException("A load profile needs at least one phase");
+        }
+
+        if (warmUpSeconds < 0 || reservePercent < 0 || reservePercent > 100 || maxSeatsPerHold <= 0) {
+            throw new IllegalArgumentException("Invalid load profile settings");
+        }
+
+        this.warmUpNanos = TimeUnit.SECONDS.toNanos(warmUpSeconds);
+        this.phases = Collections.unmodifiableList(new ArrayList<>(phases));
+        this.reservePercent = reservePercent;
+        this.maxSeatsPerHold = maxSeatsPerHold;
+    }
+
+    /**
+     * Parses the phases in the duration:rate[-rate] format described above
+     */
+    public static List<Phase> parsePhases(String spec) {
+        List<Phase> phases = new ArrayList<>();
+
+        for (String phase : spec.split(",")) {
+            String[] parts = phase.trim().split(":");
+
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Expected duration:rate[-rate] but got " + phase);
+            }
+
+            long duration = Long.parseLong(parts[0].trim());
+            String[] rates = parts[1].trim().split("-");
+            double startRate = Double.parseDouble(rates[0]);
+            double endRate = rates.length > 1 ? Double.parseDouble(rates[1]) : startRate;
+
+            phases.add(new Phase(duration, startRate, endRate));
+        }
+
+        return phases;
+    }
+
+    public long getWarmUpNanos() {
+        return warmUpNanos;
+    }
+
+    public List<Phase> getPhases() {
+        return phases;
+    }
+
+    public int getReservePercent() {
+        return reservePercent;
+    }
+
+    public int getMaxSeatsPerHold() {
+        return maxSeatsPerHold;
+    }
+
+    /**
+     * @return the length of the warm-up and all the phases
+     */
+    public long getTotalNanos() {
+        return warmUpNanos + phases.stream().mapToLong(Phase::getDurationNanos).sum();
+    }
+
+    /**
+     * @param elapsedNanos time since the start of the run, warm-up included
+     * @return the target rate at that point, or 0 once the run is over
+     */
+    double rateAt(long elapsedNanos) {
+        if (elapsedNanos < warmUpNanos) {
+            return phases.get(0).getStartRate();
+        }
+
+        long phaseElapsed = elapsedNanos - warmUpNanos;
+
+        for (Phase phase : phases) {
+            if (phaseElapsed < phase.getDurationNanos()) {
+                return phase.rateAt(phaseElapsed);
+            }
+
+            phaseElapsed -= phase.getDurationNanos();
+        }
+
+        return 0;
+    }
+
+    /**
+     * @return the phase running at the given time since the start of the run: -1 during the warm-up
+     */
+    int phaseAt(long elapsedNanos) {
+        long phaseElapsed = elapsedNanos - warmUpNanos;
+
+        if (phaseElapsed < 0) {
+            return -1;
+        }
+
+        for (int i = 0; i < phases.size(); i++) {
+            if (phaseElapsed < phases.get(i).getDurationNanos()) {
+                return i;
+            }
+
+            phaseElapsed -= phases.get(i).getDurationNanos();
+        }
+
+        return phases.size() - 1;
+    }
+
+}
@@ -0,0 +1,309 @@
+package wm.assignment.service;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import wm.assignment.util.ExecutorRegistry;
+import wm.assignment.util.RingBuffer;
+import wm.assignment.venue.HoldRequest;
+import wm.assignment.venue.LockMode;
+import wm.assignment.venue.RowModel;
+import wm.assignment.venue.SeatHold;
+import wm.assignment.venue.Venue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Non-blocking counterpart to SimpleTicketService. Callers publish their requests to a ring buffer and get a
+ * CompletableFuture back straight away. A single writer thread per venue drains the buffer and applies the requests to
+ * the Venue in the order they were published, so client threads never wait on the venue's monitor.
+ *
+ * Consecutive hold requests drained together are applied as one Venue.findAndHoldSeatsBatch call.
+ *
+ * Futures are completed on the writer thread. Dependent stages that do real work should use the *Async variants so
+ * they don't hold up the other requests in the buffer.
+ */
+public class AsyncTicketService {
+    private final static Log log = LogFactory.getLog(AsyncTicketService.class);
+
+    static final int DEFAULT_BUFFER_SIZE = 1024;
+
+    private static final int MAX_DRAIN = 256;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private abstract static class Command<T> {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+    }
+
+    private static class HoldCommand extends Command<SeatHold> {
+        final HoldRequest request;
+
+        HoldCommand(HoldRequest request) {
+            this.request = request;
+        }
+    }
+
+    private static class ReserveCommand extends Command<String> {
+        final int seatHoldId;
+        final String customerEmail;
+
+        ReserveCommand(int seatHoldId, String customerEmail) {
+            this.seatHoldId = seatHoldId;
+            this.customerEmail = customerEmail;
+        }
+    }
+
+    private static class ExtendCommand extends Command<Boolean> {
+        final int seatHoldId;
+        final String customerEmail;
+        final long extraMillis;
+
+        ExtendCommand(int seatHoldId, String customerEmail, long extraMillis) {
+            this.seatHoldId = seatHoldId;
+            this.customerEmail = customerEmail;
+            this.extraMillis = extraMillis;
+        }
+    }
+
+    private final Venue venue;
+    private final RingBuffer<Command<?>> buffer;
+    private final ExecutorService executor;
+
+    // set by the writer thread just before it parks, so producers know to wake it up
+    private volatile Thread parkedWriter;
+
+    // set by the writer once it stops - producers that see it reject their command instead of publishing it, and the
+    // writer waits for the producers already past the check before it rejects what is left in the buffer
+    private volatile boolean closed;
+    private final AtomicInteger submitters = new AtomicInteger();
+
+    public AsyncTicketService(int numRows, int numColumns, long ttlInMillis) {
+        this(numRows, numColumns, ttlInMillis, RowModel.BLOCK_LIST, DEFAULT_BUFFER_SIZE);
+    }
+
+    public AsyncTicketService(int numRows, int numColumns, long ttlInMillis, RowModel rowModel, int bufferSize) {
+        // the writer is the only thread making holds and reservations, so the single venue-wide monitor is uncontended
+        // apart from hold expiry
+        this.venue = new Venue(numRows, numColumns, ttlInMillis, LockMode.VENUE, rowModel);
+        this.buffer = new RingBuffer<>(bufferSize);
+
+        executor = Executors.newSingleThreadExecutor();
+        ExecutorRegistry.register(executor);
+
+        executor.execute(this::runWriter);
+    }
+
+    /**
+     * The number of seats in the venue that are neither held nor reserved. Read straight from the venue's counters,
+     * without going through the writer
+     *
+     * @return the number of tickets available in the venue
+     */
+    public int numSeatsAvailable() {
+        return venue.numSeatsAvailable();
+    }
+
+    /**
+     * Find and hold the best available seats for a customer
+     *
+     * @param numSeats      the number of seats to find and hold
+     * @param customerEmail unique identifier for the customer
+     * @return a future for the SeatHold - completed with null if no block could fit the request
+     */
+    public CompletableFuture<SeatHold> findAndHoldSeats(int numSeats, String customerEmail) {
+        return submit(new HoldCommand(new HoldRequest(numSeats, customerEmail)));
+    }
+
+    /**
+     * Commit seats held for a specific customer
+     *
+     * @param seatHoldId    the seat hold identifier
+     * @param customerEmail the email address of the customer to which the
+     *                      seat hold is assigned
+     * @return a future for the reservation confirmation code - completed with null if the hold couldn't be found, and
+     * exceptionally with a VenueException if the email doesn't match the hold
+     */
+    public CompletableFuture<String> reserveSeats(int seatHoldId, String customerEmail) {
+        return submit(new ReserveCommand(seatHoldId, customerEmail));
+    }
+
+    /**
+     * Give a seat hold more time before it expires
+     *
+     * @param seatHoldId    the seat hold identifier
+     * @param customerEmail the email address of the customer to which the
+     *                      seat hold is assigned
+     * @param extraMillis   how much longer to hold the seats for
+     * @return a future completed with false if the hold has already been reserved or has expired, and exceptionally
+     * with a VenueException if the email doesn't match the hold
+     */
+    public CompletableFuture<Boolean> extendHold(int seatHoldId, String customerEmail, long extraMillis) {
+        return submit(new ExtendCommand(seatHoldId, customerEmail, extraMillis));
+    }
+
+    /**
+     * Stops the writer. Requests that haven't been applied yet are completed with a RejectedExecutionException
+     */
+    public void shutdown() {
+        executor.shutdown();
+        wakeWriter();
+    }
+
+    public Venue getVenue() {
+        return venue;
+    }
+
+    /**
+     * Publishes a command to the ring buffer. If the buffer is full the caller backs off until the writer has caught
+     * up, which keeps the amount of queued work bounded
+     */
+    private <T> CompletableFuture<T> submit(Command<T> command) {
+        submitters.incrementAndGet();
+
+        try {
+            while (closed || !buffer.offer(command)) {
+                if (closed) {
+                    command.future.completeExceptionally(
+                        new RejectedExecutionException("AsyncTicketService is shut down"));
+                    return command.future;
+                }
+
+                wakeWriter();
+                LockSupport.parkNanos(1000);
+            }
+        }
+        finally {
+            submitters.decrementAndGet();
+        }
+
+        wakeWriter();
+        return command.future;
+    }
+
+    private void wakeWriter() {
+        Thread writer = parkedWriter;
+
+        if (writer != null) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    /**
+     * Main loop of the writer thread: drain whatever has been published, then park until a producer wakes it up
+     */
+    private void runWriter() {
+        List<Command<?>> drained = new ArrayList<>(MAX_DRAIN);
+
+        while (!executor.isShutdown()) {
+            drain(drained);
+
+            if (drained.isEmpty()) {
+                parkedWriter = Thread.currentThread();
+
+                // check again after announcing the park, so a command published in between isn't left waiting
+                if (buffer.isEmpty() && !executor.isShutdown()) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+
+                parkedWriter = null;
+                continue;
+            }
+
+            apply(drained);
+            drained.clear();
+        }
+
+        // no producer can publish from here on, but some may be about to - let them finish, so nothing is published
+        // after the buffer has been emptied for the last time
+        closed = true;
+        while (submitters.get() > 0) {
+            LockSupport.parkNanos(1000);
+        }
+
+        rejectRemaining();
+    }
+
+    private void drain(List<Command<?>> drained) {
+        Command<?> command;
+
+        while (drained.size() < MAX_DRAIN && (command = buffer.poll()) != null) {
+            drained.add(command);
+        }
+    }
+
+    /**
+     * Applies the drained commands in order. Runs of hold commands go to the venue as a single batch
+     */
+    private void apply(List<Command<?>> drained) {
+        List<HoldCommand> holds = new ArrayList<>();
+
+        for (Command<?> command : drained) {
+            if (command instanceof HoldCommand) {
+                holds.add((HoldCommand) command);
+                continue;
+            }
+
+            applyHolds(holds);
+            holds.clear();
+
+            if (command instanceof ExtendCommand) {
+                ExtendCommand extend = (ExtendCommand) command;
+                try {
+                    extend.future.complete(venue.extendHold(extend.seatHoldId, extend.customerEmail,
+                        extend.extraMillis));
+                }
+                catch (RuntimeException e) {
+                    extend.future.completeExceptionally(e);
+                }
+                continue;
+            }
+
+            ReserveCommand reserve = (ReserveCommand) command;
+            try {
+                reserve.future.complete(venue.reserveSeats(reserve.seatHoldId, reserve.customerEmail));
+            }
+            catch (RuntimeException e) {
+                reserve.future.completeExceptionally(e);
+            }
+        }
+
+        applyHolds(holds);
+    }
+
+    private void applyHolds(List<HoldCommand> holds) {
+        if (holds.isEmpty()) {
+            return;
+        }
+
+        List<HoldRequest> requests = new ArrayList<>(holds.size());
+        holds.forEach(h -> requests.add(h.request));
+
+        try {
+            List<SeatHold> seatHolds = venue.findAndHoldSeatsBatch(requests);
+
+            for (int i = 0; i < holds.size(); i++) {
+                holds.get(i).future.complete(seatHolds.get(i));
+            }
+        }
+        catch (RuntimeException e) {
+            log.error("Failed to apply a batch of holds", e);
+            holds.forEach(h -> h.future.completeExceptionally(e));
+        }
+    }
+
+    private void rejectRemaining() {
+        Command<?> command;
+
+        while ((command = buffer.poll()) != null) {
+            command.future.completeExceptionally(new RejectedExecutionException("AsyncTicketService is shut down"));
+        }
+    }
+
+}
@@ -0,0 +1,248 @@
+package wm.assignment.service;
+
+import wm.assignment.venue.CustomerKey;
+import wm.assignment.venue.HoldRequest;
+import wm.assignment.venue.LockMode;
+import wm.assignment.venue.RowModel;
+import wm.assignment.venue.SeatBlock;
+import wm.assignment.venue.SeatHold;
+import wm.assignment.venue.Venue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * TicketService for a venue split into independent sections. Each section is a Venue of its own, with its own rows,
+ * holds and locks, so requests that land in different sections never contend with each other.
+ *
+ * Every customer has a home section, picked by hashing their email. Concurrent customers are spread evenly over the
+ * sections that way, and a customer's holds end up next to each other. When the home section can't fit a request,
+ * the router falls back to the other sections, the one with the largest free block first.
+ */
+public class ShardedTicketService implements TicketService {
+
+    private final List<Venue> sections;
+
+    public ShardedTicketService(int numSections, int rowsPerSection, int numColumns, long ttlInMillis) {
+        this(numSections, rowsPerSection, numColumns, ttlInMillis, LockMode.VENUE, RowModel.BLOCK_LIST);
+    }
+
+    public ShardedTicketService(int numSections, int rowsPerSection, int numColumns, long ttlInMillis,
+                                LockMode lockMode, RowModel rowModel) {
+        this.sections = IntStream.range(0, numSections)
+            .mapToObj(s -> new Venue(rowsPerSection, numColumns, ttlInMillis, lockMode, rowModel, null,
+                s, numSections))
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * The number of seats in the venue that are neither held nor reserved, summed over the sections
+     *
+     * @return the number of tickets available in the venue
+     */
+    public int numSeatsAvailable() {
+        return sections.stream().mapToInt(Venue::numSeatsAvailable).sum();
+    }
+
+    /**
+     * Find and hold seats in the customer's home section, or in the section with the largest free block if the home
+     * section can't fit them
+     *
+     * @param numSeats      the number of seats to find and hold
+     * @param customerEmail unique identifier for the customer
+     * @return a SeatHold object identifying the specific seats and related
+     * information
+     */
+    public SeatHold findAndHoldSeats(int numSeats, String customerEmail) {
+        int home = homeSection(customerEmail);
+        SeatHold hold = sections.get(home).findAndHoldSeats(numSeats, customerEmail);
+
+        return hold != null ? hold : holdInOtherSection(home, numSeats, customerEmail);
+    }
+
+    /**
+     * Find and hold seats for a batch of customers at once. Requests are sent to their home sections as one batch per
+     * section, and the ones that didn't fit fall back to the other sections one by one
+     *
+     * @param holdRequests the number of seats and customer email of each hold
+     * @return one entry per request, in the same order: the SeatHold, or
+     * null if the request could not be satisfied
+     */
+    public List<SeatHold> findAndHoldSeatsBatch(List<HoldRequest> holdRequests) {
+        SeatHold[] holds = new SeatHold[holdRequests.size()];
+
+        List<List<Integer>> bySection = new ArrayList<>();
+        sections.forEach(s -> bySection.add(new ArrayList<>()));
+
+        for (int i = 0; i < holdRequests.size(); i++) {
+            bySection.get(homeSection(holdRequests.get(i).getCustomerEmail())).add(i);
+        }
+
+        for (int section = 0; section < sections.size(); section++) {
+            List<Integer> indexes = bySection.get(section);
+
+            if (indexes.isEmpty()) {
+                continue;
+            }
+
+            List<HoldRequest> batch = indexes.stream().map(holdRequests::get).collect(Collectors.toList());
+            List<SeatHold> sectionHolds = sections.get(section).findAndHoldSeatsBatch(batch);
+
+            for (int j = 0; j < indexes.size(); j++) {
+                int i = indexes.get(j);
+                HoldRequest request = holdRequests.get(i);
+
+                holds[i] = sectionHolds.get(j) != null ? sectionHolds.get(j)
+                    : holdInOtherSection(section, request.getNumSeats(), request.getCustomerEmail());
+            }
+        }
+
+        return Arrays.asList(holds);
+    }
+
+    /**
+     * Commit seats held for a specific customer, in whichever section holds them
+     *
+     * @param seatHoldId    the seat hold identifier
+     * @param customerEmail the email address of the customer to which the
+     *                      seat hold is assigned
+     * @return a reservation confirmation code
+     */
+    public String reserveSeats(int seatHoldId, String customerEmail) {
+        Venue section = sectionHolding(seatHoldId);
+
+        if (section == null) {
+            return null;
+        }
+
+        return section.reserveSeats(seatHoldId, customerEmail);
+    }
+
+    /**
+     * Give a seat hold more time before it expires, in whichever section holds it
+     *
+     * @param seatHoldId    the seat hold identifier
+     * @param customerEmail the email address of the customer to which the
+     *                      seat hold is assigned
+     * @param extraMillis   how much longer to hold the seats for
+     * @return false if the hold has already been reserved or has expired
+     */
+    public boolean extendHold(int seatHoldId, String customerEmail, long extraMillis) {
+        Venue section = sectionHolding(seatHoldId);
+
+        if (section == null) {
+            return false;
+        }
+
+        return section.extendHold(seatHoldId, customerEmail, extraMillis);
+    }
+
+    /**
+     * Cancel a reservation, returning its seats to whichever section it is in
+     *
+     * @param confirmId     the reservation confirmation code
+     * @param customerEmail the email the reservation was made with
+     * @return false if there is no such reservation
+     */
+    public boolean cancelReservation(String confirmId, String customerEmail) {
+        Venue section = sectionReserving(confirmId);
+
+        if (section == null) {
+            return false;
+        }
+
+        return section.cancelReservation(confirmId, customerEmail);
+    }
+
+    /**
+     * Return some of a reservation's seats to whichever section it is in
+     *
+     * @param confirmId     the reservation confirmation code
+     * @param customerEmail the email the reservation was made with
+     * @param numSeats      the number of seats to give back
+     * @return false if there is no such reservation, or it has fewer seats
+     */
+    public boolean releaseSeats(String confirmId, String customerEmail, int numSeats) {
+        Venue section = sectionReserving(confirmId);
+
+        if (section == null) {
+            return false;
+        }
+
+        return section.releaseSeats(confirmId, customerEmail, numSeats);
+    }
+
+    public SeatBlock findReservation(String confirmId) {
+        for (Venue section : sections) {
+            SeatBlock reservation = section.findReservation(confirmId);
+
+            if (reservation != null) {
+                return reservation;
+            }
+        }
+
+        return null;
+    }
+
+    public List<Venue> getSections() {
+        return sections;
+    }
+
+    /**
+     * Spreads the customer keys over the sections, so the same customer has the same home section however their email
+     * is cased or padded
+     */
+    private int homeSection(String customerEmail) {
+        return (int) Math.floorMod(CustomerKey.of(customerEmail), (long) sections.size());
+    }
+
+    private SeatHold holdInOtherSection(int home, int numSeats, String customerEmail) {
+        List<Integer> candidates = IntStream.range(0, sections.size())
+            .filter(s -> s != home && sections.get(s).largestAvailableBlock() >= numSeats)
+            .boxed()
+            .sorted(Comparator.comparingInt((Integer s) -> sections.get(s).largestAvailableBlock()).reversed())
+            .collect(Collectors.toList());
+
+        for (int section : candidates) {
+            SeatHold hold = sections.get(section).findAndHoldSeats(numSeats, customerEmail);
+
+            if (hold != null) {
+                return hold;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Confirmation codes are random 64-bit values, so in practice at most one section has a reservation under the code
+     */
+    private Venue sectionReserving(String confirmId) {
+        for (Venue section : sections) {
+            if (section.findReservation(confirmId) != null) {
+                return section;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Each section issues hold ids of its own, so at most one section knows the id
+     */
+    private Venue sectionHolding(int seatHoldId) {
+        for (Venue section : sections) {
+            if (section.findHold(seatHoldId) != null) {
+                return section;
+            }
+        }
+
+        return null;
+    }
+
+
+}
@@ -1,8 +1,13 @@
 package wm.assignment.service;
 
+import wm.assignment.venue.HoldRequest;
+import wm.assignment.venue.LockMode;
+import wm.assignment.venue.RowModel;
 import wm.assignment.venue.SeatHold;
 import wm.assignment.venue.Venue;
 
+import java.util.List;
+
 /**
  * Concrete class that implements the TicketService Interface
  */
@@ -14,6 +19,21 @@ public class SimpleTicketService implements TicketService {
         this.venue = new Venue(numRows, numColumns, ttlInMillis);
     }
 
+    public SimpleTicketService(int numRows, int numColumns, long ttlInMillis, LockMode lockMode) {
+        this.venue = new Venue(numRows, numColumns, ttlInMillis, lockMode);
+    }
+
+    public SimpleTicketService(int numRows, int numColumns, long ttlInMillis, LockMode lockMode, RowModel rowModel) {
+        this.venue = new Venue(numRows, numColumns, ttlInMillis, lockMode, rowModel);
+    }
+
+    /**
+     * Serves an existing venue, e.g. one that has been recovered from a VenueJournal
+     */
+    public SimpleTicketService(Venue venue) {
+        this.venue = venue;
+    }
+
     /**
      * The number of seats in the venue that are neither held nor reserved
      *
@@ -35,6 +55,17 @@ public class SimpleTicketService implements TicketService {
         return venue.findAndHoldSeats(numSeats, customerEmail);
     }
 
+    /**
+     * Find and hold seats for a batch of customers at once, in a single pass over the venue
+     *
+     * @param holdRequests the number of seats and customer email of each hold
+     * @return one entry per request, in the same order: the SeatHold, or
+     * null if the request could not be satisfied
+     */
+    public List<SeatHold> findAndHoldSeatsBatch(List<HoldRequest> holdRequests) {
+        return venue.findAndHoldSeatsBatch(holdRequests);
+    }
+
     /**
      * Commit seats held for a specific customer
      *
@@ -47,6 +78,42 @@ public class SimpleTicketService implements TicketService {
         return venue.reserveSeats(seatHoldId, customerEmail);
     }
 
+    /**
+     * Give a seat hold more time before it expires
+     *
+     * @param seatHoldId    the seat hold identifier
+     * @param customerEmail the email address of the customer to which the
+     *                      seat hold is assigned
+     * @param extraMillis   how much longer to hold the seats for
+     * @return false if the hold has already been reserved or has expired
+     */
+    public boolean extendHold(int seatHoldId, String customerEmail, long extraMillis) {
+        return venue.extendHold(seatHoldId, customerEmail, extraMillis);
+    }
+
+    /**
+     * Cancel a reservation, returning its seats to the venue
+     *
+     * @param confirmId     the reservation confirmation code
+     * @param customerEmail the email the reservation was made with
+     * @return false if there is no such reservation
+     */
+    public boolean cancelReservation(String confirmId, String customerEmail) {
+        return venue.cancelReservation(confirmId, customerEmail);
+    }
+
+    /**
+     * Return some of a reservation's seats to the venue
+     *
+     * @param confirmId     the reservation confirmation code
+     * @param customerEmail the email the reservation was made with
+     * @param numSeats      the number of seats to give back
+     * @return false if there is no such reservation, or it has fewer seats
+     */
+    public boolean releaseSeats(String confirmId, String customerEmail, int numSeats) {
+        return venue.releaseSeats(confirmId, customerEmail, numSeats);
+    }
+
     public Venue getVenue() {
         return venue;
     }
@@ -1,7 +1,10 @@
 package wm.assignment.service;
 
+import wm.assignment.venue.HoldRequest;
 import wm.assignment.venue.SeatHold;
 
+import java.util.List;
+
 /**
  * Interface defined by the problem statement. Implemented by SimpleTicketService
  */
@@ -22,6 +25,14 @@ public interface TicketService {
     information
      */
     SeatHold findAndHoldSeats(int numSeats, String customerEmail);
+    /**
+     * Find and hold seats for a batch of customers at once
+     *
+     * @param holdRequests the number of seats and customer email of each hold
+     * @return one entry per request, in the same order: the SeatHold, or
+    null if the request could not be satisfied
+     */
+    List<SeatHold> findAndHoldSeatsBatch(List<HoldRequest> holdRequests);
     /**
      * Commit seats held for a specific customer
      *
@@ -31,4 +42,15 @@ public interface TicketService {
      * @return a reservation confirmation code
      */
     String reserveSeats(int seatHoldId, String customerEmail);
+    /**
+     * Give a seat hold more time before it expires, e.g. while the
+     * customer's payment is processing
+     *
+     * @param seatHoldId the seat hold identifier
+     * @param customerEmail the email address of the customer to which the
+    seat hold is assigned
+     * @param extraMillis how much longer to hold the seats for
+     * @return false if the hold has already been reserved or has expired
+     */
+    boolean extendHold(int seatHoldId, String customerEmail, long extraMillis);
 }
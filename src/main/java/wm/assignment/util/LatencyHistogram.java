@@ -0,0 +1,187 @@
+package wm.assignment.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed size, lock-free histogram of latencies (or any other non-negative long values), cheap enough to record on
+ * every request.
+ *
+ * Buckets are log-linear: values below 8 get a bucket each, and every power of two above that is split into 8 equal
+ * buckets, so a value is reported to within 12.5% over the whole range of a long. Recording is a couple of shifts to
+ * find the bucket and an atomic increment, with no allocation. Counts are cumulative - callers that want rates or
+ * recent percentiles compare two snapshots.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int NUM_BUCKETS = (Long.SIZE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(NUM_BUCKETS);
+    private final LongAdder total = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * A point in time copy of a histogram. Public getters only, so a JMX MXBean can return it as composite data
+     */
+    public static class Snapshot {
+        private final long count;
+        private final double mean;
+        private final long p50;
+        private final long p90;
+        private final long p99;
+        private final long p999;
+        private final long max;
+
+        private Snapshot(long[] counts, long count, long total, long max) {
+            this.count = count;
+            this.mean = count == 0 ? 0 : (double) total / count;
+            this.p50 = valueAtPercentile(counts, count, 50);
+            this.p90 = valueAtPercentile(counts, count, 90);
+            this.p99 = valueAtPercentile(counts, count, 99);
+            this.p999 = valueAtPercentile(counts, count, 99.9);
+            this.max = max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getMean() {
+            return mean;
+        }
+
+        public long getP50() {
+            return p50;
+        }
+
+        public long getP90() {
+            return p90;
+        }
+
+        public long getP99() {
+            return p99;
+        }
+
+        public long getP999() {
+            return p999;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("count=%d mean=%.0f p50=%d p90=%d p99=%d p99.9=%d max=%d",
+                count, mean, p50, p90, p99, p999, max);
+        }
+    }
+
+    /**
+     * Records a value. Negative values (e.g. from a clock that stepped back) are recorded as 0
+     */
+    public void record(long value) {
+        long v = Math.max(value, 0);
+
+        buckets.incrementAndGet(bucketIndex(v));
+        total.add(v);
+
+        // the maximum rarely changes, so only pay for a CAS when it does
+        long currentMax;
+        while (v > (currentMax = max.get()) && !max.compareAndSet(currentMax, v)) {
+            // lost a race with another new maximum - check again
+        }
+    }
+
+    /**
+     * Records the time since startNanos, as read from System.nanoTime()
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    public long getCount() {
+        long count = 0;
+
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            count += buckets.get(i);
+        }
+
+        return count;
+    }
+
+    /**
+     * Copies the histogram. Values recorded while the copy is taken may or may not be included
+     */
+    public Snapshot snapshot() {
+        long[] counts = new long[NUM_BUCKETS];
+        long snapshotCount = 0;
+
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+            snapshotCount += counts[i];
+        }
+
+        return new Snapshot(counts, snapshotCount, total.sum(), max.get());
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * The smallest value that falls into the given bucket
+     */
+    static long bucketLowerBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+
+        long subBucket = index % SUB_BUCKETS;
+        return (SUB_BUCKETS + subBucket) << bucketShift(index);
+    }
+
+    /**
+     * The number of distinct values that fall into the given bucket
+     */
+    static long bucketWidth(int index) {
+        return index < SUB_BUCKETS ? 1 : 1L << bucketShift(index);
+    }
+
+    private static int bucketShift(int index) {
+        return index / SUB_BUCKETS - 1;
+    }
+
+    /**
+     * @return the midpoint of the bucket holding the value at the given percentile, or 0 if nothing was recorded
+     */
+    private static long valueAtPercentile(long[] counts, long count, double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+        long seen = 0;
+
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+
+            if (seen >= rank) {
+                return bucketLowerBound(i) + (bucketWidth(i) - 1) / 2;
+            }
+        }
+
+        // not reached - count is the sum of counts
+        return Long.MAX_VALUE;
+    }
+
+}
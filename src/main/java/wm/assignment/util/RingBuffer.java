@@ -0,0 +1,110 @@
+package wm.assignment.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded, lock-free ring buffer for many producers and a single consumer.
+ *
+ * Producers claim a slot by advancing the tail sequence with a CAS, write the element and then publish the slot by
+ * bumping its sequence number. The consumer only reads slots whose sequence shows they have been published, and hands
+ * a slot back to the producers by moving its sequence one lap ahead. Slots are reused, so steady-state offers and polls
+ * don't allocate.
+ */
+public class RingBuffer<E> {
+    private final int mask;
+    private final AtomicReferenceArray<E> elements;
+
+    // sequences[i] == position: slot i is free for the producer claiming position
+    // sequences[i] == position + 1: slot i holds the element published at position
+    private final AtomicLongArray sequences;
+
+    private final AtomicLong tail = new AtomicLong();
+
+    // only touched by the consumer thread
+    private long head;
+
+    /**
+     * @param capacity the number of slots - rounded up to a power of two
+     */
+    public RingBuffer(int capacity) {
+        if (capacity <= 0 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("capacity must be between 1 and 2^30");
+        }
+
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+
+        this.mask = size - 1;
+        this.elements = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Adds an element if there is a free slot. Safe to call from any thread
+     * @return false if the buffer is full
+     */
+    public boolean offer(E element) {
+        if (element == null) {
+            throw new NullPointerException();
+        }
+
+        while (true) {
+            long position = tail.get();
+            int index = (int) position & mask;
+            long diff = sequences.get(index) - position;
+
+            if (diff == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    elements.lazySet(index, element);
+                    sequences.lazySet(index, position + 1);
+                    return true;
+                }
+            }
+            else if (diff < 0) {
+                // the consumer hasn't freed the slot from the previous lap yet
+                return false;
+            }
+            // otherwise another producer claimed this position first - retry with the new tail
+        }
+    }
+
+    /**
+     * Removes the oldest published element. Must only be called from the single consumer thread
+     * @return the element, or null if there is nothing to consume
+     */
+    public E poll() {
+        int index = (int) head & mask;
+
+        if (sequences.get(index) != head + 1) {
+            return null;
+        }
+
+        E element = elements.get(index);
+        elements.lazySet(index, null);
+        sequences.lazySet(index, head + mask + 1);
+        head++;
+
+        return element;
+    }
+
+    /**
+     * Must only be called from the consumer thread
+     * @return true if no producer has claimed a slot that hasn't been consumed yet
+     */
+    public boolean isEmpty() {
+        return tail.get() == head;
+    }
+
+}
@@ -1,67 +1,76 @@
 package wm.assignment.util;
 
-import org.apache.commons.logging.Log;
-import org.apache.commons.logging.LogFactory;
-
-import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
 import java.util.AbstractMap;
-import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 import java.util.function.Consumer;
-import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 
 /**
  * An implementation of a map in which entries expire after the provided TTL. Also supplies a way for clients to
- * a handler for expiration notifications
+ * a handler for expiration notifications.
+ *
+ * Each entry gets its own timeout on a TimingWheel, so inserting and removing an entry are O(1) and an entry expires
+ * within one tick of its TTL, no matter how many entries are live. Extending an entry is O(1) too: only its deadline
+ * moves, and the timeout reschedules itself when it finds the deadline has moved
  * @param <K> Key for the map
  * @param <V> Value for the map
  */
 public class TTLMap<K, V> extends AbstractMap<K, V> {
-    private final static Log log = LogFactory.getLog(TTLMap.class);
+
+    // the deadline of an entry that is being expired, which can't be extended any more
+    private static final long EXPIRED = Long.MIN_VALUE;
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicLongFieldUpdater<TTLMap.ValueWrapper> EXPIRES_AT =
+        AtomicLongFieldUpdater.newUpdater(TTLMap.ValueWrapper.class, "expiresAtNanos");
 
     /**
-     * Internal class used to wrap the value object. Keeps track of the timestamp when it was added to the map as well
-     * as a reference to the notifier method
+     * Internal class used to wrap the value object. Keeps track of the entry's pending timeout as well as a reference
+     * to the notifier method
      */
     private class ValueWrapper {
         V value;
-        LocalDateTime timestamp;
         Consumer<V> notifier;
+        volatile long expiresAtNanos;
+        volatile TimingWheel.Timeout timeout;
 
-        ValueWrapper(V value, Consumer<V> notifier) {
+        ValueWrapper(V value, Consumer<V> notifier, long ttlMillis) {
             this.value = value;
-            this.timestamp = LocalDateTime.now();
             this.notifier = notifier;
+            this.expiresAtNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        }
+
+        void cancel() {
+            TimingWheel.Timeout t = timeout;
+
+            if (t != null) {
+                t.cancel();
+            }
         }
     }
 
     private long ttl;
     private Map<K, ValueWrapper> map;
 
-    private ScheduledExecutorService executor;
-    private final ReentrantLock lock = new ReentrantLock();
+    private TimingWheel timingWheel;
+
+    // how late entries are expired, compared to their TTL - only recorded once set
+    private volatile LatencyHistogram expiryLag;
 
     public TTLMap(long ttl) {
-        this(ttl, 5000);
+        this(ttl, 1);
     }
 
-    TTLMap(long ttl, long expirationInterval) {
+    TTLMap(long ttl, long tickMillis) {
         this.ttl = ttl;
         this.map = new ConcurrentHashMap<>();
-
-        executor = Executors.newSingleThreadScheduledExecutor();
-        ExecutorRegistry.register(executor);
-
-        startCleanupTask(expirationInterval);
+        this.timingWheel = new TimingWheel(tickMillis);
     }
 
     /**
@@ -76,6 +85,11 @@ public class TTLMap<K, V> extends AbstractMap<K, V> {
             .collect(Collectors.toSet());
     }
 
+    @Override
+    public int size() {
+        return map.size();
+    }
+
     @Override
     public V get(Object key) {
         ValueWrapper result = this.map.get(key);
@@ -89,51 +103,140 @@ public class TTLMap<K, V> extends AbstractMap<K, V> {
 
     @Override
     public V put(K key, V value) {
-        this.map.put(key, new ValueWrapper(value, null));
-        return value;
+        return put(key, value, null);
     }
 
     public V put(K key, V value, Consumer<V> notifier) {
-        this.map.put(key, new ValueWrapper(value, notifier));
+        return put(key, value, ttl, notifier);
+    }
+
+    /**
+     * Puts an entry with its own TTL instead of the map's
+     */
+    public V put(K key, V value, long ttlMillis, Consumer<V> notifier) {
+        ValueWrapper wrapper = new ValueWrapper(value, notifier, ttlMillis);
+        long expiresAt = wrapper.expiresAtNanos;
+        ValueWrapper previous = this.map.put(key, wrapper);
+
+        if (previous != null) {
+            previous.cancel();
+        }
+
+        // the entry is in the map before its timeout can fire, so expire() always finds it
+        wrapper.timeout = schedule(key, wrapper, expiresAt, ttlMillis);
         return value;
     }
 
     /**
-     * Runs a scheduled task to periodically check for expired entries. If found, send a notification to the
-     * notifier (if supplied) and remove the item from the map
-     * @param expirationInterval
+     * Pushes back the expiry of an entry by extraMillis. The entry stays where it is in the map
+     * @return false if there is no such entry, or it is expiring right now
      */
-    private void startCleanupTask(long expirationInterval) {
-        Predicate<Entry<K,ValueWrapper>> isExpired = (entry) -> {
-            long elapsedTime = ChronoUnit.MILLIS.between(entry.getValue().timestamp, LocalDateTime.now());
-            return elapsedTime >= ttl;
-        };
-
-        Runnable expireLoop = () -> {
-            lock.lock();
-            log.debug("Invoking expireLoop() in TTLMap...");
-
-            try {
-                List<K> expiredKeys = map.entrySet().stream()
-                    .filter(isExpired)
-                    .map(Entry::getKey)
-                    .collect(Collectors.toList());
-
-                log.debug("Number of keys to expire: " + expiredKeys.size());
-
-                expiredKeys.stream().map(map::get).forEach((v) -> {
-                    if (v.notifier != null) {
-                        v.notifier.accept(v.value);
-                    }
-                });
-                expiredKeys.forEach(map::remove);
+    public boolean extend(K key, long extraMillis) {
+        ValueWrapper wrapper = this.map.get(key);
+
+        if (wrapper == null) {
+            return false;
+        }
+
+        long extraNanos = TimeUnit.MILLISECONDS.toNanos(extraMillis);
+        long expiresAt;
+
+        do {
+            expiresAt = wrapper.expiresAtNanos;
+
+            if (expiresAt == EXPIRED) {
+                return false;
             }
-            finally {
-                lock.unlock();
+        } while (!EXPIRES_AT.compareAndSet(wrapper, expiresAt, expiresAt + extraNanos));
+
+        return true;
+    }
+
+    /**
+     * Records how long after its TTL each entry is actually expired, in nanoseconds, from now on
+     */
+    public void setExpiryLagHistogram(LatencyHistogram expiryLag) {
+        this.expiryLag = expiryLag;
+    }
+
+    @Override
+    public V remove(Object key) {
+        ValueWrapper result = this.map.remove(key);
+
+        if (result == null) {
+            return null;
+        }
+
+        result.cancel();
+        return result.value;
+    }
+
+    /**
+     * Removes the entry only if it is currently mapped to the given value. Clients can use this to race safely
+     * against expiration: exactly one of them will succeed in removing the entry.
+     */
+    @Override
+    public boolean remove(Object key, Object value) {
+        ValueWrapper result = this.map.get(key);
+
+        if (result == null || !Objects.equals(result.value, value) || !this.map.remove(key, result)) {
+            return false;
+        }
+
+        result.cancel();
+        return true;
+    }
+
+    /**
+     * The deadline the timeout is for is passed in rather than read from the entry, which may have been extended
+     */
+    private TimingWheel.Timeout schedule(K key, ValueWrapper wrapper, long scheduledFor, long delayMillis) {
+        return timingWheel.schedule(delayMillis, () -> expire(key, wrapper, scheduledFor));
+    }
+
+    /**
+     * Invoked by the timing wheel once the deadline the timeout was scheduled for has passed. If the entry has been
+     * extended since, schedule the timeout again for the rest of its time. Otherwise, if the entry is still in the map,
+     * remove it and send a notification to the notifier (if supplied)
+     */
+    private void expire(K key, ValueWrapper wrapper, long scheduledFor) {
+        long expiresAt = wrapper.expiresAtNanos;
+
+        if (expiresAt == EXPIRED) {
+            return;
+        }
+
+        long remainingNanos = expiresAt - System.nanoTime();
+
+        if (expiresAt != scheduledFor && remainingNanos > 0) {
+            wrapper.timeout = schedule(key, wrapper, expiresAt,
+                TimeUnit.NANOSECONDS.toMillis(remainingNanos + TimeUnit.MILLISECONDS.toNanos(1) - 1));
+
+            // if the entry was removed meanwhile, remove() may not have seen the new timeout to cancel it
+            if (map.get(key) != wrapper) {
+                wrapper.cancel();
             }
-        };
+            return;
+        }
+
+        // an extension that gets in first wins, and the timeout goes round again
+        if (!EXPIRES_AT.compareAndSet(wrapper, expiresAt, EXPIRED)) {
+            expire(key, wrapper, scheduledFor);
+            return;
+        }
+
+        if (!map.remove(key, wrapper)) {
+            return;
+        }
+
+        LatencyHistogram lag = expiryLag;
+        if (lag != null) {
+            lag.record(System.nanoTime() - expiresAt);
+        }
 
-        executor.scheduleWithFixedDelay(expireLoop, 0, expirationInterval, TimeUnit.MILLISECONDS);
+        if (wrapper.notifier != null) {
+            wrapper.notifier.accept(wrapper.value);
+        }
     }
 
 }
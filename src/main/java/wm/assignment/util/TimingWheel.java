@@ -0,0 +1,367 @@
+package wm.assignment.util;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A hierarchical timing wheel that runs tasks once their delay has elapsed.
+ *
+ * The lowest wheel has one bucket per tick. Timeouts too far in the future for it go to an overflow wheel whose tick
+ * is the whole span of the wheel below it, and so on. Scheduling and cancelling a timeout are O(1): a timeout is a
+ * node in a doubly linked bucket list. Only buckets are ordered (in a DelayQueue), so the reaper thread sleeps until
+ * the next non-empty bucket is due instead of scanning. When an overflow bucket comes due, its timeouts cascade down
+ * into the finer wheels until they expire with single tick precision.
+ */
+public class TimingWheel {
+    private final static Log log = LogFactory.getLog(TimingWheel.class);
+
+    private static final int WHEEL_SIZE = 64;
+    private static final long REAPER_POLL_MILLIS = 200;
+
+    // time is measured from here so that it never goes negative
+    private static final long ORIGIN_NANOS = System.nanoTime();
+
+    /**
+     * Handle to a scheduled task. Also the node stored in the bucket lists
+     */
+    public static class Timeout {
+        private final Runnable task;
+        private final long expirationMillis;
+
+        private volatile boolean cancelled;
+
+        // owned by the bucket lists - guarded by the bucket and then the timeout monitor
+        private volatile Bucket bucket;
+        private Timeout next;
+        private Timeout prev;
+
+        private Timeout(Runnable task, long expirationMillis) {
+            this.task = task;
+            this.expirationMillis = expirationMillis;
+        }
+
+        /**
+         * Prevents the task from running and unlinks it from its bucket
+         * @return false if the timeout had already been cancelled
+         */
+        public boolean cancel() {
+            if (cancelled) {
+                return false;
+            }
+
+            cancelled = true;
+            unlink();
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        private void unlink() {
+            // the timeout can be moved between buckets while we try, so keep going until it sits in none
+            Bucket current = bucket;
+            while (current != null) {
+                current.remove(this);
+                current = bucket;
+            }
+        }
+    }
+
+    /**
+     * A circular doubly linked list of the timeouts that fall into one slot of a wheel. A bucket is queued in the
+     * DelayQueue while it holds timeouts, keyed by the start of the time range it currently covers
+     */
+    private class Bucket implements Delayed {
+        private final Timeout root = new Timeout(null, -1);
+        private final AtomicLong expiration = new AtomicLong(-1);
+
+        Bucket() {
+            root.next = root;
+            root.prev = root;
+        }
+
+        void add(Timeout timeout) {
+            boolean done = false;
+
+            while (!done) {
+                // a timeout may only be in one bucket, take it out of any other one first
+                timeout.unlink();
+
+                synchronized (this) {
+                    synchronized (timeout) {
+                        if (timeout.bucket == null) {
+                            Timeout tail = root.prev;
+                            timeout.next = root;
+                            timeout.prev = tail;
+                            timeout.bucket = this;
+                            tail.next = timeout;
+                            root.prev = timeout;
+                            pending.incrementAndGet();
+                            done = true;
+                        }
+                    }
+                }
+            }
+        }
+
+        synchronized void remove(Timeout timeout) {
+            synchronized (timeout) {
+                if (timeout.bucket == this) {
+                    timeout.next.prev = timeout.prev;
+                    timeout.prev.next = timeout.next;
+                    timeout.next = null;
+                    timeout.prev = null;
+                    timeout.bucket = null;
+                    pending.decrementAndGet();
+                }
+            }
+        }
+
+        /**
+         * Empties the bucket, handing every timeout to the given list
+         */
+        synchronized void flush(List<Timeout> timeouts) {
+            Timeout head = root.next;
+            while (head != root) {
+                remove(head);
+                timeouts.add(head);
+                head = root.next;
+            }
+            expiration.set(-1);
+        }
+
+        /**
+         * @return true if the expiration changed, meaning the bucket needs to be (re)queued
+         */
+        boolean setExpiration(long expirationMillis) {
+            return expiration.getAndSet(expirationMillis) != expirationMillis;
+        }
+
+        long getExpiration() {
+            return expiration.get();
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(Math.max(getExpiration() - now(), 0), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(getExpiration(), ((Bucket) other).getExpiration());
+        }
+    }
+
+    /**
+     * One level of the hierarchy: WHEEL_SIZE buckets of tickMillis each
+     */
+    private class Wheel {
+        private final long tickMillis;
+        private final long interval;
+        private final Bucket[] buckets;
+
+        private volatile long currentTime;
+        private volatile Wheel overflowWheel;
+
+        Wheel(long tickMillis, long startMillis) {
+            this.tickMillis = tickMillis;
+            this.interval = tickMillis * WHEEL_SIZE;
+            this.buckets = new Bucket[WHEEL_SIZE];
+            for (int i = 0; i < WHEEL_SIZE; i++) {
+                buckets[i] = new Bucket();
+            }
+
+            // round down to a multiple of the tick
+            this.currentTime = startMillis - (startMillis % tickMillis);
+        }
+
+        /**
+         * @return false if the timeout is already due (or cancelled) and should not be stored
+         */
+        boolean add(Timeout timeout) {
+            long expirationMillis = timeout.expirationMillis;
+
+            if (timeout.isCancelled() || expirationMillis < currentTime + tickMillis) {
+                return false;
+            }
+
+            if (expirationMillis < currentTime + interval) {
+                long virtualId = expirationMillis / tickMillis;
+                Bucket bucket = buckets[(int) (virtualId % WHEEL_SIZE)];
+                bucket.add(timeout);
+
+                if (bucket.setExpiration(virtualId * tickMillis)) {
+                    queue.offer(bucket);
+                }
+                return true;
+            }
+
+            return getOverflowWheel().add(timeout);
+        }
+
+        void advanceClock(long timeMillis) {
+            if (timeMillis >= currentTime + tickMillis) {
+                currentTime = timeMillis - (timeMillis % tickMillis);
+
+                Wheel overflow = overflowWheel;
+                if (overflow != null) {
+                    overflow.advanceClock(currentTime);
+                }
+            }
+        }
+
+        private Wheel getOverflowWheel() {
+            if (overflowWheel == null) {
+                synchronized (this) {
+                    if (overflowWheel == null) {
+                        overflowWheel = new Wheel(interval, currentTime);
+                    }
+                }
+            }
+            return overflowWheel;
+        }
+    }
+
+    private final DelayQueue<Bucket> queue = new DelayQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final long tickMillis;
+    private final Wheel wheel;
+
+    // scheduling takes the read lock, advancing the clock takes the write lock so it never sees a half-added timeout
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final ExecutorService executor;
+
+    public TimingWheel(long tickMillis) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("tickMillis must be positive");
+        }
+
+        this.tickMillis = tickMillis;
+        this.wheel = new Wheel(tickMillis, now());
+
+        executor = Executors.newSingleThreadExecutor();
+        ExecutorRegistry.register(executor);
+
+        executor.execute(this::reap);
+    }
+
+    /**
+     * Schedules a task to run once the delay has elapsed. The task runs on the wheel's reaper thread, so it should
+     * be short
+     * @return a handle that can cancel the task
+     */
+    public Timeout schedule(long delayMillis, Runnable task) {
+        Timeout timeout = new Timeout(task, deadlineAfter(delayMillis));
+
+        List<Timeout> due = new ArrayList<>(1);
+
+        lock.readLock().lock();
+        try {
+            add(timeout, due);
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+
+        run(due);
+        return timeout;
+    }
+
+    /**
+     * @return the number of timeouts that are scheduled and have neither run nor been cancelled
+     */
+    public int size() {
+        return pending.get();
+    }
+
+    private void add(Timeout timeout, List<Timeout> due) {
+        if (!wheel.add(timeout) && !timeout.isCancelled()) {
+            due.add(timeout);
+        }
+    }
+
+    /**
+     * Main loop of the reaper thread: wait for the next bucket to come due, then expire or cascade its timeouts
+     */
+    private void reap() {
+        try {
+            while (!executor.isShutdown()) {
+                advanceClock(REAPER_POLL_MILLIS);
+            }
+        }
+        catch (InterruptedException e) {
+            log.debug("TimingWheel reaper interrupted");
+        }
+    }
+
+    private void advanceClock(long timeoutMillis) throws InterruptedException {
+        Bucket bucket = queue.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+
+        if (bucket == null) {
+            return;
+        }
+
+        List<Timeout> due = new ArrayList<>();
+        List<Timeout> flushed = new ArrayList<>();
+
+        lock.writeLock().lock();
+        try {
+            while (bucket != null) {
+                wheel.advanceClock(bucket.getExpiration());
+
+                // re-adding either expires a timeout or moves it down into a finer wheel
+                bucket.flush(flushed);
+                flushed.forEach(timeout -> add(timeout, due));
+                flushed.clear();
+
+                bucket = queue.poll();
+            }
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+
+        // tasks run outside of the lock, so they are free to schedule or cancel other timeouts
+        run(due);
+    }
+
+    private void run(List<Timeout> due) {
+        for (Timeout timeout : due) {
+            try {
+                timeout.task.run();
+            }
+            catch (RuntimeException e) {
+                log.error("Timeout task failed", e);
+            }
+        }
+    }
+
+    /**
+     * The wheel runs a timeout once the clock reaches the tick it falls in, so the deadline is rounded up - to the
+     * millisecond and then to the tick. A task may run up to a tick late, but never before its delay has elapsed
+     */
+    private long deadlineAfter(long delayMillis) {
+        long deadlineNanos = System.nanoTime() - ORIGIN_NANOS + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+        long deadlineMillis = -Math.floorDiv(-deadlineNanos, TimeUnit.MILLISECONDS.toNanos(1));
+
+        return -Math.floorDiv(-deadlineMillis, tickMillis) * tickMillis;
+    }
+
+    private static long now() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - ORIGIN_NANOS);
+    }
+
+}
@@ -0,0 +1,470 @@
+package wm.assignment.venue;
+
+import wm.assignment.exception.VenueException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+import java.util.stream.Stream;
+
+/**
+ * A Row that stores the state of each seat in two bits, 32 seats to a long word, and updates them in place. Where the
+ * words are kept is up to the subclass.
+ *
+ * Free runs are found a word at a time: each word is reduced to a 32 bit mask of its free seats, and whole runs of
+ * free or taken seats are skipped with trailing-zero counts instead of visiting seats one by one.
+ *
+ * Frozen versions of the row (see frozen) share its words rather than copy them. Once a row has been frozen, an
+ * update first keeps the old values of the words it is about to change for the versions that still need them, and
+ * changes the words under a StampedLock that lets their readers find out they raced with it.
+ */
+abstract class BitmapRow extends Row {
+    private static final int BITS_PER_SEAT = 2;
+    static final int SEATS_PER_WORD = Long.SIZE / BITS_PER_SEAT;
+    private static final long FULL_WORD_MASK = 0xFFFFFFFFL;
+
+    // the low bit of every seat's two bit slot
+    private static final long LOW_BITS = 0x5555555555555555L;
+
+    private static final long UNRESERVED = 0;
+    private static final long HOLD = 1;
+    private static final long RESERVED = 2;
+
+    // versions kept before one keeps all of the words and starts a new chain - see keepWords
+    private static final int MAX_CHAIN_LENGTH = 4;
+
+    private final int numWords;
+
+    private int availableSeatCount;
+    private int heldSeatCount;
+    private int largestAvailableBlock;
+
+    // the version of the words that frozen rows share with this row, and the lock their readers validate against.
+    // Both stay null until the row is first frozen
+    private FrozenBitmapRow.Version version;
+    private StampedLock wordsLock;
+
+    // the number of versions since the last one that kept all of the words
+    private int chainLength;
+
+    /**
+     * The subclass must start out with every word zero - every seat unreserved
+     */
+    BitmapRow(int rowNum, int numSeats) {
+        super(rowNum, numSeats);
+
+        this.numWords = numWords(numSeats);
+        this.availableSeatCount = numSeats;
+        this.largestAvailableBlock = numSeats;
+    }
+
+    /**
+     * Copies the counters of the source row - see FrozenBitmapRow for its words
+     */
+    BitmapRow(BitmapRow source) {
+        super(source.getRowNum(), source.getNumSeats());
+
+        this.numWords = source.numWords;
+        this.availableSeatCount = source.availableSeatCount;
+        this.heldSeatCount = source.heldSeatCount;
+        this.largestAvailableBlock = source.largestAvailableBlock;
+    }
+
+    static int numWords(int numSeats) {
+        return (numSeats + SEATS_PER_WORD - 1) / SEATS_PER_WORD;
+    }
+
+    abstract long word(int wordIndex);
+
+    abstract void setWord(int wordIndex, long word);
+
+    /**
+     * Fills in this row, which has to be empty, in place
+     */
+    @Override
+    Row withBlocks(List<SeatBlock> blocks, int availableSeatCount, int heldSeatCount) {
+        for (SeatBlock block : blocks) {
+            if (block.getBlockType() != SeatBlockType.UNRESERVED) {
+                transition(block.getStartPosition(), block.getNumSeats(), UNRESERVED,
+                    block.getBlockType() == SeatBlockType.HOLD ? HOLD : RESERVED);
+            }
+        }
+
+        this.availableSeatCount = availableSeatCount;
+        this.heldSeatCount = heldSeatCount;
+        this.largestAvailableBlock = largestFreeRun();
+        return this;
+    }
+
+    @Override
+    List<SeatBlock> getBlocks() {
+        List<SeatBlock> blocks = new ArrayList<>();
+
+        forEachRun((type, numSeats) -> {
+            SeatBlock last = blocks.isEmpty() ? null : blocks.get(blocks.size() - 1);
+            int start = last == null ? 0 : last.getStartPosition() + last.getNumSeats();
+            blocks.add(new SeatBlock(type, getRowNum(), start, numSeats));
+        });
+
+        return blocks;
+    }
+
+    /**
+     * Reads the seat states directly, a word at a time, so unlike getBlocks this doesn't allocate
+     */
+    @Override
+    void forEachRun(RunVisitor visitor) {
+        int start = 0;
+        long startState = -1;
+
+        for (int wordIndex = 0; wordIndex < numWords; wordIndex++) {
+            long word = word(wordIndex);
+            int base = wordIndex * SEATS_PER_WORD;
+            int seatsInWord = Math.min(SEATS_PER_WORD, getNumSeats() - base);
+
+            for (int i = 0; i < seatsInWord; i++) {
+                long state = (word >>> (i * BITS_PER_SEAT)) & 3;
+
+                if (state != startState) {
+                    if (startState >= 0) {
+                        visitor.visit(toBlockType(startState), base + i - start);
+                    }
+
+                    start = base + i;
+                    startState = state;
+                }
+            }
+        }
+
+        visitor.visit(toBlockType(startState), getNumSeats() - start);
+    }
+
+    @Override
+    int totalAvailableSeatCount() {
+        return availableSeatCount;
+    }
+
+    @Override
+    int heldSeatCount() {
+        return heldSeatCount;
+    }
+
+    @Override
+    int largestAvailableBlock() {
+        return largestAvailableBlock;
+    }
+
+    @Override
+    Stream<SeatBlock> firstAvailableBlock(int numSeats) {
+        if (numSeats > largestAvailableBlock) {
+            return Stream.empty();
+        }
+
+        int start = firstFreeRun(numSeats);
+
+        if (start < 0) {
+            return Stream.empty();
+        }
+
+        return Stream.of(new SeatBlock(SeatBlockType.UNRESERVED, getRowNum(), start, freeRunLength(start)));
+    }
+
+    /**
+     * Built from the seat states on demand, so this costs a pass over the row
+     */
+    @Override
+    Stream<SeatBlock> availableBlocks(int numSeats) {
+        if (numSeats > largestAvailableBlock) {
+            return Stream.empty();
+        }
+
+        return getBlocks().stream()
+            .filter(b -> b.getBlockType() == SeatBlockType.UNRESERVED && b.getNumSeats() >= numSeats);
+    }
+
+    @Override
+    HoldUpdate holdSeats(SeatBlock block, int startPosition, int numSeats, String customerEmail) {
+        int seatsBefore = startPosition - block.getStartPosition();
+
+        // sanity check
+        if (seatsBefore < 0 || block.getNumSeats() - seatsBefore < numSeats) {
+            throw new VenueException("Cannot reserve seats - not enough are available in the block");
+        }
+
+        transition(startPosition, numSeats, UNRESERVED, HOLD);
+        availableSeatCount -= numSeats;
+        heldSeatCount += numSeats;
+        largestAvailableBlock = largestFreeRun();
+
+        SeatBlock holdBlock = new SeatBlock(SeatBlockType.HOLD, getRowNum(), startPosition, numSeats);
+        return new HoldUpdate(this, new SeatHold(holdBlock, customerEmail));
+    }
+
+    @Override
+    Row withBlockUnreserved(SeatBlock heldBlock) {
+        transition(heldBlock.getStartPosition(), heldBlock.getNumSeats(), HOLD, UNRESERVED);
+        availableSeatCount += heldBlock.getNumSeats();
+        heldSeatCount -= heldBlock.getNumSeats();
+        largestAvailableBlock = largestFreeRun();
+        return this;
+    }
+
+    @Override
+    Row withBlockReserved(SeatBlock heldBlock) {
+        transition(heldBlock.getStartPosition(), heldBlock.getNumSeats(), HOLD, RESERVED);
+        heldSeatCount -= heldBlock.getNumSeats();
+        return this;
+    }
+
+    @Override
+    Row withSeatsReleased(SeatBlock reservedSeats) {
+        transition(reservedSeats.getStartPosition(), reservedSeats.getNumSeats(), RESERVED, UNRESERVED);
+        availableSeatCount += reservedSeats.getNumSeats();
+        largestAvailableBlock = largestFreeRun();
+        return this;
+    }
+
+    /**
+     * A view of the row as it is now that shares its words, whichever model this row is. Nothing is copied until the
+     * row changes, and then only the words that change
+     */
+    @Override
+    Row frozen() {
+        if (version == null) {
+            version = new FrozenBitmapRow.Version();
+            wordsLock = new StampedLock();
+        }
+
+        return new FrozenBitmapRow(this, wordsLock, version);
+    }
+
+    /**
+     * Called before another row takes over this row's words, as an OFF_HEAP row rebuilt in its slice of the seat map
+     * does. Frozen versions of this row keep all of its words from here on
+     */
+    void retire() {
+        if (version != null) {
+            keepWords(0, numWords - 1);
+            wordsLock.unlockWrite(wordsLock.writeLock());
+        }
+    }
+
+    /**
+     * Moves every seat in the range from one state to another, a word at a time
+     */
+    private void transition(int startPosition, int numSeats, long from, long to) {
+        int end = startPosition + numSeats;
+
+        if (startPosition < 0 || end > getNumSeats()) {
+            throw new VenueException("Seat range is outside of the row");
+        }
+
+        if (version == null) {
+            setStates(startPosition, end, from, to);
+            return;
+        }
+
+        keepWords(startPosition / SEATS_PER_WORD, (end - 1) / SEATS_PER_WORD);
+        long stamp = wordsLock.writeLock();
+
+        try {
+            setStates(startPosition, end, from, to);
+        }
+        finally {
+            wordsLock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Hands the current values of the words in the range to the frozen versions that share them, and starts a new
+     * version of the words. Every MAX_CHAIN_LENGTH versions, all of the words are kept instead and the new version
+     * starts a chain of its own: a dropped version that made it to the old generation keeps the later versions it
+     * links to reachable until the old generation is collected, and young collections copy them over and over
+     */
+    private void keepWords(int firstWord, int lastWord) {
+        boolean allWords = ++chainLength == MAX_CHAIN_LENGTH || lastWord - firstWord + 1 == numWords;
+
+        if (allWords) {
+            firstWord = 0;
+            lastWord = numWords - 1;
+        }
+
+        long[] oldWords = new long[lastWord - firstWord + 1];
+
+        for (int i = 0; i < oldWords.length; i++) {
+            oldWords[i] = word(firstWord + i);
+        }
+
+        if (allWords) {
+            version = version.supersedeWithAll(oldWords);
+            chainLength = 0;
+        }
+        else {
+            version = version.supersede(firstWord, oldWords);
+        }
+    }
+
+    private void setStates(int startPosition, int end, long from, long to) {
+        for (int seat = startPosition; seat < end; ) {
+            int wordIndex = seat / SEATS_PER_WORD;
+            int first = seat % SEATS_PER_WORD;
+            int count = Math.min(SEATS_PER_WORD - first, end - seat);
+
+            long mask = slotMask(first, count);
+            long word = word(wordIndex);
+
+            if (((word ^ (from * LOW_BITS)) & mask) != 0) {
+                throw new VenueException("Seats are not in the expected state");
+            }
+
+            setWord(wordIndex, (word & ~mask) | ((to * LOW_BITS) & mask));
+            seat += count;
+        }
+    }
+
+    /**
+     * @return the first seat of the first maximal free run that is at least numSeats long, or -1
+     */
+    private int firstFreeRun(int numSeats) {
+        int runStart = 0;
+        int runLength = 0;
+
+        for (int wordIndex = 0; wordIndex < numWords; wordIndex++) {
+            int base = wordIndex * SEATS_PER_WORD;
+            long free = freeMask(wordIndex);
+
+            if (free == FULL_WORD_MASK) {
+                if (runLength == 0) {
+                    runStart = base;
+                }
+                runLength += SEATS_PER_WORD;
+
+                if (runLength >= numSeats) {
+                    return runStart;
+                }
+                continue;
+            }
+
+            int pos = 0;
+            while (pos < SEATS_PER_WORD) {
+                long remaining = free >>> pos;
+
+                if ((remaining & 1) == 0) {
+                    // skip the taken seats in one step
+                    runLength = 0;
+                    pos += remaining == 0 ? SEATS_PER_WORD : Long.numberOfTrailingZeros(remaining);
+                    continue;
+                }
+
+                int ones = Math.min(Long.numberOfTrailingZeros(~remaining), SEATS_PER_WORD - pos);
+                if (runLength == 0) {
+                    runStart = base + pos;
+                }
+                runLength += ones;
+
+                if (runLength >= numSeats) {
+                    return runStart;
+                }
+                pos += ones;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * @return the number of consecutive free seats starting at the given seat
+     */
+    private int freeRunLength(int start) {
+        int seat = start;
+
+        while (seat < getNumSeats()) {
+            int wordIndex = seat / SEATS_PER_WORD;
+            int first = seat % SEATS_PER_WORD;
+            long remaining = freeMask(wordIndex) >>> first;
+
+            int ones = Math.min(Long.numberOfTrailingZeros(~remaining), SEATS_PER_WORD - first);
+            seat += ones;
+
+            if (first + ones < SEATS_PER_WORD) {
+                break;
+            }
+        }
+
+        return Math.min(seat, getNumSeats()) - start;
+    }
+
+    private int largestFreeRun() {
+        int largest = 0;
+        int runLength = 0;
+
+        for (int wordIndex = 0; wordIndex < numWords; wordIndex++) {
+            long free = freeMask(wordIndex);
+
+            if (free == FULL_WORD_MASK) {
+                runLength += SEATS_PER_WORD;
+                continue;
+            }
+
+            int pos = 0;
+            while (pos < SEATS_PER_WORD) {
+                long remaining = free >>> pos;
+
+                if ((remaining & 1) == 0) {
+                    largest = Math.max(largest, runLength);
+                    runLength = 0;
+                    pos += remaining == 0 ? SEATS_PER_WORD : Long.numberOfTrailingZeros(remaining);
+                    continue;
+                }
+
+                int ones = Math.min(Long.numberOfTrailingZeros(~remaining), SEATS_PER_WORD - pos);
+                runLength += ones;
+                pos += ones;
+            }
+        }
+
+        return Math.max(largest, runLength);
+    }
+
+    /**
+     * Reduces a word to a mask with bit i set when seat i of the word is unreserved. Slots past the end of the row
+     * are never reported as free
+     */
+    private long freeMask(int wordIndex) {
+        long word = word(wordIndex);
+
+        // a seat is free when both of its bits are clear - collect that in the low bit of each slot
+        long free = ~(word | (word >>> 1)) & LOW_BITS;
+
+        // compact the low bit of each slot into one dense 32 bit mask
+        free = (free | (free >>> 1)) & 0x3333333333333333L;
+        free = (free | (free >>> 2)) & 0x0F0F0F0F0F0F0F0FL;
+        free = (free | (free >>> 4)) & 0x00FF00FF00FF00FFL;
+        free = (free | (free >>> 8)) & 0x0000FFFF0000FFFFL;
+        free = (free | (free >>> 16)) & FULL_WORD_MASK;
+
+        int seatsInWord = Math.min(SEATS_PER_WORD, getNumSeats() - wordIndex * SEATS_PER_WORD);
+        if (seatsInWord < SEATS_PER_WORD) {
+            free &= (1L << seatsInWord) - 1;
+        }
+
+        return free;
+    }
+
+    /**
+     * A mask covering both bits of count seats, starting at seat first within a word
+     */
+    private static long slotMask(int first, int count) {
+        long bits = count == SEATS_PER_WORD ? -1L : (1L << (count * BITS_PER_SEAT)) - 1;
+        return bits << (first * BITS_PER_SEAT);
+    }
+
+    private static SeatBlockType toBlockType(long state) {
+        if (state == HOLD) {
+            return SeatBlockType.HOLD;
+        }
+
+        return state == RESERVED ? SeatBlockType.RESERVED : SeatBlockType.UNRESERVED;
+    }
+
+}
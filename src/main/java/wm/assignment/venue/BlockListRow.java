@@ -0,0 +1,271 @@
+package wm.assignment.venue;
+
+import wm.assignment.exception.VenueException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Represents a Row in the Venue, which consists of a set of SeatBlock objects. The row is never modified - every
+ * update produces a new BlockListRow
+ */
+class BlockListRow extends Row {
+
+    // filters
+    private static Predicate<SeatBlock> onlyUnreserved = (SeatBlock b) -> b.getBlockType() == SeatBlockType.UNRESERVED;
+
+    private final List<SeatBlock> blocks;
+    private final int largestAvailableBlock;
+
+    // seat counts by block type, carried over from the previous version of the row rather than recounted
+    private final int availableSeatCount;
+    private final int heldSeatCount;
+
+    BlockListRow(int rowNum, int numSeats) {
+        this(rowNum, numSeats, null, numSeats, 0);
+    }
+
+    private BlockListRow(int rowNum, int numSeats, List<SeatBlock> blocks, int availableSeatCount, int heldSeatCount) {
+        super(rowNum, numSeats);
+        this.availableSeatCount = availableSeatCount;
+        this.heldSeatCount = heldSeatCount;
+
+        if (blocks != null) {
+            this.blocks = blocks;
+        }
+        else {
+            this.blocks = new ArrayList<>();
+
+            // initialize an empty (unreserved) block of seats from seat 0 to the number of seats
+            this.blocks.add(new SeatBlock(SeatBlockType.UNRESERVED, rowNum, 0, numSeats));
+        }
+
+        int largest = 0;
+        for (SeatBlock sb : this.blocks) {
+            if (sb.getBlockType() == SeatBlockType.UNRESERVED && sb.getNumSeats() > largest) {
+                largest = sb.getNumSeats();
+            }
+        }
+        this.largestAvailableBlock = largest;
+    }
+
+    /**
+     * See Row.fromBlocks - blocks covers every seat in the row
+     */
+    static BlockListRow fromBlocks(int rowNum, int numSeats, List<SeatBlock> blocks, int availableSeatCount,
+                                   int heldSeatCount) {
+        return new BlockListRow(rowNum, numSeats, blocks, availableSeatCount, heldSeatCount);
+    }
+
+    @Override
+    List<SeatBlock> getBlocks() {
+        return blocks;
+    }
+
+    @Override
+    Row withBlocks(List<SeatBlock> blocks, int availableSeatCount, int heldSeatCount) {
+        return fromBlocks(getRowNum(), getNumSeats(), blocks, availableSeatCount, heldSeatCount);
+    }
+
+    @Override
+    int totalAvailableSeatCount() {
+        return availableSeatCount;
+    }
+
+    @Override
+    int heldSeatCount() {
+        return heldSeatCount;
+    }
+
+
+    /**
+     * Computed once, since the row is never modified
+     */
+    @Override
+    int largestAvailableBlock() {
+        return largestAvailableBlock;
+    }
+
+    @Override
+    Stream<SeatBlock> firstAvailableBlock(int numSeats) {
+        return availableBlocks(numSeats);
+    }
+
+    @Override
+    Stream<SeatBlock> availableBlocks(int numSeats) {
+        return blocks.stream()
+            .filter(onlyUnreserved)
+            .filter(b -> b.getNumSeats() >= numSeats);
+    }
+
+    @Override
+    HoldUpdate holdSeats(SeatBlock block, int startPosition, int numSeats, String customerEmail) {
+        int seatsBefore = startPosition - block.getStartPosition();
+
+        // sanity check
+        if (seatsBefore < 0 || block.getNumSeats() - seatsBefore < numSeats) {
+            throw new VenueException("Cannot reserve seats - not enough are available in the block");
+        }
+
+        List<SeatBlock> newBlocks = new ArrayList<>(blocks.size() + 2);
+        SeatBlock holdBlock = new SeatBlock(SeatBlockType.HOLD, block.getRowNum(), startPosition, numSeats);
+
+        // loop through the current set of blocks and generate a new one
+        for (SeatBlock sb : blocks) {
+            // add all other blocks to the new row untouched, maintaining their order
+            if (sb != block) {
+                newBlocks.add(sb);
+                continue;
+            }
+
+            // keep any seats before the hold unreserved
+            if (seatsBefore > 0) {
+                newBlocks.add(new SeatBlock(SeatBlockType.UNRESERVED, sb.getRowNum(), sb.getStartPosition(),
+                    seatsBefore));
+            }
+
+            // create a block for this reservation add add it to the right location in the row
+            newBlocks.add(holdBlock);
+
+            // if we have extra seats left over in the block, add it after the new hold block
+            if (sb.getNumSeats() > seatsBefore + numSeats) {
+                int remainingStart = startPosition + numSeats;
+                SeatBlock remainingAvailableBlock = new SeatBlock(SeatBlockType.UNRESERVED, sb.getRowNum(),
+                    remainingStart, sb.getNumSeats() - seatsBefore - numSeats);
+
+                newBlocks.add(remainingAvailableBlock);
+            }
+
+        }
+
+        // the block list is fully built before the row is constructed, so the new row can be safely published to
+        // readers that don't hold the row's lock
+        Row newRow = new BlockListRow(getRowNum(), getNumSeats(), newBlocks,
+            availableSeatCount - numSeats, heldSeatCount + numSeats);
+
+        return new HoldUpdate(newRow, new SeatHold(holdBlock, customerEmail));
+    }
+
+    @Override
+    Row withBlockUnreserved(SeatBlock blockToReplace) {
+        SeatBlock newUnreservedBlock = new SeatBlock(SeatBlockType.UNRESERVED,
+            blockToReplace.getRowNum(), blockToReplace.getStartPosition(), blockToReplace.getNumSeats());
+
+        int blockIndex = blocks.indexOf(blockToReplace);
+        List<SeatBlock> newBlocks = new ArrayList<>(blocks);
+        newBlocks.set(blockIndex, newUnreservedBlock);
+
+        return withBlocksMerged(getRowNum(), getNumSeats(), newBlocks,
+            availableSeatCount + blockToReplace.getNumSeats(), heldSeatCount - blockToReplace.getNumSeats());
+    }
+
+    @Override
+    Row withBlockReserved(SeatBlock heldBlock) {
+        SeatBlock newReservedBlock = new SeatBlock(SeatBlockType.RESERVED,
+            heldBlock.getRowNum(), heldBlock.getStartPosition(), heldBlock.getNumSeats());
+
+        int blockIndex = blocks.indexOf(heldBlock);
+        List<SeatBlock> newBlocks = new ArrayList<>(blocks);
+        newBlocks.set(blockIndex, newReservedBlock);
+
+        return new BlockListRow(getRowNum(), getNumSeats(), newBlocks,
+            availableSeatCount, heldSeatCount - heldBlock.getNumSeats());
+    }
+
+    /**
+     * Splits the reserved block the seats are in into the seats that stay reserved on either side and the released
+     * seats, which are then merged with their unreserved neighbours
+     */
+    @Override
+    Row withSeatsReleased(SeatBlock reservedSeats) {
+        int start = reservedSeats.getStartPosition();
+        int end = start + reservedSeats.getNumSeats();
+        int blockIndex = indexOfBlockAt(start);
+        SeatBlock block = blocks.get(blockIndex);
+        int blockEnd = block.getStartPosition() + block.getNumSeats();
+
+        if (block.getBlockType() != SeatBlockType.RESERVED || end > blockEnd) {
+            throw new VenueException("Cannot release seats that aren't reserved");
+        }
+
+        List<SeatBlock> newBlocks = new ArrayList<>(blocks.size() + 2);
+        newBlocks.addAll(blocks.subList(0, blockIndex));
+
+        if (start > block.getStartPosition()) {
+            newBlocks.add(new SeatBlock(SeatBlockType.RESERVED, getRowNum(), block.getStartPosition(),
+                start - block.getStartPosition()));
+        }
+
+        newBlocks.add(new SeatBlock(SeatBlockType.UNRESERVED, getRowNum(), start, reservedSeats.getNumSeats()));
+
+        if (end < blockEnd) {
+            newBlocks.add(new SeatBlock(SeatBlockType.RESERVED, getRowNum(), end, blockEnd - end));
+        }
+
+        newBlocks.addAll(blocks.subList(blockIndex + 1, blocks.size()));
+
+        return withBlocksMerged(getRowNum(), getNumSeats(), newBlocks,
+            availableSeatCount + reservedSeats.getNumSeats(), heldSeatCount);
+    }
+
+    /**
+     * The blocks cover the row in seat order, so the block a seat is in can be found with a binary search
+     */
+    private int indexOfBlockAt(int seat) {
+        int low = 0;
+        int high = blocks.size() - 1;
+
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+
+            if (blocks.get(mid).getStartPosition() <= seat) {
+                low = mid;
+            }
+            else {
+                high = mid - 1;
+            }
+        }
+
+        return low;
+    }
+
+    private static BlockListRow withBlocksMerged(int rowNum, int numSeats, List<SeatBlock> unmergedBlocks,
+                                        int availableSeatCount, int heldSeatCount) {
+        List<SeatBlock> blocks = new ArrayList<>();
+
+        SeatBlock currentUnreservedBlock = null;
+
+        for (SeatBlock sb : unmergedBlocks) {
+            // case 1: if we find a block that isn't unreserved, we no longer have a contiguous unreserved block
+            if (sb.getBlockType() != SeatBlockType.UNRESERVED) {
+                if (currentUnreservedBlock != null) {
+                    // if we're currently processing an unreserved block and we've encountered another block that is reserved,
+                    // we want to add it to the new list
+                    blocks.add(currentUnreservedBlock);
+                    currentUnreservedBlock = null;
+                }
+
+                blocks.add(sb);
+                continue;
+            }
+
+            // case 2: here we've found an unreserved block - this block will be come the current unreserved block
+            if (currentUnreservedBlock == null) {
+                currentUnreservedBlock = sb;
+                continue;
+            }
+
+            currentUnreservedBlock = SeatBlock.merge(currentUnreservedBlock, sb);
+        }
+
+        // add the last unreserved block if it hasn't been processed
+        if (currentUnreservedBlock != null) {
+            blocks.add(currentUnreservedBlock);
+        }
+
+        return new BlockListRow(rowNum, numSeats, blocks, availableSeatCount, heldSeatCount);
+    }
+
+}
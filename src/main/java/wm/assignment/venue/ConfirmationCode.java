@@ -0,0 +1,105 @@
+package wm.assignment.venue;
+
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+/**
+ * Reservation confirmation codes: a random 64-bit value, shown to customers as 13 characters of Crockford's base32
+ * (digits and upper case letters, without I, L, O and U so that codes survive being read out over the phone).
+ *
+ * Codes are random rather than sequential so that one customer's code says nothing about anyone else's, and they come
+ * from SecureRandom: ThreadLocalRandom's output gives away its state, so one code would tell every later code from the
+ * same thread. SecureRandom is slow for a single long and synchronized, so each thread draws its codes a batch at a
+ * time.
+ */
+public final class ConfirmationCode {
+    private static final char[] DIGITS = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final int BITS_PER_DIGIT = 5;
+    private static final int LENGTH = (Long.SIZE + BITS_PER_DIGIT - 1) / BITS_PER_DIGIT;
+
+    private static final int BATCH_SIZE = 64;
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final ThreadLocal<ByteBuffer> BATCHES = ThreadLocal.withInitial(() -> {
+        ByteBuffer batch = ByteBuffer.allocate(BATCH_SIZE * Long.BYTES);
+        batch.position(batch.limit());
+        return batch;
+    });
+
+    // the value of each character, or -1 - lower case is accepted, and so are the letters commonly mistaken for digits
+    private static final byte[] VALUES = new byte[128];
+
+    static {
+        Arrays.fill(VALUES, (byte) -1);
+
+        for (int i = 0; i < DIGITS.length; i++) {
+            VALUES[DIGITS[i]] = (byte) i;
+            VALUES[Character.toLowerCase(DIGITS[i])] = (byte) i;
+        }
+
+        VALUES['O'] = VALUES['o'] = 0;
+        VALUES['I'] = VALUES['i'] = VALUES['L'] = VALUES['l'] = 1;
+    }
+
+    private ConfirmationCode() {
+    }
+
+    /**
+     * @return a new random code. Never 0, which stands for no code
+     */
+    static long next() {
+        ByteBuffer batch = BATCHES.get();
+        long code;
+
+        do {
+            if (!batch.hasRemaining()) {
+                RANDOM.nextBytes(batch.array());
+                batch.clear();
+            }
+
+            code = batch.getLong();
+        } while (code == 0);
+
+        return code;
+    }
+
+    /**
+     * @return the code as it is shown to customers
+     */
+    public static String format(long code) {
+        char[] chars = new char[LENGTH];
+
+        for (int i = LENGTH - 1; i >= 0; i--) {
+            chars[i] = DIGITS[(int) (code & (DIGITS.length - 1))];
+            code >>>= BITS_PER_DIGIT;
+        }
+
+        return new String(chars);
+    }
+
+    /**
+     * @return the code a customer gave us, or 0 if it isn't a valid code
+     */
+    public static long parse(String text) {
+        if (text == null || text.length() != LENGTH) {
+            return 0;
+        }
+
+        long code = 0;
+
+        for (int i = 0; i < LENGTH; i++) {
+            char c = text.charAt(i);
+            int value = c < VALUES.length ? VALUES[c] : -1;
+
+            // 13 digits hold 65 bits, so the first digit only has room for the top 4 bits of the code
+            if (value < 0 || (i == 0 && value >= 1 << (Long.SIZE - (LENGTH - 1) * BITS_PER_DIGIT))) {
+                return 0;
+            }
+
+            code = code << BITS_PER_DIGIT | value;
+        }
+
+        return code;
+    }
+
+}
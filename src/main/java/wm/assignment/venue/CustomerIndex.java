@@ -0,0 +1,257 @@
+package wm.assignment.venue;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The holds and reservations of each customer, keyed by CustomerKey, along with the number of seats the customer has.
+ * Lets the venue answer "what does this customer have" and enforce a per-customer seat limit without scanning its
+ * holds and reservations.
+ *
+ * Every change to a customer goes through ConcurrentHashMap.compute, so updates to the same customer are serialized
+ * and the seat limit check and the seat count update are atomic. Customers are dropped once they have nothing left.
+ */
+class CustomerIndex {
+
+    /**
+     * What one customer has. Only read or changed inside compute
+     */
+    private static class Customer {
+        int numSeats;
+        final LongSet holdIds = new LongSet();
+        final LongSet codes = new LongSet();
+
+        boolean isEmpty() {
+            return numSeats == 0 && holdIds.size == 0 && codes.size == 0;
+        }
+    }
+
+    /**
+     * A set of non-zero longs - hold ids or confirmation codes - in an open-addressing table with linear probing. A
+     * customer can have thousands of holds (a box office, say), so removing one must not mean scanning the others
+     */
+    private static class LongSet {
+        private long[] table = new long[2];
+        private int size;
+
+        void add(long value) {
+            if (2 * (size + 1) > table.length) {
+                long[] old = table;
+                table = new long[2 * old.length];
+
+                for (long v : old) {
+                    if (v != 0) {
+                        table[find(v)] = v;
+                    }
+                }
+            }
+
+            int slot = find(value);
+
+            if (table[slot] == 0) {
+                table[slot] = value;
+                size++;
+            }
+        }
+
+        boolean remove(long value) {
+            int slot = find(value);
+
+            if (table[slot] == 0) {
+                return false;
+            }
+
+            // shift back the entries that probed past the removed one, so lookups still find them
+            int mask = table.length - 1;
+            int hole = slot;
+
+            for (int next = (hole + 1) & mask; table[next] != 0; next = (next + 1) & mask) {
+                int home = home(table[next]);
+
+                if (((next - home) & mask) >= ((next - hole) & mask)) {
+                    table[hole] = table[next];
+                    hole = next;
+                }
+            }
+
+            table[hole] = 0;
+            size--;
+            return true;
+        }
+
+        long[] toArray() {
+            long[] values = new long[size];
+            int i = 0;
+
+            for (long v : table) {
+                if (v != 0) {
+                    values[i++] = v;
+                }
+            }
+
+            return values;
+        }
+
+        /**
+         * @return the slot holding the value, or the empty slot where it would go
+         */
+        private int find(long value) {
+            int mask = table.length - 1;
+            int slot = home(value);
+
+            while (table[slot] != 0 && table[slot] != value) {
+                slot = (slot + 1) & mask;
+            }
+
+            return slot;
+        }
+
+        private int home(long value) {
+            long h = value * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32)) & (table.length - 1);
+        }
+    }
+
+    private final ConcurrentHashMap<Long, Customer> customers = new ConcurrentHashMap<>();
+
+    /**
+     * Counts seats against the customer ahead of holding them, unless that would take the customer over the limit
+     * @return false if the customer already has too many seats
+     */
+    boolean tryClaimSeats(long customer, int numSeats, int limit) {
+        boolean[] claimed = new boolean[1];
+
+        customers.compute(customer, (k, c) -> {
+            int numSeatsBefore = c == null ? 0 : c.numSeats;
+
+            if ((long) numSeatsBefore + numSeats > limit) {
+                return c;
+            }
+
+            Customer updated = c == null ? new Customer() : c;
+            updated.numSeats += numSeats;
+            claimed[0] = true;
+            return updated;
+        });
+
+        return claimed[0];
+    }
+
+    /**
+     * Gives back seats claimed for a hold that couldn't be made, or released from a reservation
+     */
+    void releaseSeats(long customer, int numSeats) {
+        customers.computeIfPresent(customer, (k, c) -> {
+            c.numSeats -= numSeats;
+            return c.isEmpty() ? null : c;
+        });
+    }
+
+    /**
+     * Records a hold whose seats have been claimed
+     */
+    void addHold(long customer, int holdId) {
+        customers.compute(customer, (k, c) -> {
+            Customer updated = c == null ? new Customer() : c;
+            updated.holdIds.add(holdId);
+            return updated;
+        });
+    }
+
+    /**
+     * Drops an expired hold along with its seats
+     */
+    void removeHold(long customer, int holdId, int numSeats) {
+        customers.computeIfPresent(customer, (k, c) -> {
+            if (c.holdIds.remove(holdId)) {
+                c.numSeats -= numSeats;
+            }
+
+            return c.isEmpty() ? null : c;
+        });
+    }
+
+    /**
+     * Turns a hold into a reservation - the customer keeps the seats
+     */
+    void reserveHold(long customer, int holdId, long code) {
+        customers.computeIfPresent(customer, (k, c) -> {
+            c.holdIds.remove(holdId);
+            c.codes.add(code);
+            return c;
+        });
+    }
+
+    /**
+     * Drops a cancelled reservation along with its seats. A partly released reservation only gives back seats - see
+     * releaseSeats
+     */
+    void removeReservation(long customer, long code, int numSeats) {
+        customers.computeIfPresent(customer, (k, c) -> {
+            if (c.codes.remove(code)) {
+                c.numSeats -= numSeats;
+            }
+
+            return c.isEmpty() ? null : c;
+        });
+    }
+
+    /**
+     * Records a reservation rebuilt from a journal or checkpoint
+     */
+    void addReservation(long customer, long code, int numSeats) {
+        customers.compute(customer, (k, c) -> {
+            Customer updated = c == null ? new Customer() : c;
+            updated.numSeats += numSeats;
+            updated.codes.add(code);
+            return updated;
+        });
+    }
+
+    /**
+     * @return the ids of the customer's holds, in no particular order. They may have been reserved or expired since
+     */
+    int[] getHoldIds(long customer) {
+        int[][] holdIds = {new int[0]};
+
+        customers.computeIfPresent(customer, (k, c) -> {
+            holdIds[0] = Arrays.stream(c.holdIds.toArray()).mapToInt(id -> (int) id).toArray();
+            return c;
+        });
+
+        return holdIds[0];
+    }
+
+    /**
+     * @return the confirmation codes of the customer's reservations, in no particular order
+     */
+    long[] getCodes(long customer) {
+        long[][] codes = {new long[0]};
+
+        customers.computeIfPresent(customer, (k, c) -> {
+            codes[0] = c.codes.toArray();
+            return c;
+        });
+
+        return codes[0];
+    }
+
+    /**
+     * @return the number of seats the customer holds or has reserved, including seats claimed for holds in progress
+     */
+    int getNumSeats(long customer) {
+        int[] numSeats = new int[1];
+
+        customers.computeIfPresent(customer, (k, c) -> {
+            numSeats[0] = c.numSeats;
+            return c;
+        });
+
+        return numSeats[0];
+    }
+
+    int size() {
+        return customers.size();
+    }
+
+}
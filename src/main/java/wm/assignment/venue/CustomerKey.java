@@ -0,0 +1,71 @@
+package wm.assignment.venue;
+
+/**
+ * Compact keys for customers: a 64-bit hash of the normalized email address. The venue indexes holds and reservations
+ * by these keys rather than by the emails themselves.
+ *
+ * Normalizing trims the address and lower-cases it, so " Ann@Example.com" and "ann@example.com" are the same
+ * customer. Two different addresses can in principle share a key, but with 64 bits that takes billions of customers
+ * to become likely - lookups that hand out holds compare the emails anyway.
+ */
+public final class CustomerKey {
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private CustomerKey() {
+    }
+
+    /**
+     * @return the email address as it is indexed
+     */
+    public static String normalize(String email) {
+        if (email == null) {
+            return "";
+        }
+
+        String trimmed = email.trim();
+        char[] chars = new char[trimmed.length()];
+
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toLowerCase(trimmed.charAt(i));
+        }
+
+        return new String(chars);
+    }
+
+    /**
+     * @return the key of the normalized email address. Computed without building the normalized string
+     */
+    public static long of(String email) {
+        if (email == null) {
+            return mix(FNV_OFFSET_BASIS);
+        }
+
+        int start = 0;
+        int end = email.length();
+
+        // the same characters String.trim drops
+        while (start < end && email.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && email.charAt(end - 1) <= ' ') {
+            end--;
+        }
+
+        // FNV-1a over the characters, then a final mix so that similar addresses spread over all 64 bits
+        long hash = FNV_OFFSET_BASIS;
+
+        for (int i = start; i < end; i++) {
+            hash = (hash ^ Character.toLowerCase(email.charAt(i))) * FNV_PRIME;
+        }
+
+        return mix(hash);
+    }
+
+    private static long mix(long hash) {
+        hash = (hash ^ (hash >>> 33)) * 0xff51afd7ed558ccdL;
+        hash = (hash ^ (hash >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return hash ^ (hash >>> 33);
+    }
+
+}
@@ -0,0 +1,129 @@
+package wm.assignment.venue;
+
+import wm.assignment.exception.VenueException;
+
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * A frozen version of a BitmapRow (see Row.frozen) that shares the words of the live row instead of copying them.
+ *
+ * Each version of the live row's words is a Version. The live row's current version has no successor, and its words
+ * are the live row's own. When the live row changes, it first stores the old values of the words it is about to
+ * change in the current version and links it to a new one. So a word of an older version is found by following the
+ * links until a version that kept it, or the live row itself. That costs nothing for the latest version, and one step
+ * per later change to the row for older ones, which are dropped along with the last snapshot that uses them. Every so
+ * often a version keeps all of the words (see BitmapRow.keepWords), which ends the chain of links.
+ *
+ * Reads of the live row's words take no lock: they are validated against the StampedLock the live row changes its
+ * words under, and go back to the version's links if they raced with a change.
+ */
+class FrozenBitmapRow extends BitmapRow {
+
+    /**
+     * One version of a live row's words. Only the live row writes to it, under the row's lock
+     */
+    static class Version {
+        // the successor of a version that kept all of its words, which never needs to look further
+        private static final Version END = new Version();
+
+        private int firstWord;
+        private long[] oldWords;
+
+        // set last, so that a reader that sees it also sees the words kept for this version
+        private volatile Version next;
+
+        /**
+         * Keeps the words of this version that are about to change, and starts the next version
+         */
+        Version supersede(int firstWord, long[] oldWords) {
+            this.firstWord = firstWord;
+            this.oldWords = oldWords;
+
+            Version next = new Version();
+            this.next = next;
+            return next;
+        }
+
+        /**
+         * Keeps every word of this version, and starts a new version that isn't linked to it
+         */
+        Version supersedeWithAll(long[] oldWords) {
+            this.firstWord = 0;
+            this.oldWords = oldWords;
+            this.next = END;
+            return new Version();
+        }
+    }
+
+    private final BitmapRow source;
+    private final StampedLock wordsLock;
+    private final Version version;
+
+    FrozenBitmapRow(BitmapRow source, StampedLock wordsLock, Version version) {
+        super(source);
+
+        this.source = source;
+        this.wordsLock = wordsLock;
+        this.version = version;
+    }
+
+    @Override
+    long word(int wordIndex) {
+        Version current = version;
+
+        while (true) {
+            Version next = current.next;
+
+            if (next == null) {
+                long stamp = wordsLock.tryOptimisticRead();
+
+                // the live row may have moved on since the successor was checked
+                if (current.next == null) {
+                    long word = source.word(wordIndex);
+
+                    if (wordsLock.validate(stamp)) {
+                        return word;
+                    }
+                }
+
+                continue;
+            }
+
+            int keptIndex = wordIndex - current.firstWord;
+
+            if (keptIndex >= 0 && keptIndex < current.oldWords.length) {
+                return current.oldWords[keptIndex];
+            }
+
+            current = next;
+        }
+    }
+
+    @Override
+    void setWord(int wordIndex, long word) {
+        throw new VenueException("A frozen row can't be updated");
+    }
+
+    @Override
+    Row frozen() {
+        return this;
+    }
+
+    /**
+     * Frozen at the same version of the same live row, even if not the same object
+     */
+    @Override
+    boolean isSameVersion(Row row) {
+        if (row == this) {
+            return true;
+        }
+
+        if (!(row instanceof FrozenBitmapRow)) {
+            return false;
+        }
+
+        FrozenBitmapRow other = (FrozenBitmapRow) row;
+        return other.source == source && other.version == version;
+    }
+
+}
@@ -0,0 +1,23 @@
+package wm.assignment.venue;
+
+/**
+ * One entry of a batch passed to Venue.findAndHoldSeatsBatch - the arguments of a single findAndHoldSeats call
+ */
+public class HoldRequest {
+
+    private int numSeats;
+    private String customerEmail;
+
+    public HoldRequest(int numSeats, String customerEmail) {
+        this.numSeats = numSeats;
+        this.customerEmail = customerEmail;
+    }
+
+    public int getNumSeats() {
+        return numSeats;
+    }
+
+    public String getCustomerEmail() {
+        return customerEmail;
+    }
+}
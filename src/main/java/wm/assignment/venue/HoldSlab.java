@@ -0,0 +1,356 @@
+package wm.assignment.venue;
+
+import wm.assignment.exception.VenueException;
+import wm.assignment.util.LatencyHistogram;
+import wm.assignment.util.TimingWheel;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * The outstanding holds of a venue, kept in a preallocated slab with one slot per seat (every hold has at least one
+ * seat, so the slab can't run out) and a timeout on a TimingWheel each.
+ *
+ * A hold's id says where it lives:
+ *
+ *   [ generation | section | slot ]
+ *
+ * so resolving an id is an array read and a comparison with the id of the hold found there - no hashing, no boxing and
+ * no collisions. The generation is bumped whenever a slot is reused, so the id of a hold that has been reserved or has
+ * expired never resolves to the next hold in its slot. Free slots are reused in FIFO order, so an id can only come
+ * round again after every slot has been through every generation. Generation 0 is never issued, which keeps 0 from
+ * ever being a valid id, and generations start from a random point so that ids issued before a restart are unlikely to
+ * resolve to holds made after it. The section bits keep apart the ids of venues that share a TicketService.
+ *
+ * Lookups and removals are lock-free: a hold is removed by clearing its slot with a compare-and-set, so exactly one of
+ * a reservation and the expiry wins. Only handing out and returning slots takes the slab's lock.
+ *
+ * Extending a hold only moves its deadline, which lives in the hold itself. The timeout stays where it is, and when it
+ * fires at the old deadline it is scheduled again for the time that was added, so an extension is a single
+ * compare-and-set.
+ */
+class HoldSlab {
+    // below this many generations, ids of past holds would come round again too quickly
+    private static final int MIN_GENERATION_BITS = 4;
+
+    // the deadline of a hold that has been removed or has expired, which can't be extended any more
+    private static final long CLAIMED = Long.MIN_VALUE;
+
+    private static final AtomicLongFieldUpdater<SeatHold> EXPIRES_AT =
+        AtomicLongFieldUpdater.newUpdater(SeatHold.class, "expiresAtNanos");
+
+    private final int section;
+    private final int numSlots;
+    private final int slotBits;
+    private final int sectionBits;
+    private final int generationMask;
+
+    private final AtomicReferenceArray<SeatHold> slots;
+    private final AtomicReferenceArray<TimingWheel.Timeout> timeouts;
+
+    // guarded by this - the next generation of each slot, and a FIFO ring of the free slots
+    private final int[] generations;
+    private final int[] freeSlots;
+    private int freeHead;
+    private int freeCount;
+    private int liveCount;
+    private boolean freeSlotsStale;
+
+    private final TimingWheel timingWheel = new TimingWheel(1);
+
+    // how late holds are expired, compared to their TTL - only recorded once set
+    private volatile LatencyHistogram expiryLag;
+
+    /**
+     * @param numSlots    the most holds that can be outstanding at once
+     * @param section     which of numSections venues sharing a TicketService the holds belong to
+     */
+    HoldSlab(int numSlots, int section, int numSections) {
+        if (numSlots <= 0 || section < 0 || section >= numSections) {
+            throw new IllegalArgumentException("Invalid hold slab size or section");
+        }
+
+        this.section = section;
+        this.numSlots = numSlots;
+        this.slotBits = bitsFor(numSlots - 1);
+        this.sectionBits = bitsFor(numSections - 1);
+
+        int generationBits = Integer.SIZE - slotBits - sectionBits;
+
+        if (generationBits < MIN_GENERATION_BITS) {
+            throw new IllegalArgumentException("Too many seats to give holds int ids");
+        }
+
+        this.generationMask = (int) ((1L << generationBits) - 1);
+
+        this.slots = new AtomicReferenceArray<>(numSlots);
+        this.timeouts = new AtomicReferenceArray<>(numSlots);
+        this.generations = new int[numSlots];
+        this.freeSlots = new int[numSlots];
+
+        int firstGeneration = ThreadLocalRandom.current().nextInt();
+
+        for (int slot = 0; slot < numSlots; slot++) {
+            generations[slot] = firstGeneration;
+            freeSlots[slot] = slot;
+        }
+
+        this.freeCount = numSlots;
+    }
+
+    /**
+     * @return the outstanding hold with the given id, or null if it has been removed, has expired or never existed
+     */
+    SeatHold get(int seatHoldId) {
+        int slot = slotOf(seatHoldId);
+
+        if (slot < 0) {
+            return null;
+        }
+
+        SeatHold hold = slots.get(slot);
+        return hold != null && hold.getId() == seatHoldId ? hold : null;
+    }
+
+    /**
+     * Takes a free slot for the hold and gives the hold its id. The hold can't be found until it is put in the slot
+     */
+    void assignId(SeatHold hold) {
+        int slot;
+        int generation;
+
+        synchronized (this) {
+            slot = takeFreeSlot();
+            generation = nextGeneration(generations[slot]);
+            generations[slot] = generation;
+            liveCount++;
+        }
+
+        hold.setId(idOf(generation, slot));
+    }
+
+    /**
+     * Stores a hold in the slot its id was assigned, and schedules it to be removed once ttlMillis has elapsed. The
+     * notifier is called if it is still outstanding at that point
+     */
+    void put(SeatHold hold, long ttlMillis, Consumer<SeatHold> notifier) {
+        int slot = slotOf(hold.getId());
+
+        long expiresAt = deadlineAfter(ttlMillis);
+        hold.expiresAtNanos = expiresAt;
+        slots.set(slot, hold);
+        timeouts.set(slot, schedule(slot, hold, expiresAt, ttlMillis, notifier));
+    }
+
+    /**
+     * Stores a hold that was given its id by an earlier run of the venue, e.g. when replaying a journal, and schedules
+     * its expiry. Only valid before any new hold is given an id
+     */
+    void restore(SeatHold hold, long ttlMillis, Consumer<SeatHold> notifier) {
+        int slot = slotOf(hold.getId());
+
+        if (slot < 0 || slots.get(slot) != null) {
+            throw new VenueException("Hold " + hold.getId() + " was not issued by this venue");
+        }
+
+        long expiresAt = deadlineAfter(ttlMillis);
+        hold.expiresAtNanos = expiresAt;
+        slots.set(slot, hold);
+
+        synchronized (this) {
+            generations[slot] = (hold.getId() >>> (slotBits + sectionBits)) & generationMask;
+            liveCount++;
+            freeSlotsStale = true;
+        }
+
+        timeouts.set(slot, schedule(slot, hold, expiresAt, ttlMillis, notifier));
+    }
+
+    /**
+     * Pushes the hold's expiry back by extraMillis, if it is still outstanding. Doesn't touch the slot or the timing
+     * wheel - see expire
+     * @return the time the hold now has left, in milliseconds, or -1 if it has been removed or has expired
+     */
+    long extend(SeatHold hold, long extraMillis) {
+        long extraNanos = TimeUnit.MILLISECONDS.toNanos(extraMillis);
+        long expiresAt;
+
+        do {
+            expiresAt = hold.expiresAtNanos;
+
+            if (expiresAt == CLAIMED || get(hold.getId()) != hold) {
+                return -1;
+            }
+        } while (!EXPIRES_AT.compareAndSet(hold, expiresAt, expiresAt + extraNanos));
+
+        return Math.max(TimeUnit.NANOSECONDS.toMillis(expiresAt + extraNanos - System.nanoTime()), 0);
+    }
+
+    /**
+     * Removes the hold if it is still outstanding. Clients can use this to race safely against expiration: exactly one
+     * of them will succeed in removing the hold
+     */
+    boolean remove(SeatHold hold) {
+        int slot = slotOf(hold.getId());
+
+        if (slot < 0 || !slots.compareAndSet(slot, hold, null)) {
+            return false;
+        }
+
+        hold.expiresAtNanos = CLAIMED;
+        TimingWheel.Timeout timeout = timeouts.getAndSet(slot, null);
+
+        if (timeout != null) {
+            timeout.cancel();
+        }
+
+        freeSlot(slot);
+        return true;
+    }
+
+    /**
+     * @return the number of outstanding holds
+     */
+    synchronized int size() {
+        return liveCount;
+    }
+
+    /**
+     * Records how long after its TTL each hold is actually expired, in nanoseconds, from now on
+     */
+    void setExpiryLagHistogram(LatencyHistogram expiryLag) {
+        this.expiryLag = expiryLag;
+    }
+
+    private static long deadlineAfter(long ttlMillis) {
+        return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+    }
+
+    /**
+     * The deadline the timeout is for is passed in rather than read from the hold, which may have been extended already
+     */
+    private TimingWheel.Timeout schedule(int slot, SeatHold hold, long scheduledFor, long delayMillis,
+                                         Consumer<SeatHold> notifier) {
+        return timingWheel.schedule(delayMillis, () -> expire(slot, hold, notifier, scheduledFor));
+    }
+
+    /**
+     * Invoked by the timing wheel once the deadline the timeout was scheduled for has passed. If the hold has been
+     * extended since, the timeout is scheduled again for the rest of its time instead
+     */
+    private void expire(int slot, SeatHold hold, Consumer<SeatHold> notifier, long scheduledFor) {
+        long expiresAt = hold.expiresAtNanos;
+
+        if (expiresAt == CLAIMED) {
+            return;
+        }
+
+        long remainingNanos = expiresAt - System.nanoTime();
+
+        if (expiresAt != scheduledFor && remainingNanos > 0) {
+            TimingWheel.Timeout current = timeouts.get(slot);
+            TimingWheel.Timeout next = schedule(slot, hold, expiresAt,
+                TimeUnit.NANOSECONDS.toMillis(remainingNanos + TimeUnit.MILLISECONDS.toNanos(1) - 1), notifier);
+
+            // if the hold was removed meanwhile, remove() may not have seen the new timeout to cancel it
+            if (slots.get(slot) != hold || !timeouts.compareAndSet(slot, current, next)) {
+                next.cancel();
+            }
+            return;
+        }
+
+        // an extension that gets in first wins, and the timeout goes round again
+        if (!EXPIRES_AT.compareAndSet(hold, expiresAt, CLAIMED)) {
+            expire(slot, hold, notifier, scheduledFor);
+            return;
+        }
+
+        if (!slots.compareAndSet(slot, hold, null)) {
+            return;
+        }
+
+        timeouts.set(slot, null);
+        freeSlot(slot);
+
+        LatencyHistogram lag = expiryLag;
+        if (lag != null) {
+            lag.record(System.nanoTime() - expiresAt);
+        }
+
+        notifier.accept(hold);
+    }
+
+    /**
+     * Callers must hold the slab's lock
+     */
+    private int takeFreeSlot() {
+        if (freeSlotsStale) {
+            rebuildFreeSlots();
+        }
+
+        if (freeCount == 0) {
+            // not reached - there is a slot for every seat
+            throw new VenueException("No free hold slots");
+        }
+
+        int slot = freeSlots[freeHead];
+        freeHead = (freeHead + 1) % numSlots;
+        freeCount--;
+
+        return slot;
+    }
+
+    private synchronized void freeSlot(int slot) {
+        liveCount--;
+
+        // a stale ring is rebuilt from the empty slots anyway
+        if (!freeSlotsStale) {
+            freeSlots[(freeHead + freeCount) % numSlots] = slot;
+            freeCount++;
+        }
+    }
+
+    /**
+     * Restored holds go straight into their slots, which leaves those slots in the free ring. Rather than search the
+     * ring for each of them, the ring is rebuilt from the empty slots once, before the next slot is handed out
+     */
+    private void rebuildFreeSlots() {
+        freeHead = 0;
+        freeCount = 0;
+
+        for (int slot = 0; slot < numSlots; slot++) {
+            if (slots.get(slot) == null) {
+                freeSlots[freeCount++] = slot;
+            }
+        }
+
+        freeSlotsStale = false;
+    }
+
+    private int nextGeneration(int generation) {
+        int next = (generation + 1) & generationMask;
+        return next == 0 ? 1 : next;
+    }
+
+    private int idOf(int generation, int slot) {
+        return generation << (slotBits + sectionBits) | section << slotBits | slot;
+    }
+
+    /**
+     * @return the slot the id refers to, or -1 if it can't have been issued by this slab
+     */
+    private int slotOf(int seatHoldId) {
+        int slot = seatHoldId & ((1 << slotBits) - 1);
+        int idSection = (seatHoldId >>> slotBits) & ((1 << sectionBits) - 1);
+
+        return idSection == section && slot < numSlots ? slot : -1;
+    }
+
+    private static int bitsFor(int maxValue) {
+        return Integer.SIZE - Integer.numberOfLeadingZeros(maxValue);
+    }
+
+}
@@ -0,0 +1,153 @@
+package wm.assignment.venue;
+
+import wm.assignment.exception.VenueException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The state of a venue as recorded by its journal: the outstanding holds and the reservations. Every seat that isn't
+ * free belongs to exactly one of them, so this is all it takes to rebuild the rows.
+ *
+ * Journal records and checkpoints are applied here rather than to a Venue. That makes replay a matter of map updates,
+ * and lets the checkpointer keep a copy up to date in the background without touching the live venue.
+ */
+class JournalState {
+
+    /**
+     * A hold read back from the journal that hasn't been reserved or expired (yet)
+     */
+    static class ReplayedHold {
+        final SeatHold hold;
+        final long expiresAtMillis;
+
+        ReplayedHold(SeatHold hold, long expiresAtMillis) {
+            this.hold = hold;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+
+    private final Map<Integer, ReplayedHold> holds;
+    private final ReservationStore reservations;
+
+    JournalState() {
+        this(new LinkedHashMap<>(), new ReservationStore());
+    }
+
+    private JournalState(Map<Integer, ReplayedHold> holds, ReservationStore reservations) {
+        this.holds = holds;
+        this.reservations = reservations;
+    }
+
+    /**
+     * Holds and blocks are immutable, so a copy of the map and the store is an independent copy of the state
+     */
+    JournalState copy() {
+        return new JournalState(new LinkedHashMap<>(holds), reservations.copy());
+    }
+
+    Collection<ReplayedHold> getHolds() {
+        return holds.values();
+    }
+
+    ReservationStore getReservations() {
+        return reservations;
+    }
+
+    /**
+     * @param heldBlocks the held blocks in row order - more than one if the party was split
+     */
+    void hold(int seatHoldId, List<SeatBlock> heldBlocks, String customerEmail, long expiresAtMillis) {
+        holds.put(seatHoldId, new ReplayedHold(new SeatHold(seatHoldId, heldBlocks, customerEmail), expiresAtMillis));
+    }
+
+    void reserve(int seatHoldId, long confirmationCode) {
+        ReplayedHold replayed = removeHold(seatHoldId);
+        List<SeatBlock> reservedBlocks = new ArrayList<>(replayed.hold.getBlocks().size());
+
+        for (SeatBlock heldBlock : replayed.hold.getBlocks()) {
+            reservedBlocks.add(new SeatBlock(SeatBlockType.RESERVED,
+                heldBlock.getRowNum(), heldBlock.getStartPosition(), heldBlock.getNumSeats()));
+        }
+
+        reservations.put(confirmationCode, reservedBlocks, replayed.hold.getCustomerEmail());
+    }
+
+    void expire(int seatHoldId) {
+        removeHold(seatHoldId);
+    }
+
+    /**
+     * In LockMode.OPTIMISTIC there is no row lock to order an extension with the reservation or expiry of the same
+     * hold, so an extension that lost the race can be journaled after them - it is ignored
+     */
+    void extend(int seatHoldId, long expiresAtMillis) {
+        ReplayedHold replayed = holds.get(seatHoldId);
+
+        if (replayed != null) {
+            holds.put(seatHoldId, new ReplayedHold(replayed.hold, expiresAtMillis));
+        }
+    }
+
+    /**
+     * Gives back the seats at the end of a reservation, like Venue.releaseSeats - the reservation goes once it has
+     * none left
+     */
+    void release(long confirmationCode, int numSeats) {
+        List<SeatBlock> blocks = reservations.getBlocks(confirmationCode);
+
+        if (numSeats > blocks.stream().mapToInt(SeatBlock::getNumSeats).sum()) {
+            throw new VenueException("Journal releases seats of unknown reservation " + confirmationCode);
+        }
+
+        reservations.replace(confirmationCode, blocks, ReservationStore.keptBlocks(blocks, numSeats));
+    }
+
+    /**
+     * Rebuilds the rows and reservations of a freshly constructed venue from this state
+     * @return the outstanding holds, which the caller still has to start tracking for expiry
+     */
+    Collection<ReplayedHold> restore(Venue venue) {
+        Map<Integer, List<SeatBlock>> takenBlocks = new HashMap<>();
+
+        for (ReplayedHold replayed : holds.values()) {
+            for (SeatBlock block : replayed.hold.getBlocks()) {
+                takenBlocks.computeIfAbsent(block.getRowNum(), r -> new ArrayList<>()).add(block);
+            }
+        }
+
+        reservations.forEach((code, blocks, customerEmail) -> {
+            for (SeatBlock block : blocks) {
+                takenBlocks.computeIfAbsent(block.getRowNum(), r -> new ArrayList<>()).add(block);
+            }
+        });
+
+        takenBlocks.forEach((rowNum, blocks) -> {
+            if (rowNum < 0 || rowNum >= venue.getNumRows()) {
+                throw new VenueException("Cannot restore row " + rowNum + " - the venue has no such row");
+            }
+
+            blocks.sort(Comparator.comparingInt(SeatBlock::getStartPosition));
+            venue.restoreRow(Row.fromBlocks(venue.newRow(rowNum), blocks));
+        });
+
+        reservations.forEach(venue::restoreReservation);
+        return holds.values();
+    }
+
+    private ReplayedHold removeHold(int seatHoldId) {
+        ReplayedHold replayed = holds.remove(seatHoldId);
+
+        if (replayed == null) {
+            throw new VenueException("Journal refers to unknown hold " + seatHoldId);
+        }
+
+        return replayed;
+    }
+
+}
@@ -0,0 +1,23 @@
+package wm.assignment.venue;
+
+/**
+ * Controls how the Venue serializes updates to its rows
+ */
+public enum LockMode {
+    /**
+     * A single monitor on the Venue guards every hold and reservation
+     */
+    VENUE,
+
+    /**
+     * Each Row has its own lock. Searches run without a lock and only the row being updated is locked
+     */
+    ROW,
+
+    /**
+     * No locks at all. Rows are immutable, so an update builds the new version of a row and swaps it in with a
+     * compare-and-set, starting again from the latest version if another thread got there first. Needs
+     * RowModel.BLOCK_LIST
+     */
+    OPTIMISTIC
+}
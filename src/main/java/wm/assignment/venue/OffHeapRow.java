@@ -0,0 +1,58 @@
+package wm.assignment.venue;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A BitmapRow that keeps its words outside the Java heap, in a direct ByteBuffer shared by every row of a venue - the
+ * seat map. Each row owns a fixed slice of the map - in a venue's map, row n is in slice n.
+ *
+ * The heap only holds the Row object itself and its counters, so a venue of millions of seats costs the garbage
+ * collector a few objects per row rather than per block of seats. The map is freed along with its ByteBuffer.
+ */
+class OffHeapRow extends BitmapRow {
+    private final ByteBuffer seatMap;
+    private final int offset;
+
+    /**
+     * Clears the given slice of the seat map and wraps it - the seats start out unreserved
+     */
+    OffHeapRow(int rowNum, int numSeats, ByteBuffer seatMap, int slice) {
+        super(rowNum, numSeats);
+
+        this.seatMap = seatMap;
+        this.offset = slice * bytesPerRow(numSeats);
+
+        for (int wordIndex = 0; wordIndex < numWords(numSeats); wordIndex++) {
+            setWord(wordIndex, 0);
+        }
+    }
+
+    /**
+     * Allocates a seat map with a slice for each of numRows rows
+     */
+    static ByteBuffer allocateSeatMap(int numRows, int numSeats) {
+        long size = (long) numRows * bytesPerRow(numSeats);
+
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many seats for a single seat map");
+        }
+
+        return ByteBuffer.allocateDirect((int) size).order(ByteOrder.nativeOrder());
+    }
+
+    private static int bytesPerRow(int numSeats) {
+        return numWords(numSeats) * Long.BYTES;
+    }
+
+    @Override
+    long word(int wordIndex) {
+        return seatMap.getLong(offset + wordIndex * Long.BYTES);
+    }
+
+    @Override
+    void setWord(int wordIndex, long word) {
+        seatMap.putLong(offset + wordIndex * Long.BYTES, word);
+    }
+
+}
@@ -0,0 +1,26 @@
+package wm.assignment.venue;
+
+/**
+ * A BitmapRow that keeps its words in a long[] on the heap
+ */
+class PackedRow extends BitmapRow {
+    private final long[] words;
+
+    PackedRow(int rowNum, int numSeats) {
+        super(rowNum, numSeats);
+
+        // all zeroes - every seat starts out unreserved
+        this.words = new long[numWords(numSeats)];
+    }
+
+    @Override
+    long word(int wordIndex) {
+        return words[wordIndex];
+    }
+
+    @Override
+    void setWord(int wordIndex, long word) {
+        words[wordIndex] = word;
+    }
+
+}
@@ -0,0 +1,409 @@
+package wm.assignment.venue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The reservations of a venue, keyed by confirmation code: an open-addressing hash table of longs with linear probing.
+ *
+ * Each entry is three longs in one flat array - the code, the reserved block packed as row, start position and number
+ * of seats, and the CustomerKey of the customer who made the reservation - so a reservation costs 24 bytes divided by
+ * the load factor, with no per-entry objects at all. The SeatBlock handed out by get is rebuilt from the packed value.
+ * The customer's email, which a release has to match, sits in an array of its own next to the table, one slot per
+ * entry: it is the String the hold had, so a reservation adds one reference to what the hold kept.
+ *
+ * Lookups are lock-free, apart from the email's, which is only read to check a release. Writers take the store's lock,
+ * write the block and customer before the code (all volatile writes), and build a bigger table off to the side before
+ * publishing it, so a reader that finds a code always finds the rest of its entry.
+ *
+ * A removed reservation leaves a tombstone: its code stays in place, so that probes for the codes behind it still find
+ * them, and its block is overwritten with a value no block packs to. Tombstones count towards the load factor, and are
+ * dropped the next time the table is rebuilt.
+ *
+ * A party split over several rows (see Venue.setSplitPartyRows) has a reservation of several blocks. The table keeps
+ * the first one, and the whole list goes in a side map that is written before the code is published and read after
+ * it. Split parties are the exception, so the map stays small and ordinary reservations never touch it.
+ */
+class ReservationStore {
+
+    /**
+     * Receives every reservation in the store
+     */
+    interface Visitor {
+        void visit(long code, List<SeatBlock> blocks, String customerEmail);
+    }
+
+    private static final int MIN_CAPACITY = 16;
+    private static final int MAX_LOAD_PERCENT = 70;
+    private static final int ENTRY_SIZE = 3;
+
+    private static final int ROW_BITS = 22;
+    private static final int POSITION_BITS = 21;
+    private static final long POSITION_MASK = (1L << POSITION_BITS) - 1;
+
+    // 0 stands for an empty slot - ConfirmationCode never issues it
+    private static final long EMPTY = 0;
+
+    // the block of a removed reservation - a block would need more seats than a row can have to pack to it
+    private static final long TOMBSTONE = -1;
+
+    // [code, packed block, customer] entries, with a power of two number of slots
+    private volatile AtomicLongArray table;
+
+    // the customer email of each slot of the table - guarded by this
+    private String[] emails;
+
+    // every block of the reservations that have more than one, in row order
+    private final ConcurrentHashMap<Long, List<SeatBlock>> splitBlocks;
+
+    // guarded by this
+    private int size;
+    private int tombstones;
+
+    ReservationStore() {
+        this(new AtomicLongArray(ENTRY_SIZE * MIN_CAPACITY), new String[MIN_CAPACITY], new ConcurrentHashMap<>(), 0, 0);
+    }
+
+    private ReservationStore(AtomicLongArray table, String[] emails,
+                             ConcurrentHashMap<Long, List<SeatBlock>> splitBlocks, int size, int tombstones) {
+        this.table = table;
+        this.emails = emails;
+        this.splitBlocks = splitBlocks;
+        this.size = size;
+        this.tombstones = tombstones;
+    }
+
+    /**
+     * @return whether blocks in a venue of this size can be packed into a long
+     */
+    static boolean fits(int numRows, int numColumns) {
+        return numRows <= 1 << ROW_BITS && numColumns < 1 << POSITION_BITS;
+    }
+
+    /**
+     * Adds a reservation, unless the code is already taken
+     * @param customerEmail the email of the customer the reservation belongs to, as the customer gave it
+     * @return false if there already is a reservation with the code, or one that was removed since the table was
+     *         last rebuilt
+     */
+    boolean put(long code, SeatBlock block, String customerEmail) {
+        return put(code, block, null, customerEmail);
+    }
+
+    /**
+     * Adds a reservation of one or more blocks, unless the code is already taken - see put
+     */
+    boolean put(long code, List<SeatBlock> blocks, String customerEmail) {
+        return blocks.size() == 1
+            ? put(code, blocks.get(0), null, customerEmail)
+            : put(code, blocks.get(0), Collections.unmodifiableList(new ArrayList<>(blocks)), customerEmail);
+    }
+
+    private synchronized boolean put(long code, SeatBlock block, List<SeatBlock> blocks, String customerEmail) {
+        if (code == EMPTY) {
+            throw new IllegalArgumentException("0 is not a valid confirmation code");
+        }
+
+        if ((size + tombstones + 1) * 100L > slots(table) * (long) MAX_LOAD_PERCENT) {
+            // only grow if the live entries need it - otherwise clearing out the tombstones makes room
+            int numSlots = (size + 1) * 200L > slots(table) * (long) MAX_LOAD_PERCENT ? slots(table) * 2 : slots(table);
+            String[] resizedEmails = new String[numSlots];
+            table = resized(table, emails, resizedEmails);
+            emails = resizedEmails;
+            tombstones = 0;
+        }
+
+        AtomicLongArray t = table;
+        int slot = find(t, code);
+
+        // a tombstone keeps its code taken, so a cancelled confirmation code isn't handed out again right away
+        if (t.get(ENTRY_SIZE * slot) == code) {
+            return false;
+        }
+
+        if (blocks != null) {
+            splitBlocks.put(code, blocks);
+        }
+
+        emails[slot] = customerEmail;
+        t.set(ENTRY_SIZE * slot + 1, pack(block));
+        t.set(ENTRY_SIZE * slot + 2, CustomerKey.of(customerEmail));
+        t.set(ENTRY_SIZE * slot, code);
+        size++;
+
+        return true;
+    }
+
+    /**
+     * Swaps the blocks of a reservation for smaller ones, e.g. when some of its seats are given back. Fails if the
+     * reservation no longer has the expected blocks, so concurrent updates to the same reservation can't both succeed
+     * @param blocks the new blocks, or an empty list to remove the reservation
+     * @return false if there is no reservation with the code, or its blocks aren't the expected ones
+     */
+    synchronized boolean replace(long code, List<SeatBlock> expected, List<SeatBlock> blocks) {
+        if (code == EMPTY) {
+            return false;
+        }
+
+        AtomicLongArray t = table;
+        int slot = find(t, code);
+
+        if (t.get(ENTRY_SIZE * slot) != code || !sameBlocks(getBlocks(t, slot, code), expected)) {
+            return false;
+        }
+
+        // in the order getBlocks reads them back - a reader sees either the old blocks or the new ones
+        if (blocks.isEmpty()) {
+            t.set(ENTRY_SIZE * slot + 1, TOMBSTONE);
+            emails[slot] = null;
+            splitBlocks.remove(code);
+            size--;
+            tombstones++;
+        }
+        else if (blocks.size() == 1) {
+            t.set(ENTRY_SIZE * slot + 1, pack(blocks.get(0)));
+            splitBlocks.remove(code);
+        }
+        else {
+            splitBlocks.put(code, Collections.unmodifiableList(new ArrayList<>(blocks)));
+            t.set(ENTRY_SIZE * slot + 1, pack(blocks.get(0)));
+        }
+
+        return true;
+    }
+
+    /**
+     * @return the reserved block - the first one, if the reservation has several - or null if there is no reservation
+     *         with the code
+     */
+    SeatBlock get(long code) {
+        if (code == EMPTY) {
+            return null;
+        }
+
+        AtomicLongArray t = table;
+        int slot = find(t, code);
+
+        if (t.get(ENTRY_SIZE * slot) != code) {
+            return null;
+        }
+
+        long packed = t.get(ENTRY_SIZE * slot + 1);
+        return packed != TOMBSTONE ? unpack(packed) : null;
+    }
+
+    /**
+     * @return the reserved blocks in row order, or an empty list if there is no reservation with the code
+     */
+    List<SeatBlock> getBlocks(long code) {
+        if (code == EMPTY) {
+            return Collections.emptyList();
+        }
+
+        AtomicLongArray t = table;
+        return getBlocks(t, find(t, code), code);
+    }
+
+    /**
+     * @return the CustomerKey of the customer who made the reservation, or 0 if there is no reservation with the code
+     */
+    long getCustomer(long code) {
+        if (code == EMPTY) {
+            return 0;
+        }
+
+        AtomicLongArray t = table;
+        int slot = find(t, code);
+
+        return t.get(ENTRY_SIZE * slot) == code && t.get(ENTRY_SIZE * slot + 1) != TOMBSTONE
+            ? t.get(ENTRY_SIZE * slot + 2)
+            : 0;
+    }
+
+    /**
+     * @return the email of the customer who made the reservation, as they gave it, or null if there is no reservation
+     *         with the code
+     */
+    synchronized String getCustomerEmail(long code) {
+        if (code == EMPTY) {
+            return null;
+        }
+
+        return emails[find(table, code)];
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return an independent copy of the store
+     */
+    synchronized ReservationStore copy() {
+        AtomicLongArray t = table;
+        AtomicLongArray copy = new AtomicLongArray(t.length());
+
+        for (int i = 0; i < t.length(); i++) {
+            copy.set(i, t.get(i));
+        }
+
+        return new ReservationStore(copy, emails.clone(), new ConcurrentHashMap<>(splitBlocks), size, tombstones);
+    }
+
+    /**
+     * Visits the reservations in no particular order, under the store's lock
+     */
+    synchronized void forEach(Visitor visitor) {
+        AtomicLongArray t = table;
+
+        for (int slot = 0; slot < slots(t); slot++) {
+            long code = t.get(ENTRY_SIZE * slot);
+            long packed = t.get(ENTRY_SIZE * slot + 1);
+
+            if (code != EMPTY && packed != TOMBSTONE) {
+                List<SeatBlock> blocks = splitBlocks.get(code);
+                visitor.visit(code, blocks != null ? blocks : Collections.singletonList(unpack(packed)), emails[slot]);
+            }
+        }
+    }
+
+    /**
+     * The blocks that stay reserved when the last numSeats seats of a reservation are given back, in row order
+     */
+    static List<SeatBlock> keptBlocks(List<SeatBlock> blocks, int numSeats) {
+        List<SeatBlock> kept = new ArrayList<>(blocks.size());
+        int toRelease = numSeats;
+
+        for (int i = blocks.size() - 1; i >= 0; i--) {
+            SeatBlock block = blocks.get(i);
+
+            if (toRelease < block.getNumSeats()) {
+                kept.add(0, new SeatBlock(SeatBlockType.RESERVED, block.getRowNum(), block.getStartPosition(),
+                    block.getNumSeats() - toRelease));
+                toRelease = 0;
+            }
+            else {
+                toRelease -= block.getNumSeats();
+            }
+        }
+
+        return kept;
+    }
+
+    /**
+     * The seats given back when the last numSeats seats of a reservation are released, one block per row, in row order
+     */
+    static List<SeatBlock> releasedBlocks(List<SeatBlock> blocks, int numSeats) {
+        List<SeatBlock> released = new ArrayList<>(blocks.size());
+        int toRelease = numSeats;
+
+        for (int i = blocks.size() - 1; i >= 0 && toRelease > 0; i--) {
+            SeatBlock block = blocks.get(i);
+            int n = Math.min(toRelease, block.getNumSeats());
+
+            released.add(0, new SeatBlock(SeatBlockType.RESERVED, block.getRowNum(),
+                block.getStartPosition() + block.getNumSeats() - n, n));
+            toRelease -= n;
+        }
+
+        return released;
+    }
+
+    /**
+     * Reads the blocks of the entry in the slot, if it holds the code. The split blocks are read after the code and
+     * before the packed block, see replace
+     */
+    private List<SeatBlock> getBlocks(AtomicLongArray t, int slot, long code) {
+        if (t.get(ENTRY_SIZE * slot) != code) {
+            return Collections.emptyList();
+        }
+
+        List<SeatBlock> blocks = splitBlocks.get(code);
+        long packed = t.get(ENTRY_SIZE * slot + 1);
+
+        if (packed == TOMBSTONE) {
+            return Collections.emptyList();
+        }
+
+        return blocks != null ? blocks : Collections.singletonList(unpack(packed));
+    }
+
+    private static boolean sameBlocks(List<SeatBlock> blocks, List<SeatBlock> others) {
+        if (blocks.size() != others.size()) {
+            return false;
+        }
+
+        for (int i = 0; i < blocks.size(); i++) {
+            if (pack(blocks.get(i)) != pack(others.get(i))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return the slot holding the code, or the empty slot where it would go
+     */
+    private static int find(AtomicLongArray t, long code) {
+        int mask = slots(t) - 1;
+        int slot = hash(code) & mask;
+        long existing;
+
+        while ((existing = t.get(ENTRY_SIZE * slot)) != EMPTY && existing != code) {
+            slot = (slot + 1) & mask;
+        }
+
+        return slot;
+    }
+
+    /**
+     * Moves the live entries to a new table the size of resizedEmails, and their emails to resizedEmails
+     */
+    private static AtomicLongArray resized(AtomicLongArray t, String[] emails, String[] resizedEmails) {
+        AtomicLongArray resized = new AtomicLongArray(ENTRY_SIZE * resizedEmails.length);
+
+        for (int slot = 0; slot < slots(t); slot++) {
+            long code = t.get(ENTRY_SIZE * slot);
+
+            if (code != EMPTY && t.get(ENTRY_SIZE * slot + 1) != TOMBSTONE) {
+                int newSlot = find(resized, code);
+
+                for (int i = 0; i < ENTRY_SIZE; i++) {
+                    resized.set(ENTRY_SIZE * newSlot + i, t.get(ENTRY_SIZE * slot + i));
+                }
+
+                resizedEmails[newSlot] = emails[slot];
+            }
+        }
+
+        return resized;
+    }
+
+    private static int slots(AtomicLongArray t) {
+        return t.length() / ENTRY_SIZE;
+    }
+
+    /**
+     * Codes are random, but spread them anyway in case they ever aren't
+     */
+    private static int hash(long code) {
+        long h = code * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static long pack(SeatBlock block) {
+        return (long) block.getRowNum() << (2 * POSITION_BITS)
+            | (long) block.getStartPosition() << POSITION_BITS
+            | block.getNumSeats();
+    }
+
+    private static SeatBlock unpack(long packed) {
+        return new SeatBlock(SeatBlockType.RESERVED, (int) (packed >>> (2 * POSITION_BITS)),
+            (int) ((packed >>> POSITION_BITS) & POSITION_MASK), (int) (packed & POSITION_MASK));
+    }
+
+}
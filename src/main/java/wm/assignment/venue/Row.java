@@ -4,13 +4,15 @@ import wm.assignment.exception.VenueException;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.function.Predicate;
 import java.util.stream.Stream;
 
 /**
- * Represents a Row in the Venue, which consists of a set of SeatBlock objects
+ * Represents a Row in the Venue. How the seats are stored is up to the RowModel implementation.
+ *
+ * Updates return the row that should replace this one in the Venue. Depending on the model, that is either a new
+ * Row or this row, updated in place. Either way, callers must hold the row's lock.
  */
-class Row {
+abstract class Row {
     class HoldUpdate {
         Row row;
         SeatHold hold;
@@ -21,164 +23,191 @@ class Row {
         }
     }
 
+    /**
+     * Receives the runs of a row - see forEachRun
+     */
+    interface RunVisitor {
+        void visit(SeatBlockType type, int numSeats);
+    }
 
-    // filters
-    private static Predicate<SeatBlock> onlyUnreserved = (SeatBlock b) -> b.getBlockType() == SeatBlockType.UNRESERVED;
-
-    private List<SeatBlock> blocks;
-    private int rowNum;
-    private int numSeats;
+    private final int rowNum;
+    private final int numSeats;
 
     Row(int rowNum, int numSeats) {
-        this(rowNum, numSeats, null);
-    }
+        if (numSeats <= 0) {
+            throw new VenueException("Cannot create a row with less than one seat");
+        }
 
-    private Row(int rowNum, int numSeats, List<SeatBlock> blocks) {
         this.rowNum = rowNum;
         this.numSeats = numSeats;
+    }
 
-        if (numSeats <= 0) {
-            throw new VenueException("Cannot create a row with less than one seat");
+    /**
+     * Creates an empty (fully unreserved) row using the given model. An OFF_HEAP row gets a seat map of its own - the
+     * rows of a Venue share one
+     */
+    static Row create(RowModel rowModel, int rowNum, int numSeats) {
+        switch (rowModel) {
+            case PACKED:
+                return new PackedRow(rowNum, numSeats);
+            case OFF_HEAP:
+                return new OffHeapRow(rowNum, numSeats, OffHeapRow.allocateSeatMap(1, numSeats), 0);
+            case BLOCK_LIST:
+            default:
+                return new BlockListRow(rowNum, numSeats);
         }
+    }
+
+    /**
+     * Rebuilds a row from its held and reserved blocks, in seat order. Every other seat is unreserved. The blocks are
+     * used as they are, so holds that refer to them can be released or reserved against the new row
+     */
+    static Row fromBlocks(RowModel rowModel, int rowNum, int numSeats, List<SeatBlock> takenBlocks) {
+        return fromBlocks(create(rowModel, rowNum, numSeats), takenBlocks);
+    }
+
+    /**
+     * Like fromBlocks, but builds on a newly created row of the right model. Rows that are updated in place are
+     * filled in and returned, so an OFF_HEAP row stays in its venue's seat map
+     */
+    static Row fromBlocks(Row emptyRow, List<SeatBlock> takenBlocks) {
+        int rowNum = emptyRow.getRowNum();
+        int numSeats = emptyRow.getNumSeats();
+        List<SeatBlock> blocks = new ArrayList<>(takenBlocks.size() * 2 + 1);
+        int nextSeat = 0;
+        int heldSeatCount = 0;
+        int reservedSeatCount = 0;
+
+        for (SeatBlock block : takenBlocks) {
+            if (block.getStartPosition() < nextSeat || block.getStartPosition() + block.getNumSeats() > numSeats) {
+                throw new VenueException("Cannot rebuild row " + rowNum + " - blocks overlap or don't fit the row");
+            }
+
+            if (block.getStartPosition() > nextSeat) {
+                blocks.add(new SeatBlock(SeatBlockType.UNRESERVED, rowNum, nextSeat,
+                    block.getStartPosition() - nextSeat));
+            }
+
+            blocks.add(block);
+            nextSeat = block.getStartPosition() + block.getNumSeats();
 
-        if (blocks != null) {
-            this.blocks = blocks;
+            if (block.getBlockType() == SeatBlockType.HOLD) {
+                heldSeatCount += block.getNumSeats();
+            }
+            else {
+                reservedSeatCount += block.getNumSeats();
+            }
         }
-        else {
-            this.blocks = new ArrayList<>();
 
-            // initialize an empty (unreserved) block of seats from seat 0 to the number of seats
-            this.blocks.add(new SeatBlock(SeatBlockType.UNRESERVED, rowNum, 0, numSeats));
+        if (nextSeat < numSeats) {
+            blocks.add(new SeatBlock(SeatBlockType.UNRESERVED, rowNum, nextSeat, numSeats - nextSeat));
         }
 
+        int availableSeatCount = numSeats - heldSeatCount - reservedSeatCount;
+        return emptyRow.withBlocks(blocks, availableSeatCount, heldSeatCount);
     }
 
     int getRowNum() {
         return this.rowNum;
     }
 
-    List<SeatBlock> getBlocks() {
-        return blocks;
+    int getNumSeats() {
+        return this.numSeats;
     }
 
     /**
-     * Computes the total number of empty seats in this row
-     * @return
+     * The seats in the row as blocks, in seat order. Models that don't keep SeatBlock objects around build them on
+     * demand, and may report adjacent blocks of the same type as a single block
      */
-    int totalAvailableSeatCount() {
-        return blocks.stream()
-            .filter(onlyUnreserved)
-            .map(SeatBlock::getNumSeats)
-            .reduce((a, b) -> a + b)
-            .orElse(0);
-
-    }
-
+    abstract List<SeatBlock> getBlocks();
 
     /**
-     * Finds the first unreserved block in the row that can hold the given number of seats
-     * @param numSeats
-     * @return
+     * Visits the seats in the row as runs of one type, in seat order. Like getBlocks, adjacent runs may have the same
+     * type. Rows that can read their seats directly override this to skip building SeatBlocks
      */
-    Stream<SeatBlock> firstAvailableBlock(int numSeats) {
-        return blocks.stream()
-            .filter(onlyUnreserved)
-            .filter(b -> b.getNumSeats() >= numSeats);
+    void forEachRun(RunVisitor visitor) {
+        for (SeatBlock block : getBlocks()) {
+            visitor.visit(block.getBlockType(), block.getNumSeats());
+        }
     }
 
     /**
-     * Holds seats from the given seatBlock for the given customerEmail
+     * See fromBlocks - blocks covers every seat in the row, and this row is still empty
      */
-    HoldUpdate holdSeats(SeatBlock block, int numSeats, String customerEmail) {
-        // sanity check
-        if (block.getNumSeats() < numSeats) {
-            throw new VenueException("Cannot reserve seats - not enough are available in the block");
-        }
-
-        Row newRow = new Row(this.rowNum, this.numSeats, new ArrayList<>());
-        SeatBlock holdBlock = new SeatBlock(SeatBlockType.HOLD, block.getRowNum(), block.getStartPosition(), numSeats);
-
-        // loop through the current set of blocks and generate a new one
-        for (SeatBlock sb : blocks) {
-            // add all other blocks to the new row untouched, maintaining their order
-            if (sb != block) {
-                newRow.blocks.add(sb);
-                continue;
-            }
-
-            // create a block for this reservation add add it to the right location in the row
-            newRow.blocks.add(holdBlock);
+    abstract Row withBlocks(List<SeatBlock> blocks, int availableSeatCount, int heldSeatCount);
 
-            // if we have extra seats left over in the block, add it after the new hold block
-            if (sb.getNumSeats() > numSeats) {
-                int startPosition = sb.getStartPosition() + numSeats;
-                SeatBlock remainingAvailableBlock = new SeatBlock(SeatBlockType.UNRESERVED, sb.getRowNum(),
-                    startPosition, sb.getNumSeats() - numSeats);
-
-                newRow.blocks.add(remainingAvailableBlock);
-            }
+    /**
+     * The total number of empty seats in this row
+     * @return
+     */
+    abstract int totalAvailableSeatCount();
 
-        }
+    abstract int heldSeatCount();
 
-        return new HoldUpdate(newRow, new SeatHold(holdBlock, customerEmail));
+    int reservedSeatCount() {
+        return numSeats - totalAvailableSeatCount() - heldSeatCount();
     }
 
-    Row withBlockUnreserved(SeatBlock blockToReplace) {
-        SeatBlock newUnreservedBlock = new SeatBlock(SeatBlockType.UNRESERVED,
-            blockToReplace.getRowNum(), blockToReplace.getStartPosition(), blockToReplace.getNumSeats());
-
-        int blockIndex = blocks.indexOf(blockToReplace);
-        List<SeatBlock> newBlocks = new ArrayList<>(blocks);
-        newBlocks.set(blockIndex, newUnreservedBlock);
-
-        return withBlocksMerged(rowNum, numSeats, newBlocks);
-    }
+    /**
+     * The size of the largest unreserved block in this row
+     * @return
+     */
+    abstract int largestAvailableBlock();
 
-    Row withBlockReserved(SeatBlock heldBlock) {
-        SeatBlock newReservedBlock = new SeatBlock(SeatBlockType.RESERVED,
-            heldBlock.getRowNum(), heldBlock.getStartPosition(), heldBlock.getNumSeats());
+    /**
+     * Finds the unreserved blocks in the row that can hold the given number of seats, first one first
+     * @param numSeats
+     * @return
+     */
+    abstract Stream<SeatBlock> firstAvailableBlock(int numSeats);
 
-        int blockIndex = blocks.indexOf(heldBlock);
-        List<SeatBlock> newBlocks = new ArrayList<>(blocks);
-        newBlocks.set(blockIndex, newReservedBlock);
+    /**
+     * Finds every unreserved block in the row that can hold the given number of seats, in seat order
+     */
+    abstract Stream<SeatBlock> availableBlocks(int numSeats);
 
-        return new Row(rowNum, numSeats, newBlocks);
+    /**
+     * Holds seats from the start of the given unreserved seatBlock for the given customerEmail
+     */
+    HoldUpdate holdSeats(SeatBlock block, int numSeats, String customerEmail) {
+        return holdSeats(block, block.getStartPosition(), numSeats, customerEmail);
     }
 
-    private static Row withBlocksMerged(int rowNum, int numSeats, List<SeatBlock> unmergedBlocks) {
-        List<SeatBlock> blocks = new ArrayList<>();
-
-        SeatBlock currentUnreservedBlock = null;
-
-        for (SeatBlock sb : unmergedBlocks) {
-            // case 1: if we find a block that isn't unreserved, we no longer have a contiguous unreserved block
-            if (sb.getBlockType() != SeatBlockType.UNRESERVED) {
-                if (currentUnreservedBlock != null) {
-                    // if we're currently processing an unreserved block and we've encountered another block that is reserved,
-                    // we want to add it to the new list
-                    blocks.add(currentUnreservedBlock);
-                    currentUnreservedBlock = null;
-                }
+    /**
+     * Holds seats starting at startPosition, which must leave numSeats seats within the given unreserved seatBlock
+     */
+    abstract HoldUpdate holdSeats(SeatBlock block, int startPosition, int numSeats, String customerEmail);
 
-                blocks.add(sb);
-                continue;
-            }
+    /**
+     * Returns the seats of a held block to the unreserved pool, merging them with any neighbouring unreserved seats
+     */
+    abstract Row withBlockUnreserved(SeatBlock heldBlock);
 
-            // case 2: here we've found an unreserved block - this block will be come the current unreserved block
-            if (currentUnreservedBlock == null) {
-                currentUnreservedBlock = sb;
-                continue;
-            }
+    /**
+     * Turns a held block into a reserved one
+     */
+    abstract Row withBlockReserved(SeatBlock heldBlock);
 
-            currentUnreservedBlock = SeatBlock.merge(currentUnreservedBlock, sb);
-        }
+    /**
+     * Returns reserved seats to the unreserved pool, merging them with any neighbouring unreserved seats. The seats can
+     * be part of a larger reserved block, when only some of a reservation's seats are given back
+     */
+    abstract Row withSeatsReleased(SeatBlock reservedSeats);
 
-        // add the last unreserved block if it hasn't been processed
-        if (currentUnreservedBlock != null) {
-            blocks.add(currentUnreservedBlock);
-        }
+    /**
+     * This row as it is now, in a form that is never updated - see VenueSnapshot. Must be called under the row's lock.
+     * Rows that are never updated in place are their own frozen version
+     */
+    Row frozen() {
+        return this;
+    }
 
-        return new Row(rowNum, numSeats, blocks);
+    /**
+     * Whether the given frozen row stands for the same version of the row as this frozen row - rows frozen twice
+     * without a change in between need not be the same object
+     */
+    boolean isSameVersion(Row row) {
+        return row == this;
     }
 
 }
@@ -0,0 +1,91 @@
+package wm.assignment.venue;
+
+import java.util.Arrays;
+
+/**
+ * A segment tree over the rows of a Venue, keyed by the size of each row's largest unreserved block. Each internal
+ * node stores the maximum of its children, so the first row that can fit a request is found in O(log rows) and a
+ * request that fits nowhere is rejected by looking at the root alone.
+ */
+class RowCapacityIndex {
+    private final int numRows;
+    private final int numLeaves;
+
+    // tree[1] is the root, the children of node i are 2i and 2i + 1 and the leaves start at numLeaves
+    private final int[] tree;
+
+    RowCapacityIndex(int numRows, int initialCapacity) {
+        this.numRows = numRows;
+
+        int leaves = 1;
+        while (leaves < numRows) {
+            leaves <<= 1;
+        }
+        this.numLeaves = leaves;
+        this.tree = new int[2 * leaves];
+
+        // every row starts out with the same capacity, the padding leaves past the last row stay at 0
+        Arrays.fill(tree, numLeaves, numLeaves + numRows, initialCapacity);
+        for (int node = numLeaves - 1; node > 0; node--) {
+            tree[node] = Math.max(tree[2 * node], tree[2 * node + 1]);
+        }
+    }
+
+    /**
+     * Records the size of the largest unreserved block in the given row
+     */
+    synchronized void update(int rowNum, int largestAvailableBlock) {
+        int node = numLeaves + rowNum;
+        tree[node] = largestAvailableBlock;
+
+        // walk back up to the root, stopping early once a parent is unaffected
+        for (node >>= 1; node > 0; node >>= 1) {
+            int max = Math.max(tree[2 * node], tree[2 * node + 1]);
+
+            if (tree[node] == max) {
+                break;
+            }
+
+            tree[node] = max;
+        }
+    }
+
+    /**
+     * @return the size of the largest unreserved block anywhere in the venue
+     */
+    synchronized int largestAvailableBlock() {
+        return tree[1];
+    }
+
+    /**
+     * Finds the first row, starting at fromRow, whose largest unreserved block can fit the given number of seats
+     * @return the row number or -1 if no such row exists
+     */
+    synchronized int firstRowWithCapacity(int numSeats, int fromRow) {
+        if (fromRow >= numRows || tree[1] < numSeats) {
+            return -1;
+        }
+
+        return find(1, 0, numLeaves - 1, numSeats, fromRow);
+    }
+
+    private int find(int node, int lo, int hi, int numSeats, int fromRow) {
+        if (hi < fromRow || tree[node] < numSeats) {
+            return -1;
+        }
+
+        if (lo == hi) {
+            return lo;
+        }
+
+        int mid = (lo + hi) >>> 1;
+        int rowNum = find(2 * node, lo, mid, numSeats, fromRow);
+
+        if (rowNum >= 0) {
+            return rowNum;
+        }
+
+        return find(2 * node + 1, mid + 1, hi, numSeats, fromRow);
+    }
+
+}
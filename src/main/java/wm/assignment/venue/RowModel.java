@@ -0,0 +1,22 @@
+package wm.assignment.venue;
+
+/**
+ * Selects how each Row stores the state of its seats
+ */
+public enum RowModel {
+    /**
+     * An immutable list of SeatBlock objects. Every update copies the list into a new Row
+     */
+    BLOCK_LIST,
+
+    /**
+     * Two bits of state per seat, packed into long words and updated in place
+     */
+    PACKED,
+
+    /**
+     * Two bits of state per seat like PACKED, but kept outside the Java heap, in a direct ByteBuffer shared by every
+     * row of the venue. For venues of millions of seats, where the heap and GC cost of the other models adds up
+     */
+    OFF_HEAP
+}
@@ -0,0 +1,71 @@
+package wm.assignment.venue;
+
+import java.util.List;
+
+/**
+ * One change to the seats of a Venue, as published by its SeatChangeFeed. Each change says which state its seats end
+ * up in, so applying a change twice, or one the reader's seat map already shows, is harmless
+ */
+public class SeatChange {
+
+    public enum Type {
+        // the blocks are now held
+        HELD,
+        // the hold's blocks stay held for longer - no seat changes state
+        EXTENDED,
+        // the hold's blocks are now reserved
+        RESERVED,
+        // the hold's blocks are unreserved again
+        EXPIRED,
+        // the blocks, some or all of a reservation's seats, are unreserved again
+        RELEASED
+    }
+
+    private final long sequence;
+    private final Type type;
+    private final int seatHoldId;
+    private final String confirmId;
+    private final List<SeatBlock> blocks;
+
+    SeatChange(long sequence, Type type, int seatHoldId, String confirmId, List<SeatBlock> blocks) {
+        this.sequence = sequence;
+        this.type = type;
+        this.seatHoldId = seatHoldId;
+        this.confirmId = confirmId;
+        this.blocks = blocks;
+    }
+
+    /**
+     * The position of the change in the feed. Changes are numbered from 0, with no gaps
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return the id of the hold, or 0 for a release - releases belong to reservations
+     */
+    public int getSeatHoldId() {
+        return seatHoldId;
+    }
+
+    /**
+     * @return the confirmation code of a RESERVED or RELEASED change, otherwise null
+     */
+    public String getConfirmId() {
+        return confirmId;
+    }
+
+    /**
+     * @return the blocks the change applies to, one per row: the hold's HOLD blocks, or for RELEASED the RESERVED
+     * seats that were given back. The type of the change says what state they are in now
+     */
+    public List<SeatBlock> getBlocks() {
+        return blocks;
+    }
+
+}
@@ -0,0 +1,223 @@
+package wm.assignment.venue;
+
+import wm.assignment.exception.VenueException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * An ordered stream of the changes a Venue makes to its seats - see Venue.openChangeFeed. Subscribers read the changes
+ * at their own pace instead of polling Venue.findBlocks for what changed.
+ *
+ * The feed is a ring of the last capacity changes, numbered in the order they were applied. A writer claims the next
+ * sequence number and stores its change in the ring under the lock of the rows it changed, so the changes of a row
+ * are numbered in the order they were applied to it. LockMode.OPTIMISTIC has no row locks, and two changes to the same
+ * seats can be numbered the other way round. Writers never wait for subscribers and never wake them: the cost of a
+ * change is one atomic increment and one store, however many subscribers there are.
+ *
+ * Each Subscription is a cursor into the ring, and polls for batches of at most a given size. A subscriber that falls
+ * more than capacity changes behind has lost the changes in between, and its next poll fails rather than skip them -
+ * it can start over from Venue.snapshot(): subscribe first, then take the snapshot, and apply every change polled
+ * after that. Changes are published as they are applied, before they are durable.
+ */
+public class SeatChangeFeed {
+    // how long a waiting poll sleeps before it looks at the ring again
+    private static final long POLL_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final AtomicReferenceArray<SeatChange> ring;
+    private final int mask;
+    private final AtomicLong nextSequence = new AtomicLong();
+
+    private final SeatEventListener listener = new SeatEventListener() {
+        @Override
+        public void seatsHeld(SeatHold hold, long ttlInMillis) {
+            publish(SeatChange.Type.HELD, hold.getId(), null, hold.getBlocks());
+        }
+
+        @Override
+        public void holdExtended(SeatHold hold, long ttlInMillis) {
+            publish(SeatChange.Type.EXTENDED, hold.getId(), null, hold.getBlocks());
+        }
+
+        @Override
+        public void seatsReserved(SeatHold hold, String confirmId) {
+            publish(SeatChange.Type.RESERVED, hold.getId(), confirmId, hold.getBlocks());
+        }
+
+        @Override
+        public void holdExpired(SeatHold hold) {
+            publish(SeatChange.Type.EXPIRED, hold.getId(), null, hold.getBlocks());
+        }
+
+        @Override
+        public void seatsReleased(String confirmId, List<SeatBlock> releasedSeats) {
+            publish(SeatChange.Type.RELEASED, 0, confirmId, Collections.unmodifiableList(releasedSeats));
+        }
+    };
+
+    /**
+     * @param capacity how many changes the feed keeps for subscribers that are behind, rounded up to a power of two
+     */
+    SeatChangeFeed(int capacity) {
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("A change feed holds from 1 to 2^30 changes");
+        }
+
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+
+        this.ring = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * Turns the Venue's seat events into changes
+     */
+    SeatEventListener listener() {
+        return listener;
+    }
+
+    /**
+     * Numbers the change and stores it in its slot. A writer that lapped this one, more than capacity changes later,
+     * may have filled the slot first - the later change stays, and subscribers that needed this one find out it was
+     * overwritten
+     */
+    private void publish(SeatChange.Type type, int seatHoldId, String confirmId, List<SeatBlock> blocks) {
+        long sequence = nextSequence.getAndIncrement();
+        SeatChange change = new SeatChange(sequence, type, seatHoldId, confirmId, blocks);
+        int slot = (int) sequence & mask;
+        SeatChange existing;
+
+        do {
+            existing = ring.get(slot);
+
+            if (existing != null && existing.getSequence() > sequence) {
+                return;
+            }
+        } while (!ring.compareAndSet(slot, existing, change));
+    }
+
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    /**
+     * @return the sequence number the next change will get
+     */
+    public long nextSequence() {
+        return nextSequence.get();
+    }
+
+    /**
+     * Subscribes to the changes from the next one on
+     */
+    public Subscription subscribe() {
+        return new Subscription(nextSequence());
+    }
+
+    /**
+     * Subscribes to the changes from the given sequence number on, e.g. to resume after the last change a subscriber
+     * has handled. The feed still has to hold that change - otherwise the first poll fails
+     */
+    public Subscription subscribe(long fromSequence) {
+        if (fromSequence < 0 || fromSequence > nextSequence()) {
+            throw new IllegalArgumentException("No change " + fromSequence + " - the next change is "
+                + nextSequence());
+        }
+
+        return new Subscription(fromSequence);
+    }
+
+    /**
+     * A subscriber's position in the feed. Meant for a single reading thread
+     */
+    public class Subscription {
+        private long position;
+
+        private Subscription(long position) {
+            this.position = position;
+        }
+
+        /**
+         * @return the sequence number of the next change this subscription will return
+         */
+        public long position() {
+            return position;
+        }
+
+        /**
+         * @return how many changes have been published that this subscription hasn't returned yet
+         */
+        public long lag() {
+            return nextSequence() - position;
+        }
+
+        /**
+         * Returns the next changes, in sequence order, without waiting
+         * @param maxChanges the most changes to return - the subscriber's batch size
+         * @return up to maxChanges changes, or an empty list if there are none yet
+         * @throws VenueException if the subscription fell so far behind that the next change has been overwritten
+         */
+        public List<SeatChange> poll(int maxChanges) {
+            if (maxChanges <= 0) {
+                throw new IllegalArgumentException("A poll has to take at least one change");
+            }
+
+            List<SeatChange> changes = new ArrayList<>((int) Math.max(0, Math.min(maxChanges, lag())));
+
+            while (changes.size() < maxChanges) {
+                SeatChange change = ring.get((int) position & mask);
+
+                // the change has been numbered but not stored yet, or not published at all
+                if (change == null || change.getSequence() < position) {
+                    break;
+                }
+
+                if (change.getSequence() > position) {
+                    throw new VenueException("Change " + position + " has been overwritten - the subscriber is more "
+                        + "than " + getCapacity() + " changes behind");
+                }
+
+                changes.add(change);
+                position++;
+            }
+
+            return changes;
+        }
+
+        /**
+         * Like poll, but waits up to the given time for a change if there is none yet. Writers don't signal waiting
+         * subscribers, so this checks the feed again every millisecond
+         */
+        public List<SeatChange> poll(int maxChanges, long timeout, TimeUnit unit) throws InterruptedException {
+            long deadline = System.nanoTime() + unit.toNanos(timeout);
+            List<SeatChange> changes = poll(maxChanges);
+
+            while (changes.isEmpty()) {
+                long remainingNanos = deadline - System.nanoTime();
+
+                if (remainingNanos <= 0) {
+                    break;
+                }
+
+                LockSupport.parkNanos(Math.min(remainingNanos, POLL_INTERVAL_NANOS));
+
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+
+                changes = poll(maxChanges);
+            }
+
+            return changes;
+        }
+    }
+
+}
@@ -0,0 +1,95 @@
+package wm.assignment.venue;
+
+import java.util.List;
+
+/**
+ * Receives every change the Venue makes to its seats, e.g. to persist them.
+ *
+ * The seat events are called while the Venue holds the lock of the affected row (of every affected row, for a party
+ * split over several rows), so the events of one row arrive in the order they were applied. They should be quick
+ * and must not call back into the Venue.
+ */
+public interface SeatEventListener {
+
+    /**
+     * A block of seats has been held and will expire after ttlInMillis unless it is reserved
+     */
+    default void seatsHeld(SeatHold hold, long ttlInMillis) {
+    }
+
+    /**
+     * An outstanding hold has been extended, and now expires after ttlInMillis unless it is reserved
+     */
+    default void holdExtended(SeatHold hold, long ttlInMillis) {
+    }
+
+    /**
+     * A hold has been reserved under the given confirmation code
+     */
+    default void seatsReserved(SeatHold hold, String confirmId) {
+    }
+
+    /**
+     * A hold expired and its seats have been returned to the unreserved pool
+     */
+    default void holdExpired(SeatHold hold) {
+    }
+
+    /**
+     * Seats at the end of a reservation have been returned to the unreserved pool, one block per row. If they were all
+     * of its seats, the reservation has been cancelled
+     */
+    default void seatsReleased(String confirmId, List<SeatBlock> releasedSeats) {
+    }
+
+    /**
+     * Called by reserveSeats after the row lock has been released, before the confirmation code is handed out, and by
+     * releases before they return. Listeners that persist events block here until the change is durable
+     */
+    default void awaitDurable() {
+    }
+
+    /**
+     * A listener that passes every event on to first and then to second
+     */
+    static SeatEventListener both(SeatEventListener first, SeatEventListener second) {
+        return new SeatEventListener() {
+            @Override
+            public void seatsHeld(SeatHold hold, long ttlInMillis) {
+                first.seatsHeld(hold, ttlInMillis);
+                second.seatsHeld(hold, ttlInMillis);
+            }
+
+            @Override
+            public void holdExtended(SeatHold hold, long ttlInMillis) {
+                first.holdExtended(hold, ttlInMillis);
+                second.holdExtended(hold, ttlInMillis);
+            }
+
+            @Override
+            public void seatsReserved(SeatHold hold, String confirmId) {
+                first.seatsReserved(hold, confirmId);
+                second.seatsReserved(hold, confirmId);
+            }
+
+            @Override
+            public void holdExpired(SeatHold hold) {
+                first.holdExpired(hold);
+                second.holdExpired(hold);
+            }
+
+            @Override
+            public void seatsReleased(String confirmId, List<SeatBlock> releasedSeats) {
+                first.seatsReleased(confirmId, releasedSeats);
+                second.seatsReleased(confirmId, releasedSeats);
+            }
+
+            @Override
+            public void awaitDurable() {
+                first.awaitDurable();
+                second.awaitDurable();
+            }
+        };
+    }
+
+}
@@ -1,20 +1,37 @@
 package wm.assignment.venue;
 
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.Collections;
+import java.util.List;
 
 public class SeatHold {
 
     private int id;
-    private SeatBlock block;
+    private List<SeatBlock> blocks;
     private String customerEmail;
 
+    // when the hold expires, kept up to date by HoldSlab - it sits next to the id, which every lookup reads anyway
+    volatile long expiresAtNanos;
+
+    /**
+     * Creates a hold without an id. The venue gives it one when it starts tracking the hold - see HoldSlab
+     */
     public SeatHold(SeatBlock block, String customerEmail) {
-        // this is not the best way to maintain a randomly generated ID to maintain uniqueness of reservations,
-        // but it fulfills the contract of the seatHoldId being an int
-        // See TicketService.reserveSeats(int seatHoldId, String customerEmail)
-        this.id = ThreadLocalRandom.current().nextInt();
+        this(0, block, customerEmail);
+    }
+
+    /**
+     * Recreates a hold with a known id, e.g. when replaying a journal
+     */
+    SeatHold(int id, SeatBlock block, String customerEmail) {
+        this(id, Collections.singletonList(block), customerEmail);
+    }
 
-        this.block = block;
+    /**
+     * A party split over several rows - see Venue.setSplitPartyRows. The blocks are in row order
+     */
+    SeatHold(int id, List<SeatBlock> blocks, String customerEmail) {
+        this.id = id;
+        this.blocks = blocks.size() == 1 ? blocks : Collections.unmodifiableList(blocks);
         this.customerEmail = customerEmail;
     }
 
@@ -22,11 +39,35 @@ public class SeatHold {
         return id;
     }
 
+    /**
+     * @return the held block - the first one, in a hold that has been split over several rows
+     */
     public SeatBlock getBlock() {
-        return block;
+        return blocks.get(0);
+    }
+
+    /**
+     * @return the held blocks, in row order. Only a split party has more than one
+     */
+    public List<SeatBlock> getBlocks() {
+        return blocks;
+    }
+
+    public int getNumSeats() {
+        int numSeats = 0;
+
+        for (int i = 0; i < blocks.size(); i++) {
+            numSeats += blocks.get(i).getNumSeats();
+        }
+
+        return numSeats;
     }
 
     public String getCustomerEmail() {
         return customerEmail;
     }
+
+    void setId(int id) {
+        this.id = id;
+    }
 }
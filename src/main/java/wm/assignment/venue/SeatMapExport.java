@@ -0,0 +1,310 @@
+package wm.assignment.venue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes the seat map of a VenueSnapshot, run-length encoded: each row is a list of runs of seats in the same state,
+ * and adjacent blocks of the same type (two holds side by side, say) make up a single run. A diff between two
+ * snapshots of the same venue only has the rows that changed, in full.
+ *
+ * The rows are encoded straight into a small buffer that is written out as it fills up, so an export never holds
+ * more than a row's worth of output, and rows that keep their seats in words are read without building SeatBlocks.
+ *
+ * BINARY (big endian, varints are unsigned LEB128):
+ *   header  magic (int), format version (byte), kind (byte, 0 = full, 1 = diff), numRows, numColumns (varints),
+ *           version (varint), and for a diff the version of the base snapshot (varint)
+ *   rows    per row: rowNum + 1 (varint), then per run: numSeats << 2 | state (varint - state 0 is unreserved, 1 held
+ *           and 2 reserved), then a 0 byte
+ *   end     a 0 byte
+ *
+ * TEXT (ASCII), for logs and debugging:
+ *   seatmap full version=42 rows=20 columns=50         or: seatmap diff version=42 base=40 rows=20 columns=50
+ *   0 R12 H3 U35                                       one line per row: rowNum, then U, H or R and the run length
+ *   end
+ */
+public class SeatMapExport {
+    public enum Format {
+        BINARY,
+        TEXT
+    }
+
+    private static final int MAGIC = 0x534d4150; // "SMAP"
+    private static final int VERSION = 1;
+    private static final int FULL = 0;
+    private static final int DIFF = 1;
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private final Format format;
+
+    public SeatMapExport(Format format) {
+        this.format = format;
+    }
+
+    /**
+     * Writes every row of the snapshot. The stream is not closed
+     */
+    public void write(VenueSnapshot snapshot, OutputStream out) throws IOException {
+        write(snapshot, Channels.newChannel(out));
+    }
+
+    public void write(VenueSnapshot snapshot, WritableByteChannel out) throws IOException {
+        Encoder encoder = newEncoder(snapshot, out);
+        encoder.header(FULL, snapshot, null);
+
+        try {
+            snapshot.forEachRow(encoder::row);
+        }
+        catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        encoder.end();
+    }
+
+    /**
+     * Writes the rows that changed between base and snapshot, an earlier and a later snapshot of the same venue.
+     * Applied to the seat map as of base, the diff gives the seat map as of snapshot
+     */
+    public void writeDiff(VenueSnapshot base, VenueSnapshot snapshot, OutputStream out) throws IOException {
+        writeDiff(base, snapshot, Channels.newChannel(out));
+    }
+
+    public void writeDiff(VenueSnapshot base, VenueSnapshot snapshot, WritableByteChannel out) throws IOException {
+        Encoder encoder = newEncoder(snapshot, out);
+        encoder.header(DIFF, snapshot, base);
+
+        try {
+            snapshot.forEachRowChangedSince(base, encoder::row);
+        }
+        catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        encoder.end();
+    }
+
+    private Encoder newEncoder(VenueSnapshot snapshot, WritableByteChannel out) {
+        // the longest row either format can produce - a run of one seat takes up to 3 bytes as text
+        int maxRowBytes = 3 * snapshot.getNumColumns() + 32;
+
+        return format == Format.TEXT ? new TextEncoder(out, maxRowBytes) : new BinaryEncoder(out, maxRowBytes);
+    }
+
+    /**
+     * Merges adjacent runs of the same type and hands the encoding of each run to the format
+     */
+    private abstract static class Encoder implements Row.RunVisitor {
+        final ByteBuffer buffer;
+        private final WritableByteChannel out;
+        private final int maxRowBytes;
+
+        private SeatBlockType runType;
+        private int runLength;
+
+        Encoder(WritableByteChannel out, int maxRowBytes) {
+            this.out = out;
+            this.maxRowBytes = maxRowBytes;
+            this.buffer = ByteBuffer.allocate(Math.max(BUFFER_SIZE, 2 * maxRowBytes));
+        }
+
+        abstract void header(int kind, VenueSnapshot snapshot, VenueSnapshot base);
+
+        abstract void beginRow(int rowNum);
+
+        abstract void writeRun(SeatBlockType type, int numSeats);
+
+        abstract void endRow();
+
+        abstract void endMap();
+
+        /**
+         * Flushes the buffer first if a whole row might not fit in what is left of it
+         */
+        void row(Row row) {
+            try {
+                if (buffer.remaining() < maxRowBytes) {
+                    flush();
+                }
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            beginRow(row.getRowNum());
+            row.forEachRun(this);
+
+            if (runLength > 0) {
+                writeRun(runType, runLength);
+                runLength = 0;
+            }
+
+            endRow();
+        }
+
+        @Override
+        public void visit(SeatBlockType type, int numSeats) {
+            if (runLength > 0 && type != runType) {
+                writeRun(runType, runLength);
+                runLength = 0;
+            }
+
+            runType = type;
+            runLength += numSeats;
+        }
+
+        void end() throws IOException {
+            if (buffer.remaining() < 16) {
+                flush();
+            }
+
+            endMap();
+            flush();
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+
+            buffer.clear();
+        }
+    }
+
+    private static class BinaryEncoder extends Encoder {
+
+        BinaryEncoder(WritableByteChannel out, int maxRowBytes) {
+            super(out, maxRowBytes);
+        }
+
+        @Override
+        void header(int kind, VenueSnapshot snapshot, VenueSnapshot base) {
+            buffer.putInt(MAGIC).put((byte) VERSION).put((byte) kind);
+            putVarint(snapshot.getNumRows());
+            putVarint(snapshot.getNumColumns());
+            putVarint(snapshot.getVersion());
+
+            if (base != null) {
+                putVarint(base.getVersion());
+            }
+        }
+
+        @Override
+        void beginRow(int rowNum) {
+            putVarint(rowNum + 1);
+        }
+
+        @Override
+        void writeRun(SeatBlockType type, int numSeats) {
+            putVarint((long) numSeats << 2 | state(type));
+        }
+
+        @Override
+        void endRow() {
+            buffer.put((byte) 0);
+        }
+
+        @Override
+        void endMap() {
+            buffer.put((byte) 0);
+        }
+
+        private void putVarint(long value) {
+            while ((value & ~0x7fL) != 0) {
+                buffer.put((byte) ((value & 0x7f) | 0x80));
+                value >>>= 7;
+            }
+
+            buffer.put((byte) value);
+        }
+
+        private static int state(SeatBlockType type) {
+            switch (type) {
+                case HOLD:
+                    return 1;
+                case RESERVED:
+                    return 2;
+                case UNRESERVED:
+                default:
+                    return 0;
+            }
+        }
+    }
+
+    private static class TextEncoder extends Encoder {
+
+        TextEncoder(WritableByteChannel out, int maxRowBytes) {
+            super(out, maxRowBytes);
+        }
+
+        @Override
+        void header(int kind, VenueSnapshot snapshot, VenueSnapshot base) {
+            String header = "seatmap " + (kind == FULL ? "full" : "diff") + " version=" + snapshot.getVersion()
+                + (base != null ? " base=" + base.getVersion() : "")
+                + " rows=" + snapshot.getNumRows() + " columns=" + snapshot.getNumColumns() + "\n";
+            buffer.put(header.getBytes(StandardCharsets.US_ASCII));
+        }
+
+        @Override
+        void beginRow(int rowNum) {
+            putDecimal(rowNum);
+        }
+
+        @Override
+        void writeRun(SeatBlockType type, int numSeats) {
+            buffer.put((byte) ' ').put((byte) letter(type));
+            putDecimal(numSeats);
+        }
+
+        @Override
+        void endRow() {
+            buffer.put((byte) '\n');
+        }
+
+        @Override
+        void endMap() {
+            buffer.put("end\n".getBytes(StandardCharsets.US_ASCII));
+        }
+
+        /**
+         * Writes the digits straight into the buffer, rather than through a String
+         */
+        private void putDecimal(int value) {
+            int numDigits = 1;
+
+            for (int rest = value / 10; rest > 0; rest /= 10) {
+                numDigits++;
+            }
+
+            int start = buffer.position();
+
+            for (int i = numDigits - 1; i >= 0; i--) {
+                buffer.put(start + i, (byte) ('0' + value % 10));
+                value /= 10;
+            }
+
+            buffer.position(start + numDigits);
+        }
+
+        private static char letter(SeatBlockType type) {
+            switch (type) {
+                case HOLD:
+                    return 'H';
+                case RESERVED:
+                    return 'R';
+                case UNRESERVED:
+                default:
+                    return 'U';
+            }
+        }
+    }
+
+}
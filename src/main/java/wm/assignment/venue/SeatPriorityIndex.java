@@ -0,0 +1,146 @@
+package wm.assignment.venue;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Finds the best scoring free block of seats without scoring every block in the venue.
+ *
+ * The seat scores are computed once, up front, and kept as per row prefix sums, so any block in a row is scored in
+ * constant time. Rows are ranked by the score of their best seat, and a RowCapacityIndex kept in rank order (rather
+ * than row order) gives the next ranked row that can fit a request in O(log rows). No block in a row can score more
+ * than numSeats times the row's best seat, so the search stops at the first row whose bound can't beat the best block
+ * found so far. For the scorers in SeatScorer that is usually within a few rows of the best free seats.
+ */
+class SeatPriorityIndex {
+
+    /**
+     * Where the best block for a request starts
+     */
+    static class Placement {
+        final int rowNum;
+        final int startPosition;
+        final double score;
+
+        Placement(int rowNum, int startPosition, double score) {
+            this.rowNum = rowNum;
+            this.startPosition = startPosition;
+            this.score = score;
+        }
+    }
+
+    private final int[] rowOrder;
+    private final int[] rowRank;
+    private final double[] bestSeatScore;
+
+    // prefixScores[rowNum][seat] is the total score of the seats before seat in the row
+    private final double[][] prefixScores;
+
+    private final RowCapacityIndex capacityByRank;
+
+    SeatPriorityIndex(SeatScorer scorer, int numRows, int numColumns) {
+        this.bestSeatScore = new double[numRows];
+        this.prefixScores = new double[numRows][numColumns + 1];
+
+        for (int rowNum = 0; rowNum < numRows; rowNum++) {
+            double best = Double.NEGATIVE_INFINITY;
+
+            for (int seat = 0; seat < numColumns; seat++) {
+                double score = scorer.score(rowNum, seat, numRows, numColumns);
+                prefixScores[rowNum][seat + 1] = prefixScores[rowNum][seat] + score;
+                best = Math.max(best, score);
+            }
+
+            bestSeatScore[rowNum] = best;
+        }
+
+        // best rows first, ties in row order
+        this.rowOrder = IntStream.range(0, numRows)
+            .boxed()
+            .sorted(Comparator.comparingDouble((Integer r) -> bestSeatScore[r]).reversed()
+                .thenComparingInt(r -> r))
+            .mapToInt(Integer::intValue)
+            .toArray();
+
+        this.rowRank = new int[numRows];
+        for (int rank = 0; rank < numRows; rank++) {
+            rowRank[rowOrder[rank]] = rank;
+        }
+
+        this.capacityByRank = new RowCapacityIndex(numRows, numColumns);
+    }
+
+    /**
+     * Records the size of the largest unreserved block in the given row
+     */
+    void update(int rowNum, int largestAvailableBlock) {
+        capacityByRank.update(rowRank[rowNum], largestAvailableBlock);
+    }
+
+    /**
+     * Finds the best scoring run of numSeats free seats. Ties go to the lower row and then the lower seat
+     * @param rows the venue's rows, by row number
+     * @return the placement, or null if no row can fit the request
+     */
+    Placement findBest(int numSeats, IntFunction<Row> rows) {
+        Placement best = null;
+        int rank = capacityByRank.firstRowWithCapacity(numSeats, 0);
+
+        while (rank >= 0) {
+            int rowNum = rowOrder[rank];
+
+            if (best != null && numSeats * bestSeatScore[rowNum] < best.score) {
+                break;
+            }
+
+            Placement candidate = bestInRow(rows.apply(rowNum), numSeats);
+
+            if (candidate != null && (best == null || isBetter(candidate, best))) {
+                best = candidate;
+            }
+
+            rank = capacityByRank.firstRowWithCapacity(numSeats, rank + 1);
+        }
+
+        return best;
+    }
+
+    /**
+     * Tries every start position of every free block in the row that is large enough
+     */
+    private Placement bestInRow(Row row, int numSeats) {
+        double[] prefix = prefixScores[row.getRowNum()];
+
+        List<SeatBlock> blocks = row.availableBlocks(numSeats).collect(Collectors.toList());
+
+        int bestStart = -1;
+        double bestScore = Double.NEGATIVE_INFINITY;
+
+        for (SeatBlock block : blocks) {
+            int lastStart = block.getStartPosition() + block.getNumSeats() - numSeats;
+
+            for (int start = block.getStartPosition(); start <= lastStart; start++) {
+                double score = prefix[start + numSeats] - prefix[start];
+
+                if (score > bestScore) {
+                    bestScore = score;
+                    bestStart = start;
+                }
+            }
+        }
+
+        return bestStart < 0 ? null : new Placement(row.getRowNum(), bestStart, bestScore);
+    }
+
+    private static boolean isBetter(Placement candidate, Placement best) {
+        if (candidate.score != best.score) {
+            return candidate.score > best.score;
+        }
+
+        return candidate.rowNum < best.rowNum;
+    }
+
+}
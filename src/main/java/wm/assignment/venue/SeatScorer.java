@@ -0,0 +1,31 @@
+package wm.assignment.venue;
+
+/**
+ * Rates the quality of each seat in a venue, for best-available seating. Higher scores are better, and the score of a
+ * block of seats is the sum of the scores of its seats.
+ *
+ * Scores are computed once per seat when the Venue is created, so a scorer must always give the same seat the same
+ * score.
+ */
+@FunctionalInterface
+public interface SeatScorer {
+
+    double score(int rowNum, int seatNum, int numRows, int numColumns);
+
+    /**
+     * The seat in the middle of the venue is the best one, and seats get worse with their distance from it
+     */
+    static SeatScorer centerWeighted() {
+        return (rowNum, seatNum, numRows, numColumns) ->
+            -Math.hypot(rowNum - (numRows - 1) / 2.0, seatNum - (numColumns - 1) / 2.0);
+    }
+
+    /**
+     * The stage runs along the front of row 0. Seats get worse with their distance from the center of the stage
+     */
+    static SeatScorer distanceToStage() {
+        return (rowNum, seatNum, numRows, numColumns) ->
+            -Math.hypot(rowNum + 1, seatNum - (numColumns - 1) / 2.0);
+    }
+
+}
@@ -1,12 +1,18 @@
 package wm.assignment.venue;
 
 import wm.assignment.exception.VenueException;
-import wm.assignment.util.TTLMap;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
-import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
@@ -14,30 +20,151 @@ import java.util.stream.IntStream;
  * Represents a rectangular venue
  */
 public class Venue {
-    private List<Row> rows;
-    private TTLMap<Integer, SeatHold> heldSeats;
-    private Map<String, SeatBlock> reservedSeats;
+    private static final SeatEventListener NO_LISTENER = new SeatEventListener() {};
+
+    // asks releaseReservedSeats for every seat of the reservation
+    private static final int ALL_SEATS = Integer.MAX_VALUE;
+
+    private final LockMode lockMode;
+    private final RowModel rowModel;
+    private final long ttlInMillis;
+    private final AtomicReferenceArray<Row> rows;
+
+    // the rows as of the last update, for readers that don't take a lock
+    private final AtomicReference<VenueSnapshot> snapshot;
+
+    // where the rows keep their seats in RowModel.OFF_HEAP, otherwise null
+    private final ByteBuffer seatMap;
+    private final Object[] rowLocks;
+    private final RowCapacityIndex capacityIndex;
+
+    // only set for best-available seating - without it, requests go to the first block that fits
+    private final SeatScorer seatScorer;
+    private final SeatPriorityIndex priorityIndex;
+
+    // venue-wide seat counts, adjusted alongside every row update
+    private final AtomicInteger availableSeatCount;
+    private final AtomicInteger heldSeatCount = new AtomicInteger();
+    private final AtomicInteger reservedSeatCount = new AtomicInteger();
+
+    private final HoldSlab heldSeats;
+    private final ReservationStore reservedSeats;
+    private final CustomerIndex customers = new CustomerIndex();
+    private volatile int customerSeatLimit = Integer.MAX_VALUE;
+    private volatile int splitPartyRows = 1;
+
+    // eventListener passes every event on to the listener set with setEventListener, then to the change feed, if any
+    private volatile SeatEventListener eventListener = NO_LISTENER;
+    private SeatEventListener primaryListener = NO_LISTENER;
+    private SeatChangeFeed changeFeed;
+
+    private final VenueMetrics metrics;
 
     public Venue(int numRows, int numColumns, long ttlInMillis) {
+        this(numRows, numColumns, ttlInMillis, LockMode.VENUE);
+    }
+
+    public Venue(int numRows, int numColumns, long ttlInMillis, LockMode lockMode) {
+        this(numRows, numColumns, ttlInMillis, lockMode, RowModel.BLOCK_LIST);
+    }
+
+    public Venue(int numRows, int numColumns, long ttlInMillis, LockMode lockMode, RowModel rowModel) {
+        this(numRows, numColumns, ttlInMillis, lockMode, rowModel, null);
+    }
+
+    /**
+     * @param seatScorer rates the seats for best-available seating, or null to hold the first block that fits
+     */
+    public Venue(int numRows, int numColumns, long ttlInMillis, LockMode lockMode, RowModel rowModel,
+                 SeatScorer seatScorer) {
+        this(numRows, numColumns, ttlInMillis, lockMode, rowModel, seatScorer, 0, 1);
+    }
+
+    /**
+     * @param section     which of numSections venues sharing a TicketService this is. Each section issues hold ids
+     *                    of its own, so an id identifies the section that holds it
+     */
+    public Venue(int numRows, int numColumns, long ttlInMillis, LockMode lockMode, RowModel rowModel,
+                 SeatScorer seatScorer, int section, int numSections) {
+        if (!ReservationStore.fits(numRows, numColumns)) {
+            throw new IllegalArgumentException("Too many rows or columns to store reservations");
+        }
+
+        if (lockMode == LockMode.OPTIMISTIC && rowModel != RowModel.BLOCK_LIST) {
+            throw new IllegalArgumentException("Optimistic updates need immutable rows - " + rowModel
+                + " rows change in place");
+        }
+
+        this.lockMode = lockMode;
+        this.rowModel = rowModel;
+        this.ttlInMillis = ttlInMillis;
+
         // create all the rows, each initialized with numColumn seats
-        rows = IntStream.range(0, numRows)
-            .mapToObj((rowNum) -> new Row(rowNum, numColumns))
-            .collect(Collectors.toList());
+        seatMap = rowModel == RowModel.OFF_HEAP ? OffHeapRow.allocateSeatMap(numRows, numColumns) : null;
+        Row[] initialRows = IntStream.range(0, numRows)
+            .mapToObj((rowNum) -> newRow(rowNum, numColumns))
+            .toArray(Row[]::new);
+        rows = new AtomicReferenceArray<>(initialRows);
+        snapshot = new AtomicReference<>(VenueSnapshot.of(initialRows));
+
+        // one lock per row - only used in LockMode.ROW
+        rowLocks = IntStream.range(0, numRows)
+            .mapToObj((rowNum) -> new Object())
+            .toArray();
 
-        this.heldSeats = new TTLMap<>(ttlInMillis);
-        this.reservedSeats = new ConcurrentHashMap<>();
+        this.capacityIndex = new RowCapacityIndex(numRows, numColumns);
+        this.seatScorer = seatScorer;
+        this.priorityIndex = seatScorer != null ? new SeatPriorityIndex(seatScorer, numRows, numColumns) : null;
+        this.availableSeatCount = new AtomicInteger(numRows * numColumns);
+        this.heldSeats = new HoldSlab(numRows * numColumns, section, numSections);
+        this.reservedSeats = new ReservationStore();
+
+        this.metrics = new VenueMetrics(heldSeats::size);
+        heldSeats.setExpiryLagHistogram(metrics.expiryLag);
+    }
+
+    public LockMode getLockMode() {
+        return lockMode;
+    }
+
+    public RowModel getRowModel() {
+        return rowModel;
+    }
+
+    /**
+     * Latencies, lock wait, expiry lag and hold counts for this venue - the pull API for monitoring
+     */
+    public VenueMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return the scorer used for best-available seating, or null if the venue holds the first block that fits
+     */
+    public SeatScorer getSeatScorer() {
+        return seatScorer;
     }
 
     /**
-     * This method computes the number of seats that are current available.
+     * The number of seats that are currently available. Read from a counter, so this is constant time
      * @return number of seats
      */
     public int numSeatsAvailable() {
-        // request that each row report its number of seats, and then combine them together
-        return rows.stream()
-            .map(Row::totalAvailableSeatCount)
-            .reduce((a, b) -> a + b)
-            .orElse(0);
+        return availableSeatCount.get();
+    }
+
+    /**
+     * @return the number of seats that are currently held
+     */
+    public int numSeatsHeld() {
+        return heldSeatCount.get();
+    }
+
+    /**
+     * @return the number of seats that have been reserved
+     */
+    public int numSeatsReserved() {
+        return reservedSeatCount.get();
     }
 
     /**
@@ -46,48 +173,810 @@ public class Venue {
      * @return
      */
     public List<SeatBlock> findBlocks(SeatBlockType type) {
-        return rows.stream()
-            .flatMap(r -> r.getBlocks().stream())
-            .filter(b -> b.getBlockType() == type)
-            .collect(Collectors.toList());
+        return snapshot().findBlocks(type);
+    }
+
+    /**
+     * The venue as of its last update, in constant time and without a lock. Use one snapshot for several queries that
+     * have to agree with each other - the counters above are read one at a time, and the venue can change in between
+     */
+    public VenueSnapshot snapshot() {
+        return snapshot.get();
     }
 
     /**
-     * This method attempts to locate a block of seats and hold them
+     * This method attempts to locate a block of seats and hold them. With a SeatScorer that is the best scoring block,
+     * otherwise the first block that fits
      * @param numSeats
      * @param customerEmail
      * @return
      */
-    public synchronized SeatHold findAndHoldSeats(int numSeats, String customerEmail) {
-        SeatBlock firstAvailableBlock = rows.stream()
-            .flatMap(r -> r.firstAvailableBlock(numSeats))
-            .findFirst()
-            .orElse(null);
+    public SeatHold findAndHoldSeats(int numSeats, String customerEmail) {
+        long start = System.nanoTime();
+        SeatHold hold;
 
-        if (firstAvailableBlock == null) {
-            // couldn't find an available block - return nothing
-            return null;
+        if (lockMode == LockMode.VENUE) {
+            synchronized (this) {
+                metrics.lockWait.recordSince(start);
+                hold = holdAvailableBlock(numSeats, customerEmail);
+            }
+        }
+        else {
+            hold = holdAvailableBlock(numSeats, customerEmail);
         }
 
-        // save the reservation in the first available row
-        Row firstAvailableRow = rows.get(firstAvailableBlock.getRowNum());
-        Row.HoldUpdate holdUpdate = firstAvailableRow.holdSeats(firstAvailableBlock, numSeats, customerEmail);
+        metrics.holdLatency.recordSince(start);
+        metrics.recordHold(hold);
+        return hold;
+    }
 
-        Row row = holdUpdate.row;
-        SeatHold hold = holdUpdate.hold;
+    /**
+     * Finds and holds seats for a whole batch of requests in a single pass over the rows. Each row is locked at most
+     * once per batch (the venue only once in LockMode.VENUE), however many requests it ends up satisfying.
+     *
+     * Requests are placed in order, so a batch on its own gets the same seats as calling findAndHoldSeats for each
+     * request in turn. With a SeatScorer there is no single pass to share, and the requests are held one at a time.
+     * @param holdRequests
+     * @return one entry per request, in the same order - the SeatHold, or null if no block could fit the request
+     */
+    public List<SeatHold> findAndHoldSeatsBatch(List<HoldRequest> holdRequests) {
+        List<SeatHold> holds;
 
-        // replace the current row with the new one and save the hold to the hold map
-        rows.set(row.getRowNum(), row);
-        heldSeats.put(hold.getId(), hold, this::handleExpiredHold);
+        if (lockMode == LockMode.VENUE) {
+            long waitStart = System.nanoTime();
 
-        return hold;
+            synchronized (this) {
+                metrics.lockWait.recordSince(waitStart);
+                holds = holdFirstAvailableBlocks(holdRequests);
+            }
+        }
+        else {
+            holds = holdFirstAvailableBlocks(holdRequests);
+        }
+
+        holds.forEach(metrics::recordHold);
+        return holds;
     }
 
     /**
      * If the held seats are still available (i.e. the hold hasn't expired) this method reserves them
      * @return
      */
-    public synchronized String reserveSeats(int seatHoldId, String customerEmail) {
+    public String reserveSeats(int seatHoldId, String customerEmail) {
+        long start = System.nanoTime();
+        String confirmId;
+
+        if (lockMode == LockMode.VENUE) {
+            synchronized (this) {
+                metrics.lockWait.recordSince(start);
+                confirmId = reserveHeldSeats(seatHoldId, customerEmail);
+            }
+        }
+        else {
+            confirmId = reserveHeldSeats(seatHoldId, customerEmail);
+        }
+
+        // wait outside the lock, so reservations made meanwhile can share the listener's flush
+        if (confirmId != null) {
+            eventListener.awaitDurable();
+            metrics.recordReservation();
+        }
+
+        metrics.reserveLatency.recordSince(start);
+        return confirmId;
+    }
+
+    /**
+     * Gives an outstanding hold extraMillis more before it expires, e.g. while the customer's payment is processing.
+     * The hold keeps its id and its seats
+     * @return false if the hold has been reserved, has expired or never existed
+     */
+    public boolean extendHold(int seatHoldId, String customerEmail, long extraMillis) {
+        if (extraMillis <= 0) {
+            throw new IllegalArgumentException("A hold can only be extended by a positive amount of time");
+        }
+
+        SeatHold hold = heldSeats.get(seatHoldId);
+
+        if (hold == null) {
+            return false;
+        }
+
+        if (!CustomerKey.normalize(hold.getCustomerEmail()).equals(CustomerKey.normalize(customerEmail))) {
+            throw new VenueException("Email mismatch when attempting to extend a held reservation");
+        }
+
+        // under the row lock, so the extension reaches the listener before the hold is reserved or expires
+        return updateRows(hold.getBlocks(), () -> {
+            long remainingMillis = heldSeats.extend(hold, extraMillis);
+
+            if (remainingMillis < 0) {
+                return false;
+            }
+
+            eventListener.holdExtended(hold, remainingMillis);
+            return true;
+        });
+    }
+
+    /**
+     * Cancels a reservation, returning all of its seats to the unreserved pool. Only the reservation's row is updated
+     * @param customerEmail the email the reservation was made with - a VenueException is thrown if it isn't
+     * @return false if the confirmation code is unknown, isn't a valid code or has already been cancelled
+     */
+    public boolean cancelReservation(String confirmId, String customerEmail) {
+        return releaseSeats(ConfirmationCode.parse(confirmId), customerEmail, ALL_SEATS);
+    }
+
+    /**
+     * Gives back some of a reservation's seats, e.g. for a partial refund. The seats at the end of the reserved block
+     * are returned to the unreserved pool, and the reservation keeps the rest under the same confirmation code.
+     * Releasing every seat cancels the reservation
+     * @param customerEmail the email the reservation was made with - a VenueException is thrown if it isn't
+     * @return false if the confirmation code is unknown, isn't a valid code or has fewer than numSeats seats left
+     */
+    public boolean releaseSeats(String confirmId, String customerEmail, int numSeats) {
+        if (numSeats <= 0) {
+            throw new IllegalArgumentException("Can only release a positive number of seats");
+        }
+
+        return releaseSeats(ConfirmationCode.parse(confirmId), customerEmail, numSeats);
+    }
+
+    /**
+     * @return the reserved seats, or null if the confirmation code is unknown or isn't a valid code
+     */
+    public SeatBlock findReservation(String confirmId) {
+        return reservedSeats.get(ConfirmationCode.parse(confirmId));
+    }
+
+    /**
+     * @return every reserved block in row order - more than one for a split party - or an empty list if the
+     *         confirmation code is unknown or isn't a valid code
+     */
+    public List<SeatBlock> findReservationBlocks(String confirmId) {
+        return reservedSeats.getBlocks(ConfirmationCode.parse(confirmId));
+    }
+
+    /**
+     * @return the outstanding hold with the given id, or null if it has been reserved, has expired or never existed
+     */
+    public SeatHold findHold(int seatHoldId) {
+        return heldSeats.get(seatHoldId);
+    }
+
+    /**
+     * @return the customer's outstanding holds. The email is normalized, see CustomerKey
+     */
+    public List<SeatHold> findHolds(String customerEmail) {
+        String email = CustomerKey.normalize(customerEmail);
+        List<SeatHold> holds = new ArrayList<>();
+
+        for (int seatHoldId : customers.getHoldIds(CustomerKey.of(customerEmail))) {
+            SeatHold hold = heldSeats.get(seatHoldId);
+
+            // the hold may have been reserved or expired since, and another customer's email could share the key
+            if (hold != null && CustomerKey.normalize(hold.getCustomerEmail()).equals(email)) {
+                holds.add(hold);
+            }
+        }
+
+        return holds;
+    }
+
+    /**
+     * @return the confirmation codes of the customer's reservations. The email is normalized, see CustomerKey
+     */
+    public List<String> findReservations(String customerEmail) {
+        List<String> confirmIds = new ArrayList<>();
+
+        for (long code : customers.getCodes(CustomerKey.of(customerEmail))) {
+            confirmIds.add(ConfirmationCode.format(code));
+        }
+
+        return confirmIds;
+    }
+
+    /**
+     * @return the number of seats the customer holds or has reserved
+     */
+    public int numSeatsFor(String customerEmail) {
+        return customers.getNumSeats(CustomerKey.of(customerEmail));
+    }
+
+    /**
+     * Limits the number of seats a single customer can hold and reserve at once. Holds that would take a customer over
+     * the limit fail like holds that don't fit. Unlimited by default
+     */
+    public void setCustomerSeatLimit(int customerSeatLimit) {
+        if (customerSeatLimit <= 0) {
+            throw new IllegalArgumentException("The customer seat limit must be positive");
+        }
+
+        this.customerSeatLimit = customerSeatLimit;
+    }
+
+    /**
+     * Lets a party that no single row has room for be held as several blocks, in up to splitPartyRows adjacent rows.
+     * The seats are shared out between the rows as evenly as they allow and lined up with each other where possible.
+     * The hold and the reservation made from it cover all of the blocks, and are reserved, expire or are released as
+     * one. 1, the default, keeps every party in a single row.
+     *
+     * Rows are locked in ascending order to update them together, so splitting needs row locks - it isn't available in
+     * LockMode.OPTIMISTIC.
+     */
+    public void setSplitPartyRows(int splitPartyRows) {
+        if (splitPartyRows <= 0) {
+            throw new IllegalArgumentException("A party must be seated in at least one row");
+        }
+
+        if (splitPartyRows > 1 && lockMode == LockMode.OPTIMISTIC) {
+            throw new IllegalArgumentException("Split parties need row locks - there are none in " + lockMode);
+        }
+
+        this.splitPartyRows = splitPartyRows;
+    }
+
+    /**
+     * The size of the largest block of unreserved seats in any row - the largest request that can currently be held
+     */
+    public int largestAvailableBlock() {
+        return capacityIndex.largestAvailableBlock();
+    }
+
+    int getNumRows() {
+        return rows.length();
+    }
+
+    int getNumColumns() {
+        return rows.get(0).getNumSeats();
+    }
+
+    /**
+     * Publishes every change to the venue's seats from now on to a new feed, which keeps the last capacity changes for
+     * its subscribers - see SeatChangeFeed. A venue has at most one feed, shared by all of its subscribers
+     */
+    public synchronized SeatChangeFeed openChangeFeed(int capacity) {
+        if (changeFeed != null) {
+            throw new VenueException("The venue already has a change feed");
+        }
+
+        changeFeed = new SeatChangeFeed(capacity);
+        eventListener = SeatEventListener.both(primaryListener, changeFeed.listener());
+        return changeFeed;
+    }
+
+    /**
+     * @return the feed opened with openChangeFeed, or null if there is none
+     */
+    public synchronized SeatChangeFeed getChangeFeed() {
+        return changeFeed;
+    }
+
+    /**
+     * Registers the listener that is told about every hold, reservation and expiry from now on. The change feed, if
+     * there is one, keeps getting them too, after the listener
+     */
+    synchronized void setEventListener(SeatEventListener eventListener) {
+        this.primaryListener = eventListener;
+        this.eventListener = changeFeed != null
+            ? SeatEventListener.both(eventListener, changeFeed.listener())
+            : eventListener;
+    }
+
+    /**
+     * An empty row to rebuild the given row on, before the venue is used. In RowModel.OFF_HEAP, the new row takes over
+     * the row's slice of the seat map, so the current row must not be used again
+     */
+    Row newRow(int rowNum) {
+        return newRow(rowNum, getNumColumns());
+    }
+
+    private Row newRow(int rowNum, int numColumns) {
+        if (seatMap == null) {
+            return Row.create(rowModel, rowNum, numColumns);
+        }
+
+        // snapshots of the current row share its slice - they keep its words before the new row clears them
+        BitmapRow existingRow = rows != null ? (BitmapRow) rows.get(rowNum) : null;
+        if (existingRow != null) {
+            existingRow.retire();
+        }
+
+        return new OffHeapRow(rowNum, numColumns, seatMap, rowNum);
+    }
+
+    /**
+     * Swaps in a row rebuilt from a journal or checkpoint, before the venue is used
+     */
+    void restoreRow(Row row) {
+        Row existingRow = rows.getAndSet(row.getRowNum(), row);
+        updateIndexes(row.getRowNum());
+        publish(row.getRowNum());
+
+        availableSeatCount.addAndGet(row.totalAvailableSeatCount() - existingRow.totalAvailableSeatCount());
+        heldSeatCount.addAndGet(row.heldSeatCount() - existingRow.heldSeatCount());
+        reservedSeatCount.addAndGet(row.reservedSeatCount() - existingRow.reservedSeatCount());
+    }
+
+    void restoreReservation(long confirmationCode, List<SeatBlock> reservedBlocks, String customerEmail) {
+        reservedSeats.put(confirmationCode, reservedBlocks, customerEmail);
+        customers.addReservation(CustomerKey.of(customerEmail), confirmationCode,
+            reservedBlocks.stream().mapToInt(SeatBlock::getNumSeats).sum());
+    }
+
+    /**
+     * Starts tracking a replayed hold again. A hold with no time left expires straight away
+     */
+    void restoreHold(SeatHold hold, long remainingMillis) {
+        long customer = CustomerKey.of(hold.getCustomerEmail());
+        customers.tryClaimSeats(customer, hold.getNumSeats(), Integer.MAX_VALUE);
+        customers.addHold(customer, hold.getId());
+
+        if (remainingMillis <= 0) {
+            handleExpiredHold(hold);
+            return;
+        }
+
+        heldSeats.restore(hold, remainingMillis, this::handleExpiredHold);
+    }
+
+
+    /**
+     * Claims the seats against the customer's limit first, so that concurrent holds for the same customer can't
+     * overshoot it, and gives them back if no block fits
+     */
+    private SeatHold holdAvailableBlock(int numSeats, String customerEmail) {
+        if (numSeats <= 0) {
+            return null;
+        }
+
+        long customer = CustomerKey.of(customerEmail);
+
+        if (!customers.tryClaimSeats(customer, numSeats, customerSeatLimit)) {
+            return null;
+        }
+
+        SeatHold hold = priorityIndex != null
+            ? holdBestAvailableBlock(numSeats, customerEmail)
+            : holdFirstAvailableBlock(numSeats, customerEmail);
+
+        if (hold == null && splitPartyRows > 1) {
+            hold = holdSplitParty(numSeats, customerEmail);
+        }
+
+        if (hold == null) {
+            customers.releaseSeats(customer, numSeats);
+        }
+
+        return hold;
+    }
+
+    /**
+     * Finds the best scoring block in the priority index without holding any row lock, then updates only that row,
+     * checking the seats are still free before committing the hold. If another thread took them in the meantime, the
+     * search starts over.
+     */
+    private SeatHold holdBestAvailableBlock(int numSeats, String customerEmail) {
+        while (true) {
+            SeatPriorityIndex.Placement placement = priorityIndex.findBest(numSeats, rows::get);
+
+            if (placement == null) {
+                return null;
+            }
+
+            SeatHold hold = updateRow(placement.rowNum, () -> {
+                Row row = rows.get(placement.rowNum);
+                SeatBlock availableBlock = row.availableBlocks(numSeats)
+                    .filter(b -> b.getStartPosition() <= placement.startPosition
+                        && placement.startPosition + numSeats <= b.getStartPosition() + b.getNumSeats())
+                    .findFirst()
+                    .orElse(null);
+
+                if (availableBlock == null) {
+                    return null;
+                }
+
+                Row.HoldUpdate holdUpdate = row.holdSeats(availableBlock, placement.startPosition, numSeats,
+                    customerEmail);
+
+                if (!replaceRow(row, holdUpdate.row)) {
+                    return null;
+                }
+
+                moveSeats(numSeats, availableSeatCount, heldSeatCount);
+                trackHold(holdUpdate.hold);
+                return holdUpdate.hold;
+            });
+
+            if (hold != null) {
+                return hold;
+            }
+        }
+    }
+
+    /**
+     * Looks up a row that fits in the capacity index without holding any row lock, then updates only the candidate
+     * row, repeating the search within it before committing the hold. If another thread took the seats in the
+     * meantime, the search resumes from the next row.
+     */
+    private SeatHold holdFirstAvailableBlock(int numSeats, String customerEmail) {
+        int fromRow = 0;
+
+        while (fromRow < rows.length()) {
+            int rowNum = capacityIndex.firstRowWithCapacity(numSeats, fromRow);
+
+            if (rowNum < 0) {
+                // couldn't find an available block - return nothing
+                return null;
+            }
+
+            SeatHold hold = updateRow(rowNum, () -> {
+                while (true) {
+                    Row row = rows.get(rowNum);
+                    SeatBlock availableBlock = row.firstAvailableBlock(numSeats).findFirst().orElse(null);
+
+                    if (availableBlock == null) {
+                        return null;
+                    }
+
+                    Row.HoldUpdate holdUpdate = row.holdSeats(availableBlock, numSeats, customerEmail);
+
+                    // replace the current row with the new one and start tracking the hold
+                    if (replaceRow(row, holdUpdate.row)) {
+                        moveSeats(numSeats, availableSeatCount, heldSeatCount);
+                        trackHold(holdUpdate.hold);
+                        return holdUpdate.hold;
+                    }
+                }
+            });
+
+            if (hold != null) {
+                return hold;
+            }
+
+            fromRow = rowNum + 1;
+        }
+
+        return null;
+    }
+
+    /**
+     * Looks for the fewest adjacent rows that can seat the party between them, trying two rows, then three and so on up
+     * to splitPartyRows. Rows that can seat numSeats between them include a row with room for numSeats / numRows of
+     * them, so only the windows around the rows the capacity index finds for that are checked, each one once. The
+     * check reads the rows without a lock, and the window is only locked once it looks like it fits.
+     */
+    private SeatHold holdSplitParty(int numSeats, String customerEmail) {
+        for (int numRows = 2; numRows <= Math.min(splitPartyRows, rows.length()); numRows++) {
+            int minPart = (numSeats + numRows - 1) / numRows;
+            int fromRow = 0;
+            // the windows starting before this row have been tried
+            int nextFirstRow = 0;
+            int candidate;
+
+            while ((candidate = capacityIndex.firstRowWithCapacity(minPart, fromRow)) >= 0) {
+                int lastFirstRow = Math.min(candidate, rows.length() - numRows);
+
+                for (int firstRow = Math.max(nextFirstRow, candidate - numRows + 1); firstRow <= lastFirstRow;
+                     firstRow++) {
+                    if (splitCapacity(firstRow, numRows) < numSeats) {
+                        continue;
+                    }
+
+                    SeatHold hold = holdAcrossRows(firstRow, numRows, numSeats, customerEmail);
+
+                    if (hold != null) {
+                        return hold;
+                    }
+                }
+
+                nextFirstRow = Math.max(nextFirstRow, lastFirstRow + 1);
+                fromRow = candidate + 1;
+            }
+        }
+
+        return null;
+    }
+
+    private int splitCapacity(int firstRow, int numRows) {
+        int capacity = 0;
+
+        for (int rowNum = firstRow; rowNum < firstRow + numRows; rowNum++) {
+            capacity += rows.get(rowNum).largestAvailableBlock();
+        }
+
+        return capacity;
+    }
+
+    /**
+     * Holds a part of the party in each of the rows, under all of their locks
+     * @return null if the rows no longer have room for the party
+     */
+    private SeatHold holdAcrossRows(int firstRow, int numRows, int numSeats, String customerEmail) {
+        return updateRows(IntStream.range(firstRow, firstRow + numRows).toArray(), 0, () -> {
+            int[] parts = splitParty(firstRow, numRows, numSeats);
+
+            if (parts == null) {
+                return null;
+            }
+
+            List<SeatBlock> heldBlocks = new ArrayList<>(numRows);
+            int alignWith = -1;
+
+            for (int i = 0; i < numRows; i++) {
+                if (parts[i] == 0) {
+                    continue;
+                }
+
+                int part = parts[i];
+                int alignTo = alignWith;
+                Row row = rows.get(firstRow + i);
+                SeatBlock availableBlock = alignWith < 0
+                    ? row.firstAvailableBlock(part).findFirst().get()
+                    : row.availableBlocks(part)
+                        .min(Comparator.comparingInt(b -> distance(b, part, alignTo)))
+                        .get();
+
+                // as close as the block allows to the start of the part in the row before
+                int startPosition = alignWith < 0 ? availableBlock.getStartPosition() : Math.max(
+                    availableBlock.getStartPosition(),
+                    Math.min(alignWith, availableBlock.getStartPosition() + availableBlock.getNumSeats() - part));
+
+                Row.HoldUpdate holdUpdate = row.holdSeats(availableBlock, startPosition, part, customerEmail);
+                replaceRow(row, holdUpdate.row);
+                heldBlocks.add(holdUpdate.hold.getBlock());
+                alignWith = startPosition;
+            }
+
+            moveSeats(numSeats, availableSeatCount, heldSeatCount);
+            SeatHold hold = new SeatHold(0, heldBlocks, customerEmail);
+            trackHold(hold);
+            return hold;
+        });
+    }
+
+    /**
+     * Shares the party out over the rows, as evenly as their largest unreserved blocks allow
+     * @return the number of seats to hold in each row, or null if the rows can't seat the party between them
+     */
+    private int[] splitParty(int firstRow, int numRows, int numSeats) {
+        int[] capacities = new int[numRows];
+        int capacityLeft = 0;
+
+        for (int i = 0; i < numRows; i++) {
+            capacities[i] = rows.get(firstRow + i).largestAvailableBlock();
+            capacityLeft += capacities[i];
+        }
+
+        if (capacityLeft < numSeats) {
+            return null;
+        }
+
+        int[] parts = new int[numRows];
+        int remaining = numSeats;
+
+        for (int i = 0; i < numRows; i++) {
+            capacityLeft -= capacities[i];
+
+            // an even share of what is left, or more if the rows after this one can't take the rest
+            int share = (remaining + numRows - i - 1) / (numRows - i);
+            parts[i] = Math.min(capacities[i], Math.max(share, remaining - capacityLeft));
+            remaining -= parts[i];
+        }
+
+        return parts;
+    }
+
+    /**
+     * How far the part would be from startPosition if it were held in the block
+     */
+    private static int distance(SeatBlock block, int part, int startPosition) {
+        int lastStart = block.getStartPosition() + block.getNumSeats() - part;
+        return Math.max(0, Math.max(block.getStartPosition() - startPosition, startPosition - lastStart));
+    }
+
+    /**
+     * Visits the rows in order, skipping any row the capacity index says can't fit the smallest pending request. Each
+     * row is updated once: every pending request is tried against the row in batch order, and the row, capacity index
+     * and counters are updated once for all of the holds made in it.
+     */
+    private List<SeatHold> holdFirstAvailableBlocks(List<HoldRequest> holdRequests) {
+        if (priorityIndex != null) {
+            return holdRequests.stream()
+                .map(r -> holdAvailableBlock(r.getNumSeats(), r.getCustomerEmail()))
+                .collect(Collectors.toList());
+        }
+
+        SeatHold[] holds = new SeatHold[holdRequests.size()];
+        List<Integer> pending = new LinkedList<>();
+
+        for (int i = 0; i < holdRequests.size(); i++) {
+            HoldRequest request = holdRequests.get(i);
+
+            if (request.getNumSeats() > 0 && customers.tryClaimSeats(CustomerKey.of(request.getCustomerEmail()),
+                request.getNumSeats(), customerSeatLimit)) {
+                pending.add(i);
+            }
+        }
+
+        int rowNum = capacityIndex.firstRowWithCapacity(smallestRequest(holdRequests, pending), 0);
+
+        while (!pending.isEmpty() && rowNum >= 0) {
+            int batchRowNum = rowNum;
+            updateRow(rowNum, () -> holdBatchInRow(batchRowNum, holdRequests, pending, holds));
+
+            if (!pending.isEmpty()) {
+                rowNum = capacityIndex.firstRowWithCapacity(smallestRequest(holdRequests, pending), rowNum + 1);
+            }
+        }
+
+        // no row fit the requests that are left - split them, or give their seats back
+        for (int i : pending) {
+            HoldRequest request = holdRequests.get(i);
+
+            if (splitPartyRows > 1) {
+                holds[i] = holdSplitParty(request.getNumSeats(), request.getCustomerEmail());
+            }
+
+            if (holds[i] == null) {
+                customers.releaseSeats(CustomerKey.of(request.getCustomerEmail()), request.getNumSeats());
+            }
+        }
+
+        List<SeatHold> result = new ArrayList<>(holds.length);
+        Collections.addAll(result, holds);
+        return result;
+    }
+
+    /**
+     * Places as many of the pending requests as fit in the row, removing them from pending and filling in their holds
+     */
+    private Void holdBatchInRow(int rowNum, List<HoldRequest> holdRequests, List<Integer> pending, SeatHold[] holds) {
+        while (true) {
+            Row originalRow = rows.get(rowNum);
+            Row row = originalRow;
+            List<Integer> placed = new ArrayList<>();
+            List<SeatHold> rowHolds = new ArrayList<>();
+            int numSeatsHeld = 0;
+
+            for (int i : pending) {
+                HoldRequest request = holdRequests.get(i);
+
+                if (request.getNumSeats() > row.largestAvailableBlock()) {
+                    continue;
+                }
+
+                SeatBlock availableBlock = row.firstAvailableBlock(request.getNumSeats()).findFirst().orElse(null);
+
+                if (availableBlock != null) {
+                    Row.HoldUpdate holdUpdate = row.holdSeats(availableBlock, request.getNumSeats(),
+                        request.getCustomerEmail());
+                    row = holdUpdate.row;
+                    placed.add(i);
+                    rowHolds.add(holdUpdate.hold);
+                    numSeatsHeld += request.getNumSeats();
+                }
+            }
+
+            if (rowHolds.isEmpty()) {
+                return null;
+            }
+
+            if (replaceRow(originalRow, row)) {
+                moveSeats(numSeatsHeld, availableSeatCount, heldSeatCount);
+
+                for (int j = 0; j < placed.size(); j++) {
+                    holds[placed.get(j)] = rowHolds.get(j);
+                    trackHold(rowHolds.get(j));
+                }
+
+                pending.removeAll(placed);
+                return null;
+            }
+        }
+    }
+
+    private static int smallestRequest(List<HoldRequest> holdRequests, List<Integer> pending) {
+        int smallest = Integer.MAX_VALUE;
+
+        for (int i : pending) {
+            smallest = Math.min(smallest, holdRequests.get(i).getNumSeats());
+        }
+
+        return smallest;
+    }
+
+    private boolean releaseSeats(long code, String customerEmail, int numSeats) {
+        boolean released;
+
+        if (lockMode == LockMode.VENUE) {
+            long waitStart = System.nanoTime();
+
+            synchronized (this) {
+                metrics.lockWait.recordSince(waitStart);
+                released = releaseReservedSeats(code, customerEmail, numSeats);
+            }
+        }
+        else {
+            released = releaseReservedSeats(code, customerEmail, numSeats);
+        }
+
+        // like a reservation, a release is only acknowledged once it is durable
+        if (released) {
+            eventListener.awaitDurable();
+        }
+
+        return released;
+    }
+
+    /**
+     * Shrinks or removes the reservation first, which claims the seats - of two releases racing for the same seats,
+     * only one gets past that - and then returns them to their row
+     */
+    private boolean releaseReservedSeats(long code, String customerEmail, int numSeats) {
+        List<SeatBlock> reservedBlocks = reservedSeats.getBlocks(code);
+
+        if (reservedBlocks.isEmpty()) {
+            return false;
+        }
+
+        // the key first, which most mismatches fail without taking the store's lock, then the emails in full - two
+        // emails can share a key. A reservation keeps its customer, so this holds for the rest of the release
+        long reservedCustomer = reservedSeats.getCustomer(code);
+
+        if (reservedCustomer != 0 && reservedCustomer != CustomerKey.of(customerEmail)) {
+            throw new VenueException("Email mismatch when attempting to release reserved seats");
+        }
+
+        String reservedFor = reservedSeats.getCustomerEmail(code);
+
+        if (reservedFor == null) {
+            // released in full meanwhile
+            return false;
+        }
+
+        if (!CustomerKey.normalize(reservedFor).equals(CustomerKey.normalize(customerEmail))) {
+            throw new VenueException("Email mismatch when attempting to release reserved seats");
+        }
+
+        // a release only ever shrinks the reservation, so these rows cover whatever it has by the time they are locked
+        return updateRows(reservedBlocks, () -> {
+            List<SeatBlock> blocks;
+            List<SeatBlock> keptBlocks;
+            int numReleased;
+            long customer;
+
+            // only LockMode.OPTIMISTIC has to go again, if another release of the reservation got there first
+            do {
+                blocks = reservedSeats.getBlocks(code);
+                int numReserved = blocks.stream().mapToInt(SeatBlock::getNumSeats).sum();
+
+                if (blocks.isEmpty() || (numSeats != ALL_SEATS && numSeats > numReserved)) {
+                    return false;
+                }
+
+                numReleased = numSeats == ALL_SEATS ? numReserved : numSeats;
+                keptBlocks = ReservationStore.keptBlocks(blocks, numReleased);
+                customer = reservedSeats.getCustomer(code);
+            } while (!reservedSeats.replace(code, blocks, keptBlocks));
+
+            List<SeatBlock> releasedSeats = ReservationStore.releasedBlocks(blocks, numReleased);
+            releasedSeats.forEach(this::releaseReservedBlock);
+
+            if (keptBlocks.isEmpty()) {
+                customers.removeReservation(customer, code, numReleased);
+            }
+            else {
+                customers.releaseSeats(customer, numReleased);
+            }
+
+            eventListener.seatsReleased(ConfirmationCode.format(code), releasedSeats);
+            return true;
+        });
+    }
+
+    private String reserveHeldSeats(int seatHoldId, String customerEmail) {
         SeatHold hold = heldSeats.get(seatHoldId);
 
         if (hold == null) {
@@ -95,38 +984,237 @@ public class Venue {
             return null;
         }
 
-        if (!hold.getCustomerEmail().equals(customerEmail)) {
+        // the same customer however the email is cased or padded - compared in full, as two emails can share a key
+        if (!CustomerKey.normalize(hold.getCustomerEmail()).equals(CustomerKey.normalize(customerEmail))) {
             throw new VenueException("Email mismatch when attempting to reserve a held reservation");
         }
 
-        String confirmId = UUID.randomUUID().toString();
+        return updateRows(hold.getBlocks(), () -> {
+            // claim the hold - if the expiration task removed it first, its seats have already been released
+            if (!heldSeats.remove(hold)) {
+                return null;
+            }
 
-        // move the reservation to the reserved map
-        heldSeats.remove(seatHoldId);
-        SeatBlock reservedBlock = getReservedBlock(hold.getBlock());
-        reservedSeats.put(confirmId, reservedBlock);
+            // move the reservation to the reservation store - codes are random, so draw another on a collision
+            List<SeatBlock> heldBlocks = hold.getBlocks();
+            List<SeatBlock> reservedBlocks = heldBlocks.size() == 1
+                ? Collections.singletonList(getReservedBlock(heldBlocks.get(0)))
+                : heldBlocks.stream().map(this::getReservedBlock).collect(Collectors.toList());
+            long customer = CustomerKey.of(hold.getCustomerEmail());
+            long code;
 
-        return confirmId;
+            do {
+                code = ConfirmationCode.next();
+            } while (!reservedSeats.put(code, reservedBlocks, hold.getCustomerEmail()));
+
+            customers.reserveHold(customer, seatHoldId, code);
+            String confirmId = ConfirmationCode.format(code);
+            eventListener.seatsReserved(hold, confirmId);
+
+            return confirmId;
+        });
     }
 
-    public SeatBlock findReservation(String confirmId) {
-        return reservedSeats.get(confirmId);
+    /**
+     * Gives a new hold its id, tells the listener and only then makes the hold visible, so it can't be reserved or
+     * expire before the listener has heard of it
+     */
+    private void trackHold(SeatHold hold) {
+        heldSeats.assignId(hold);
+        customers.addHold(CustomerKey.of(hold.getCustomerEmail()), hold.getId());
+        eventListener.seatsHeld(hold, ttlInMillis);
+        heldSeats.put(hold, ttlInMillis, this::handleExpiredHold);
+    }
+
+    /**
+     * Runs an update of the given row under the row's lock - in LockMode.OPTIMISTIC there is none, and the update
+     * relies on replaceRow failing if another thread got there first. The row is published before the lock is let go
+     */
+    private <T> T updateRow(int rowNum, Supplier<T> update) {
+        if (lockMode == LockMode.OPTIMISTIC) {
+            T result = update.get();
+            publish(rowNum);
+            return result;
+        }
+
+        long waitStart = System.nanoTime();
+
+        synchronized (lockFor(rowNum)) {
+            recordRowLockWait(waitStart);
+            T result = update.get();
+            publish(rowNum);
+            return result;
+        }
     }
 
+    /**
+     * Like updateRow, for the rows of all of the blocks - more than one for a split party
+     */
+    private <T> T updateRows(List<SeatBlock> blocks, Supplier<T> update) {
+        if (blocks.size() == 1) {
+            return updateRow(blocks.get(0).getRowNum(), update);
+        }
+
+        return updateRows(blocks.stream().mapToInt(SeatBlock::getRowNum).distinct().sorted().toArray(), 0, update);
+    }
+
+    /**
+     * Takes the locks of the rows from the given index on, in ascending order, so that two updates of overlapping rows
+     * can't deadlock. Splits are only allowed with row locks, so there is always a lock to take. The rows are published
+     * together, once the update has changed all of them
+     */
+    private <T> T updateRows(int[] rowNums, int from, Supplier<T> update) {
+        long waitStart = System.nanoTime();
+
+        synchronized (lockFor(rowNums[from])) {
+            recordRowLockWait(waitStart);
+
+            if (from < rowNums.length - 1) {
+                return updateRows(rowNums, from + 1, update);
+            }
+
+            T result = update.get();
+            publish(rowNums);
+            return result;
+        }
+    }
+
+    /**
+     * Swaps in a snapshot with the latest version of the row. Under the row's lock the row can't change while it is
+     * frozen; in LockMode.OPTIMISTIC it can, but the row is read again whenever the compare-and-set fails, so a
+     * publish that lost the race to a newer version of the row can't put back the older one
+     */
+    private void publish(int rowNum) {
+        VenueSnapshot current;
+        VenueSnapshot next;
+
+        do {
+            current = snapshot.get();
+            next = current.withRow(rows.get(rowNum).frozen());
+        } while (next != current && !snapshot.compareAndSet(current, next));
+    }
+
+    /**
+     * Like publish, for several rows in one version
+     */
+    private void publish(int[] rowNums) {
+        VenueSnapshot current;
+        VenueSnapshot next;
+
+        do {
+            current = snapshot.get();
+            next = current;
+
+            for (int rowNum : rowNums) {
+                next = next.withRow(rows.get(rowNum).frozen(), current.getVersion() + 1);
+            }
+        } while (next != current && !snapshot.compareAndSet(current, next));
+    }
+
+    /**
+     * The monitor guarding updates to the given row. In LockMode.VENUE every row shares the Venue's monitor
+     */
+    private Object lockFor(int rowNum) {
+        return lockMode == LockMode.ROW ? rowLocks[rowNum] : this;
+    }
+
+    /**
+     * Row locks are only separate locks in LockMode.ROW - otherwise the wait was already recorded for the venue lock
+     */
+    private void recordRowLockWait(long waitStartNanos) {
+        if (lockMode == LockMode.ROW) {
+            metrics.lockWait.recordSince(waitStartNanos);
+        }
+    }
 
     private void handleExpiredHold(SeatHold expiredHold) {
-        Row existingRow = rows.get(expiredHold.getBlock().getRowNum());
-        Row newRow = existingRow.withBlockUnreserved(expiredHold.getBlock());
-        rows.set(existingRow.getRowNum(), newRow);
+        updateRows(expiredHold.getBlocks(), () -> {
+            expiredHold.getBlocks().forEach(this::releaseHeldBlock);
+            customers.removeHold(CustomerKey.of(expiredHold.getCustomerEmail()), expiredHold.getId(),
+                expiredHold.getNumSeats());
+            eventListener.holdExpired(expiredHold);
+            return null;
+        });
+
+        metrics.recordExpiry();
+    }
+
+    /**
+     * Only called once the hold has been claimed, so nothing else touches its block: a failed replaceRow means another
+     * part of the row changed, and the update is simply repeated on the new version
+     */
+    private void releaseHeldBlock(SeatBlock heldBlock) {
+        Row existingRow;
+
+        do {
+            existingRow = rows.get(heldBlock.getRowNum());
+        } while (!replaceRow(existingRow, existingRow.withBlockUnreserved(heldBlock)));
+
+        moveSeats(heldBlock.getNumSeats(), heldSeatCount, availableSeatCount);
+    }
+
+    /**
+     * Like releaseHeldBlock, for reserved seats whose reservation has already been shrunk or removed
+     */
+    private void releaseReservedBlock(SeatBlock reservedSeats) {
+        Row existingRow;
+
+        do {
+            existingRow = rows.get(reservedSeats.getRowNum());
+        } while (!replaceRow(existingRow, existingRow.withSeatsReleased(reservedSeats)));
+
+        moveSeats(reservedSeats.getNumSeats(), reservedSeatCount, availableSeatCount);
     }
 
     private SeatBlock getReservedBlock(SeatBlock heldBlock) {
-        Row exitingRow = rows.get(heldBlock.getRowNum());
-        int blockIndex = exitingRow.getBlocks().indexOf(heldBlock);
+        Row existingRow;
+
+        do {
+            existingRow = rows.get(heldBlock.getRowNum());
+        } while (!replaceRow(existingRow, existingRow.withBlockReserved(heldBlock)));
+
+        moveSeats(heldBlock.getNumSeats(), heldSeatCount, reservedSeatCount);
+
+        return new SeatBlock(SeatBlockType.RESERVED,
+            heldBlock.getRowNum(), heldBlock.getStartPosition(), heldBlock.getNumSeats());
+    }
+
+    /**
+     * Swaps in the new version of a row, if the row is still the version it was derived from, and keeps the indexes
+     * in step with it. Under the row's lock nothing else can have replaced the row, so this only fails in
+     * LockMode.OPTIMISTIC
+     * @return false if another thread replaced the row first
+     */
+    private boolean replaceRow(Row expected, Row row) {
+        if (!rows.compareAndSet(row.getRowNum(), expected, row)) {
+            return false;
+        }
+
+        updateIndexes(row.getRowNum());
+        return true;
+    }
+
+    /**
+     * Without a lock, the row can be replaced again between reading it and updating the indexes, so whoever replaced
+     * it last may have been overtaken by an older update. Checking the row afterwards and going again if it changed
+     * leaves the indexes describing the latest version
+     */
+    private void updateIndexes(int rowNum) {
+        Row row;
+
+        do {
+            row = rows.get(rowNum);
+            capacityIndex.update(rowNum, row.largestAvailableBlock());
+
+            if (priorityIndex != null) {
+                priorityIndex.update(rowNum, row.largestAvailableBlock());
+            }
+        } while (rows.get(rowNum) != row);
+    }
 
-        Row newRow = exitingRow.withBlockReserved(heldBlock);
-        rows.set(exitingRow.getRowNum(), newRow);
-        return newRow.getBlocks().get(blockIndex);
+    private static void moveSeats(int numSeats, AtomicInteger from, AtomicInteger to) {
+        from.addAndGet(-numSeats);
+        to.addAndGet(numSeats);
     }
 
 }
@@ -0,0 +1,215 @@
+package wm.assignment.venue;
+
+import wm.assignment.exception.VenueException;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Binary checkpoint of a venue's JournalState, taken at a known position in its journal. Restoring a checkpoint and
+ * replaying the journal from that position gives the same venue as replaying the whole journal.
+ *
+ * Layout (big endian):
+ *   header       magic, version, numRows, numColumns (ints), journalPosition (long)
+ *   holds        count, then per hold: id (int), blocks, expiresAtMillis (long), email
+ *   reservations count, then per reservation: confirmation code (long), blocks, email
+ *   trailer      CRC32 of everything before it
+ * Blocks are a count, then rowNum, startPosition and numSeats (ints) per block - more than one for a party that was
+ * split over several rows. Strings are an int byte count followed by UTF-8. The seat map is not stored separately:
+ * it is rebuilt from the held and reserved blocks.
+ *
+ * Checkpoints are written to a temporary file that is moved into place once it is on disk, so a crash leaves either
+ * the old checkpoint or the new one. They are read through a memory mapping.
+ */
+class VenueCheckpoint {
+    private static final int MAGIC = 0x56434b50; // "VCKP"
+    // since 2, hold ids name their HoldSlab slot; since 3, codes are longs; since 4, reservations have a customer key;
+    // since 5, holds and reservations can have several blocks; since 6, string lengths are ints; since 7, reservations
+    // have the customer's email rather than its key
+    private static final int VERSION = 7;
+    private static final int TRAILER_SIZE = 4;
+
+    private final int numRows;
+    private final int numColumns;
+    private final long journalPosition;
+    private final JournalState state;
+
+    VenueCheckpoint(int numRows, int numColumns, long journalPosition, JournalState state) {
+        this.numRows = numRows;
+        this.numColumns = numColumns;
+        this.journalPosition = journalPosition;
+        this.state = state;
+    }
+
+    int getNumRows() {
+        return numRows;
+    }
+
+    int getNumColumns() {
+        return numColumns;
+    }
+
+    long getJournalPosition() {
+        return journalPosition;
+    }
+
+    JournalState getState() {
+        return state;
+    }
+
+    void write(Path path) {
+        Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+
+        try (FileOutputStream file = new FileOutputStream(tempPath.toFile())) {
+            CheckedOutputStream checked = new CheckedOutputStream(file, new CRC32());
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(checked, 64 * 1024));
+
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(numRows);
+            out.writeInt(numColumns);
+            out.writeLong(journalPosition);
+
+            out.writeInt(state.getHolds().size());
+            for (JournalState.ReplayedHold replayed : state.getHolds()) {
+                out.writeInt(replayed.hold.getId());
+                writeBlocks(out, replayed.hold.getBlocks());
+                out.writeLong(replayed.expiresAtMillis);
+                writeString(out, replayed.hold.getCustomerEmail());
+            }
+
+            out.writeInt(state.getReservations().size());
+            state.getReservations().forEach((code, blocks, customerEmail) -> {
+                try {
+                    out.writeLong(code);
+                    writeBlocks(out, blocks);
+                    writeString(out, customerEmail);
+                }
+                catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+
+            out.flush();
+            out.writeInt((int) checked.getChecksum().getValue());
+            out.flush();
+
+            file.getFD().sync();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Cannot write checkpoint " + tempPath, e);
+        }
+        catch (UncheckedIOException e) {
+            // from writing the reservations
+            throw new UncheckedIOException("Cannot write checkpoint " + tempPath, e.getCause());
+        }
+
+        try {
+            Files.move(tempPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Cannot move checkpoint into place at " + path, e);
+        }
+    }
+
+    static VenueCheckpoint read(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (buffer.remaining() < 24 + TRAILER_SIZE || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new VenueException("Not a venue checkpoint: " + path);
+            }
+
+            int trailer = buffer.limit() - TRAILER_SIZE;
+            CRC32 checksum = new CRC32();
+            ByteBuffer body = buffer.duplicate();
+            body.position(0).limit(trailer);
+            checksum.update(body);
+
+            if ((int) checksum.getValue() != buffer.getInt(trailer)) {
+                throw new VenueException("Checkpoint is corrupt: " + path);
+            }
+
+            int numRows = buffer.getInt();
+            int numColumns = buffer.getInt();
+            long journalPosition = buffer.getLong();
+            JournalState state = new JournalState();
+
+            int numHolds = buffer.getInt();
+            for (int i = 0; i < numHolds; i++) {
+                int seatHoldId = buffer.getInt();
+                List<SeatBlock> heldBlocks = readBlocks(buffer, SeatBlockType.HOLD);
+                long expiresAtMillis = buffer.getLong();
+                state.hold(seatHoldId, heldBlocks, readString(buffer), expiresAtMillis);
+            }
+
+            int numReservations = buffer.getInt();
+            for (int i = 0; i < numReservations; i++) {
+                long code = buffer.getLong();
+                List<SeatBlock> reservedBlocks = readBlocks(buffer, SeatBlockType.RESERVED);
+                state.getReservations().put(code, reservedBlocks, readString(buffer));
+            }
+
+            return new VenueCheckpoint(numRows, numColumns, journalPosition, state);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Cannot read checkpoint " + path, e);
+        }
+    }
+
+    private static void writeBlocks(DataOutputStream out, List<SeatBlock> blocks) throws IOException {
+        out.writeInt(blocks.size());
+
+        for (SeatBlock block : blocks) {
+            out.writeInt(block.getRowNum());
+            out.writeInt(block.getStartPosition());
+            out.writeInt(block.getNumSeats());
+        }
+    }
+
+    private static List<SeatBlock> readBlocks(ByteBuffer buffer, SeatBlockType blockType) {
+        int numBlocks = buffer.getInt();
+
+        if (numBlocks == 1) {
+            return Collections.singletonList(
+                new SeatBlock(blockType, buffer.getInt(), buffer.getInt(), buffer.getInt()));
+        }
+
+        List<SeatBlock> blocks = new ArrayList<>(numBlocks);
+
+        for (int i = 0; i < numBlocks; i++) {
+            blocks.add(new SeatBlock(blockType, buffer.getInt(), buffer.getInt(), buffer.getInt()));
+        }
+
+        return blocks;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,552 @@
+package wm.assignment.venue;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import wm.assignment.exception.VenueException;
+import wm.assignment.util.ExecutorRegistry;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only, memory-mapped write-ahead journal of the holds, extensions, reservations, releases and expiries of a
+ * Venue.
+ *
+ * Records are appended to a mapped window of the file while the Venue holds the affected row's lock. Only
+ * reservations and releases have to be durable before they are acknowledged, and they wait for it after the lock is
+ * released: the first waiter forces the window for everything appended so far, and any reservation appended in the
+ * meantime is covered by the same fsync (group commit). Holds, extensions and expiries become durable with the next
+ * fsync.
+ *
+ * On startup, replay rebuilds the Venue from the journal. Holds whose TTL ran out while the service was down are
+ * released (and journaled as expired). Each record carries a length and a CRC32, so a record torn by a crash ends the
+ * replay and is overwritten by the next append.
+ *
+ * With a checkpoint path, a background thread periodically applies the records appended since the last checkpoint to
+ * a private copy of the journal's state and writes it out as a VenueCheckpoint. Replay then starts from the latest
+ * checkpoint and only reads the journal from the position it was taken at, so restart time is bounded by the size of
+ * the venue rather than the length of its history. Checkpointing only reads the journal, so it never blocks holds or
+ * reservations.
+ *
+ * Usage:
+ *   VenueJournal journal = new VenueJournal(journalPath, checkpointPath, TimeUnit.MINUTES.toMillis(1));
+ *   Venue venue = new Venue(numRows, numColumns, ttlInMillis);
+ *   journal.replay(venue);
+ */
+public class VenueJournal implements SeatEventListener, Closeable {
+    private final static Log log = LogFactory.getLog(VenueJournal.class);
+
+    static final int DEFAULT_WINDOW_SIZE = 16 * 1024 * 1024;
+
+    private static final int MAGIC = 0x564a4e4c; // "VJNL"
+    // since 2, hold ids name their HoldSlab slot; since 3, codes are longs; since 4, holds can be extended; since 5,
+    // reserved seats can be released; since 6, a hold can have several blocks; since 7, string lengths are ints
+    private static final int VERSION = 7;
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    private static final byte HOLD = 1;
+    private static final byte RESERVE = 2;
+    private static final byte EXPIRE = 3;
+    private static final byte EXTEND = 4;
+    private static final byte RELEASE = 5;
+
+    private final FileChannel channel;
+    private final int windowSize;
+    private final Path checkpointPath;
+    private final long checkpointIntervalMillis;
+
+    // guards the window and the append position
+    private final Object appendLock = new Object();
+    // serializes fsyncs - whoever holds it forces on behalf of every waiter
+    private final Object forceLock = new Object();
+
+    private MappedByteBuffer window;
+    private long windowStart;
+
+    private volatile long appendedPosition;
+    private volatile long forcedPosition;
+    private volatile boolean replayed;
+    private volatile boolean closed;
+
+    private int numRows;
+    private int numColumns;
+
+    // the checkpointer's copy of the state, as of shadowPosition in the journal - guarded by checkpointLock
+    private final Object checkpointLock = new Object();
+    private JournalState shadowState;
+    private long shadowPosition;
+    private long checkpointPosition;
+    private ScheduledExecutorService checkpointExecutor;
+
+    public VenueJournal(Path path) {
+        this(path, null, 0);
+    }
+
+    /**
+     * @param checkpointPath where to keep the latest checkpoint
+     * @param checkpointIntervalMillis how often to take a checkpoint in the background - 0 to only take them when
+     *                                 checkpoint() is called
+     */
+    public VenueJournal(Path path, Path checkpointPath, long checkpointIntervalMillis) {
+        this(path, checkpointPath, checkpointIntervalMillis, DEFAULT_WINDOW_SIZE);
+    }
+
+    VenueJournal(Path path, int windowSize) {
+        this(path, null, 0, windowSize);
+    }
+
+    VenueJournal(Path path, Path checkpointPath, long checkpointIntervalMillis, int windowSize) {
+        this.windowSize = windowSize;
+        this.checkpointPath = checkpointPath;
+        this.checkpointIntervalMillis = checkpointIntervalMillis;
+
+        try {
+            this.channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Cannot open journal " + path, e);
+        }
+    }
+
+    /**
+     * Rebuilds the venue from the journal, then starts journaling the venue's events. Must be called once, on a
+     * freshly constructed venue, before it is used
+     */
+    public void replay(Venue venue) {
+        if (replayed) {
+            throw new VenueException("The journal has already been replayed");
+        }
+
+        numRows = venue.getNumRows();
+        numColumns = venue.getNumColumns();
+
+        JournalState state = new JournalState();
+        long end;
+
+        try {
+            if (channel.size() == 0) {
+                if (checkpointPath != null && Files.exists(checkpointPath)) {
+                    throw new VenueException("Found a checkpoint without the journal it was taken from");
+                }
+
+                end = writeHeader();
+            }
+            else {
+                checkHeader();
+                long from = HEADER_SIZE;
+
+                if (checkpointPath != null && Files.exists(checkpointPath)) {
+                    VenueCheckpoint checkpoint = VenueCheckpoint.read(checkpointPath);
+
+                    if (checkpoint.getNumRows() != numRows || checkpoint.getNumColumns() != numColumns) {
+                        throw new VenueException("The checkpoint was taken of a venue of a different size");
+                    }
+
+                    if (checkpoint.getJournalPosition() > channel.size()) {
+                        throw new VenueException("The checkpoint is ahead of the journal");
+                    }
+
+                    state = checkpoint.getState();
+                    from = checkpoint.getJournalPosition();
+                    checkpointPosition = from;
+                    log.info("Loaded checkpoint taken at journal position " + from);
+                }
+
+                end = readRecords(state, from, channel.size());
+                clearTornTail(end);
+
+                log.info("Replayed journal up to position " + end + ": " + state.getHolds().size() + " holds and " +
+                    state.getReservations().size() + " reservations");
+            }
+
+            mapWindow(end);
+            appendedPosition = end;
+            forcedPosition = end;
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Cannot replay journal", e);
+        }
+
+        // the checkpointer carries on from a copy of what was replayed
+        shadowState = state.copy();
+        shadowPosition = end;
+
+        Collection<JournalState.ReplayedHold> holds = state.restore(venue);
+        replayed = true;
+
+        // from here on every change is journaled - including the holds that expired while we were down
+        venue.setEventListener(this);
+
+        long now = System.currentTimeMillis();
+        holds.forEach(h -> venue.restoreHold(h.hold, h.expiresAtMillis - now));
+
+        if (checkpointPath != null && checkpointIntervalMillis > 0) {
+            checkpointExecutor = Executors.newSingleThreadScheduledExecutor();
+            ExecutorRegistry.register(checkpointExecutor);
+
+            checkpointExecutor.scheduleWithFixedDelay(this::checkpointInBackground,
+                checkpointIntervalMillis, checkpointIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Brings the checkpointer's copy of the state up to date with everything journaled so far and writes it to the
+     * checkpoint path. Does nothing if nothing has been journaled since the last checkpoint
+     */
+    public void checkpoint() {
+        if (checkpointPath == null || !replayed) {
+            throw new VenueException("Checkpoints need a checkpoint path and a replayed journal");
+        }
+
+        synchronized (checkpointLock) {
+            // a checkpoint must never be ahead of the journal on disk
+            awaitDurable();
+            long upTo = forcedPosition;
+
+            if (upTo == checkpointPosition) {
+                return;
+            }
+
+            try {
+                if (upTo > shadowPosition) {
+                    readRecords(shadowState, shadowPosition, upTo);
+                    shadowPosition = upTo;
+                }
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException("Cannot read journal", e);
+            }
+
+            new VenueCheckpoint(numRows, numColumns, shadowPosition, shadowState).write(checkpointPath);
+            checkpointPosition = shadowPosition;
+        }
+    }
+
+    @Override
+    public void seatsHeld(SeatHold hold, long ttlInMillis) {
+        byte[] email = hold.getCustomerEmail().getBytes(StandardCharsets.UTF_8);
+        List<SeatBlock> blocks = hold.getBlocks();
+
+        ByteBuffer record = newRecord(HOLD, 4 + 4 + 3 * 4 * blocks.size() + 8 + 4 + email.length);
+        record.putInt(hold.getId());
+        record.putInt(blocks.size());
+
+        for (int i = 0; i < blocks.size(); i++) {
+            record.putInt(blocks.get(i).getRowNum());
+            record.putInt(blocks.get(i).getStartPosition());
+            record.putInt(blocks.get(i).getNumSeats());
+        }
+
+        record.putLong(System.currentTimeMillis() + ttlInMillis);
+        putString(record, email);
+        append(record);
+    }
+
+    @Override
+    public void holdExtended(SeatHold hold, long ttlInMillis) {
+        ByteBuffer record = newRecord(EXTEND, 4 + 8);
+        record.putInt(hold.getId());
+        record.putLong(System.currentTimeMillis() + ttlInMillis);
+        append(record);
+    }
+
+    @Override
+    public void seatsReserved(SeatHold hold, String confirmId) {
+        ByteBuffer record = newRecord(RESERVE, 4 + 8);
+        record.putInt(hold.getId());
+        record.putLong(ConfirmationCode.parse(confirmId));
+        append(record);
+    }
+
+    @Override
+    public void seatsReleased(String confirmId, List<SeatBlock> releasedSeats) {
+        ByteBuffer record = newRecord(RELEASE, 8 + 4);
+        record.putLong(ConfirmationCode.parse(confirmId));
+        record.putInt(releasedSeats.stream().mapToInt(SeatBlock::getNumSeats).sum());
+        append(record);
+    }
+
+    @Override
+    public void holdExpired(SeatHold hold) {
+        ByteBuffer record = newRecord(EXPIRE, 4);
+        record.putInt(hold.getId());
+        append(record);
+    }
+
+    /**
+     * Blocks until everything appended so far has been forced to disk
+     */
+    @Override
+    public void awaitDurable() {
+        long target = appendedPosition;
+
+        if (forcedPosition >= target) {
+            return;
+        }
+
+        synchronized (forceLock) {
+            // another thread may have forced past our record while we waited for the lock
+            if (forcedPosition >= target) {
+                return;
+            }
+
+            long upTo;
+            MappedByteBuffer toForce;
+
+            synchronized (appendLock) {
+                upTo = appendedPosition;
+                toForce = window;
+            }
+
+            toForce.force();
+            forcedPosition = upTo;
+        }
+    }
+
+    /**
+     * Forces any outstanding records to disk and closes the file. Events after this are no longer journaled
+     */
+    @Override
+    public void close() throws IOException {
+        if (checkpointExecutor != null) {
+            checkpointExecutor.shutdown();
+        }
+
+        synchronized (appendLock) {
+            closed = true;
+        }
+
+        if (replayed) {
+            awaitDurable();
+        }
+
+        channel.close();
+    }
+
+    private long writeHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putInt(numRows).putInt(numColumns);
+        header.flip();
+        channel.write(header, 0);
+        channel.force(false);
+
+        return HEADER_SIZE;
+    }
+
+    private void checkHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        channel.read(header, 0);
+        header.flip();
+
+        if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC || header.getInt() != VERSION) {
+            throw new VenueException("Not a venue journal");
+        }
+
+        if (header.getInt() != numRows || header.getInt() != numColumns) {
+            throw new VenueException("The journal was written for a venue of a different size");
+        }
+    }
+
+    /**
+     * Applies the intact records between the two positions to the state
+     * @return the position after the last record that was applied
+     */
+    private long readRecords(JournalState state, long from, long to) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+        int numRecords = 0;
+
+        ByteBuffer record;
+        while ((record = nextRecord(buffer)) != null) {
+            byte type = record.get();
+
+            if (type == HOLD) {
+                int seatHoldId = record.getInt();
+                int numBlocks = record.getInt();
+                List<SeatBlock> heldBlocks = new ArrayList<>(numBlocks);
+
+                for (int i = 0; i < numBlocks; i++) {
+                    heldBlocks.add(
+                        new SeatBlock(SeatBlockType.HOLD, record.getInt(), record.getInt(), record.getInt()));
+                }
+
+                long expiresAtMillis = record.getLong();
+                state.hold(seatHoldId, heldBlocks, getString(record), expiresAtMillis);
+            }
+            else if (type == RESERVE) {
+                int seatHoldId = record.getInt();
+                state.reserve(seatHoldId, record.getLong());
+            }
+            else if (type == EXPIRE) {
+                state.expire(record.getInt());
+            }
+            else if (type == EXTEND) {
+                int seatHoldId = record.getInt();
+                state.extend(seatHoldId, record.getLong());
+            }
+            else if (type == RELEASE) {
+                long confirmationCode = record.getLong();
+                state.release(confirmationCode, record.getInt());
+            }
+            else {
+                throw new VenueException("Unknown journal record type " + type);
+            }
+
+            numRecords++;
+        }
+
+        log.debug("Read " + numRecords + " journal records from position " + from);
+        return from + buffer.position();
+    }
+
+    private void checkpointInBackground() {
+        try {
+            checkpoint();
+        }
+        catch (RuntimeException e) {
+            log.error("Checkpoint failed", e);
+        }
+    }
+
+    /**
+     * Reads the record at the buffer's position. Returns null, leaving the position at the record, if it is the end
+     * of the journal or was torn by a crash
+     */
+    private static ByteBuffer nextRecord(ByteBuffer buffer) {
+        int start = buffer.position();
+
+        if (buffer.remaining() < RECORD_HEADER_SIZE) {
+            return null;
+        }
+
+        int length = buffer.getInt(start);
+        int crc = buffer.getInt(start + 4);
+
+        if (length <= 0 || length > buffer.remaining() - RECORD_HEADER_SIZE) {
+            return null;
+        }
+
+        ByteBuffer record = buffer.duplicate();
+        record.position(start + RECORD_HEADER_SIZE).limit(start + RECORD_HEADER_SIZE + length);
+
+        CRC32 checksum = new CRC32();
+        checksum.update(record.duplicate());
+
+        if ((int) checksum.getValue() != crc) {
+            return null;
+        }
+
+        buffer.position(start + RECORD_HEADER_SIZE + length);
+        return record.slice();
+    }
+
+    /**
+     * Zeroes whatever a crash left behind the last intact record, so that it can't be mistaken for part of the
+     * journal once new records have been appended in front of it
+     */
+    private void clearTornTail(long end) throws IOException {
+        if (end + 4 > channel.size()) {
+            return;
+        }
+
+        ByteBuffer next = ByteBuffer.allocate(4);
+        channel.read(next, end);
+
+        if (next.getInt(0) == 0) {
+            return;
+        }
+
+        log.warn("Discarding a torn record at the end of the journal");
+
+        ByteBuffer zeroes = ByteBuffer.allocate(64 * 1024);
+        for (long position = end; position < channel.size(); position += zeroes.capacity()) {
+            zeroes.clear();
+            zeroes.limit((int) Math.min(zeroes.capacity(), channel.size() - position));
+            channel.write(zeroes, position);
+        }
+    }
+
+    private ByteBuffer newRecord(byte type, int bodyLength) {
+        ByteBuffer record = ByteBuffer.allocate(1 + bodyLength);
+        record.put(type);
+        return record;
+    }
+
+    private static void putString(ByteBuffer record, byte[] value) {
+        record.putInt(value.length);
+        record.put(value);
+    }
+
+    private static String getString(ByteBuffer record) {
+        byte[] value = new byte[record.getInt()];
+        record.get(value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+    private void append(ByteBuffer record) {
+        record.flip();
+
+        CRC32 checksum = new CRC32();
+        checksum.update(record.duplicate());
+
+        int length = record.remaining();
+
+        if (RECORD_HEADER_SIZE + length > windowSize) {
+            throw new VenueException("Journal record is larger than the mapped window");
+        }
+
+        synchronized (appendLock) {
+            if (!replayed) {
+                throw new VenueException("The journal must be replayed before it is appended to");
+            }
+
+            if (closed) {
+                return;
+            }
+
+            int offset = (int) (appendedPosition - windowStart);
+
+            if (offset + RECORD_HEADER_SIZE + length > window.capacity()) {
+                // the window is full - make sure it is on disk before moving on to the next one
+                window.force();
+                mapWindow(appendedPosition);
+                offset = 0;
+            }
+
+            // the length goes in last, so a record is only visible to replay once it is complete
+            window.position(offset + RECORD_HEADER_SIZE);
+            window.put(record);
+            window.putInt(offset + 4, (int) checksum.getValue());
+            window.putInt(offset, length);
+
+            appendedPosition += RECORD_HEADER_SIZE + length;
+        }
+    }
+
+    private void mapWindow(long start) {
+        try {
+            window = channel.map(FileChannel.MapMode.READ_WRITE, start, windowSize);
+            windowStart = start;
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Cannot map journal", e);
+        }
+    }
+
+}
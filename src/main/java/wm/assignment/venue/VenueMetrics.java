@@ -0,0 +1,156 @@
+package wm.assignment.venue;
+
+import wm.assignment.exception.VenueException;
+import wm.assignment.util.LatencyHistogram;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * Always-on instrumentation of a Venue: latency histograms for holds and reservations, lock wait, expiry lag and the
+ * life cycle of holds. Recording is a few atomic increments per request, with no allocation or locking.
+ *
+ * Read it through the getters (or Venue.getMetrics()), or register it with the platform MBean server to read it over
+ * JMX.
+ */
+public class VenueMetrics implements VenueMetricsMXBean {
+    private static final String DOMAIN = "wm.assignment";
+
+    final LatencyHistogram holdLatency = new LatencyHistogram();
+    final LatencyHistogram reserveLatency = new LatencyHistogram();
+    final LatencyHistogram lockWait = new LatencyHistogram();
+    final LatencyHistogram expiryLag = new LatencyHistogram();
+
+    private final LongAdder holdCount = new LongAdder();
+    private final LongAdder failedHoldCount = new LongAdder();
+    private final LongAdder reservationCount = new LongAdder();
+    private final LongAdder expiryCount = new LongAdder();
+
+    private final IntSupplier liveHolds;
+
+    private ObjectName objectName;
+
+    VenueMetrics(IntSupplier liveHolds) {
+        this.liveHolds = liveHolds;
+    }
+
+    void recordHold(SeatHold hold) {
+        (hold != null ? holdCount : failedHoldCount).increment();
+    }
+
+    void recordReservation() {
+        reservationCount.increment();
+    }
+
+    void recordExpiry() {
+        expiryCount.increment();
+    }
+
+    @Override
+    public LatencyHistogram.Snapshot getHoldLatency() {
+        return holdLatency.snapshot();
+    }
+
+    @Override
+    public LatencyHistogram.Snapshot getReserveLatency() {
+        return reserveLatency.snapshot();
+    }
+
+    @Override
+    public LatencyHistogram.Snapshot getLockWait() {
+        return lockWait.snapshot();
+    }
+
+    @Override
+    public LatencyHistogram.Snapshot getExpiryLag() {
+        return expiryLag.snapshot();
+    }
+
+    @Override
+    public long getHoldCount() {
+        return holdCount.sum();
+    }
+
+    @Override
+    public long getFailedHoldCount() {
+        return failedHoldCount.sum();
+    }
+
+    @Override
+    public long getReservationCount() {
+        return reservationCount.sum();
+    }
+
+    @Override
+    public long getExpiryCount() {
+        return expiryCount.sum();
+    }
+
+    @Override
+    public double getHoldConversionRate() {
+        long reserved = reservationCount.sum();
+        long finished = reserved + expiryCount.sum();
+
+        return finished == 0 ? 0 : (double) reserved / finished;
+    }
+
+    @Override
+    public int getLiveHolds() {
+        return liveHolds.getAsInt();
+    }
+
+    /**
+     * Registers these metrics with the platform MBean server as wm.assignment:type=Venue,name=[name]
+     * @return the name they were registered under
+     */
+    public synchronized ObjectName register(String name) {
+        try {
+            ObjectName newName = ObjectName.getInstance(DOMAIN + ":type=Venue,name=" + ObjectName.quote(name));
+
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, newName);
+            objectName = newName;
+            return newName;
+        }
+        catch (JMException e) {
+            throw new VenueException("Cannot register venue metrics as " + name + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Removes these metrics from the platform MBean server, if they were registered
+     */
+    public synchronized void unregister() {
+        if (objectName == null) {
+            return;
+        }
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+        try {
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+        }
+        catch (JMException e) {
+            throw new VenueException("Cannot unregister venue metrics " + objectName + ": " + e.getMessage());
+        }
+
+        objectName = null;
+    }
+
+    @Override
+    public String toString() {
+        return "holds=" + getHoldCount() + " failedHolds=" + getFailedHoldCount()
+            + " reservations=" + getReservationCount() + " expiries=" + getExpiryCount()
+            + String.format(" conversion=%.2f", getHoldConversionRate()) + " liveHolds=" + getLiveHolds()
+            + "\n  holdLatency(ns): " + getHoldLatency()
+            + "\n  reserveLatency(ns): " + getReserveLatency()
+            + "\n  lockWait(ns): " + getLockWait()
+            + "\n  expiryLag(ns): " + getExpiryLag();
+    }
+
+}
@@ -0,0 +1,46 @@
+package wm.assignment.venue;
+
+import wm.assignment.util.LatencyHistogram;
+
+/**
+ * JMX view of a Venue's VenueMetrics. Latencies and lags are in nanoseconds, and every count is cumulative since the
+ * venue was created
+ */
+public interface VenueMetricsMXBean {
+
+    /**
+     * Time spent in Venue.findAndHoldSeats, successful or not
+     */
+    LatencyHistogram.Snapshot getHoldLatency();
+
+    /**
+     * Time spent in Venue.reserveSeats, including the wait for the reservation to become durable
+     */
+    LatencyHistogram.Snapshot getReserveLatency();
+
+    /**
+     * Time spent waiting for the venue lock (LockMode.VENUE) or a row lock (LockMode.ROW) on the hold and reserve paths
+     */
+    LatencyHistogram.Snapshot getLockWait();
+
+    /**
+     * How long after its TTL each hold was actually released
+     */
+    LatencyHistogram.Snapshot getExpiryLag();
+
+    long getHoldCount();
+
+    long getFailedHoldCount();
+
+    long getReservationCount();
+
+    long getExpiryCount();
+
+    /**
+     * The share of finished holds - reserved or expired - that were reserved
+     */
+    double getHoldConversionRate();
+
+    int getLiveHolds();
+
+}
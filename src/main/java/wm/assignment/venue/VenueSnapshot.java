@@ -0,0 +1,239 @@
+package wm.assignment.venue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * An immutable view of every row of a Venue, as of one version. Readers get the latest snapshot from Venue.snapshot
+ * in constant time and without a lock, and can query it as often as they like: it never changes underneath them.
+ *
+ * The rows are kept in a persistent 32-way trie. A change to a row copies the nodes on the path to that row's leaf -
+ * two or three small arrays, even for tens of thousands of rows - and shares the rest with the previous version.
+ * The Venue publishes each new version, under the locks of the rows that changed, with a single compare-and-set.
+ * An update of several rows at once, like a hold split over several rows, is published as one version.
+ *
+ * The rows are frozen (see Row.frozen), and the seat counts are adjusted along with every row that changes, so the
+ * counts always agree with the rows.
+ */
+public class VenueSnapshot {
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+
+    private final long version;
+    private final int numRows;
+    private final int numColumns;
+
+    // the leaves hold Rows, every other node holds the nodes below it. Only the last node of a level can be partly full
+    private final Object[] root;
+    private final int rootShift;
+
+    private final int availableSeatCount;
+    private final int heldSeatCount;
+    private final int reservedSeatCount;
+
+    private VenueSnapshot(long version, int numRows, int numColumns, Object[] root, int rootShift,
+                          int availableSeatCount, int heldSeatCount, int reservedSeatCount) {
+        this.version = version;
+        this.numRows = numRows;
+        this.numColumns = numColumns;
+        this.root = root;
+        this.rootShift = rootShift;
+        this.availableSeatCount = availableSeatCount;
+        this.heldSeatCount = heldSeatCount;
+        this.reservedSeatCount = reservedSeatCount;
+    }
+
+    /**
+     * The first version of a venue, freezing each of the given rows. Built bottom up, one level of the trie at a time
+     */
+    static VenueSnapshot of(Row[] rows) {
+        Object[] level = new Object[rows.length];
+        int availableSeatCount = 0;
+        int heldSeatCount = 0;
+        int reservedSeatCount = 0;
+
+        for (int rowNum = 0; rowNum < rows.length; rowNum++) {
+            Row row = rows[rowNum].frozen();
+            level[rowNum] = row;
+            availableSeatCount += row.totalAvailableSeatCount();
+            heldSeatCount += row.heldSeatCount();
+            reservedSeatCount += row.reservedSeatCount();
+        }
+
+        int shift = 0;
+        Object[] nodes = group(level);
+
+        while (nodes.length > 1) {
+            nodes = group(nodes);
+            shift += BITS;
+        }
+
+        return new VenueSnapshot(0, rows.length, rows[0].getNumSeats(), (Object[]) nodes[0], shift,
+            availableSeatCount, heldSeatCount, reservedSeatCount);
+    }
+
+    /**
+     * Splits a level of the trie into nodes of up to WIDTH entries each - the level above it
+     */
+    private static Object[] group(Object[] level) {
+        Object[] parents = new Object[(level.length + MASK) >>> BITS];
+
+        for (int i = 0; i < parents.length; i++) {
+            int from = i << BITS;
+            Object[] node = new Object[Math.min(WIDTH, level.length - from)];
+            System.arraycopy(level, from, node, 0, node.length);
+            parents[i] = node;
+        }
+
+        return parents;
+    }
+
+    /**
+     * @return the next version, with the given frozen row in place of the current version of that row - or this
+     * snapshot, if the row hasn't changed
+     */
+    VenueSnapshot withRow(Row row) {
+        return withRow(row, version + 1);
+    }
+
+    /**
+     * Like withRow, giving the result the given version - several rows changed at once make up a single version
+     */
+    VenueSnapshot withRow(Row row, long nextVersion) {
+        Row existingRow = row(row.getRowNum());
+
+        if (existingRow.isSameVersion(row)) {
+            return this;
+        }
+
+        return new VenueSnapshot(nextVersion, numRows, numColumns, withRow(root, rootShift, row), rootShift,
+            availableSeatCount + row.totalAvailableSeatCount() - existingRow.totalAvailableSeatCount(),
+            heldSeatCount + row.heldSeatCount() - existingRow.heldSeatCount(),
+            reservedSeatCount + row.reservedSeatCount() - existingRow.reservedSeatCount());
+    }
+
+    /**
+     * Copies the path from the node down to the row's leaf
+     */
+    private static Object[] withRow(Object[] node, int shift, Row row) {
+        Object[] copy = node.clone();
+        int index = (row.getRowNum() >>> shift) & MASK;
+        copy[index] = shift == 0 ? row : withRow((Object[]) node[index], shift - BITS, row);
+        return copy;
+    }
+
+    Row row(int rowNum) {
+        Object[] node = root;
+
+        for (int shift = rootShift; shift > 0; shift -= BITS) {
+            node = (Object[]) node[(rowNum >>> shift) & MASK];
+        }
+
+        return (Row) node[rowNum & MASK];
+    }
+
+    /**
+     * Visits every row, in row order
+     */
+    void forEachRow(Consumer<Row> visitor) {
+        forEachRow(root, rootShift, visitor);
+    }
+
+    private static void forEachRow(Object[] node, int shift, Consumer<Row> visitor) {
+        for (Object child : node) {
+            if (shift == 0) {
+                visitor.accept((Row) child);
+            }
+            else {
+                forEachRow((Object[]) child, shift - BITS, visitor);
+            }
+        }
+    }
+
+    /**
+     * Visits the rows that changed since the given, earlier snapshot of the same venue, in row order. Versions share
+     * the nodes of the trie that didn't change, so whole subtrees are skipped with one comparison and the cost is in
+     * proportion to the number of changed rows rather than the size of the venue
+     */
+    void forEachRowChangedSince(VenueSnapshot base, Consumer<Row> visitor) {
+        if (base.numRows != numRows || base.numColumns != numColumns) {
+            throw new IllegalArgumentException("Can only compare snapshots of the same venue");
+        }
+
+        forEachRowChanged(base.root, root, rootShift, visitor);
+    }
+
+    private static void forEachRowChanged(Object[] baseNode, Object[] node, int shift, Consumer<Row> visitor) {
+        for (int i = 0; i < node.length; i++) {
+            if (node[i] == baseNode[i]) {
+                continue;
+            }
+
+            if (shift == 0) {
+                visitor.accept((Row) node[i]);
+            }
+            else {
+                forEachRowChanged((Object[]) baseNode[i], (Object[]) node[i], shift - BITS, visitor);
+            }
+        }
+    }
+
+    /**
+     * Goes up by one with every change published by the venue, so two snapshots with the same version are the same
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public int getNumRows() {
+        return numRows;
+    }
+
+    public int getNumColumns() {
+        return numColumns;
+    }
+
+    public int numSeatsAvailable() {
+        return availableSeatCount;
+    }
+
+    public int numSeatsHeld() {
+        return heldSeatCount;
+    }
+
+    public int numSeatsReserved() {
+        return reservedSeatCount;
+    }
+
+    /**
+     * @return every block of the row, in seat order - e.g. for one line of a seat map
+     */
+    public List<SeatBlock> getBlocks(int rowNum) {
+        if (rowNum < 0 || rowNum >= numRows) {
+            throw new IllegalArgumentException("No row " + rowNum + " in a venue of " + numRows + " rows");
+        }
+
+        return Collections.unmodifiableList(row(rowNum).getBlocks());
+    }
+
+    /**
+     * Find all blocks of a given type in any row
+     */
+    public List<SeatBlock> findBlocks(SeatBlockType type) {
+        List<SeatBlock> blocks = new ArrayList<>();
+
+        for (int rowNum = 0; rowNum < numRows; rowNum++) {
+            for (SeatBlock block : row(rowNum).getBlocks()) {
+                if (block.getBlockType() == type) {
+                    blocks.add(block);
+                }
+            }
+        }
+
+        return blocks;
+    }
+
+}
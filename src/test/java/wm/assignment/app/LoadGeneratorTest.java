@@ -0,0 +1,119 @@
+package wm.assignment.app;
+
+import org.junit.jupiter.api.Test;
+import wm.assignment.service.SimpleTicketService;
+import wm.assignment.service.TicketService;
+import wm.assignment.util.LatencyHistogram;
+import wm.assignment.venue.HoldRequest;
+import wm.assignment.venue.SeatHold;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LoadGeneratorTest {
+
+    @Test
+    void testOffersTargetRate() throws IOException {
+        SimpleTicketService service = new SimpleTicketService(100, 50, 10000);
+        LoadProfile profile = new LoadProfile(1, LoadProfile.parsePhases("1:200"), 50, 2);
+
+        LoadGenerator generator = new LoadGenerator(service, profile, 2);
+        generator.run();
+
+        // the warm-up is excluded from the totals
+        LoadGenerator.Stats total = generator.getTotal();
+        long holds = total.getResponseTime(LoadGenerator.Operation.HOLD).getCount();
+        assertEquals(200, holds, 2);
+
+        // every successful hold was either reserved or abandoned
+        long reservations = total.getResponseTime(LoadGenerator.Operation.RESERVE).getCount();
+        assertEquals(holds - total.getFailedHolds(), reservations + total.getAbandonedHolds());
+        assertEquals(0, total.getFailedHolds());
+
+        Path summary = Files.createTempFile("load", ".csv");
+        Path intervals = Files.createTempFile("load-intervals", ".csv");
+        try {
+            generator.writeSummaryCsv(summary);
+            generator.writeIntervalsCsv(intervals);
+
+            List<String> summaryLines = Files.readAllLines(summary);
+            assertEquals(5, summaryLines.size());
+            assertTrue(summaryLines.get(1).startsWith("HOLD,response_time," + holds + ","));
+
+            // one line per second, warm-up included
+            List<String> intervalLines = Files.readAllLines(intervals);
+            assertEquals(3, intervalLines.size());
+            assertTrue(intervalLines.get(1).startsWith("0,-1,200.0,"));
+            assertTrue(intervalLines.get(2).startsWith("1,0,200.0,"));
+        }
+        finally {
+            Files.delete(summary);
+            Files.delete(intervals);
+        }
+    }
+
+    @Test
+    void testCorrectsForCoordinatedOmission() {
+        // a service that stalls once for 200 ms - every hold scheduled during the stall waits for it
+        SimpleTicketService delegate = new SimpleTicketService(100, 50, 10000);
+        TicketService stalling = new TicketService() {
+            private boolean stalled;
+
+            public int numSeatsAvailable() {
+                return delegate.numSeatsAvailable();
+            }
+
+            public synchronized SeatHold findAndHoldSeats(int numSeats, String customerEmail) {
+                if (!stalled) {
+                    stalled = true;
+                    sleep(200);
+                }
+
+                return delegate.findAndHoldSeats(numSeats, customerEmail);
+            }
+
+            public List<SeatHold> findAndHoldSeatsBatch(List<HoldRequest> holdRequests) {
+                return Collections.emptyList();
+            }
+
+            public String reserveSeats(int seatHoldId, String customerEmail) {
+                return delegate.reserveSeats(seatHoldId, customerEmail);
+            }
+
+            public boolean extendHold(int seatHoldId, String customerEmail, long extraMillis) {
+                return delegate.extendHold(seatHoldId, customerEmail, extraMillis);
+            }
+        };
+
+        LoadProfile profile = new LoadProfile(0, LoadProfile.parsePhases("1:100"), 0, 1);
+        LoadGenerator generator = new LoadGenerator(stalling, profile, 1);
+        generator.run();
+
+        LatencyHistogram.Snapshot response = generator.getTotal().getResponseTime(LoadGenerator.Operation.HOLD)
+            .snapshot();
+        LatencyHistogram.Snapshot service = generator.getTotal().getServiceTime(LoadGenerator.Operation.HOLD)
+            .snapshot();
+
+        // only one request was slow to serve, but about 20 of them were late
+        assertTrue(service.getP90() < TimeUnit.MILLISECONDS.toNanos(50));
+        assertTrue(response.getP90() > TimeUnit.MILLISECONDS.toNanos(50));
+        assertTrue(response.getMax() >= TimeUnit.MILLISECONDS.toNanos(190));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        }
+        catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+}
@@ -0,0 +1,50 @@
+package wm.assignment.app;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LoadProfileTest {
+
+    @Test
+    void testParsePhases() {
+        List<LoadProfile.Phase> phases = LoadProfile.parsePhases("10:100, 30:100-2000,60:2000");
+
+        assertEquals(3, phases.size());
+        assertEquals(TimeUnit.SECONDS.toNanos(30), phases.get(1).getDurationNanos());
+        assertEquals(100, phases.get(1).getStartRate());
+        assertEquals(2000, phases.get(1).getEndRate());
+        assertEquals(2000, phases.get(2).getStartRate());
+
+        assertThrows(IllegalArgumentException.class, () -> LoadProfile.parsePhases("10"));
+        assertThrows(IllegalArgumentException.class, () -> LoadProfile.parsePhases("10:0"));
+    }
+
+    @Test
+    void testRateAt() {
+        LoadProfile profile = new LoadProfile(5, LoadProfile.parsePhases("10:100-200,10:50"), 70, 4);
+        long second = TimeUnit.SECONDS.toNanos(1);
+
+        assertEquals(TimeUnit.SECONDS.toNanos(25), profile.getTotalNanos());
+
+        // the warm-up runs at the rate the first phase starts with
+        assertEquals(100, profile.rateAt(0));
+        assertEquals(-1, profile.phaseAt(4 * second));
+
+        // then ramps linearly
+        assertEquals(100, profile.rateAt(5 * second));
+        assertEquals(150, profile.rateAt(10 * second), 0.001);
+        assertEquals(0, profile.phaseAt(10 * second));
+
+        assertEquals(50, profile.rateAt(20 * second));
+        assertEquals(1, profile.phaseAt(20 * second));
+
+        // and stops at the end of the last phase
+        assertEquals(0, profile.rateAt(25 * second));
+    }
+
+}
@@ -0,0 +1,133 @@
+package wm.assignment.service;
+
+import org.junit.jupiter.api.Test;
+import wm.assignment.exception.VenueException;
+import wm.assignment.venue.RowModel;
+import wm.assignment.venue.SeatBlockType;
+import wm.assignment.venue.SeatHold;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static wm.assignment.util.TestUtil.assertBlock;
+
+class AsyncTicketServiceTest {
+
+    @Test
+    void testHoldAndReserve() {
+        AsyncTicketService service = new AsyncTicketService(2, 10, 10000);
+
+        SeatHold hold = service.findAndHoldSeats(8, "a@a.com").join();
+        assertBlock(hold.getBlock(), SeatBlockType.HOLD, 0, 0, 8);
+        assertEquals(12, service.numSeatsAvailable());
+
+        String confirmId = service.reserveSeats(hold.getId(), "a@a.com").join();
+        assertBlock(service.getVenue().findReservation(confirmId), SeatBlockType.RESERVED, 0, 0, 8);
+
+        // failures are reported the same way as the blocking service
+        assertNull(service.reserveSeats(hold.getId(), "a@a.com").join());
+        assertNull(service.findAndHoldSeats(11, "a@a.com").join());
+
+        service.shutdown();
+    }
+
+    @Test
+    void testEmailMismatch() {
+        AsyncTicketService service = new AsyncTicketService(2, 10, 10000);
+
+        SeatHold hold = service.findAndHoldSeats(8, "a@a.com").join();
+        CompletionException e = assertThrows(CompletionException.class,
+            () -> service.reserveSeats(hold.getId(), "b@b.com").join());
+        assertTrue(e.getCause() instanceof VenueException);
+
+        service.shutdown();
+    }
+
+    @Test
+    void testRequestsAppliedInOrder() {
+        AsyncTicketService service = new AsyncTicketService(20, 10, 10000);
+
+        // published without waiting, so they are drained and applied together
+        List<CompletableFuture<SeatHold>> holds = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            holds.add(service.findAndHoldSeats(2, "a@a.com"));
+        }
+
+        for (int i = 0; i < 100; i++) {
+            assertBlock(holds.get(i).join().getBlock(), SeatBlockType.HOLD, i / 5, (i % 5) * 2, 2);
+        }
+
+        assertNull(service.findAndHoldSeats(1, "a@a.com").join());
+        assertEquals(0, service.numSeatsAvailable());
+
+        service.shutdown();
+    }
+
+    @Test
+    void testShutdown() {
+        AsyncTicketService service = new AsyncTicketService(2, 10, 10000);
+        assertNotNull(service.findAndHoldSeats(2, "a@a.com").join());
+
+        service.shutdown();
+
+        CompletionException e = assertThrows(CompletionException.class,
+            () -> service.findAndHoldSeats(2, "a@a.com").join());
+        assertTrue(e.getCause() instanceof RejectedExecutionException);
+    }
+
+    @Test
+    void testShutdownWhileSubmitting() throws Exception {
+        for (int run = 0; run < 50; run++) {
+            // a small buffer, so producers keep coming back to publish while the writer stops
+            AsyncTicketService service = new AsyncTicketService(100, 100, 10000, RowModel.BLOCK_LIST, 8);
+            List<List<CompletableFuture<SeatHold>>> submitted = new ArrayList<>();
+            List<Thread> producers = new ArrayList<>();
+            CountDownLatch started = new CountDownLatch(4);
+
+            for (int i = 0; i < 4; i++) {
+                List<CompletableFuture<SeatHold>> futures = new ArrayList<>();
+                submitted.add(futures);
+
+                Thread producer = new Thread(() -> {
+                    started.countDown();
+
+                    for (int j = 0; j < 500; j++) {
+                        futures.add(service.findAndHoldSeats(1, "a@a.com"));
+                    }
+                });
+                producer.start();
+                producers.add(producer);
+            }
+
+            started.await();
+            service.shutdown();
+
+            for (Thread producer : producers) {
+                producer.join();
+            }
+
+            // every request is either applied or rejected - none is left behind in the buffer
+            for (List<CompletableFuture<SeatHold>> futures : submitted) {
+                for (CompletableFuture<SeatHold> future : futures) {
+                    try {
+                        future.get(5, TimeUnit.SECONDS);
+                    }
+                    catch (ExecutionException e) {
+                        assertTrue(e.getCause() instanceof RejectedExecutionException);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package wm.assignment.service;
+
+import org.junit.jupiter.api.Test;
+import wm.assignment.exception.VenueException;
+import wm.assignment.venue.HoldRequest;
+import wm.assignment.venue.SeatBlockType;
+import wm.assignment.venue.SeatHold;
+import wm.assignment.venue.Venue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static wm.assignment.util.TestUtil.assertBlock;
+
+class ShardedTicketServiceTest {
+
+    @Test
+    void testHoldAndReserve() {
+        ShardedTicketService service = new ShardedTicketService(4, 2, 10, 10000);
+        assertEquals(80, service.numSeatsAvailable());
+
+        SeatHold hold = service.findAndHoldSeats(8, "a@a.com");
+        assertBlock(hold.getBlock(), SeatBlockType.HOLD, 0, 0, 8);
+        assertEquals(72, service.numSeatsAvailable());
+
+        Venue section = sectionOf(service, hold);
+        String confirmId = service.reserveSeats(hold.getId(), "a@a.com");
+        assertBlock(service.findReservation(confirmId), SeatBlockType.RESERVED, 0, 0, 8);
+        assertNotNull(section.findReservation(confirmId));
+
+        assertNull(service.reserveSeats(hold.getId(), "a@a.com"));
+        assertNull(service.findReservation("unknown"));
+    }
+
+    @Test
+    void testCustomerStaysInHomeSection() {
+        ShardedTicketService service = new ShardedTicketService(4, 10, 10, 10000);
+
+        Venue home = sectionOf(service, service.findAndHoldSeats(2, "a@a.com"));
+        for (int i = 0; i < 10; i++) {
+            assertEquals(home, sectionOf(service, service.findAndHoldSeats(2, "a@a.com")));
+        }
+
+        // the same customer, however the email is written
+        for (String email : Arrays.asList("A@a.com", " a@A.COM ", "a@a.com\t")) {
+            assertEquals(home, sectionOf(service, service.findAndHoldSeats(2, email)), email);
+        }
+    }
+
+    @Test
+    void testFallbackToOtherSections() {
+        ShardedTicketService service = new ShardedTicketService(3, 1, 10, 10000);
+
+        // each section is a single row of 10, so every hold after the first has to fall back to another section
+        List<Venue> used = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            SeatHold hold = service.findAndHoldSeats(10, "a@a.com");
+            assertNotNull(hold);
+            used.add(sectionOf(service, hold));
+        }
+
+        assertTrue(used.containsAll(service.getSections()));
+        assertEquals(0, service.numSeatsAvailable());
+        assertNull(service.findAndHoldSeats(1, "a@a.com"));
+    }
+
+    @Test
+    void testFallbackPrefersLargestBlock() {
+        ShardedTicketService service = new ShardedTicketService(3, 1, 10, 10000);
+        List<Venue> sections = service.getSections();
+
+        Venue home = sectionOf(service, service.findAndHoldSeats(10, "a@a.com"));
+        Venue other = sections.get((sections.indexOf(home) + 1) % 3);
+        other.findAndHoldSeats(5, "b@b.com");
+
+        SeatHold hold = service.findAndHoldSeats(4, "a@a.com");
+        assertEquals(sections.get((sections.indexOf(home) + 2) % 3), sectionOf(service, hold));
+    }
+
+    @Test
+    void testReserveRoutesByEmail() {
+        ShardedTicketService service = new ShardedTicketService(4, 2, 10, 10000);
+
+        SeatHold hold = service.findAndHoldSeats(3, "a@a.com");
+        assertThrows(VenueException.class, () -> service.reserveSeats(hold.getId(), "b@b.com"));
+        assertNotNull(service.reserveSeats(hold.getId(), "a@a.com"));
+    }
+
+    @Test
+    void testExtendHoldRoutesById() {
+        ShardedTicketService service = new ShardedTicketService(4, 2, 10, 10000);
+
+        SeatHold hold = service.findAndHoldSeats(3, "a@a.com");
+        assertTrue(service.extendHold(hold.getId(), "a@a.com", 1000));
+        assertThrows(VenueException.class, () -> service.extendHold(hold.getId(), "b@b.com", 1000));
+
+        assertNotNull(service.reserveSeats(hold.getId(), "a@a.com"));
+        assertFalse(service.extendHold(hold.getId(), "a@a.com", 1000));
+    }
+
+    @Test
+    void testReleaseRoutesByConfirmationCode() {
+        ShardedTicketService service = new ShardedTicketService(4, 2, 10, 10000);
+
+        String first = service.reserveSeats(service.findAndHoldSeats(3, "a@a.com").getId(), "a@a.com");
+        String second = service.reserveSeats(service.findAndHoldSeats(5, "b@b.com").getId(), "b@b.com");
+        assertEquals(72, service.numSeatsAvailable());
+
+        assertTrue(service.releaseSeats(second, "b@b.com", 2));
+        assertEquals(3, service.findReservation(second).getNumSeats());
+        assertTrue(service.cancelReservation(first, "a@a.com"));
+        assertNull(service.findReservation(first));
+        assertFalse(service.cancelReservation(first, "a@a.com"));
+        assertFalse(service.releaseSeats(first, "a@a.com", 1));
+        assertEquals(77, service.numSeatsAvailable());
+    }
+
+    @Test
+    void testFindAndHoldSeatsBatch() {
+        ShardedTicketService service = new ShardedTicketService(2, 1, 10, 10000);
+
+        List<SeatHold> holds = service.findAndHoldSeatsBatch(Arrays.asList(
+            new HoldRequest(6, "a@a.com"),
+            new HoldRequest(6, "a@a.com"),
+            new HoldRequest(11, "b@b.com"),
+            new HoldRequest(4, "a@a.com"),
+            new HoldRequest(4, "a@a.com")));
+
+        assertEquals(5, holds.size());
+        assertNotNull(holds.get(0));
+        assertNotNull(holds.get(1));
+        assertNull(holds.get(2));
+        assertNotNull(holds.get(3));
+        assertNotNull(holds.get(4));
+        assertEquals(0, service.numSeatsAvailable());
+
+        // the two six seat holds can't share a row, so one of them fell back to the other section
+        assertTrue(sectionOf(service, holds.get(0)) != sectionOf(service, holds.get(1)));
+    }
+
+    @Test
+    void testHoldIdsAreUniqueAcrossSections() {
+        ShardedTicketService service = new ShardedTicketService(3, 1, 10, 10000);
+
+        // one ten seat hold per section, each the first hold its section has made
+        List<SeatHold> holds = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            holds.add(service.findAndHoldSeats(10, "a@a.com"));
+        }
+
+        assertEquals(3, holds.stream().map(h -> h.getId()).distinct().count());
+        assertEquals(3, holds.stream().map(h -> sectionOf(service, h)).distinct().count());
+
+        for (SeatHold hold : holds) {
+            assertNotNull(service.reserveSeats(hold.getId(), "a@a.com"));
+        }
+    }
+
+    private static Venue sectionOf(ShardedTicketService service, SeatHold hold) {
+        return service.getSections().stream()
+            .filter(s -> s.findHold(hold.getId()) == hold)
+            .findFirst()
+            .orElseThrow(AssertionError::new);
+    }
+
+}
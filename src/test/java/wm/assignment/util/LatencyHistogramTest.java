@@ -0,0 +1,62 @@
+package wm.assignment.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTest {
+
+    @Test
+    void testBuckets() {
+        // small values are exact
+        for (int v = 0; v < 8; v++) {
+            assertEquals(v, LatencyHistogram.bucketIndex(v));
+            assertEquals(v, LatencyHistogram.bucketLowerBound(v));
+        }
+
+        // every value falls between the bounds of its bucket, and the bucket is within 12.5% of the value
+        for (long v : new long[]{8, 9, 15, 16, 17, 1000, 123456789, Long.MAX_VALUE}) {
+            int index = LatencyHistogram.bucketIndex(v);
+            long lower = LatencyHistogram.bucketLowerBound(index);
+
+            assertTrue(lower <= v);
+            assertTrue(v - lower < LatencyHistogram.bucketWidth(index));
+            assertTrue(LatencyHistogram.bucketWidth(index) <= Math.max(1, lower / 8));
+        }
+    }
+
+    @Test
+    void testSnapshot() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.snapshot().getP99());
+
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(1000, snapshot.getCount());
+        assertEquals(500500, snapshot.getMean(), 0.001);
+        assertEquals(1000000, snapshot.getMax());
+
+        assertWithin(500000, snapshot.getP50());
+        assertWithin(900000, snapshot.getP90());
+        assertWithin(990000, snapshot.getP99());
+        assertWithin(999000, snapshot.getP999());
+    }
+
+    @Test
+    void testNegativeValue() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+
+        assertEquals(1, histogram.getCount());
+        assertEquals(0, histogram.snapshot().getMax());
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue(Math.abs(actual - expected) <= expected / 8, "expected ~" + expected + " but was " + actual);
+    }
+
+}
@@ -0,0 +1,83 @@
+package wm.assignment.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RingBufferTest {
+
+    @Test
+    void testOfferAndPoll() {
+        RingBuffer<Integer> buffer = new RingBuffer<>(3);
+        assertEquals(4, buffer.capacity());
+        assertTrue(buffer.isEmpty());
+
+        for (int i = 0; i < 4; i++) {
+            assertTrue(buffer.offer(i));
+        }
+
+        // full until the consumer frees a slot
+        assertFalse(buffer.offer(4));
+        assertEquals(0, (int) buffer.poll());
+        assertTrue(buffer.offer(4));
+
+        for (int i = 1; i <= 4; i++) {
+            assertEquals(i, (int) buffer.poll());
+        }
+
+        assertNull(buffer.poll());
+        assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    void testConcurrentProducers() throws InterruptedException {
+        RingBuffer<Integer> buffer = new RingBuffer<>(64);
+        int numProducers = 4;
+        int perProducer = 10000;
+
+        ExecutorService executor = Executors.newFixedThreadPool(numProducers);
+        for (int p = 0; p < numProducers; p++) {
+            int producer = p;
+            executor.submit(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    while (!buffer.offer(producer * perProducer + i)) {
+                        Thread.yield();
+                    }
+                }
+            });
+        }
+
+        // every element arrives exactly once, and each producer's elements arrive in the order they were offered
+        List<Integer> lastSeen = new ArrayList<>();
+        for (int p = 0; p < numProducers; p++) {
+            lastSeen.add(-1);
+        }
+
+        for (int received = 0; received < numProducers * perProducer; ) {
+            Integer element = buffer.poll();
+
+            if (element == null) {
+                Thread.yield();
+                continue;
+            }
+
+            int producer = element / perProducer;
+            assertEquals(lastSeen.get(producer) + 1, element % perProducer);
+            lastSeen.set(producer, element % perProducer);
+            received++;
+        }
+
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertNull(buffer.poll());
+    }
+}
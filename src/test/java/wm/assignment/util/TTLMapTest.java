@@ -7,7 +7,9 @@ import java.util.List;
 import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class TTLMapTest {
 
@@ -63,5 +65,61 @@ class TTLMapTest {
         assertEquals("one", notifiedValues.get(0));
     }
 
+    @Test
+    void testRemove() {
+        TTLMap<Integer, String> ttlMap = new TTLMap<>(100);
+        ttlMap.put(1, "one");
+        ttlMap.put(2, "two");
+
+        assertEquals("one", ttlMap.remove(1));
+        assertNull(ttlMap.get(1));
+
+        // conditional removal only succeeds for the current value
+        assertFalse(ttlMap.remove(2, "three"));
+        assertTrue(ttlMap.remove(2, "two"));
+        assertNull(ttlMap.get(2));
+    }
+
+    @Test
+    void testExtend() throws InterruptedException {
+        final List<String> notifiedValues = new ArrayList<>();
+
+        TTLMap<Integer, String> ttlMap = new TTLMap<>(20, 1);
+        ttlMap.put(1, "one", notifiedValues::add);
+        assertTrue(ttlMap.extend(1, 200));
+        assertFalse(ttlMap.extend(2, 200));
+
+        // past the original TTL, the timeout has gone round again instead of expiring the entry
+        Thread.sleep(60);
+        assertEquals("one", ttlMap.get(1));
+        assertTrue(notifiedValues.isEmpty());
+
+        Thread.sleep(300);
+        assertNull(ttlMap.get(1));
+        assertEquals(1, notifiedValues.size());
+        assertFalse(ttlMap.extend(1, 200));
+    }
+
+    @Test
+    void testExpiryLag() {
+        LatencyHistogram expiryLag = new LatencyHistogram();
+
+        TTLMap<Integer, String> ttlMap = new TTLMap<>(1, 1);
+        ttlMap.setExpiryLagHistogram(expiryLag);
+        ttlMap.put(1, "one");
+        ttlMap.put(2, "two");
+        ttlMap.remove(2);
+
+        try {
+            Thread.sleep(50);
+        }
+        catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+
+        // only the entry that actually expired is recorded
+        assertNull(ttlMap.get(1));
+        assertEquals(1, expiryLag.getCount());
+    }
 
 }
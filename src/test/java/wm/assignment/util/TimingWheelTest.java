@@ -0,0 +1,85 @@
+package wm.assignment.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimingWheelTest {
+
+    @Test
+    void testTaskRuns() throws InterruptedException {
+        TimingWheel timingWheel = new TimingWheel(1);
+        CountDownLatch latch = new CountDownLatch(1);
+
+        timingWheel.schedule(5, latch::countDown);
+
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+        assertEquals(0, timingWheel.size());
+    }
+
+    @Test
+    void testOverflowWheel() throws InterruptedException {
+        TimingWheel timingWheel = new TimingWheel(1);
+        CountDownLatch latch = new CountDownLatch(1);
+
+        // far enough out to start in an overflow wheel and cascade down
+        long start = System.nanoTime();
+        timingWheel.schedule(150, latch::countDown);
+
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 149);
+    }
+
+    @Test
+    void testNeverRunsEarly() throws InterruptedException {
+        // a coarse tick, so a deadline rounded down to it would run up to 10 ms early
+        TimingWheel timingWheel = new TimingWheel(10);
+        int numTimeouts = 200;
+        CountDownLatch latch = new CountDownLatch(numTimeouts);
+        AtomicInteger early = new AtomicInteger();
+
+        for (int i = 0; i < numTimeouts; i++) {
+            long delayMillis = 1 + i % 97;
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+
+            timingWheel.schedule(delayMillis, () -> {
+                if (System.nanoTime() < deadline) {
+                    early.incrementAndGet();
+                }
+                latch.countDown();
+            });
+
+            if (i % 10 == 0) {
+                Thread.sleep(3);
+            }
+        }
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(0, early.get());
+    }
+
+    @Test
+    void testCancel() throws InterruptedException {
+        TimingWheel timingWheel = new TimingWheel(1);
+        AtomicInteger runs = new AtomicInteger();
+
+        TimingWheel.Timeout timeout = timingWheel.schedule(20, runs::incrementAndGet);
+        assertEquals(1, timingWheel.size());
+
+        assertTrue(timeout.cancel());
+        assertFalse(timeout.cancel());
+        assertEquals(0, timingWheel.size());
+
+        // TODO:
+        // same caveat as the TTLMap tests - this relies on timing instead of driving the clock by hand
+        Thread.sleep(40);
+        assertEquals(0, runs.get());
+    }
+
+}
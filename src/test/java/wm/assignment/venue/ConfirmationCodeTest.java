@@ -0,0 +1,68 @@
+package wm.assignment.venue;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConfirmationCodeTest {
+
+    @Test
+    void testRoundTrip() {
+        long[] codes = {1, 42, -1, Long.MAX_VALUE, Long.MIN_VALUE, 0x0123456789ABCDEFL};
+
+        for (long code : codes) {
+            String text = ConfirmationCode.format(code);
+
+            assertEquals(13, text.length());
+            assertTrue(text.matches("[0-9A-HJKMNP-TV-Z]+"), text);
+            assertEquals(code, ConfirmationCode.parse(text));
+        }
+
+        // several batches' worth
+        Set<Long> issued = new HashSet<>();
+
+        for (int i = 0; i < 1000; i++) {
+            long code = ConfirmationCode.next();
+
+            assertNotEquals(0, code);
+            assertEquals(code, ConfirmationCode.parse(ConfirmationCode.format(code)));
+            assertTrue(issued.add(code));
+        }
+    }
+
+    @Test
+    void testFormat() {
+        assertEquals("0000000000001", ConfirmationCode.format(1));
+        assertEquals("000000000000Z", ConfirmationCode.format(31));
+        assertEquals("0000000000010", ConfirmationCode.format(32));
+        assertEquals("FZZZZZZZZZZZZ", ConfirmationCode.format(-1));
+    }
+
+    @Test
+    void testParseIsForgiving() {
+        long code = ConfirmationCode.parse("0000000000ABC");
+
+        assertEquals(code, ConfirmationCode.parse("0000000000abc"));
+        assertEquals(ConfirmationCode.parse("0000000000101"), ConfirmationCode.parse("OOOOOOOOOO1O1"));
+        assertEquals(ConfirmationCode.parse("0000000000111"), ConfirmationCode.parse("0000000000ILl"));
+    }
+
+    @Test
+    void testParseRejectsInvalidCodes() {
+        assertEquals(0, ConfirmationCode.parse(null));
+        assertEquals(0, ConfirmationCode.parse("unknown"));
+        assertEquals(0, ConfirmationCode.parse("00000000000001"));
+        assertEquals(0, ConfirmationCode.parse("000000000000U"));
+        assertEquals(0, ConfirmationCode.parse("000000000000-"));
+        assertEquals(0, ConfirmationCode.parse("000000000000\u00e9"));
+
+        // only the bottom 4 bits of the first digit are part of a 64-bit code
+        assertEquals(0, ConfirmationCode.parse("G000000000000"));
+    }
+
+}
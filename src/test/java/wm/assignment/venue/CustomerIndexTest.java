@@ -0,0 +1,134 @@
+package wm.assignment.venue;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CustomerIndexTest {
+
+    private static int[] sorted(int[] values) {
+        Arrays.sort(values);
+        return values;
+    }
+
+    private static long[] sorted(long[] values) {
+        Arrays.sort(values);
+        return values;
+    }
+
+    @Test
+    void testHoldReserveAndExpire() {
+        CustomerIndex index = new CustomerIndex();
+
+        assertTrue(index.tryClaimSeats(1, 4, 10));
+        index.addHold(1, 100);
+        assertTrue(index.tryClaimSeats(1, 2, 10));
+        index.addHold(1, 101);
+
+        assertArrayEquals(new int[]{100, 101}, sorted(index.getHoldIds(1)));
+        assertEquals(6, index.getNumSeats(1));
+
+        index.reserveHold(1, 100, 42);
+        index.removeHold(1, 101, 2);
+
+        assertArrayEquals(new int[0], index.getHoldIds(1));
+        assertArrayEquals(new long[]{42}, index.getCodes(1));
+        assertEquals(4, index.getNumSeats(1));
+
+        // other customers are unaffected
+        assertEquals(0, index.getNumSeats(2));
+        assertArrayEquals(new long[0], index.getCodes(2));
+    }
+
+    @Test
+    void testManyHoldsForOneCustomer() {
+        CustomerIndex index = new CustomerIndex();
+        Random random = new Random(42);
+        Set<Integer> expected = new HashSet<>();
+
+        // hold ids are structured, so some share their low bits - and negative ids are fine too
+        for (int i = 0; i < 20000; i++) {
+            int holdId = random.nextBoolean() ? random.nextInt() | 1 : (random.nextInt(64) + 1) << 20;
+
+            if (expected.contains(holdId)) {
+                index.removeHold(1, holdId, 1);
+                expected.remove(holdId);
+            }
+            else {
+                index.tryClaimSeats(1, 1, Integer.MAX_VALUE);
+                index.addHold(1, holdId);
+                expected.add(holdId);
+            }
+        }
+
+        int[] holdIds = index.getHoldIds(1);
+        assertEquals(expected.size(), holdIds.length);
+        assertEquals(expected.size(), index.getNumSeats(1));
+
+        for (int holdId : holdIds) {
+            assertTrue(expected.contains(holdId));
+        }
+    }
+
+    @Test
+    void testLimit() {
+        CustomerIndex index = new CustomerIndex();
+
+        assertTrue(index.tryClaimSeats(1, 6, 10));
+        assertFalse(index.tryClaimSeats(1, 5, 10));
+        assertTrue(index.tryClaimSeats(1, 4, 10));
+        assertEquals(10, index.getNumSeats(1));
+
+        // giving seats back makes room again, and an empty customer is dropped
+        index.releaseSeats(1, 10);
+        assertEquals(0, index.size());
+        assertTrue(index.tryClaimSeats(1, 10, 10));
+    }
+
+    @Test
+    void testConcurrentClaimsStayWithinTheLimit() throws InterruptedException {
+        CustomerIndex index = new CustomerIndex();
+        AtomicInteger claimed = new AtomicInteger();
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 8; i++) {
+            executor.submit(() -> {
+                for (int j = 0; j < 1000; j++) {
+                    if (index.tryClaimSeats(1, 3, 100)) {
+                        claimed.addAndGet(3);
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(99, claimed.get());
+        assertEquals(99, index.getNumSeats(1));
+    }
+
+    @Test
+    void testRestoredReservations() {
+        CustomerIndex index = new CustomerIndex();
+
+        index.addReservation(1, 42, 4);
+        index.addReservation(1, 43, 2);
+
+        assertArrayEquals(new long[]{42, 43}, sorted(index.getCodes(1)));
+        assertEquals(6, index.getNumSeats(1));
+        assertFalse(index.tryClaimSeats(1, 5, 10));
+    }
+
+}
@@ -0,0 +1,44 @@
+package wm.assignment.venue;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CustomerKeyTest {
+
+    @Test
+    void testNormalize() {
+        assertEquals("ann@example.com", CustomerKey.normalize(" Ann@Example.COM\t"));
+        assertEquals("", CustomerKey.normalize(null));
+    }
+
+    @Test
+    void testKeysFollowNormalization() {
+        String[] emails = {"ann@example.com", " Ann@Example.COM\t", "ANN@EXAMPLE.COM", "\u00c9lise@example.com"};
+
+        for (String email : emails) {
+            assertEquals(CustomerKey.of(CustomerKey.normalize(email)), CustomerKey.of(email), email);
+        }
+
+        assertEquals(CustomerKey.of(emails[0]), CustomerKey.of(emails[1]));
+        assertEquals(CustomerKey.of(emails[0]), CustomerKey.of(emails[2]));
+        assertEquals(CustomerKey.of(""), CustomerKey.of(null));
+        assertNotEquals(CustomerKey.of("ann@example.com"), CustomerKey.of("anne@example.com"));
+    }
+
+    @Test
+    void testKeysAreDistinct() {
+        Set<Long> keys = new HashSet<>();
+
+        // similar addresses, which differ in a character or two
+        for (int i = 0; i < 100000; i++) {
+            assertTrue(keys.add(CustomerKey.of("customer" + i + "@example.com")));
+        }
+    }
+
+}
@@ -0,0 +1,220 @@
+package wm.assignment.venue;
+
+import org.junit.jupiter.api.Test;
+import wm.assignment.exception.VenueException;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HoldSlabTest {
+
+    private static final long NEVER = TimeUnit.HOURS.toMillis(1);
+
+    private static SeatHold newHold(int startPosition) {
+        return new SeatHold(new SeatBlock(SeatBlockType.HOLD, 0, startPosition, 1), "a@a.com");
+    }
+
+    private static void add(HoldSlab slab, SeatHold hold) {
+        slab.assignId(hold);
+        slab.put(hold, NEVER, h -> { });
+    }
+
+    @Test
+    void testIdsAreUniqueAndResolve() {
+        HoldSlab slab = new HoldSlab(100, 0, 1);
+        Set<Integer> ids = new HashSet<>();
+
+        for (int i = 0; i < 100; i++) {
+            SeatHold hold = newHold(i);
+            add(slab, hold);
+
+            assertNotEquals(0, hold.getId());
+            assertTrue(ids.add(hold.getId()));
+            assertSame(hold, slab.get(hold.getId()));
+        }
+
+        assertEquals(100, slab.size());
+    }
+
+    @Test
+    void testRemovedIdDoesNotResolveToTheNextHold() {
+        // a single slot, so the next hold has to reuse it
+        HoldSlab slab = new HoldSlab(1, 0, 1);
+
+        SeatHold first = newHold(0);
+        add(slab, first);
+        assertTrue(slab.remove(first));
+        assertFalse(slab.remove(first));
+
+        SeatHold second = newHold(0);
+        add(slab, second);
+
+        assertNotEquals(first.getId(), second.getId());
+        assertNull(slab.get(first.getId()));
+        assertSame(second, slab.get(second.getId()));
+        assertEquals(1, slab.size());
+    }
+
+    @Test
+    void testFreeSlotsAreReusedInOrder() {
+        HoldSlab slab = new HoldSlab(4, 0, 1);
+        SeatHold[] holds = new SeatHold[4];
+
+        for (int i = 0; i < holds.length; i++) {
+            holds[i] = newHold(i);
+            add(slab, holds[i]);
+        }
+
+        // free the slots in the order 2, 0 - they come back in that order
+        slab.remove(holds[2]);
+        slab.remove(holds[0]);
+
+        SeatHold reuse2 = newHold(2);
+        SeatHold reuse0 = newHold(0);
+        add(slab, reuse2);
+        add(slab, reuse0);
+
+        assertEquals(holds[2].getId() & 3, reuse2.getId() & 3);
+        assertEquals(holds[0].getId() & 3, reuse0.getId() & 3);
+    }
+
+    @Test
+    void testSectionsIssueDistinctIds() {
+        HoldSlab section0 = new HoldSlab(10, 0, 2);
+        HoldSlab section1 = new HoldSlab(10, 1, 2);
+
+        SeatHold hold = newHold(0);
+        add(section1, hold);
+
+        assertNull(section0.get(hold.getId()));
+        assertFalse(section0.remove(hold));
+        assertSame(hold, section1.get(hold.getId()));
+    }
+
+    @Test
+    void testUnknownIds() {
+        HoldSlab slab = new HoldSlab(10, 0, 1);
+        add(slab, newHold(0));
+
+        assertNull(slab.get(0));
+        assertNull(slab.get(-1));
+        assertNull(slab.get(15)); // slot 15 is past the end of the slab
+    }
+
+    @Test
+    void testExpiry() throws InterruptedException {
+        HoldSlab slab = new HoldSlab(10, 0, 1);
+        List<SeatHold> expired = new CopyOnWriteArrayList<>();
+
+        SeatHold hold = newHold(0);
+        slab.assignId(hold);
+        slab.put(hold, 1, expired::add);
+
+        Thread.sleep(20);
+
+        assertEquals(1, expired.size());
+        assertSame(hold, expired.get(0));
+        assertNull(slab.get(hold.getId()));
+        assertEquals(0, slab.size());
+    }
+
+    @Test
+    void testRemovedHoldDoesNotExpire() throws InterruptedException {
+        HoldSlab slab = new HoldSlab(10, 0, 1);
+        List<SeatHold> expired = new CopyOnWriteArrayList<>();
+
+        SeatHold hold = newHold(0);
+        slab.assignId(hold);
+        slab.put(hold, 5, expired::add);
+        assertTrue(slab.remove(hold));
+
+        Thread.sleep(20);
+
+        assertTrue(expired.isEmpty());
+    }
+
+    @Test
+    void testExtend() throws InterruptedException {
+        HoldSlab slab = new HoldSlab(10, 0, 1);
+        List<SeatHold> expired = new CopyOnWriteArrayList<>();
+
+        SeatHold hold = newHold(0);
+        slab.assignId(hold);
+        slab.put(hold, 20, expired::add);
+
+        long remainingMillis = slab.extend(hold, 200);
+        assertTrue(remainingMillis > 200 && remainingMillis <= 220);
+
+        Thread.sleep(60);
+        assertSame(hold, slab.get(hold.getId()));
+        assertTrue(expired.isEmpty());
+
+        // the timeout catches up with the new deadline
+        Thread.sleep(300);
+        assertEquals(1, expired.size());
+        assertNull(slab.get(hold.getId()));
+        assertEquals(-1, slab.extend(hold, 200));
+    }
+
+    @Test
+    void testRemovedHoldCannotBeExtended() {
+        HoldSlab slab = new HoldSlab(10, 0, 1);
+
+        SeatHold hold = newHold(0);
+        add(slab, hold);
+        assertTrue(slab.remove(hold));
+        assertEquals(-1, slab.extend(hold, 200));
+
+        // nor can a hold through the slot it used to have
+        SeatHold next = newHold(1);
+        add(slab, next);
+        assertEquals(-1, slab.extend(hold, 200));
+        assertTrue(slab.extend(next, 200) > NEVER);
+    }
+
+    @Test
+    void testRestore() {
+        HoldSlab original = new HoldSlab(10, 0, 1);
+        SeatHold[] holds = new SeatHold[3];
+
+        for (int i = 0; i < holds.length; i++) {
+            holds[i] = newHold(i);
+            add(original, holds[i]);
+        }
+
+        // rebuild a slab from the last two holds, as a journal replay would
+        HoldSlab restored = new HoldSlab(10, 0, 1);
+        SeatHold second = new SeatHold(holds[1].getId(), holds[1].getBlock(), "a@a.com");
+        SeatHold third = new SeatHold(holds[2].getId(), holds[2].getBlock(), "a@a.com");
+        restored.restore(second, NEVER, h -> { });
+        restored.restore(third, NEVER, h -> { });
+
+        assertSame(second, restored.get(holds[1].getId()));
+        assertSame(third, restored.get(holds[2].getId()));
+        assertEquals(2, restored.size());
+
+        // new holds go around the restored ones
+        for (int i = 0; i < 8; i++) {
+            SeatHold hold = newHold(10 + i);
+            add(restored, hold);
+            assertNotEquals(holds[1].getId() & 15, hold.getId() & 15);
+            assertNotEquals(holds[2].getId() & 15, hold.getId() & 15);
+        }
+
+        assertEquals(10, restored.size());
+        assertThrows(VenueException.class, () -> restored.restore(new SeatHold(holds[1].getId(), holds[1].getBlock(),
+            "a@a.com"), NEVER, h -> { }));
+    }
+
+}
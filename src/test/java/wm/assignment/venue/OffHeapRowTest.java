@@ -0,0 +1,52 @@
+package wm.assignment.venue;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static wm.assignment.util.TestUtil.assertBlock;
+
+class OffHeapRowTest {
+
+    @Test
+    void testRowsShareTheSeatMap() {
+        ByteBuffer seatMap = OffHeapRow.allocateSeatMap(3, 40);
+        Row first = new OffHeapRow(0, 40, seatMap, 0);
+        Row second = new OffHeapRow(1, 40, seatMap, 1);
+        Row third = new OffHeapRow(2, 40, seatMap, 2);
+
+        // 40 seats take two words a row - fill the whole of the middle row
+        second.holdSeats(second.getBlocks().get(0), 40, "a@a.com");
+
+        assertEquals(40, first.largestAvailableBlock());
+        assertEquals(40, third.largestAvailableBlock());
+        assertBlock(first.getBlocks().get(0), SeatBlockType.UNRESERVED, 0, 0, 40);
+        assertBlock(second.getBlocks().get(0), SeatBlockType.HOLD, 1, 0, 40);
+        assertBlock(third.getBlocks().get(0), SeatBlockType.UNRESERVED, 2, 0, 40);
+    }
+
+    @Test
+    void testRebuildReusesTheSlice() {
+        ByteBuffer seatMap = OffHeapRow.allocateSeatMap(2, 20);
+        Row old = new OffHeapRow(1, 20, seatMap, 1);
+        old.holdSeats(old.getBlocks().get(0), 15, "a@a.com");
+
+        // the rebuilt row clears what the old one left behind
+        SeatBlock reserved = new SeatBlock(SeatBlockType.RESERVED, 1, 10, 5);
+        Row rebuilt = Row.fromBlocks(new OffHeapRow(1, 20, seatMap, 1), Arrays.asList(reserved));
+
+        assertEquals(15, rebuilt.totalAvailableSeatCount());
+        assertEquals(10, rebuilt.largestAvailableBlock());
+        assertBlock(rebuilt.getBlocks().get(0), SeatBlockType.UNRESERVED, 1, 0, 10);
+        assertBlock(rebuilt.getBlocks().get(1), SeatBlockType.RESERVED, 1, 10, 5);
+    }
+
+    @Test
+    void testSeatMapTooLarge() {
+        assertThrows(IllegalArgumentException.class, () -> OffHeapRow.allocateSeatMap(100_000, 1_000_000));
+    }
+
+}
@@ -0,0 +1,78 @@
+package wm.assignment.venue;
+
+import org.junit.jupiter.api.Test;
+import wm.assignment.exception.VenueException;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static wm.assignment.util.TestUtil.assertBlock;
+
+class PackedRowTest {
+
+    @Test
+    void testInitialization() {
+        Row r = new PackedRow(0, 100);
+
+        assertEquals(100, r.totalAvailableSeatCount());
+        assertEquals(100, r.largestAvailableBlock());
+        assertBlock(r.getBlocks().get(0), SeatBlockType.UNRESERVED, 0, 0, 100);
+
+        assertThrows(VenueException.class, () -> new PackedRow(0, 0));
+    }
+
+    @Test
+    void testHoldAcrossWords() {
+        Row r = new PackedRow(3, 100);
+
+        // 30 seats, then 40 seats - the second hold straddles the first and second words
+        Row.HoldUpdate hu = r.holdSeats(r.firstAvailableBlock(30).findFirst().get(), 30, "a@a.com");
+        assertBlock(hu.hold.getBlock(), SeatBlockType.HOLD, 3, 0, 30);
+
+        hu = r.holdSeats(r.firstAvailableBlock(40).findFirst().get(), 40, "b@b.com");
+        assertBlock(hu.hold.getBlock(), SeatBlockType.HOLD, 3, 30, 40);
+
+        // a packed row doesn't remember where one hold ends and the next begins
+        List<SeatBlock> blocks = r.getBlocks();
+        assertEquals(2, blocks.size());
+        assertBlock(blocks.get(0), SeatBlockType.HOLD, 3, 0, 70);
+        assertBlock(blocks.get(1), SeatBlockType.UNRESERVED, 3, 70, 30);
+
+        assertEquals(30, r.totalAvailableSeatCount());
+        assertEquals(70, r.heldSeatCount());
+        assertEquals(30, r.largestAvailableBlock());
+        assertFalse(r.firstAvailableBlock(31).findFirst().isPresent());
+    }
+
+    @Test
+    void testFirstFitSkipsSmallRuns() {
+        Row r = new PackedRow(0, 100);
+
+        SeatHold first = r.holdSeats(r.firstAvailableBlock(10).findFirst().get(), 10, "a@a.com").hold;
+        r.holdSeats(r.firstAvailableBlock(50).findFirst().get(), 50, "b@b.com");
+
+        // releasing the first hold leaves a 10 seat gap at the front of the row
+        r.withBlockUnreserved(first.getBlock());
+        assertBlock(r.firstAvailableBlock(10).findFirst().get(), SeatBlockType.UNRESERVED, 0, 0, 10);
+        assertBlock(r.firstAvailableBlock(11).findFirst().get(), SeatBlockType.UNRESERVED, 0, 60, 40);
+    }
+
+    @Test
+    void testReserveAndRelease() {
+        Row r = new PackedRow(0, 64);
+
+        SeatHold hold = r.holdSeats(r.firstAvailableBlock(33).findFirst().get(), 33, "a@a.com").hold;
+        r.withBlockReserved(hold.getBlock());
+
+        assertEquals(31, r.totalAvailableSeatCount());
+        assertEquals(0, r.heldSeatCount());
+        assertEquals(33, r.reservedSeatCount());
+        assertBlock(r.getBlocks().get(0), SeatBlockType.RESERVED, 0, 0, 33);
+
+        // reserved seats can't be released as if they were held
+        assertThrows(VenueException.class, () -> r.withBlockUnreserved(hold.getBlock()));
+    }
+
+}
@@ -0,0 +1,201 @@
+package wm.assignment.venue;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static wm.assignment.util.TestUtil.assertBlock;
+
+class ReservationStoreTest {
+
+    private static SeatBlock block(int rowNum, int startPosition, int numSeats) {
+        return new SeatBlock(SeatBlockType.HOLD, rowNum, startPosition, numSeats);
+    }
+
+    @Test
+    void testPutAndGet() {
+        ReservationStore store = new ReservationStore();
+
+        assertTrue(store.put(7, block(3, 10, 4), "a@a.com"));
+        assertBlock(store.get(7), SeatBlockType.RESERVED, 3, 10, 4);
+        assertNull(store.get(8));
+        assertNull(store.get(0));
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    void testCustomer() {
+        ReservationStore store = new ReservationStore();
+
+        store.put(7, block(3, 10, 4), "a@a.com");
+        store.put(-7, block(3, 14, 4), " B@b.com");
+
+        assertEquals(CustomerKey.of("a@a.com"), store.getCustomer(7));
+        assertEquals(CustomerKey.of("b@b.com"), store.getCustomer(-7));
+        assertEquals(0, store.getCustomer(8));
+        assertEquals(0, store.getCustomer(0));
+
+        // the email as the customer gave it
+        assertEquals(" B@b.com", store.getCustomerEmail(-7));
+        assertNull(store.getCustomerEmail(8));
+        assertNull(store.getCustomerEmail(0));
+    }
+
+    @Test
+    void testCodesAreNotReplaced() {
+        ReservationStore store = new ReservationStore();
+
+        assertTrue(store.put(7, block(3, 10, 4), "a@a.com"));
+        assertFalse(store.put(7, block(5, 0, 1), "a@a.com"));
+        assertBlock(store.get(7), SeatBlockType.RESERVED, 3, 10, 4);
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    void testReplace() {
+        ReservationStore store = new ReservationStore();
+        store.put(7, block(3, 10, 4), "a@a.com");
+
+        // only succeeds against the block the reservation has now
+        assertFalse(store.replace(7, Arrays.asList(block(3, 10, 3)), Arrays.asList(block(3, 10, 2))));
+        assertTrue(store.replace(7, Arrays.asList(block(3, 10, 4)), Arrays.asList(block(3, 10, 3))));
+        assertBlock(store.get(7), SeatBlockType.RESERVED, 3, 10, 3);
+        assertFalse(store.replace(8, Arrays.asList(block(3, 10, 3)), Collections.emptyList()));
+
+        // removed, but the code isn't handed out again until the table is rebuilt
+        assertTrue(store.replace(7, Arrays.asList(block(3, 10, 3)), Collections.emptyList()));
+        assertNull(store.get(7));
+        assertEquals(0, store.getCustomer(7));
+        assertNull(store.getCustomerEmail(7));
+        assertEquals(0, store.size());
+        assertFalse(store.replace(7, Arrays.asList(block(3, 10, 3)), Collections.emptyList()));
+        assertFalse(store.put(7, block(3, 10, 4), "a@a.com"));
+    }
+
+    @Test
+    void testSplitReservations() {
+        ReservationStore store = new ReservationStore();
+        List<SeatBlock> blocks = Arrays.asList(block(3, 10, 4), block(4, 10, 4), block(5, 11, 2));
+
+        assertTrue(store.put(7, blocks, "a@a.com"));
+        assertBlock(store.get(7), SeatBlockType.RESERVED, 3, 10, 4);
+        assertEquals(3, store.getBlocks(7).size());
+        assertBlock(store.getBlocks(7).get(2), SeatBlockType.HOLD, 5, 11, 2);
+
+        // giving back the last three seats takes the last block and one seat of the one before it
+        List<SeatBlock> kept = ReservationStore.keptBlocks(blocks, 3);
+        List<SeatBlock> released = ReservationStore.releasedBlocks(blocks, 3);
+        assertEquals(2, kept.size());
+        assertBlock(kept.get(0), SeatBlockType.RESERVED, 3, 10, 4);
+        assertBlock(kept.get(1), SeatBlockType.RESERVED, 4, 10, 3);
+        assertEquals(2, released.size());
+        assertBlock(released.get(0), SeatBlockType.RESERVED, 4, 13, 1);
+        assertBlock(released.get(1), SeatBlockType.RESERVED, 5, 11, 2);
+
+        assertFalse(store.replace(7, kept, kept));
+        assertTrue(store.replace(7, blocks, kept));
+        assertEquals(2, store.getBlocks(7).size());
+
+        // a copy keeps the split blocks, and forEach visits them together
+        ReservationStore copy = store.copy();
+        assertTrue(store.replace(7, kept, ReservationStore.keptBlocks(kept, 3)));
+        assertEquals(1, store.getBlocks(7).size());
+
+        copy.forEach((code, visited, customerEmail) -> {
+            assertEquals(7, code);
+            assertEquals(2, visited.size());
+            assertBlock(visited.get(1), SeatBlockType.RESERVED, 4, 10, 3);
+        });
+    }
+
+    @Test
+    void testRemovedReservationsAreDroppedOnRebuild() {
+        ReservationStore store = new ReservationStore();
+
+        // enough removals that the table is rebuilt many times over with tombstones in it
+        for (int i = 1; i <= 10000; i++) {
+            assertTrue(store.put(i, block(0, i % 100, 1), "a@a.com"));
+            assertTrue(store.put(-i, block(1, 0, 1), "b@b.com"));
+            assertTrue(store.replace(i, Arrays.asList(block(0, i % 100, 1)), Collections.emptyList()));
+        }
+
+        assertEquals(10000, store.size());
+
+        for (int i = 1; i <= 10000; i++) {
+            assertNull(store.get(i));
+            assertBlock(store.get(-i), SeatBlockType.RESERVED, 1, 0, 1);
+            assertEquals("b@b.com", store.getCustomerEmail(-i));
+        }
+
+        int[] visited = new int[1];
+        store.forEach((code, blocks, customerEmail) -> visited[0]++);
+        assertEquals(10000, visited[0]);
+    }
+
+    @Test
+    void testGrows() {
+        ReservationStore store = new ReservationStore();
+
+        // sequential and negative codes, as well as random ones
+        for (int i = 1; i <= 10000; i++) {
+            assertTrue(store.put(i, block(i, i % 100, 1 + i % 7), "a@a.com"));
+            assertTrue(store.put(-i, block(i, 0, 1), "a@a.com"));
+        }
+
+        assertEquals(20000, store.size());
+
+        for (int i = 1; i <= 10000; i++) {
+            assertBlock(store.get(i), SeatBlockType.RESERVED, i, i % 100, 1 + i % 7);
+            assertBlock(store.get(-i), SeatBlockType.RESERVED, i, 0, 1);
+        }
+    }
+
+    @Test
+    void testLargestBlock() {
+        int maxRows = 1 << 22;
+        int maxColumns = (1 << 21) - 1;
+
+        assertTrue(ReservationStore.fits(maxRows, maxColumns));
+        assertFalse(ReservationStore.fits(maxRows + 1, maxColumns));
+        assertFalse(ReservationStore.fits(maxRows, maxColumns + 1));
+
+        ReservationStore store = new ReservationStore();
+        store.put(Long.MIN_VALUE, block(maxRows - 1, 0, maxColumns), "a@a.com");
+        store.put(Long.MAX_VALUE, block(maxRows - 1, maxColumns - 1, 1), "a@a.com");
+
+        assertBlock(store.get(Long.MIN_VALUE), SeatBlockType.RESERVED, maxRows - 1, 0, maxColumns);
+        assertBlock(store.get(Long.MAX_VALUE), SeatBlockType.RESERVED, maxRows - 1, maxColumns - 1, 1);
+    }
+
+    @Test
+    void testCopyAndForEach() {
+        ReservationStore store = new ReservationStore();
+
+        for (int i = 1; i <= 100; i++) {
+            store.put(ConfirmationCode.next(), block(i, 0, 2), "a@a.com");
+        }
+
+        ReservationStore copy = store.copy();
+        store.put(ConfirmationCode.next(), block(0, 0, 2), "a@a.com");
+
+        Map<Long, SeatBlock> visited = new HashMap<>();
+        copy.forEach((code, blocks, customerEmail) -> {
+            assertEquals("a@a.com", customerEmail);
+            assertEquals(1, blocks.size());
+            visited.put(code, blocks.get(0));
+        });
+
+        assertEquals(100, copy.size());
+        assertEquals(100, visited.size());
+        visited.forEach((code, block) -> assertBlock(store.get(code), SeatBlockType.RESERVED, block.getRowNum(), 0, 2));
+    }
+
+}
@@ -0,0 +1,43 @@
+package wm.assignment.venue;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RowCapacityIndexTest {
+
+    @Test
+    void testInitialCapacity() {
+        RowCapacityIndex index = new RowCapacityIndex(5, 10);
+
+        assertEquals(10, index.largestAvailableBlock());
+        assertEquals(0, index.firstRowWithCapacity(10, 0));
+        assertEquals(3, index.firstRowWithCapacity(10, 3));
+        assertEquals(-1, index.firstRowWithCapacity(10, 5));
+        assertEquals(-1, index.firstRowWithCapacity(11, 0));
+    }
+
+    @Test
+    void testFirstRowWithCapacity() {
+        RowCapacityIndex index = new RowCapacityIndex(5, 10);
+        index.update(0, 2);
+        index.update(1, 6);
+        index.update(2, 0);
+        index.update(3, 8);
+        index.update(4, 4);
+
+        assertEquals(8, index.largestAvailableBlock());
+        assertEquals(0, index.firstRowWithCapacity(2, 0));
+        assertEquals(1, index.firstRowWithCapacity(3, 0));
+        assertEquals(3, index.firstRowWithCapacity(7, 0));
+        assertEquals(3, index.firstRowWithCapacity(6, 2));
+        assertEquals(4, index.firstRowWithCapacity(4, 4));
+        assertEquals(-1, index.firstRowWithCapacity(9, 0));
+
+        // seats coming back to a row make it visible again
+        index.update(2, 10);
+        assertEquals(10, index.largestAvailableBlock());
+        assertEquals(2, index.firstRowWithCapacity(9, 0));
+    }
+
+}
@@ -4,27 +4,91 @@ package wm.assignment.venue;
 import org.junit.jupiter.api.Test;
 import wm.assignment.exception.VenueException;
 
+import java.util.Arrays;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 class RowTest {
+    @Test
+    void testFromBlocks() {
+        for (RowModel rowModel : RowModel.values()) {
+            SeatBlock held = new SeatBlock(SeatBlockType.HOLD, 0, 2, 3);
+            SeatBlock reserved = new SeatBlock(SeatBlockType.RESERVED, 0, 5, 4);
+            Row r = Row.fromBlocks(rowModel, 0, 20, Arrays.asList(held, reserved));
+
+            List<SeatBlock> blocks = r.getBlocks();
+            assertEquals(4, blocks.size());
+            assertBlock(blocks.get(0), 2, 0);
+            assertBlock(blocks.get(3), 11, 9);
+            assertEquals(SeatBlockType.UNRESERVED, blocks.get(3).getBlockType());
+            assertEquals(13, r.totalAvailableSeatCount());
+            assertEquals(3, r.heldSeatCount());
+            assertEquals(4, r.reservedSeatCount());
+            assertEquals(11, r.largestAvailableBlock());
+
+            // the hold's block can be released against the rebuilt row
+            Row released = r.withBlockUnreserved(held);
+            assertEquals(16, released.totalAvailableSeatCount());
+            assertEquals(0, released.heldSeatCount());
+
+            assertThrows(VenueException.class, () -> Row.fromBlocks(rowModel, 0, 20, Arrays.asList(
+                new SeatBlock(SeatBlockType.HOLD, 0, 2, 3), new SeatBlock(SeatBlockType.HOLD, 0, 4, 1))));
+        }
+    }
+
+    @Test
+    void testSeatsReleased() {
+        for (RowModel rowModel : RowModel.values()) {
+            SeatBlock reserved = new SeatBlock(SeatBlockType.RESERVED, 0, 2, 8);
+            SeatBlock held = new SeatBlock(SeatBlockType.HOLD, 0, 10, 3);
+            Row r = Row.fromBlocks(rowModel, 0, 20, Arrays.asList(reserved, held));
+
+            // the end of the reserved block - the rest of it stays reserved
+            r = r.withSeatsReleased(new SeatBlock(SeatBlockType.RESERVED, 0, 6, 4));
+            assertEquals(13, r.totalAvailableSeatCount());
+            assertEquals(4, r.reservedSeatCount());
+            assertEquals(3, r.heldSeatCount());
+            assertEquals(7, r.largestAvailableBlock());
+
+            List<SeatBlock> blocks = r.getBlocks();
+            assertEquals(SeatBlockType.RESERVED, blocks.get(1).getBlockType());
+            assertBlock(blocks.get(1), 4, 2);
+            assertEquals(SeatBlockType.UNRESERVED, blocks.get(2).getBlockType());
+            assertBlock(blocks.get(2), 4, 6);
+
+            // held seats can't be released, nor can seats that have already been
+            Row row = r;
+            assertThrows(VenueException.class,
+                () -> row.withSeatsReleased(new SeatBlock(SeatBlockType.RESERVED, 0, 10, 1)));
+            assertThrows(VenueException.class,
+                () -> row.withSeatsReleased(new SeatBlock(SeatBlockType.RESERVED, 0, 4, 4)));
+
+            // the rest merges with the free seats on both sides
+            r = r.withSeatsReleased(new SeatBlock(SeatBlockType.RESERVED, 0, 2, 4));
+            assertEquals(0, r.reservedSeatCount());
+            assertEquals(10, r.largestAvailableBlock());
+            assertEquals(SeatBlockType.UNRESERVED, r.getBlocks().get(0).getBlockType());
+            assertBlock(r.getBlocks().get(0), 10, 0);
+        }
+    }
+
     @Test
     void testInitializationSeatsAvailable() {
-        Row r = new Row(0, 50);
+        Row r = new BlockListRow(0, 50);
         assertEquals(50, r.totalAvailableSeatCount());
     }
 
     @Test
     void testBadInitializationData() {
-        assertThrows(VenueException.class, () -> new Row(0,0));
-        assertThrows(VenueException.class, () -> new Row(0,-1));
+        assertThrows(VenueException.class, () -> new BlockListRow(0,0));
+        assertThrows(VenueException.class, () -> new BlockListRow(0,-1));
     }
 
     @Test
     void testSeatBlockSplitLogic() {
-        Row r = new Row(0, 50);
+        Row r = new BlockListRow(0, 50);
 
         SeatBlock availableBlock = r.getBlocks().get(0);
         Row.HoldUpdate hu = r.holdSeats(availableBlock, 10, "a@a.com");
@@ -43,6 +107,51 @@ class RowTest {
 
     }
 
+    @Test
+    void testHoldSeatsAtOffset() {
+        for (RowModel rowModel : RowModel.values()) {
+            Row r = Row.create(rowModel, 0, 20);
+
+            Row.HoldUpdate hu = r.holdSeats(r.getBlocks().get(0), 8, 4, "a@a.com");
+            List<SeatBlock> blocks = hu.row.getBlocks();
+
+            assertEquals(3, blocks.size());
+            assertBlock(blocks.get(0), 8, 0);
+            assertBlock(blocks.get(1), 4, 8);
+            assertBlock(blocks.get(2), 8, 12);
+            assertEquals(SeatBlockType.HOLD, blocks.get(1).getBlockType());
+            assertEquals(8, hu.row.largestAvailableBlock());
+
+            // the hold must fit in the block after the offset
+            Row held = hu.row;
+            SeatBlock lastBlock = blocks.get(2);
+            assertThrows(VenueException.class, () -> held.holdSeats(lastBlock, 17, 4, "b@b.com"));
+
+            // releasing the hold merges the seats back into one block
+            assertEquals(1, held.withBlockUnreserved(hu.hold.getBlock()).getBlocks().size());
+        }
+    }
+
+    @Test
+    void testSeatCounts() {
+        Row r = new BlockListRow(0, 50);
+
+        Row.HoldUpdate hu = r.holdSeats(r.getBlocks().get(0), 10, "a@a.com");
+        Row held = hu.row;
+        assertEquals(40, held.totalAvailableSeatCount());
+        assertEquals(10, held.heldSeatCount());
+
+        Row reserved = held.withBlockReserved(hu.hold.getBlock());
+        assertEquals(40, reserved.totalAvailableSeatCount());
+        assertEquals(0, reserved.heldSeatCount());
+        assertEquals(10, reserved.reservedSeatCount());
+
+        Row released = held.withBlockUnreserved(hu.hold.getBlock());
+        assertEquals(50, released.totalAvailableSeatCount());
+        assertEquals(0, released.heldSeatCount());
+        assertEquals(1, released.getBlocks().size());
+    }
+
     private void assertBlock(SeatBlock block, int numSeats, int startPosition) {
         assertEquals(numSeats, block.getNumSeats());
         assertEquals(startPosition, block.getStartPosition());
@@ -0,0 +1,229 @@
+package wm.assignment.venue;
+
+import org.junit.jupiter.api.Test;
+import wm.assignment.exception.VenueException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static wm.assignment.util.TestUtil.assertBlock;
+
+class SeatChangeFeedTest {
+
+    @Test
+    void testChangesInOrder() throws InterruptedException {
+        Venue v = new Venue(2, 10, 10000);
+        SeatChangeFeed feed = v.openChangeFeed(16);
+        SeatChangeFeed.Subscription subscription = feed.subscribe();
+
+        // a listener set afterwards, like a journal, doesn't take the feed's place
+        AtomicInteger heldByListener = new AtomicInteger();
+        v.setEventListener(new SeatEventListener() {
+            @Override
+            public void seatsHeld(SeatHold hold, long ttlInMillis) {
+                heldByListener.incrementAndGet();
+            }
+        });
+
+        SeatHold hold = v.findAndHoldSeats(4, "a@a.com");
+        v.extendHold(hold.getId(), "a@a.com", 1000);
+        String confirmId = v.reserveSeats(hold.getId(), "a@a.com");
+        v.releaseSeats(confirmId, "a@a.com", 1);
+
+        List<SeatChange> changes = subscription.poll(10);
+        assertEquals(4, changes.size());
+        assertEquals(1, heldByListener.get());
+        assertEquals(4, subscription.position());
+        assertEquals(0, subscription.lag());
+
+        for (int i = 0; i < changes.size(); i++) {
+            assertEquals(i, changes.get(i).getSequence());
+        }
+
+        assertEquals(SeatChange.Type.HELD, changes.get(0).getType());
+        assertEquals(hold.getId(), changes.get(0).getSeatHoldId());
+        assertNull(changes.get(0).getConfirmId());
+        assertBlock(changes.get(0).getBlocks().get(0), SeatBlockType.HOLD, 0, 0, 4);
+
+        assertEquals(SeatChange.Type.EXTENDED, changes.get(1).getType());
+        assertEquals(SeatChange.Type.RESERVED, changes.get(2).getType());
+        assertEquals(confirmId, changes.get(2).getConfirmId());
+
+        assertEquals(SeatChange.Type.RELEASED, changes.get(3).getType());
+        assertEquals(0, changes.get(3).getSeatHoldId());
+        assertEquals(confirmId, changes.get(3).getConfirmId());
+        assertBlock(changes.get(3).getBlocks().get(0), SeatBlockType.RESERVED, 0, 3, 1);
+
+        // nothing new - a timed poll gives up empty handed
+        assertTrue(subscription.poll(10).isEmpty());
+        assertTrue(subscription.poll(10, 5, TimeUnit.MILLISECONDS).isEmpty());
+
+        assertSame(feed, v.getChangeFeed());
+        assertThrows(VenueException.class, () -> v.openChangeFeed(16));
+        assertThrows(IllegalArgumentException.class, () -> subscription.poll(0));
+    }
+
+    @Test
+    void testResumeFromSequence() {
+        Venue v = new Venue(2, 10, 30);
+        SeatChangeFeed feed = v.openChangeFeed(10);
+        assertEquals(16, feed.getCapacity());
+
+        SeatChangeFeed.Subscription first = feed.subscribe();
+        v.findAndHoldSeats(2, "a@a.com");
+        v.findAndHoldSeats(3, "b@b.com");
+        v.findAndHoldSeats(4, "c@c.com");
+
+        // a batch at a time
+        assertEquals(2, first.poll(2).size());
+        assertEquals(1, first.lag());
+
+        // a subscriber that stopped after the second change picks up from there
+        SeatChangeFeed.Subscription resumed = feed.subscribe(first.position());
+        List<SeatChange> changes = resumed.poll(10);
+        assertEquals(1, changes.size());
+        assertEquals(2, changes.get(0).getSequence());
+        assertBlock(changes.get(0).getBlocks().get(0), SeatBlockType.HOLD, 0, 5, 4);
+
+        assertThrows(IllegalArgumentException.class, () -> feed.subscribe(-1));
+        assertThrows(IllegalArgumentException.class, () -> feed.subscribe(feed.nextSequence() + 1));
+        assertThrows(IllegalArgumentException.class, () -> v.getChangeFeed().subscribe(4));
+    }
+
+    @Test
+    void testSlowSubscriberIsOverrun() {
+        Venue v = new Venue(2, 10, 10000);
+        SeatChangeFeed feed = v.openChangeFeed(4);
+        SeatChangeFeed.Subscription slow = feed.subscribe();
+
+        for (int i = 0; i < 10; i++) {
+            v.findAndHoldSeats(1, "a@a.com");
+        }
+
+        // the first six changes are gone, so the subscriber can't carry on without missing them
+        assertThrows(VenueException.class, () -> slow.poll(10));
+        assertEquals(0, slow.position());
+
+        List<SeatChange> changes = feed.subscribe(feed.nextSequence() - feed.getCapacity()).poll(10);
+        assertEquals(4, changes.size());
+        assertEquals(6, changes.get(0).getSequence());
+    }
+
+    @Test
+    void testSubscribersRebuildTheVenue() throws Exception {
+        for (LockMode lockMode : new LockMode[]{LockMode.VENUE, LockMode.ROW}) {
+            // short holds, so holds, reservations, releases and expiries all race on the same rows
+            Venue v = new Venue(4, 10, 2, lockMode, RowModel.PACKED);
+            v.setSplitPartyRows(2);
+            SeatChangeFeed feed = v.openChangeFeed(1 << 16);
+
+            ExecutorService subscribers = Executors.newFixedThreadPool(3);
+            AtomicInteger writersLeft = new AtomicInteger(4);
+            List<Future<SeatBlockType[][]>> seatMaps = new ArrayList<>();
+
+            for (int i = 0; i < 3; i++) {
+                SeatChangeFeed.Subscription subscription = feed.subscribe(0);
+                seatMaps.add(subscribers.submit(() -> follow(subscription, writersLeft)));
+            }
+
+            ExecutorService writers = Executors.newFixedThreadPool(4);
+            for (int i = 0; i < 4; i++) {
+                writers.submit(() -> {
+                    for (int j = 0; j < 1000; j++) {
+                        SeatHold hold = v.findAndHoldSeats(1 + j % 12, "a@a.com");
+
+                        if (hold != null && j % 10 == 0) {
+                            String confirmId = v.reserveSeats(hold.getId(), "a@a.com");
+
+                            if (confirmId != null && j % 20 == 0) {
+                                v.releaseSeats(confirmId, "a@a.com", 1);
+                            }
+                        }
+                    }
+
+                    // wait for the remaining holds to expire before letting the subscribers finish
+                    long deadline = System.currentTimeMillis() + 5000;
+                    while (v.numSeatsHeld() > 0 && System.currentTimeMillis() < deadline) {
+                        Thread.sleep(5);
+                    }
+
+                    writersLeft.decrementAndGet();
+                    return null;
+                });
+            }
+            writers.shutdown();
+            assertTrue(writers.awaitTermination(30, TimeUnit.SECONDS));
+
+            // every subscriber rebuilt the same seat map as the venue's own
+            VenueSnapshot snapshot = v.snapshot();
+            subscribers.shutdown();
+
+            for (Future<SeatBlockType[][]> seatMap : seatMaps) {
+                SeatBlockType[][] seats = seatMap.get(30, TimeUnit.SECONDS);
+
+                for (int rowNum = 0; rowNum < 4; rowNum++) {
+                    for (SeatBlock block : snapshot.getBlocks(rowNum)) {
+                        for (int seat = block.getStartPosition(); seat < block.getStartPosition() + block.getNumSeats();
+                             seat++) {
+                            assertEquals(block.getBlockType(), seats[rowNum][seat], lockMode + " row " + rowNum);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Applies every change to a seat map of its own until the writers are done and the feed has been drained
+     */
+    private static SeatBlockType[][] follow(SeatChangeFeed.Subscription subscription, AtomicInteger writersLeft)
+        throws InterruptedException {
+        SeatBlockType[][] seats = new SeatBlockType[4][10];
+
+        for (SeatBlockType[] row : seats) {
+            Arrays.fill(row, SeatBlockType.UNRESERVED);
+        }
+
+        long expected = 0;
+
+        while (writersLeft.get() > 0 || subscription.lag() > 0) {
+            for (SeatChange change : subscription.poll(64, 10, TimeUnit.MILLISECONDS)) {
+                assertEquals(expected++, change.getSequence());
+                SeatBlockType state = stateAfter(change.getType());
+
+                if (state == null) {
+                    continue;
+                }
+
+                for (SeatBlock block : change.getBlocks()) {
+                    Arrays.fill(seats[block.getRowNum()], block.getStartPosition(),
+                        block.getStartPosition() + block.getNumSeats(), state);
+                }
+            }
+        }
+
+        return seats;
+    }
+
+    private static SeatBlockType stateAfter(SeatChange.Type type) {
+        switch (type) {
+            case HELD:
+                return SeatBlockType.HOLD;
+            case RESERVED:
+                return SeatBlockType.RESERVED;
+            case EXPIRED:
+            case RELEASED:
+                return SeatBlockType.UNRESERVED;
+            default:
+                return null;
+        }
+    }
+
+}
@@ -0,0 +1,185 @@
+package wm.assignment.venue;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SeatMapExportTest {
+
+    @Test
+    void testTextExport() throws IOException {
+        Venue v = new Venue(3, 10, 10000);
+        SeatHold reserved = v.findAndHoldSeats(4, "a@a.com");
+        v.reserveSeats(reserved.getId(), "a@a.com");
+        v.findAndHoldSeats(3, "b@b.com");
+        v.findAndHoldSeats(2, "c@c.com");
+        VenueSnapshot snapshot = v.snapshot();
+
+        // the two holds side by side make up one run
+        assertEquals("seatmap full version=" + snapshot.getVersion() + " rows=3 columns=10\n"
+            + "0 R4 H5 U1\n"
+            + "1 U10\n"
+            + "2 U10\n"
+            + "end\n", text(snapshot, null));
+
+        v.findAndHoldSeats(10, "d@d.com");
+
+        assertEquals("seatmap diff version=" + (snapshot.getVersion() + 1) + " base=" + snapshot.getVersion()
+            + " rows=3 columns=10\n"
+            + "1 H10\n"
+            + "end\n", text(v.snapshot(), snapshot));
+    }
+
+    @Test
+    void testBinaryRoundTrip() throws IOException {
+        for (RowModel rowModel : RowModel.values()) {
+            Venue v = new Venue(40, 100, 10000, LockMode.ROW, rowModel);
+            VenueSnapshot empty = v.snapshot();
+
+            for (int i = 0; i < 300; i++) {
+                SeatHold hold = v.findAndHoldSeats(1 + i % 7, "a@a.com");
+
+                if (i % 3 == 0) {
+                    String confirmId = v.reserveSeats(hold.getId(), "a@a.com");
+
+                    if (i % 2 == 0) {
+                        v.releaseSeats(confirmId, "a@a.com", 1);
+                    }
+                }
+            }
+
+            VenueSnapshot snapshot = v.snapshot();
+            SeatMapExport export = new SeatMapExport(SeatMapExport.Format.BINARY);
+
+            ByteArrayOutputStream full = new ByteArrayOutputStream();
+            export.write(snapshot, full);
+            assertArrayEquals(seats(snapshot), decode(full.toByteArray(), null), rowModel.name());
+
+            // the diff brings the map as of the empty venue up to date
+            ByteArrayOutputStream diff = new ByteArrayOutputStream();
+            export.writeDiff(empty, snapshot, diff);
+            assertArrayEquals(seats(snapshot), decode(diff.toByteArray(), seats(empty)), rowModel.name());
+        }
+    }
+
+    @Test
+    void testHugeVenueIsCompact() throws IOException {
+        // 100,000 seats
+        Venue v = new Venue(1000, 100, 10000, LockMode.VENUE, RowModel.PACKED);
+
+        for (int i = 0; i < 2000; i++) {
+            SeatHold hold = v.findAndHoldSeats(1 + i % 8, "a@a.com");
+
+            if (i % 2 == 0) {
+                v.reserveSeats(hold.getId(), "a@a.com");
+            }
+        }
+
+        VenueSnapshot base = v.snapshot();
+        SeatMapExport export = new SeatMapExport(SeatMapExport.Format.BINARY);
+
+        ByteArrayOutputStream full = new ByteArrayOutputStream();
+        export.write(base, full);
+        assertTrue(full.size() < 16 * 1024, full.size() + " bytes");
+
+        // a few changes only cost the rows they touched
+        for (int i = 0; i < 5; i++) {
+            v.findAndHoldSeats(10, "b@b.com");
+        }
+
+        ByteArrayOutputStream diff = new ByteArrayOutputStream();
+        export.writeDiff(base, v.snapshot(), diff);
+        assertTrue(diff.size() < 64, diff.size() + " bytes");
+        assertArrayEquals(seats(v.snapshot()), decode(diff.toByteArray(), seats(base)));
+
+        assertThrows(IllegalArgumentException.class,
+            () -> export.writeDiff(new Venue(10, 10, 10000).snapshot(), base, new ByteArrayOutputStream()));
+    }
+
+    private static String text(VenueSnapshot snapshot, VenueSnapshot base) throws IOException {
+        SeatMapExport export = new SeatMapExport(SeatMapExport.Format.TEXT);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        if (base == null) {
+            export.write(snapshot, out);
+        }
+        else {
+            export.writeDiff(base, snapshot, out);
+        }
+
+        return new String(out.toByteArray(), StandardCharsets.US_ASCII);
+    }
+
+    private static SeatBlockType[][] seats(VenueSnapshot snapshot) {
+        SeatBlockType[][] seats = new SeatBlockType[snapshot.getNumRows()][snapshot.getNumColumns()];
+
+        for (int rowNum = 0; rowNum < seats.length; rowNum++) {
+            for (SeatBlock block : snapshot.getBlocks(rowNum)) {
+                Arrays.fill(seats[rowNum], block.getStartPosition(), block.getStartPosition() + block.getNumSeats(),
+                    block.getBlockType());
+            }
+        }
+
+        return seats;
+    }
+
+    /**
+     * Reads a binary export into a seat map - a diff is applied to a copy of the given map
+     */
+    private static SeatBlockType[][] decode(byte[] bytes, SeatBlockType[][] base) {
+        ByteBuffer in = ByteBuffer.wrap(bytes);
+        assertEquals(0x534d4150, in.getInt());
+        assertEquals(1, in.get());
+        int kind = in.get();
+        assertEquals(base == null ? 0 : 1, kind);
+
+        int numRows = (int) varint(in);
+        int numColumns = (int) varint(in);
+        varint(in);
+        if (kind == 1) {
+            varint(in);
+        }
+
+        SeatBlockType[][] seats = new SeatBlockType[numRows][];
+        for (int rowNum = 0; rowNum < numRows; rowNum++) {
+            seats[rowNum] = base == null ? new SeatBlockType[numColumns] : base[rowNum].clone();
+        }
+
+        for (long row = varint(in); row != 0; row = varint(in)) {
+            int position = 0;
+
+            for (long run = varint(in); run != 0; run = varint(in)) {
+                int numSeats = (int) (run >>> 2);
+                SeatBlockType type = run % 4 == 0 ? SeatBlockType.UNRESERVED
+                    : run % 4 == 1 ? SeatBlockType.HOLD : SeatBlockType.RESERVED;
+                Arrays.fill(seats[(int) row - 1], position, position + numSeats, type);
+                position += numSeats;
+            }
+
+            assertEquals(numColumns, position);
+        }
+
+        assertFalse(in.hasRemaining());
+        return seats;
+    }
+
+    private static long varint(ByteBuffer in) {
+        long value = 0;
+
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7f) << shift;
+
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+}
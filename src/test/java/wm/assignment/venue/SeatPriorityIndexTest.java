@@ -0,0 +1,134 @@
+package wm.assignment.venue;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class SeatPriorityIndexTest {
+
+    @Test
+    void testEmptyVenue() {
+        SeatPriorityIndex index = new SeatPriorityIndex(SeatScorer.distanceToStage(), 5, 9);
+        List<Row> rows = emptyRows(RowModel.BLOCK_LIST, 5, 9);
+
+        // front row, centered on the stage
+        SeatPriorityIndex.Placement placement = index.findBest(3, rows::get);
+        assertEquals(0, placement.rowNum);
+        assertEquals(3, placement.startPosition);
+
+        assertNull(index.findBest(10, rows::get));
+    }
+
+    @Test
+    void testSkipsRowsWithoutCapacity() {
+        SeatPriorityIndex index = new SeatPriorityIndex(SeatScorer.centerWeighted(), 5, 9);
+        List<Row> rows = emptyRows(RowModel.BLOCK_LIST, 5, 9);
+
+        // take the middle seat of the middle row - a 9 seat request has to go to the next best row
+        hold(index, rows, 2, 4, 1);
+
+        SeatPriorityIndex.Placement placement = index.findBest(9, rows::get);
+        assertNotNull(placement);
+        assertEquals(0, placement.startPosition);
+        assertEquals(1, placement.rowNum);
+
+        // seats next to the taken one are as good as the middle of the next row - ties go to the lower row
+        placement = index.findBest(1, rows::get);
+        assertEquals(1, placement.rowNum);
+        assertEquals(4, placement.startPosition);
+    }
+
+    @Test
+    void testMatchesExhaustiveSearch() {
+        Random random = new Random(42);
+
+        for (RowModel rowModel : RowModel.values()) {
+            for (SeatScorer scorer : new SeatScorer[]{SeatScorer.centerWeighted(), SeatScorer.distanceToStage()}) {
+                SeatPriorityIndex index = new SeatPriorityIndex(scorer, 30, 40);
+                List<Row> rows = emptyRows(rowModel, 30, 40);
+
+                for (int i = 0; i < 300; i++) {
+                    int numSeats = 1 + random.nextInt(6);
+                    SeatPriorityIndex.Placement placement = index.findBest(numSeats, rows::get);
+                    double expected = bestScore(scorer, rows, numSeats);
+
+                    if (placement == null) {
+                        assertEquals(Double.NEGATIVE_INFINITY, expected);
+                        continue;
+                    }
+
+                    assertEquals(expected, placement.score, 1e-9);
+
+                    // sell the placement, or a random free block, so later requests see a fragmented venue
+                    if (random.nextBoolean()) {
+                        hold(index, rows, placement.rowNum, placement.startPosition, numSeats);
+                    }
+                    else {
+                        Row row = rows.get(random.nextInt(rows.size()));
+                        row.availableBlocks(numSeats).findFirst()
+                            .ifPresent(b -> hold(index, rows, row.getRowNum(), b.getStartPosition(), numSeats));
+                    }
+                }
+            }
+        }
+    }
+
+    private static List<Row> emptyRows(RowModel rowModel, int numRows, int numColumns) {
+        List<Row> rows = new ArrayList<>();
+
+        for (int rowNum = 0; rowNum < numRows; rowNum++) {
+            rows.add(Row.create(rowModel, rowNum, numColumns));
+        }
+
+        return rows;
+    }
+
+    private static void hold(SeatPriorityIndex index, List<Row> rows, int rowNum, int startPosition, int numSeats) {
+        Row row = rows.get(rowNum);
+        SeatBlock block = row.availableBlocks(numSeats)
+            .filter(b -> b.getStartPosition() <= startPosition
+                && startPosition + numSeats <= b.getStartPosition() + b.getNumSeats())
+            .findFirst()
+            .get();
+
+        Row newRow = row.holdSeats(block, startPosition, numSeats, "a@a.com").row;
+        rows.set(rowNum, newRow);
+        index.update(rowNum, newRow.largestAvailableBlock());
+    }
+
+    /**
+     * Scores every placement of numSeats free seats in the venue
+     */
+    private static double bestScore(SeatScorer scorer, List<Row> rows, int numSeats) {
+        double best = Double.NEGATIVE_INFINITY;
+        int numColumns = rows.get(0).getNumSeats();
+
+        for (Row row : rows) {
+            for (SeatBlock block : row.getBlocks()) {
+                if (block.getBlockType() != SeatBlockType.UNRESERVED) {
+                    continue;
+                }
+
+                for (int start = block.getStartPosition();
+                     start + numSeats <= block.getStartPosition() + block.getNumSeats(); start++) {
+                    double score = 0;
+
+                    for (int seat = start; seat < start + numSeats; seat++) {
+                        score += scorer.score(row.getRowNum(), seat, rows.size(), numColumns);
+                    }
+
+                    best = Math.max(best, score);
+                }
+            }
+        }
+
+        return best;
+    }
+
+}
@@ -0,0 +1,325 @@
+package wm.assignment.venue;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import wm.assignment.exception.VenueException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static wm.assignment.util.TestUtil.assertBlock;
+
+class VenueJournalTest {
+
+    private Path path;
+    private Path checkpointPath;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        path = Files.createTempFile("venue", ".journal");
+        checkpointPath = path.resolveSibling(path.getFileName() + ".checkpoint");
+        Files.delete(path);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.deleteIfExists(path);
+        Files.deleteIfExists(checkpointPath);
+    }
+
+    private Venue recover(long ttlInMillis, int windowSize) {
+        Venue venue = new Venue(2, 10, ttlInMillis);
+        new VenueJournal(path, windowSize).replay(venue);
+        return venue;
+    }
+
+    @Test
+    void testReplay() throws IOException {
+        Venue v = new Venue(2, 10, 10000);
+        VenueJournal journal = new VenueJournal(path);
+        journal.replay(v);
+
+        SeatHold reserved = v.findAndHoldSeats(8, "a@a.com");
+        String confirmId = v.reserveSeats(reserved.getId(), "a@a.com");
+        SeatHold held = v.findAndHoldSeats(4, "b@b.com");
+        journal.close();
+
+        Venue recovered = recover(10000, VenueJournal.DEFAULT_WINDOW_SIZE);
+        assertBlock(recovered.findReservation(confirmId), SeatBlockType.RESERVED, 0, 0, 8);
+        assertEquals(8, recovered.numSeatsAvailable());
+        assertEquals(4, recovered.numSeatsHeld());
+        assertEquals(8, recovered.numSeatsReserved());
+
+        // so does the customer index
+        assertEquals(Arrays.asList(confirmId), recovered.findReservations("a@a.com"));
+        assertEquals(held.getId(), recovered.findHolds("b@b.com").get(0).getId());
+        assertEquals(4, recovered.numSeatsFor("b@b.com"));
+
+        // the outstanding hold survives the restart with its id
+        String heldConfirmId = recovered.reserveSeats(held.getId(), "b@b.com");
+        assertBlock(recovered.findReservation(heldConfirmId), SeatBlockType.RESERVED, 1, 0, 4);
+    }
+
+    @Test
+    void testLongEmailSurvivesReplay() throws IOException {
+        Venue v = new Venue(2, 10, 10000);
+        VenueJournal journal = new VenueJournal(path);
+        journal.replay(v);
+
+        // more UTF-8 bytes than a short length can count
+        char[] name = new char[40000];
+        Arrays.fill(name, '\u00e9');
+        String email = new String(name) + "@a.com";
+
+        SeatHold held = v.findAndHoldSeats(4, email);
+        journal.close();
+
+        Venue recovered = recover(10000, VenueJournal.DEFAULT_WINDOW_SIZE);
+        assertEquals(held.getId(), recovered.findHolds(email).get(0).getId());
+        assertNotNull(recovered.reserveSeats(held.getId(), email));
+    }
+
+    @Test
+    void testLongEmailSurvivesCheckpoint() throws IOException {
+        Venue v = new Venue(2, 10, 10000);
+        VenueJournal journal = new VenueJournal(path, checkpointPath, 0);
+        journal.replay(v);
+
+        char[] name = new char[40000];
+        Arrays.fill(name, '\u00e9');
+        String email = new String(name) + "@a.com";
+
+        SeatHold held = v.findAndHoldSeats(4, email);
+        journal.checkpoint();
+        journal.close();
+
+        Venue recovered = new Venue(2, 10, 10000);
+        new VenueJournal(path, checkpointPath, 0).replay(recovered);
+        assertEquals(held.getId(), recovered.findHolds(email).get(0).getId());
+        assertNotNull(recovered.reserveSeats(held.getId(), email));
+    }
+
+    @Test
+    void testExpiredHoldDroppedOnReplay() throws IOException, InterruptedException {
+        Venue v = new Venue(2, 10, 20);
+        VenueJournal journal = new VenueJournal(path);
+        journal.replay(v);
+
+        v.findAndHoldSeats(8, "a@a.com");
+        journal.close();
+
+        // the hold runs out while the service is "down"
+        Thread.sleep(50);
+
+        Venue recovered = recover(20, VenueJournal.DEFAULT_WINDOW_SIZE);
+        assertEquals(20, recovered.numSeatsAvailable());
+        assertEquals(0, recovered.numSeatsHeld());
+        assertEquals(0, recovered.numSeatsFor("a@a.com"));
+        assertBlock(recovered.findAndHoldSeats(10, "b@b.com").getBlock(), SeatBlockType.HOLD, 0, 0, 10);
+    }
+
+    @Test
+    void testExtendedHoldSurvivesReplay() throws IOException, InterruptedException {
+        Venue v = new Venue(2, 10, 20);
+        VenueJournal journal = new VenueJournal(path);
+        journal.replay(v);
+
+        SeatHold extended = v.findAndHoldSeats(8, "a@a.com");
+        v.findAndHoldSeats(4, "b@b.com");
+        assertTrue(v.extendHold(extended.getId(), "a@a.com", 10000));
+        journal.close();
+
+        // the other hold runs out while the service is "down", the extended one doesn't
+        Thread.sleep(50);
+
+        Venue recovered = recover(20, VenueJournal.DEFAULT_WINDOW_SIZE);
+        assertEquals(8, recovered.numSeatsHeld());
+        assertEquals(0, recovered.numSeatsFor("b@b.com"));
+        assertNotNull(recovered.reserveSeats(extended.getId(), "a@a.com"));
+    }
+
+    @Test
+    void testReleasedSeatsSurviveReplay() throws IOException {
+        Venue v = new Venue(2, 10, 10000);
+        VenueJournal journal = new VenueJournal(path);
+        journal.replay(v);
+
+        String cancelled = v.reserveSeats(v.findAndHoldSeats(4, "a@a.com").getId(), "a@a.com");
+        String released = v.reserveSeats(v.findAndHoldSeats(6, "b@b.com").getId(), "b@b.com");
+        assertTrue(v.cancelReservation(cancelled, "a@a.com"));
+        assertTrue(v.releaseSeats(released, "b@b.com", 2));
+        journal.close();
+
+        Venue recovered = recover(10000, VenueJournal.DEFAULT_WINDOW_SIZE);
+        assertNull(recovered.findReservation(cancelled));
+        assertBlock(recovered.findReservation(released), SeatBlockType.RESERVED, 0, 4, 4);
+        assertEquals(16, recovered.numSeatsAvailable());
+        assertEquals(4, recovered.numSeatsFor("b@b.com"));
+        assertThrows(VenueException.class, () -> recovered.releaseSeats(released, "a@a.com", 1));
+
+        // the released seats are free again, on both sides of what is left of the reservation
+        assertBlock(recovered.findAndHoldSeats(4, "c@c.com").getBlock(), SeatBlockType.HOLD, 0, 0, 4);
+        assertBlock(recovered.findAndHoldSeats(2, "c@c.com").getBlock(), SeatBlockType.HOLD, 0, 8, 2);
+    }
+
+    @Test
+    void testSplitPartiesSurviveReplay() throws IOException {
+        Venue v = new Venue(2, 10, 10000);
+        VenueJournal journal = new VenueJournal(path, checkpointPath, 0);
+        journal.replay(v);
+        v.setSplitPartyRows(2);
+
+        String reserved = v.reserveSeats(v.findAndHoldSeats(12, "a@a.com").getId(), "a@a.com");
+        journal.checkpoint();
+        SeatHold held = v.findAndHoldSeats(6, "b@b.com");
+        journal.close();
+
+        // the reservation comes back from the checkpoint, the hold from the journal
+        Venue recovered = new Venue(2, 10, 10000);
+        new VenueJournal(path, checkpointPath, 0).replay(recovered);
+
+        List<SeatBlock> blocks = recovered.findReservationBlocks(reserved);
+        assertEquals(2, blocks.size());
+        assertBlock(blocks.get(0), SeatBlockType.RESERVED, 0, 0, 6);
+        assertBlock(blocks.get(1), SeatBlockType.RESERVED, 1, 0, 6);
+        assertEquals(2, recovered.findHold(held.getId()).getBlocks().size());
+        assertEquals(2, recovered.numSeatsAvailable());
+
+        // and the hold is still reserved as one
+        String heldConfirmId = recovered.reserveSeats(held.getId(), "b@b.com");
+        assertEquals(6, recovered.findReservationBlocks(heldConfirmId).stream().mapToInt(SeatBlock::getNumSeats).sum());
+        assertEquals(18, recovered.numSeatsReserved());
+    }
+
+    @Test
+    void testWindowRollover() throws IOException {
+        // a window only fits a handful of records, so the journal has to be remapped many times
+        Venue v = new Venue(2, 10, 10000);
+        VenueJournal journal = new VenueJournal(path, 128);
+        journal.replay(v);
+
+        List<String> confirmIds = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            SeatHold hold = v.findAndHoldSeats(2, "a@a.com");
+            confirmIds.add(v.reserveSeats(hold.getId(), "a@a.com"));
+        }
+        journal.close();
+
+        Venue recovered = recover(10000, 128);
+        assertEquals(0, recovered.numSeatsAvailable());
+        assertEquals(20, recovered.numSeatsReserved());
+
+        for (int i = 0; i < 10; i++) {
+            assertBlock(recovered.findReservation(confirmIds.get(i)), SeatBlockType.RESERVED, i / 5, (i % 5) * 2, 2);
+        }
+    }
+
+    @Test
+    void testTornRecord() throws IOException {
+        Venue v = new Venue(2, 10, 10000);
+        VenueJournal journal = new VenueJournal(path);
+        journal.replay(v);
+
+        SeatHold hold = v.findAndHoldSeats(8, "a@a.com");
+        String confirmId = v.reserveSeats(hold.getId(), "a@a.com");
+        journal.close();
+
+        // damage the last byte of the reservation record, as if the crash happened while it was written
+        byte[] bytes = Files.readAllBytes(path);
+        int last = bytes.length - 1;
+        while (bytes[last] == 0) {
+            last--;
+        }
+        bytes[last] ^= 0x7f;
+        Files.write(path, bytes);
+
+        Venue recovered = new Venue(2, 10, 10000);
+        journal = new VenueJournal(path);
+        journal.replay(recovered);
+
+        // the hold made it, the reservation didn't
+        assertNull(recovered.findReservation(confirmId));
+        assertEquals(8, recovered.numSeatsHeld());
+
+        // new records replace the torn one
+        String newConfirmId = recovered.reserveSeats(hold.getId(), "a@a.com");
+        assertNotNull(newConfirmId);
+        journal.close();
+
+        assertBlock(recover(10000, VenueJournal.DEFAULT_WINDOW_SIZE).findReservation(newConfirmId),
+            SeatBlockType.RESERVED, 0, 0, 8);
+    }
+
+    @Test
+    void testVenueSizeMismatch() throws IOException {
+        new VenueJournal(path).replay(new Venue(2, 10, 10000));
+
+        assertThrows(VenueException.class, () -> new VenueJournal(path).replay(new Venue(3, 10, 10000)));
+    }
+
+    @Test
+    void testCheckpoint() throws IOException {
+        Venue v = new Venue(2, 10, 10000);
+        VenueJournal journal = new VenueJournal(path, checkpointPath, 0);
+        journal.replay(v);
+
+        SeatHold reserved = v.findAndHoldSeats(8, "a@a.com");
+        String confirmId = v.reserveSeats(reserved.getId(), "a@a.com");
+        SeatHold held = v.findAndHoldSeats(4, "b@b.com");
+        journal.checkpoint();
+
+        // journaled after the checkpoint
+        String heldConfirmId = v.reserveSeats(held.getId(), "b@b.com");
+        SeatHold laterHold = v.findAndHoldSeats(2, "c@c.com");
+        journal.close();
+
+        // wipe the records the checkpoint covers - replay must not need them any more
+        long checkpointed = VenueCheckpoint.read(checkpointPath).getJournalPosition();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate((int) checkpointed - 16), 16);
+        }
+
+        Venue recovered = new Venue(2, 10, 10000);
+        journal = new VenueJournal(path, checkpointPath, 0);
+        journal.replay(recovered);
+
+        assertBlock(recovered.findReservation(confirmId), SeatBlockType.RESERVED, 0, 0, 8);
+        assertBlock(recovered.findReservation(heldConfirmId), SeatBlockType.RESERVED, 1, 0, 4);
+        assertEquals(Arrays.asList(heldConfirmId), recovered.findReservations("b@b.com"));
+        assertThrows(VenueException.class, () -> recovered.cancelReservation(confirmId, "b@b.com"));
+        assertEquals(6, recovered.numSeatsAvailable());
+        assertEquals(2, recovered.numSeatsHeld());
+        assertNotNull(recovered.reserveSeats(laterHold.getId(), "c@c.com"));
+
+        // a checkpoint taken after restarting covers both runs
+        journal.checkpoint();
+        journal.close();
+
+        Venue recoveredAgain = new Venue(2, 10, 10000, LockMode.ROW, RowModel.PACKED);
+        new VenueJournal(path, checkpointPath, 0).replay(recoveredAgain);
+        assertEquals(6, recoveredAgain.numSeatsAvailable());
+        assertEquals(14, recoveredAgain.numSeatsReserved());
+        assertBlock(recoveredAgain.findAndHoldSeats(6, "d@d.com").getBlock(), SeatBlockType.HOLD, 1, 4, 6);
+
+        // off the heap, the rebuilt rows go back into the venue's seat map - the journal has the last hold too
+        Venue recoveredOffHeap = new Venue(2, 10, 10000, LockMode.ROW, RowModel.OFF_HEAP);
+        new VenueJournal(path, checkpointPath, 0).replay(recoveredOffHeap);
+        assertEquals(0, recoveredOffHeap.numSeatsAvailable());
+        assertEquals(6, recoveredOffHeap.numSeatsHeld());
+        assertEquals(14, recoveredOffHeap.numSeatsReserved());
+        assertBlock(recoveredOffHeap.findBlocks(SeatBlockType.HOLD).get(0), SeatBlockType.HOLD, 1, 4, 6);
+    }
+}
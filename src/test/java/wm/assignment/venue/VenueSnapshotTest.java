@@ -0,0 +1,199 @@
+package wm.assignment.venue;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static wm.assignment.util.TestUtil.assertBlock;
+
+class VenueSnapshotTest {
+
+    @Test
+    void testSnapshotsDontChange() {
+        for (RowModel rowModel : RowModel.values()) {
+            Venue v = new Venue(2, 10, 10000, LockMode.ROW, rowModel);
+            VenueSnapshot before = v.snapshot();
+
+            SeatHold hold = v.findAndHoldSeats(4, "a@a.com");
+            v.reserveSeats(hold.getId(), "a@a.com");
+            v.findAndHoldSeats(3, "b@b.com");
+            VenueSnapshot after = v.snapshot();
+
+            // the rows of the earlier snapshot are untouched, even for rows that are updated in place
+            assertEquals(20, before.numSeatsAvailable(), rowModel.name());
+            assertTrue(before.findBlocks(SeatBlockType.HOLD).isEmpty(), rowModel.name());
+            assertBlock(before.getBlocks(0).get(0), SeatBlockType.UNRESERVED, 0, 0, 10);
+
+            assertEquals(before.getVersion() + 3, after.getVersion(), rowModel.name());
+            assertEquals(13, after.numSeatsAvailable(), rowModel.name());
+            assertEquals(3, after.numSeatsHeld(), rowModel.name());
+            assertEquals(4, after.numSeatsReserved(), rowModel.name());
+
+            List<SeatBlock> blocks = after.getBlocks(0);
+            assertBlock(blocks.get(0), SeatBlockType.RESERVED, 0, 0, 4);
+            assertBlock(blocks.get(1), SeatBlockType.HOLD, 0, 4, 3);
+            assertBlock(blocks.get(2), SeatBlockType.UNRESERVED, 0, 7, 3);
+
+            // nothing changed since, so there is no new version
+            assertSame(after, v.snapshot());
+        }
+    }
+
+    @Test
+    void testUnchangedRowsAreShared() {
+        // more than 32 * 32 rows, so the trie is three levels deep
+        Venue v = new Venue(2000, 10, 10000, LockMode.VENUE, RowModel.PACKED);
+        VenueSnapshot before = v.snapshot();
+
+        for (int i = 0; i < 1999; i++) {
+            v.findAndHoldSeats(10, "a@a.com");
+        }
+
+        SeatHold hold = v.findAndHoldSeats(6, "a@a.com");
+        VenueSnapshot after = v.snapshot();
+
+        assertEquals(2000, after.getNumRows());
+        assertEquals(10, after.getNumColumns());
+        assertEquals(before.getVersion() + 2000, after.getVersion());
+        assertEquals(4, after.numSeatsAvailable());
+        assertBlock(after.getBlocks(1999).get(0), SeatBlockType.HOLD, 1999, 0, 6);
+
+        v.reserveSeats(hold.getId(), "a@a.com");
+        VenueSnapshot reserved = v.snapshot();
+
+        assertSame(after.row(0), reserved.row(0));
+        assertSame(after.row(1998), reserved.row(1998));
+        assertNotSame(after.row(1999), reserved.row(1999));
+        assertBlock(before.getBlocks(1999).get(0), SeatBlockType.UNRESERVED, 1999, 0, 10);
+
+        assertThrows(IllegalArgumentException.class, () -> after.getBlocks(2000));
+        assertThrows(IllegalArgumentException.class, () -> after.getBlocks(-1));
+    }
+
+    @Test
+    void testOlderSnapshotsKeepTheirSeats() {
+        for (RowModel rowModel : RowModel.values()) {
+            // rows of several words, so that changes keep different words for the versions before them
+            Venue v = new Venue(2, 100, 10000, LockMode.ROW, rowModel);
+            List<VenueSnapshot> snapshots = new ArrayList<>();
+            List<String> seatMaps = new ArrayList<>();
+            List<String> confirmIds = new ArrayList<>();
+
+            for (int i = 0; i < 60; i++) {
+                snapshots.add(v.snapshot());
+                seatMaps.add(describe(v.snapshot().getBlocks(0)));
+
+                SeatHold hold = v.findAndHoldSeats(1 + i % 5, "a@a.com");
+                if (i % 2 == 0) {
+                    confirmIds.add(v.reserveSeats(hold.getId(), "a@a.com"));
+                }
+                if (i % 6 == 0) {
+                    v.releaseSeats(confirmIds.get(i / 6), "a@a.com", 1);
+                }
+            }
+
+            // each snapshot still has the seats it had when it was taken, however many changes came after it
+            for (int i = 0; i < snapshots.size(); i++) {
+                assertEquals(seatMaps.get(i), describe(snapshots.get(i).getBlocks(0)), rowModel + " snapshot " + i);
+            }
+        }
+    }
+
+    @Test
+    void testSnapshotsSurviveARestoredRow() {
+        Venue v = new Venue(2, 10, 10000, LockMode.ROW, RowModel.OFF_HEAP);
+        v.findAndHoldSeats(4, "a@a.com");
+        VenueSnapshot before = v.snapshot();
+
+        // an OFF_HEAP row rebuilt in the same slice of the seat map, as a replayed journal would
+        v.restoreRow(Row.fromBlocks(v.newRow(0), Collections.singletonList(
+            new SeatBlock(SeatBlockType.RESERVED, 0, 2, 6))));
+
+        assertBlock(before.getBlocks(0).get(0), SeatBlockType.HOLD, 0, 0, 4);
+        assertBlock(before.getBlocks(0).get(1), SeatBlockType.UNRESERVED, 0, 4, 6);
+        assertBlock(v.snapshot().getBlocks(0).get(1), SeatBlockType.RESERVED, 0, 2, 6);
+    }
+
+    @Test
+    void testSplitPartyIsOneVersion() {
+        Venue v = new Venue(2, 10, 10000, LockMode.ROW);
+        v.findAndHoldSeats(6, "a@a.com");
+        v.findAndHoldSeats(6, "b@b.com");
+        v.setSplitPartyRows(2);
+
+        VenueSnapshot before = v.snapshot();
+        SeatHold hold = v.findAndHoldSeats(8, "c@c.com");
+        VenueSnapshot after = v.snapshot();
+
+        assertEquals(2, hold.getBlocks().size());
+        assertEquals(before.getVersion() + 1, after.getVersion());
+        assertEquals(20, after.numSeatsHeld());
+        assertEquals(2, after.findBlocks(SeatBlockType.HOLD).stream().filter(b -> b.getNumSeats() == 4).count());
+    }
+
+    @Test
+    void testReadersSeeConsistentVenues() throws InterruptedException {
+        for (LockMode lockMode : LockMode.values()) {
+            RowModel rowModel = lockMode == LockMode.OPTIMISTIC ? RowModel.BLOCK_LIST : RowModel.PACKED;
+            Venue v = new Venue(4, 10, 2, lockMode, rowModel);
+
+            ExecutorService executor = Executors.newFixedThreadPool(4);
+            for (int i = 0; i < 4; i++) {
+                executor.submit(() -> {
+                    for (int j = 0; j < 2000; j++) {
+                        SeatHold hold = v.findAndHoldSeats(1 + j % 3, "a@a.com");
+
+                        if (hold != null && j % 50 == 0) {
+                            String confirmId = v.reserveSeats(hold.getId(), "a@a.com");
+
+                            if (confirmId != null) {
+                                v.releaseSeats(confirmId, "a@a.com", 1);
+                            }
+                        }
+                    }
+                });
+            }
+            executor.shutdown();
+
+            // every snapshot adds up, and its counts match its rows, however the writers are interleaved
+            long lastVersion = -1;
+            int numSnapshots = 0;
+
+            while (!executor.isTerminated()) {
+                VenueSnapshot snapshot = v.snapshot();
+                String message = lockMode + " version " + snapshot.getVersion();
+
+                assertTrue(snapshot.getVersion() >= lastVersion, message);
+                assertEquals(40, snapshot.numSeatsAvailable() + snapshot.numSeatsHeld() + snapshot.numSeatsReserved(),
+                    message);
+                assertEquals(snapshot.numSeatsHeld(), seatsIn(snapshot, SeatBlockType.HOLD), message);
+                assertEquals(snapshot.numSeatsReserved(), seatsIn(snapshot, SeatBlockType.RESERVED), message);
+
+                lastVersion = snapshot.getVersion();
+                numSnapshots++;
+            }
+
+            assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+            assertTrue(numSnapshots > 0);
+            assertEquals(v.numSeatsReserved(), v.snapshot().numSeatsReserved(), lockMode.name());
+        }
+    }
+
+    private static String describe(List<SeatBlock> blocks) {
+        return blocks.stream()
+            .map(b -> b.getBlockType() + " " + b.getStartPosition() + "+" + b.getNumSeats())
+            .collect(Collectors.joining(", "));
+    }
+
+    private static int seatsIn(VenueSnapshot snapshot, SeatBlockType type) {
+        return snapshot.findBlocks(type).stream().mapToInt(SeatBlock::getNumSeats).sum();
+    }
+
+}
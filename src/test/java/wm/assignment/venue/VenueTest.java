@@ -3,19 +3,48 @@ package wm.assignment.venue;
 import org.junit.jupiter.api.Test;
 import wm.assignment.exception.VenueException;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static wm.assignment.util.TestUtil.assertBlock;
 
 class VenueTest {
 
+    // two different emails with the same CustomerKey
+    private static final String EMAIL = "\u882b\u8ae8\u5306\u6000@example.com";
+    private static final String COLLIDING_EMAIL = "\u6170\u78bc\u7c29\u99a0@example.com";
+
     @Test
     void testNumSeatsAvailable() {
         Venue v = new Venue(2, 10, 10000);
         assertEquals(20, v.numSeatsAvailable());
     }
 
+    @Test
+    void testSeatCounts() {
+        Venue v = new Venue(2, 10, 10000);
+
+        SeatHold hold = v.findAndHoldSeats(8, "a@a.com");
+        v.findAndHoldSeats(4, "b@b.com");
+        assertEquals(8, v.numSeatsAvailable());
+        assertEquals(12, v.numSeatsHeld());
+        assertEquals(0, v.numSeatsReserved());
+
+        v.reserveSeats(hold.getId(), "a@a.com");
+        assertEquals(8, v.numSeatsAvailable());
+        assertEquals(4, v.numSeatsHeld());
+        assertEquals(8, v.numSeatsReserved());
+    }
+
     @Test
     void testFindAndHoldSeats() {
         Venue v = new Venue(2, 10, 10000);
@@ -96,4 +125,577 @@ class VenueTest {
 
         assertNull(v.reserveSeats(hold.getId(), "a@a.com"));
     }
+
+    @Test
+    void testExtendHold() throws InterruptedException {
+        Venue v = new Venue(2, 10, 20);
+
+        SeatHold hold = v.findAndHoldSeats(8, "a@a.com");
+        assertTrue(v.extendHold(hold.getId(), "a@a.com", 500));
+        assertTrue(v.extendHold(hold.getId(), " A@a.com", 500));
+        assertThrows(VenueException.class, () -> v.extendHold(hold.getId(), "b@b.com", 500));
+        assertThrows(IllegalArgumentException.class, () -> v.extendHold(hold.getId(), "a@a.com", 0));
+
+        // well past the original TTL, the hold and its seats are still there
+        Thread.sleep(60);
+        assertEquals(8, v.numSeatsHeld());
+        assertNotNull(v.reserveSeats(hold.getId(), "a@a.com"));
+        assertFalse(v.extendHold(hold.getId(), "a@a.com", 500));
+
+        // a hold that has expired can't be brought back
+        SeatHold expired = v.findAndHoldSeats(2, "a@a.com");
+        Thread.sleep(60);
+        assertFalse(v.extendHold(expired.getId(), "a@a.com", 500));
+        assertEquals(12, v.numSeatsAvailable());
+    }
+
+    @Test
+    void testCancelAndReleaseSeats() {
+        for (LockMode lockMode : LockMode.values()) {
+            for (RowModel rowModel : RowModel.values()) {
+                if (lockMode == LockMode.OPTIMISTIC && rowModel != RowModel.BLOCK_LIST) {
+                    continue;
+                }
+
+                Venue v = new Venue(2, 10, 10000, lockMode, rowModel);
+                String first = v.reserveSeats(v.findAndHoldSeats(4, "a@a.com").getId(), "a@a.com");
+                String second = v.reserveSeats(v.findAndHoldSeats(4, "b@b.com").getId(), "b@b.com");
+
+                // the last seats of the reservation go back, and the code now stands for the rest
+                assertTrue(v.releaseSeats(second, "b@b.com", 3));
+                assertBlock(v.findReservation(second), SeatBlockType.RESERVED, 0, 4, 1);
+                assertEquals(15, v.numSeatsAvailable());
+                assertEquals(5, v.numSeatsReserved());
+                assertEquals(1, v.numSeatsFor("b@b.com"));
+                assertFalse(v.releaseSeats(second, "b@b.com", 2));
+                assertThrows(IllegalArgumentException.class, () -> v.releaseSeats(second, "b@b.com", 0));
+
+                // cancelling the first reservation leaves the first row with a gap in front of the remaining seat
+                assertTrue(v.cancelReservation(first, "a@a.com"));
+                assertNull(v.findReservation(first));
+                assertFalse(v.cancelReservation(first, "a@a.com"));
+                assertTrue(v.findReservations("a@a.com").isEmpty());
+                assertEquals(0, v.numSeatsFor("a@a.com"));
+                assertBlock(v.findAndHoldSeats(4, "c@c.com").getBlock(), SeatBlockType.HOLD, 0, 0, 4);
+
+                // releasing the last seat cancels the reservation, and the first row merges back into one block
+                assertTrue(v.releaseSeats(second, "b@b.com", 1));
+                assertNull(v.findReservation(second));
+                assertTrue(v.findReservations("b@b.com").isEmpty());
+                assertEquals(0, v.numSeatsReserved());
+                assertBlock(v.findBlocks(SeatBlockType.UNRESERVED).get(0), SeatBlockType.UNRESERVED, 0, 4, 6);
+
+                assertFalse(v.cancelReservation("not a code", "a@a.com"));
+            }
+        }
+    }
+
+    @Test
+    void testSplitParty() {
+        Venue v = new Venue(3, 10, 10000, LockMode.ROW);
+
+        // every row is left with four free seats, so no row can seat eight
+        for (int i = 0; i < 3; i++) {
+            v.findAndHoldSeats(6, "a@a.com");
+        }
+        assertNull(v.findAndHoldSeats(8, "b@b.com"));
+
+        // shared out between two rows and lined up with each other
+        v.setSplitPartyRows(2);
+        SeatHold hold = v.findAndHoldSeats(8, "b@b.com");
+        assertEquals(2, hold.getBlocks().size());
+        assertEquals(8, hold.getNumSeats());
+        assertBlock(hold.getBlocks().get(0), SeatBlockType.HOLD, 0, 6, 4);
+        assertBlock(hold.getBlocks().get(1), SeatBlockType.HOLD, 1, 6, 4);
+        assertEquals(8, v.numSeatsFor("b@b.com"));
+        assertEquals(26, v.numSeatsHeld());
+
+        // only the last row has seats left
+        assertNull(v.findAndHoldSeats(5, "c@c.com"));
+
+        // the reservation covers both blocks, and releases start from the last one
+        String confirmId = v.reserveSeats(hold.getId(), "b@b.com");
+        List<SeatBlock> reserved = v.findReservationBlocks(confirmId);
+        assertEquals(2, reserved.size());
+        assertBlock(reserved.get(1), SeatBlockType.RESERVED, 1, 6, 4);
+        assertEquals(8, v.numSeatsReserved());
+
+        assertTrue(v.releaseSeats(confirmId, "b@b.com", 5));
+        assertEquals(Arrays.asList(confirmId), v.findReservations("b@b.com"));
+        reserved = v.findReservationBlocks(confirmId);
+        assertEquals(1, reserved.size());
+        assertBlock(reserved.get(0), SeatBlockType.RESERVED, 0, 6, 3);
+        assertEquals(3, v.numSeatsFor("b@b.com"));
+
+        assertTrue(v.cancelReservation(confirmId, "b@b.com"));
+        assertTrue(v.findReservationBlocks(confirmId).isEmpty());
+        assertEquals(12, v.numSeatsAvailable());
+
+        assertThrows(IllegalArgumentException.class, () -> v.setSplitPartyRows(0));
+        assertThrows(IllegalArgumentException.class,
+            () -> new Venue(3, 10, 10000, LockMode.OPTIMISTIC).setSplitPartyRows(2));
+    }
+
+    @Test
+    void testSplitPartyExpiresAsOne() throws InterruptedException {
+        Venue v = new Venue(2, 10, 20, LockMode.ROW, RowModel.PACKED);
+        v.setSplitPartyRows(2);
+
+        SeatHold hold = v.findAndHoldSeats(15, "a@a.com");
+        assertEquals(2, hold.getBlocks().size());
+        assertEquals(15, v.numSeatsHeld());
+
+        Thread.sleep(100);
+        assertNull(v.reserveSeats(hold.getId(), "a@a.com"));
+        assertEquals(20, v.numSeatsAvailable());
+        assertEquals(0, v.numSeatsFor("a@a.com"));
+        assertEquals(10, v.largestAvailableBlock());
+    }
+
+    @Test
+    void testConcurrentSplitParties() throws InterruptedException {
+        for (LockMode lockMode : new LockMode[]{LockMode.VENUE, LockMode.ROW}) {
+            // parties up to half again as large as a row, in a venue with short holds
+            Venue v = new Venue(6, 10, 2, lockMode);
+            v.setSplitPartyRows(3);
+            AtomicInteger reservedByListener = new AtomicInteger();
+            v.setEventListener(new SeatEventListener() {
+                @Override
+                public void seatsReserved(SeatHold hold, String confirmId) {
+                    reservedByListener.addAndGet(hold.getNumSeats());
+                }
+
+                @Override
+                public void seatsReleased(String confirmId, List<SeatBlock> releasedSeats) {
+                    reservedByListener.addAndGet(-releasedSeats.stream().mapToInt(SeatBlock::getNumSeats).sum());
+                }
+            });
+
+            ExecutorService executor = Executors.newFixedThreadPool(8);
+            for (int i = 0; i < 8; i++) {
+                executor.submit(() -> {
+                    for (int j = 0; j < 2000; j++) {
+                        SeatHold hold = v.findAndHoldSeats(1 + j % 15, "a@a.com");
+
+                        if (hold != null && j % 25 == 0) {
+                            String confirmId = v.reserveSeats(hold.getId(), "a@a.com");
+
+                            // give some of them back straight away
+                            if (confirmId != null && j % 50 == 0) {
+                                v.releaseSeats(confirmId, "a@a.com", 1);
+                            }
+                        }
+                    }
+                });
+            }
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+            long deadline = System.currentTimeMillis() + 5000;
+            while (v.numSeatsHeld() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+
+            int reservedInRows = v.findBlocks(SeatBlockType.RESERVED).stream().mapToInt(SeatBlock::getNumSeats).sum();
+
+            assertEquals(0, v.numSeatsHeld(), lockMode.name());
+            assertEquals(reservedByListener.get(), v.numSeatsReserved(), lockMode.name());
+            assertEquals(reservedByListener.get(), reservedInRows, lockMode.name());
+            assertEquals(60 - reservedInRows, v.numSeatsAvailable(), lockMode.name());
+            assertEquals(reservedInRows, v.numSeatsFor("a@a.com"), lockMode.name());
+        }
+    }
+
+    @Test
+    void testRowLockModeConcurrentHolds() throws InterruptedException {
+        Venue v = new Venue(20, 10, 10000, LockMode.ROW);
+
+        // hammer the venue from several threads until it is sold out
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 8; i++) {
+            executor.submit(() -> {
+                SeatHold hold;
+                do {
+                    hold = v.findAndHoldSeats(2, "a@a.com");
+                } while (hold != null);
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        // every seat should be held exactly once
+        assertEquals(0, v.numSeatsAvailable());
+
+        List<SeatBlock> heldBlocks = v.findBlocks(SeatBlockType.HOLD);
+        assertEquals(100, heldBlocks.size());
+        assertEquals(200, heldBlocks.stream().mapToInt(SeatBlock::getNumSeats).sum());
+    }
+
+    @Test
+    void testRowLockModeConfirmation() {
+        Venue v = new Venue(2, 10, 10000, LockMode.ROW);
+
+        SeatHold hold = v.findAndHoldSeats(8, "a@a.com");
+        String confirmId = v.reserveSeats(hold.getId(), "a@a.com");
+        assertBlock(v.findReservation(confirmId), SeatBlockType.RESERVED, 0, 0, 8);
+
+        // the hold has been consumed by the reservation
+        assertNull(v.reserveSeats(hold.getId(), "a@a.com"));
+    }
+
+    @Test
+    void testPackedRowModel() {
+        Venue v = new Venue(2, 10, 10000, LockMode.ROW, RowModel.PACKED);
+
+        SeatHold hold = v.findAndHoldSeats(8, "a@a.com");
+        assertBlock(hold.getBlock(), SeatBlockType.HOLD, 0, 0, 8);
+        assertBlock(v.findAndHoldSeats(4, "b@b.com").getBlock(), SeatBlockType.HOLD, 1, 0, 4);
+
+        String confirmId = v.reserveSeats(hold.getId(), "a@a.com");
+        assertBlock(v.findReservation(confirmId), SeatBlockType.RESERVED, 0, 0, 8);
+
+        assertEquals(8, v.numSeatsAvailable());
+        List<SeatBlock> openBlocks = v.findBlocks(SeatBlockType.UNRESERVED);
+        assertBlock(openBlocks.get(0), SeatBlockType.UNRESERVED, 0, 8, 2);
+        assertBlock(openBlocks.get(1), SeatBlockType.UNRESERVED, 1, 4, 6);
+    }
+
+    @Test
+    void testOffHeapRowModel() {
+        Venue v = new Venue(3, 40, 10000, LockMode.ROW, RowModel.OFF_HEAP);
+
+        SeatHold hold = v.findAndHoldSeats(35, "a@a.com");
+        assertBlock(hold.getBlock(), SeatBlockType.HOLD, 0, 0, 35);
+        assertBlock(v.findAndHoldSeats(40, "b@b.com").getBlock(), SeatBlockType.HOLD, 1, 0, 40);
+        assertBlock(v.findAndHoldSeats(5, "c@c.com").getBlock(), SeatBlockType.HOLD, 0, 35, 5);
+
+        String confirmId = v.reserveSeats(hold.getId(), "a@a.com");
+        assertBlock(v.findReservation(confirmId), SeatBlockType.RESERVED, 0, 0, 35);
+
+        assertEquals(40, v.numSeatsAvailable());
+        assertEquals(45, v.numSeatsHeld());
+        assertEquals(35, v.numSeatsReserved());
+        assertBlock(v.findBlocks(SeatBlockType.UNRESERVED).get(0), SeatBlockType.UNRESERVED, 2, 0, 40);
+    }
+
+    @Test
+    void testFindAndHoldSeatsBatch() {
+        Venue v = new Venue(2, 10, 10000);
+
+        List<SeatHold> holds = v.findAndHoldSeatsBatch(Arrays.asList(
+            new HoldRequest(8, "a@a.com"),
+            new HoldRequest(4, "b@b.com"),
+            new HoldRequest(11, "c@c.com"),
+            new HoldRequest(2, "d@d.com"),
+            new HoldRequest(4, "e@e.com"),
+            new HoldRequest(3, "f@f.com")));
+
+        // same placement as holding each request in turn - the 2 seat request fills the end of the first row
+        assertEquals(6, holds.size());
+        assertBlock(holds.get(0).getBlock(), SeatBlockType.HOLD, 0, 0, 8);
+        assertBlock(holds.get(1).getBlock(), SeatBlockType.HOLD, 1, 0, 4);
+        assertNull(holds.get(2));
+        assertBlock(holds.get(3).getBlock(), SeatBlockType.HOLD, 0, 8, 2);
+        assertBlock(holds.get(4).getBlock(), SeatBlockType.HOLD, 1, 4, 4);
+        assertNull(holds.get(5));
+
+        assertEquals(2, v.numSeatsAvailable());
+        assertEquals(18, v.numSeatsHeld());
+        assertEquals("b@b.com", holds.get(1).getCustomerEmail());
+
+        // batch holds can be reserved like any other hold
+        String confirmId = v.reserveSeats(holds.get(4).getId(), "e@e.com");
+        assertBlock(v.findReservation(confirmId), SeatBlockType.RESERVED, 1, 4, 4);
+    }
+
+    @Test
+    void testRowLockModeConcurrentBatches() throws InterruptedException {
+        Venue v = new Venue(20, 10, 10000, LockMode.ROW);
+        List<HoldRequest> batch = Arrays.asList(new HoldRequest(2, "a@a.com"), new HoldRequest(3, "b@b.com"));
+
+        // hammer the venue with batches from several threads until nothing fits
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 8; i++) {
+            executor.submit(() -> {
+                List<SeatHold> holds;
+                do {
+                    holds = v.findAndHoldSeatsBatch(batch);
+                } while (holds.get(0) != null);
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        // every seat should be held exactly once
+        assertEquals(0, v.numSeatsAvailable());
+        assertEquals(200, v.findBlocks(SeatBlockType.HOLD).stream().mapToInt(SeatBlock::getNumSeats).sum());
+    }
+
+    @Test
+    void testBestAvailableSeating() {
+        Venue v = new Venue(3, 9, 10000, LockMode.VENUE, RowModel.BLOCK_LIST, SeatScorer.distanceToStage());
+
+        // the front row, centered on the stage
+        SeatHold front = v.findAndHoldSeats(5, "a@a.com");
+        assertBlock(front.getBlock(), SeatBlockType.HOLD, 0, 2, 5);
+
+        // only two seat gaps are left in the front row
+        assertBlock(v.findAndHoldSeats(3, "b@b.com").getBlock(), SeatBlockType.HOLD, 1, 3, 3);
+
+        // the center of the third row is closer to the stage than the edges of the first two
+        assertEquals(2, v.findAndHoldSeats(2, "c@c.com").getBlock().getRowNum());
+
+        String confirmId = v.reserveSeats(front.getId(), "a@a.com");
+        assertBlock(v.findReservation(confirmId), SeatBlockType.RESERVED, 0, 2, 5);
+        assertEquals(17, v.numSeatsAvailable());
+    }
+
+    @Test
+    void testBestAvailableConcurrentHolds() throws InterruptedException {
+        for (RowModel rowModel : RowModel.values()) {
+            Venue v = new Venue(20, 10, 10000, LockMode.ROW, rowModel, SeatScorer.centerWeighted());
+
+            ExecutorService executor = Executors.newFixedThreadPool(8);
+            for (int i = 0; i < 8; i++) {
+                executor.submit(() -> {
+                    SeatHold hold;
+                    do {
+                        hold = v.findAndHoldSeats(2, "a@a.com");
+                    } while (hold != null);
+                });
+            }
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+            // two seat holds can leave single seats behind, but no seat is held twice
+            List<SeatBlock> heldBlocks = v.findBlocks(SeatBlockType.HOLD);
+            assertEquals(200 - v.numSeatsAvailable(), heldBlocks.stream().mapToInt(SeatBlock::getNumSeats).sum());
+            assertEquals(v.numSeatsHeld(), heldBlocks.stream().mapToInt(SeatBlock::getNumSeats).sum());
+            assertEquals(0, v.largestAvailableBlock() / 2);
+        }
+    }
+
+    @Test
+    void testNoLostUpdates() throws InterruptedException {
+        for (LockMode lockMode : LockMode.values()) {
+            // short holds, so holds, reservations and expiries all race on the same rows
+            Venue v = new Venue(4, 10, 2, lockMode);
+            AtomicInteger reservedByListener = new AtomicInteger();
+            v.setEventListener(new SeatEventListener() {
+                @Override
+                public void seatsReserved(SeatHold hold, String confirmId) {
+                    reservedByListener.addAndGet(hold.getBlock().getNumSeats());
+                }
+            });
+
+            ExecutorService executor = Executors.newFixedThreadPool(8);
+            for (int i = 0; i < 8; i++) {
+                executor.submit(() -> {
+                    for (int j = 0; j < 2000; j++) {
+                        SeatHold hold = v.findAndHoldSeats(1 + j % 3, "a@a.com");
+
+                        // reserve every so often, and let the rest expire
+                        if (hold != null && j % 50 == 0) {
+                            v.reserveSeats(hold.getId(), "a@a.com");
+                        }
+                    }
+                });
+            }
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+            // wait for the remaining holds to expire
+            long deadline = System.currentTimeMillis() + 5000;
+            while (v.numSeatsHeld() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+
+            // a lost update would leave the rows disagreeing with the counters, or seats reserved twice
+            int reservedInRows = v.findBlocks(SeatBlockType.RESERVED).stream().mapToInt(SeatBlock::getNumSeats).sum();
+            int availableInRows = v.findBlocks(SeatBlockType.UNRESERVED).stream()
+                .mapToInt(SeatBlock::getNumSeats).sum();
+
+            assertEquals(0, v.numSeatsHeld(), lockMode.name());
+            assertTrue(v.findBlocks(SeatBlockType.HOLD).isEmpty(), lockMode.name());
+            assertEquals(reservedByListener.get(), v.numSeatsReserved(), lockMode.name());
+            assertEquals(reservedByListener.get(), reservedInRows, lockMode.name());
+            assertEquals(40 - reservedInRows, v.numSeatsAvailable(), lockMode.name());
+            assertEquals(40 - reservedInRows, availableInRows, lockMode.name());
+        }
+    }
+
+    @Test
+    void testOptimisticLockModeNeedsBlockListRows() {
+        assertThrows(IllegalArgumentException.class, () -> new Venue(2, 10, 10000, LockMode.OPTIMISTIC,
+            RowModel.PACKED));
+        assertThrows(IllegalArgumentException.class, () -> new Venue(2, 10, 10000, LockMode.OPTIMISTIC,
+            RowModel.OFF_HEAP));
+    }
+
+    @Test
+    void testCustomerLookups() throws InterruptedException {
+        Venue v = new Venue(2, 10, 50);
+
+        SeatHold first = v.findAndHoldSeats(4, "a@a.com");
+        SeatHold second = v.findAndHoldSeats(3, "A@A.com ");
+        v.findAndHoldSeats(2, "b@b.com");
+        String confirmId = v.reserveSeats(first.getId(), "a@a.com");
+
+        // emails are normalized, so both holds belong to the same customer
+        assertEquals(Arrays.asList(second), v.findHolds("a@a.com"));
+        assertEquals(Arrays.asList(confirmId), v.findReservations(" a@A.COM"));
+        assertEquals(7, v.numSeatsFor("a@a.com"));
+        assertEquals(2, v.numSeatsFor("b@b.com"));
+        assertTrue(v.findReservations("c@c.com").isEmpty());
+
+        // expired holds drop out, reservations stay
+        Thread.sleep(150);
+        assertTrue(v.findHolds("a@a.com").isEmpty());
+        assertEquals(4, v.numSeatsFor("a@a.com"));
+        assertEquals(0, v.numSeatsFor("b@b.com"));
+    }
+
+    @Test
+    void testReserveWithDifferentlyCasedEmail() {
+        Venue v = new Venue(2, 10, 10000);
+
+        // a hold findHolds hands out for an email can be reserved with that email
+        v.findAndHoldSeats(4, "bob@x.com");
+        SeatHold hold = v.findHolds("Bob@X.com ").get(0);
+        String confirmId = v.reserveSeats(hold.getId(), "Bob@X.com ");
+
+        assertBlock(v.findReservation(confirmId), SeatBlockType.RESERVED, 0, 0, 4);
+        assertEquals(Arrays.asList(confirmId), v.findReservations("bob@x.com"));
+        assertThrows(VenueException.class,
+            () -> v.reserveSeats(v.findAndHoldSeats(2, "bob@x.com").getId(), "rob@x.com"));
+    }
+
+    @Test
+    void testReserveWithCollidingEmail() {
+        assertEquals(CustomerKey.of(EMAIL), CustomerKey.of(COLLIDING_EMAIL));
+        Venue v = new Venue(2, 10, 10000);
+
+        SeatHold hold = v.findAndHoldSeats(4, EMAIL);
+        assertThrows(VenueException.class, () -> v.reserveSeats(hold.getId(), COLLIDING_EMAIL));
+        assertNotNull(v.reserveSeats(hold.getId(), EMAIL));
+    }
+
+    @Test
+    void testExtendWithCollidingEmail() {
+        Venue v = new Venue(2, 10, 10000);
+
+        SeatHold hold = v.findAndHoldSeats(4, EMAIL);
+        assertThrows(VenueException.class, () -> v.extendHold(hold.getId(), COLLIDING_EMAIL, 500));
+        assertTrue(v.extendHold(hold.getId(), EMAIL, 500));
+    }
+
+    @Test
+    void testReleaseWithAnotherCustomersEmail() {
+        Venue v = new Venue(2, 10, 10000);
+
+        String confirmId = v.reserveSeats(v.findAndHoldSeats(4, "a@a.com").getId(), "a@a.com");
+        assertThrows(VenueException.class, () -> v.cancelReservation(confirmId, "b@b.com"));
+        assertThrows(VenueException.class, () -> v.releaseSeats(confirmId, "b@b.com", 1));
+        assertEquals(4, v.numSeatsReserved());
+
+        // the same customer however the email is cased or padded, but not another email with the same key
+        assertTrue(v.releaseSeats(confirmId, " A@a.com", 1));
+        String colliding = v.reserveSeats(v.findAndHoldSeats(2, EMAIL).getId(), EMAIL);
+        assertThrows(VenueException.class, () -> v.cancelReservation(colliding, COLLIDING_EMAIL));
+        assertTrue(v.cancelReservation(colliding, EMAIL));
+    }
+
+    @Test
+    void testCustomerSeatLimit() {
+        Venue v = new Venue(2, 10, 10000);
+        v.setCustomerSeatLimit(6);
+
+        SeatHold hold = v.findAndHoldSeats(4, "a@a.com");
+        assertNull(v.findAndHoldSeats(3, "a@a.com"));
+        assertNotNull(v.findAndHoldSeats(3, "b@b.com"));
+
+        // the reserved seats still count, and a hold that doesn't fit doesn't use up the limit
+        v.reserveSeats(hold.getId(), "a@a.com");
+        assertNull(v.findAndHoldSeats(11, "a@a.com"));
+        assertNotNull(v.findAndHoldSeats(2, "a@a.com"));
+        assertEquals(6, v.numSeatsFor("a@a.com"));
+
+        List<SeatHold> holds = v.findAndHoldSeatsBatch(Arrays.asList(
+            new HoldRequest(1, "a@a.com"), new HoldRequest(4, "b@b.com"), new HoldRequest(1, "c@c.com")));
+        assertNull(holds.get(0));
+        assertNull(holds.get(1));
+        assertNotNull(holds.get(2));
+
+        assertThrows(IllegalArgumentException.class, () -> v.setCustomerSeatLimit(0));
+    }
+
+    @Test
+    void testConcurrentHoldsStayWithinTheCustomerSeatLimit() throws InterruptedException {
+        for (LockMode lockMode : LockMode.values()) {
+            Venue v = new Venue(20, 10, 10000, lockMode);
+            v.setCustomerSeatLimit(10);
+
+            ExecutorService executor = Executors.newFixedThreadPool(8);
+            for (int i = 0; i < 8; i++) {
+                executor.submit(() -> {
+                    for (int j = 0; j < 20; j++) {
+                        v.findAndHoldSeats(3, "a@a.com");
+                    }
+                });
+            }
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+            assertEquals(9, v.numSeatsHeld(), lockMode.name());
+            assertEquals(3, v.findHolds("a@a.com").size(), lockMode.name());
+        }
+    }
+
+    @Test
+    void testMetrics() throws Exception {
+        Venue v = new Venue(2, 10, 10000);
+        VenueMetrics metrics = v.getMetrics();
+
+        SeatHold first = v.findAndHoldSeats(4, "a@a.com");
+        v.findAndHoldSeats(4, "b@b.com");
+        assertNull(v.findAndHoldSeats(11, "c@c.com"));
+        v.reserveSeats(first.getId(), "a@a.com");
+
+        assertEquals(2, metrics.getHoldCount());
+        assertEquals(1, metrics.getFailedHoldCount());
+        assertEquals(1, metrics.getReservationCount());
+        assertEquals(1, metrics.getLiveHolds());
+        assertEquals(3, metrics.getHoldLatency().getCount());
+        assertEquals(1, metrics.getReserveLatency().getCount());
+        assertEquals(4, metrics.getLockWait().getCount());
+        assertEquals(1.0, metrics.getHoldConversionRate());
+
+        ObjectName name = metrics.register("testMetrics");
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            assertEquals(2L, server.getAttribute(name, "HoldCount"));
+
+            CompositeData holdLatency = (CompositeData) server.getAttribute(name, "HoldLatency");
+            assertEquals(3L, holdLatency.get("count"));
+        }
+        finally {
+            metrics.unregister();
+        }
+
+        assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+    }
+
+    @Test
+    void testExpiryMetrics() throws InterruptedException {
+        Venue v = new Venue(2, 10, 1);
+
+        v.findAndHoldSeats(4, "a@a.com");
+        Thread.sleep(50);
+
+        VenueMetrics metrics = v.getMetrics();
+        assertEquals(1, metrics.getExpiryCount());
+        assertEquals(1, metrics.getExpiryLag().getCount());
+        assertEquals(0, metrics.getLiveHolds());
+        assertEquals(0.0, metrics.getHoldConversionRate());
+    }
 }